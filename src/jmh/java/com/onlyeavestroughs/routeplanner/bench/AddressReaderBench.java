@@ -0,0 +1,65 @@
+package com.onlyeavestroughs.routeplanner.bench;
+
+import com.onlyeavestroughs.routeplanner.io.AddressReader;
+import com.onlyeavestroughs.routeplanner.util.HashUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Input ingestion: AddressReader.read on large files, and the SHA-1 used for cache file names. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddressReaderBench {
+
+    @Param({"10000", "250000"})
+    public int lines;
+
+    private Path file;
+    private String[] addresses;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        List<String> data = BenchData.addresses(lines, 0.2, 1);
+        file = Files.createTempFile("bench-addresses", ".txt");
+        Files.write(file, data, StandardCharsets.UTF_8);
+        addresses = data.toArray(new String[0]);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public AddressReader.ReadResult read() throws Exception {
+        return AddressReader.read(file);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String sha1Hex() {
+        String a = addresses[next];
+        next = next + 1 == addresses.length ? 0 : next + 1;
+        return HashUtil.sha1Hex(a);
+    }
+}
@@ -0,0 +1,60 @@
+package com.onlyeavestroughs.routeplanner.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/** Deterministic synthetic inputs shared by the benchmarks. */
+final class BenchData {
+    private BenchData() {}
+
+    private static final String[] STREETS = {
+            "Hartlet Street", "William Street", "Helmuth Street", "Regent St", "Kains Road",
+            "Oxford St W", "Wonderland Rd N", "Commissioners Rd E", "Adelaide St N", "Dundas St"
+    };
+
+    /** count addresses, about dupRate of them repeats of earlier lines. */
+    static List<String> addresses(int count, double dupRate, long seed) {
+        Random rnd = new Random(seed);
+        List<String> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && rnd.nextDouble() < dupRate) {
+                out.add(out.get(rnd.nextInt(i)));
+            } else {
+                out.add((1 + rnd.nextInt(9999)) + " " + STREETS[rnd.nextInt(STREETS.length)] + " London Ontario");
+            }
+        }
+        return out;
+    }
+
+    /** Depot at index 0, n - 1 stops spread over London, Ontario. */
+    static double[][] points(int n, long seed) {
+        Random rnd = new Random(seed);
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        lat[0] = 42.98;
+        lng[0] = -81.25;
+        for (int i = 1; i < n; i++) {
+            lat[i] = 42.85 + rnd.nextDouble() * 0.3;
+            lng[i] = -81.45 + rnd.nextDouble() * 0.4;
+        }
+        return new double[][]{lat, lng};
+    }
+
+    static void deleteTree(Path dir) {
+        if (dir == null || !Files.exists(dir)) return;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.onlyeavestroughs.routeplanner.bench;
+
+import com.onlyeavestroughs.routeplanner.cache.GeocodeCacheEntry;
+import com.onlyeavestroughs.routeplanner.cache.LogGeocodeCache;
+import com.onlyeavestroughs.routeplanner.cache.MemoryGeocodeCache;
+import com.onlyeavestroughs.routeplanner.ors.OrsGeocoder;
+import com.onlyeavestroughs.routeplanner.ors.OrsGeocoder.GeocodeOutcome;
+import com.onlyeavestroughs.routeplanner.ors.RateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Geocode lookups through OrsGeocoder against the local stub server:
+ * - warmLookup: every address is in the memory tier
+ * - diskLookup: memory tier too small, every lookup reads the log index
+ * - coldLookup: every address is new, so a stub HTTP round trip plus a forced log append
+ * - openLog: startup cost of indexing an existing log of {@code entries} records
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeocodeCacheBench {
+
+    @Param({"10000"})
+    public int entries;
+
+    private StubOrsServer stub;
+    private Path dir;
+    private String[] addresses;
+    private OrsGeocoder warm;
+    private OrsGeocoder disk;
+    private OrsGeocoder cold;
+    private MemoryGeocodeCache warmCache;
+    private MemoryGeocodeCache diskCache;
+    private MemoryGeocodeCache coldCache;
+    private int next;
+    private long coldCounter;
+
+    @Setup
+    public void setup() throws Exception {
+        stub = new StubOrsServer();
+        dir = Files.createTempDirectory("bench-geocode");
+
+        List<String> data = BenchData.addresses(entries, 0, 2);
+        addresses = data.toArray(new String[0]);
+        try (LogGeocodeCache log = LogGeocodeCache.open(dir.resolve("geocode.log"))) {
+            for (int i = 0; i < addresses.length; i++) {
+                log.put(new GeocodeCacheEntry(addresses[i], 42.9 + i * 1e-6, -81.2, Instant.now().toString()));
+            }
+        }
+
+        warmCache = new MemoryGeocodeCache(LogGeocodeCache.open(dir.resolve("geocode.log")), entries * 2, null);
+        for (String a : addresses) warmCache.get(a);
+        diskCache = new MemoryGeocodeCache(LogGeocodeCache.open(dir.resolve("geocode.log")), 1, null);
+        coldCache = new MemoryGeocodeCache(LogGeocodeCache.open(dir.resolve("cold.log")), 1_000, null);
+
+        warm = new OrsGeocoder("bench", warmCache, RateLimiter.unlimited(), stub.baseUrl());
+        disk = new OrsGeocoder("bench", diskCache, RateLimiter.unlimited(), stub.baseUrl());
+        cold = new OrsGeocoder("bench", coldCache, RateLimiter.unlimited(), stub.baseUrl());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        warmCache.close();
+        diskCache.close();
+        coldCache.close();
+        stub.close();
+        BenchData.deleteTree(dir);
+    }
+
+    @Benchmark
+    public GeocodeOutcome warmLookup() throws Exception {
+        return warm.forwardGeocode(nextAddress());
+    }
+
+    @Benchmark
+    public GeocodeOutcome diskLookup() throws Exception {
+        return disk.forwardGeocode(nextAddress());
+    }
+
+    @Benchmark
+    public GeocodeOutcome coldLookup() throws Exception {
+        return cold.forwardGeocode((coldCounter++) + " Cold Street London Ontario");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int openLog() throws Exception {
+        try (LogGeocodeCache log = LogGeocodeCache.open(dir.resolve("geocode.log"))) {
+            return log.size();
+        }
+    }
+
+    private String nextAddress() {
+        String a = addresses[next];
+        next = next + 1 == addresses.length ? 0 : next + 1;
+        return a;
+    }
+}
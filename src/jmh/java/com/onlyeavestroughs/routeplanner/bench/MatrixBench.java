@@ -0,0 +1,110 @@
+package com.onlyeavestroughs.routeplanner.bench;
+
+import com.onlyeavestroughs.routeplanner.matrix.HaversineMatrixEngine;
+import com.onlyeavestroughs.routeplanner.matrix.MatrixCache;
+import com.onlyeavestroughs.routeplanner.matrix.MatrixResult;
+import com.onlyeavestroughs.routeplanner.matrix.OrsMatrixEngine;
+import com.onlyeavestroughs.routeplanner.ors.OrsMatrixClient;
+import com.onlyeavestroughs.routeplanner.ors.RateLimiter;
+import com.onlyeavestroughs.routeplanner.spatial.KdTree;
+import com.onlyeavestroughs.routeplanner.spatial.NeighborLists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matrix stage: the offline haversine engine, KD-tree neighbour lists, and the ORS engine
+ * (tiling, cache fill and append) against the local stub server, cold and fully cached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixBench {
+
+    @Param({"500", "2000"})
+    public int points;
+
+    private double[] lat;
+    private double[] lng;
+    private StubOrsServer stub;
+    private OrsMatrixClient client;
+    private Path warmRoot;
+    private MatrixCache warmCache;
+    private Path coldRoot;
+    private MatrixCache coldCache;
+
+    @Setup
+    public void setup() throws Exception {
+        double[][] pts = BenchData.points(points, 4);
+        lat = pts[0];
+        lng = pts[1];
+        stub = new StubOrsServer();
+        client = new OrsMatrixClient("bench", "driving-car", RateLimiter.unlimited(), stub.baseUrl());
+
+        // The ORS benchmarks use the first 100 points so a cold run stays a few dozen requests.
+        warmRoot = Files.createTempDirectory("bench-matrix-warm");
+        warmCache = MatrixCache.open(warmRoot, "driving-car");
+        new OrsMatrixEngine(client, warmCache, 25, 4).compute(head(lat), head(lng));
+    }
+
+    @Setup(Level.Invocation)
+    public void freshColdCache() throws Exception {
+        coldRoot = Files.createTempDirectory("bench-matrix-cold");
+        coldCache = MatrixCache.open(coldRoot, "driving-car");
+    }
+
+    @TearDown(Level.Invocation)
+    public void dropColdCache() throws Exception {
+        coldCache.close();
+        BenchData.deleteTree(coldRoot);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        warmCache.close();
+        stub.close();
+        BenchData.deleteTree(warmRoot);
+    }
+
+    @Benchmark
+    public MatrixResult haversine() {
+        return new HaversineMatrixEngine(1.3, 50).compute(lat, lng);
+    }
+
+    @Benchmark
+    public NeighborLists kdTreeNeighbors() {
+        return new KdTree(lat, lng).neighborLists(16);
+    }
+
+    @Benchmark
+    public MatrixResult orsCold() throws Exception {
+        return new OrsMatrixEngine(client, coldCache, 25, 4).compute(head(lat), head(lng));
+    }
+
+    @Benchmark
+    public MatrixResult orsCached() throws Exception {
+        return new OrsMatrixEngine(client, warmCache, 25, 4).compute(head(lat), head(lng));
+    }
+
+    private static double[] head(double[] a) {
+        return Arrays.copyOf(a, Math.min(100, a.length));
+    }
+}
@@ -0,0 +1,69 @@
+package com.onlyeavestroughs.routeplanner.bench;
+
+import com.onlyeavestroughs.routeplanner.cluster.Territories;
+import com.onlyeavestroughs.routeplanner.cluster.TerritoryClusterer;
+import com.onlyeavestroughs.routeplanner.matrix.HaversineMatrixEngine;
+import com.onlyeavestroughs.routeplanner.optimize.MultiStartOptimizer;
+import com.onlyeavestroughs.routeplanner.optimize.OptimizeResult;
+import com.onlyeavestroughs.routeplanner.optimize.RouteOptimizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route construction and search. Budgets are generous and iteration caps small, so the
+ * scores measure work done rather than the time budget.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OptimizerBench {
+
+    @Param({"300", "1500"})
+    public int points;
+
+    private double[] lat;
+    private double[] lng;
+    private double[] costs;
+    private double[] serviceMinutes;
+
+    @Setup
+    public void setup() {
+        double[][] pts = BenchData.points(points, 5);
+        lat = pts[0];
+        lng = pts[1];
+        costs = new HaversineMatrixEngine(1.3, 50).compute(lat, lng).matrix().durations();
+        serviceMinutes = new double[points];
+        Arrays.fill(serviceMinutes, 1, points, 30);
+    }
+
+    @Benchmark
+    public OptimizeResult singleStart() {
+        return new RouteOptimizer(costs, lat, lng, 4, 0, 60_000).optimize();
+    }
+
+    @Benchmark
+    public OptimizeResult multiStart() {
+        RouteOptimizer base = new RouteOptimizer(costs, lat, lng, 4, 0, 60_000);
+        return new MultiStartOptimizer(base, 4, 1, 10, 20, 60_000).optimize();
+    }
+
+    @Benchmark
+    public Territories kmeansTerritories() {
+        return new TerritoryClusterer(4, 0, 0, 1, 50).kmeans(lat, lng, serviceMinutes);
+    }
+}
@@ -0,0 +1,110 @@
+package com.onlyeavestroughs.routeplanner.bench;
+
+import com.onlyeavestroughs.routeplanner.io.ReportWriter;
+import com.onlyeavestroughs.routeplanner.io.RoutesBinary;
+import com.onlyeavestroughs.routeplanner.matrix.CostMatrix;
+import com.onlyeavestroughs.routeplanner.matrix.HaversineMatrixEngine;
+import com.onlyeavestroughs.routeplanner.optimize.OptimizeResult;
+import com.onlyeavestroughs.routeplanner.optimize.RouteOptimizer;
+import com.onlyeavestroughs.routeplanner.optimize.TimeWindows;
+import com.onlyeavestroughs.routeplanner.ors.GeocodeFailure;
+import com.onlyeavestroughs.routeplanner.ors.OrsGeocoder.GeocodeOutcome;
+import com.onlyeavestroughs.routeplanner.runtime.ProjectConfigLoader;
+import com.onlyeavestroughs.routeplanner.runtime.RunConfig;
+import com.onlyeavestroughs.routeplanner.runtime.StopTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Output serialization: routes.json, routes.bin and routes.txt for an optimized day. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReportBench {
+
+    @Param({"2000"})
+    public int stops;
+
+    private Path dir;
+    private RunConfig cfg;
+    private GeocodeOutcome depot;
+    private StopTable stopTable;
+    private CostMatrix matrix;
+    private OptimizeResult plan;
+    private TimeWindows.Schedule[] schedules;
+
+    @Setup
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("bench-report");
+        Path cfgFile = dir.resolve("run-config.json");
+        Files.writeString(cfgFile, """
+                {"depot": "2050 Kains Road London Ontario", "input": "addresses.txt", "orsApiKey": "bench"}
+                """, StandardCharsets.UTF_8);
+        cfg = RunConfig.from(ProjectConfigLoader.load(cfgFile), "bench");
+
+        double[][] pts = BenchData.points(stops + 1, 3);
+        List<String> addresses = BenchData.addresses(stops, 0, 3);
+        depot = GeocodeOutcome.ok(cfg.depotAddress(), pts[0][0], pts[1][0], true, "cache");
+        stopTable = new StopTable(cfg.depotAddress(), pts[0][0], pts[1][0], stops);
+        for (int i = 1; i <= stops; i++) {
+            stopTable.add(i, addresses.get(i - 1), pts[0][i], pts[1][i], StopTable.CACHE);
+        }
+        stopTable.addFailure("1 Nowhere Lane", GeocodeFailure.NO_RESULTS, "no geocode results");
+        matrix = new HaversineMatrixEngine(1.3, 50).compute(pts[0], pts[1]).matrix();
+        plan = new RouteOptimizer(matrix.durations(), pts[0], pts[1], 4, 0, 2_000).optimize();
+        double[] earliest = new double[stops + 1];
+        double[] latest = new double[stops + 1];
+        double[] service = new double[stops + 1];
+        Arrays.fill(latest, TimeWindows.NONE);
+        Arrays.fill(service, 1, stops + 1, cfg.serviceMinutesPerStop() * 60);
+        earliest[0] = cfg.shiftStartSeconds();
+        TimeWindows windows = new TimeWindows(matrix.durations(), earliest, latest, service);
+        schedules = new TimeWindows.Schedule[plan.routes().length];
+        for (int r = 0; r < schedules.length; r++) schedules[r] = windows.schedule(plan.routes()[r]);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchData.deleteTree(dir);
+    }
+
+    @Benchmark
+    public long routesJson() throws Exception {
+        Path out = dir.resolve("routes.json");
+        ReportWriter.writeRoutesJson(out, cfg, stopTable, matrix, plan, schedules);
+        return Files.size(out);
+    }
+
+    @Benchmark
+    public long routesBin() throws Exception {
+        Path out = dir.resolve("routes.bin");
+        RoutesBinary.write(out, cfg, stopTable, plan);
+        return Files.size(out);
+    }
+
+    @Benchmark
+    public long routesTxt() throws Exception {
+        Path out = dir.resolve("routes.txt");
+        ReportWriter.writeRoutesTxt(out, cfg, depot, stopTable, matrix, plan, schedules);
+        return Files.size(out);
+    }
+}
@@ -0,0 +1,98 @@
+package com.onlyeavestroughs.routeplanner.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.onlyeavestroughs.routeplanner.matrix.HaversineMatrixEngine;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Local stand-in for the two ORS endpoints the planner calls, so benchmarks run offline.
+ *
+ * /geocode/search answers every text with a point near London, Ontario derived from the
+ * text's hash. /v2/matrix/{profile} answers with great-circle distances at 50 km/h.
+ */
+final class StubOrsServer implements AutoCloseable {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+
+    StubOrsServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/geocode/search", this::geocode);
+        server.createContext("/v2/matrix/", this::matrix);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void geocode(HttpExchange ex) throws IOException {
+        String query = ex.getRequestURI().getRawQuery();
+        String text = "";
+        for (String part : query == null ? new String[0] : query.split("&")) {
+            if (part.startsWith("text=")) text = URLDecoder.decode(part.substring(5), StandardCharsets.UTF_8);
+        }
+        int h = text.hashCode();
+        double lat = 42.9 + (h & 0xFFFF) / 65536.0 * 0.2;
+        double lng = -81.4 + ((h >>> 16) & 0xFFFF) / 65536.0 * 0.3;
+
+        ObjectNode root = mapper.createObjectNode();
+        ArrayNode features = root.putArray("features");
+        features.addObject().putObject("geometry").putArray("coordinates").add(lng).add(lat);
+        send(ex, mapper.writeValueAsBytes(root));
+    }
+
+    private void matrix(HttpExchange ex) throws IOException {
+        JsonNode body;
+        try (InputStream in = ex.getRequestBody()) {
+            body = mapper.readTree(in);
+        }
+        JsonNode locations = body.get("locations");
+        JsonNode sources = body.get("sources");
+        JsonNode destinations = body.get("destinations");
+
+        ObjectNode root = mapper.createObjectNode();
+        ArrayNode distances = root.putArray("distances");
+        ArrayNode durations = root.putArray("durations");
+        for (JsonNode s : sources) {
+            JsonNode from = locations.get(s.asInt());
+            ArrayNode dRow = distances.addArray();
+            ArrayNode tRow = durations.addArray();
+            for (JsonNode d : destinations) {
+                JsonNode to = locations.get(d.asInt());
+                double m = HaversineMatrixEngine.greatCircleMeters(
+                        from.get(1).asDouble(), from.get(0).asDouble(), to.get(1).asDouble(), to.get(0).asDouble());
+                dRow.add(m);
+                tRow.add(m / (50 / 3.6));
+            }
+        }
+        send(ex, mapper.writeValueAsBytes(root));
+    }
+
+    private static void send(HttpExchange ex, byte[] json) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(200, json.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(json);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -1,11 +1,36 @@
 package com.onlyeavestroughs.routeplanner;
 
+import com.onlyeavestroughs.routeplanner.runtime.BatchApp;
+import com.onlyeavestroughs.routeplanner.runtime.CacheApp;
+import com.onlyeavestroughs.routeplanner.runtime.PrefetchApp;
 import com.onlyeavestroughs.routeplanner.runtime.RunApp;
+import com.onlyeavestroughs.routeplanner.runtime.ServeApp;
+
+import java.nio.file.Path;
+import java.util.Arrays;
 
 public final class Main {
     private Main() {}
 
     public static void main(String[] args) {
-        System.exit(RunApp.runFromProjectConfig());
+        String command = args.length == 0 ? "run" : args[0];
+        int code = switch (command) {
+            case "run" -> RunApp.runFromProjectConfig();
+            case "compact-cache" -> CacheApp.compactFromProjectConfig();
+            case "maintain-cache" -> CacheApp.maintainFromProjectConfig(Arrays.copyOfRange(args, 1, args.length));
+            case "serve" -> ServeApp.serveFromProjectConfig();
+            case "batch" -> args.length == 2 ? BatchApp.runFromProjectConfig(Path.of(args[1])) : usage("batch needs a jobs file");
+            case "prefetch" -> args.length <= 2
+                    ? PrefetchApp.prefetchFromProjectConfig(args.length == 2 ? Path.of(args[1]) : null)
+                    : usage("prefetch takes at most one address file");
+            default -> usage("Unknown command: " + command);
+        };
+        System.exit(code);
+    }
+
+    private static int usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: routeplanner [run | serve | batch <jobs.jsonl> | prefetch [addresses.txt] | compact-cache | maintain-cache [--dry-run] [--ttl-days N]]");
+        return 64;
     }
 }
@@ -0,0 +1,218 @@
+package com.onlyeavestroughs.routeplanner.address;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Canonical form of a Canadian street address, so spelling variants of one place share a
+ * geocode cache entry and are merged as near-duplicates:
+ *
+ *   "123 Main Street, Unit #4, London, Ontario N6A 1B2"  ->  "123 main st unit 4 london on n6a1b2"
+ *   "123 MAIN ST. UNIT 4 LONDON ON N6A1B2"                ->  (same)
+ *
+ * Steps: accents folded, lower-cased, punctuation dropped, whitespace collapsed, then
+ * token tables for street types, directions, unit designators and provinces; postal codes
+ * lose their inner space and a trailing "canada" is dropped. The result is idempotent
+ * (canonical(canonical(a)) == canonical(a)). It is only ever used as a key; ORS is still
+ * sent the address as written.
+ */
+public final class AddressNormalizer {
+    private AddressNormalizer() {}
+
+    private static final Map<String, String> TOKENS = new HashMap<>();
+    private static final List<Phrase> PHRASES = new ArrayList<>();
+
+    static {
+        // Street types (Canada Post symbols).
+        word("st", "street", "str");
+        word("ave", "avenue", "av");
+        word("rd", "road");
+        word("dr", "drive");
+        word("blvd", "boulevard");
+        word("cres", "crescent", "cr");
+        word("crt", "court", "ct");
+        word("pl", "place");
+        word("ln", "lane");
+        word("terr", "terrace", "ter");
+        word("cir", "circle");
+        word("pkwy", "parkway");
+        word("hwy", "highway");
+        word("sq", "square");
+        word("trail", "trl");
+        word("gdns", "gardens");
+        word("hts", "heights");
+        word("pt", "point");
+        word("cv", "cove");
+        word("conc", "concession");
+
+        // Directions.
+        word("n", "north");
+        word("s", "south");
+        word("e", "east");
+        word("w", "west");
+        word("ne", "northeast");
+        word("nw", "northwest");
+        word("se", "southeast");
+        word("sw", "southwest");
+
+        // Unit designators. "ste" is handled in canonical(): it is also Sainte (Ste-Foy).
+        word("unit", "apt", "apartment", "suite", "app", "#");
+
+        // Provinces and territories.
+        word("on", "ontario", "ont");
+        word("qc", "quebec", "que", "pq");
+        word("ab", "alberta", "alta");
+        word("mb", "manitoba", "man");
+        word("sk", "saskatchewan", "sask");
+        word("ns", "novascotia");
+        word("nb", "newbrunswick");
+        word("pe", "pei");
+        word("yt", "yukon");
+        word("nu", "nunavut");
+        phrase("bc", "british columbia");
+        phrase("ns", "nova scotia");
+        phrase("nb", "new brunswick");
+        phrase("nl", "newfoundland and labrador");
+        phrase("nl", "newfoundland");
+        phrase("pe", "prince edward island");
+        phrase("nt", "northwest territories");
+    }
+
+    private static void word(String canonical, String... variants) {
+        TOKENS.put(canonical, canonical);
+        for (String v : variants) TOKENS.put(v, canonical);
+    }
+
+    /** Longer phrases first so "newfoundland and labrador" wins over "newfoundland". */
+    private static void phrase(String canonical, String words) {
+        String[] from = words.split(" ");
+        int at = 0;
+        while (at < PHRASES.size() && PHRASES.get(at).words().length >= from.length) at++;
+        PHRASES.add(at, new Phrase(from, canonical));
+    }
+
+    public static String canonical(String address) {
+        if (address == null) return "";
+        String s = address.trim();
+        if (s.isEmpty()) return "";
+        if (!isAscii(s)) {
+            s = Normalizer.normalize(s, Normalizer.Form.NFKD);
+        }
+
+        List<String> tokens = tokenize(s);
+        List<String> out = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            Phrase matched = matchPhrase(tokens, i);
+            String t;
+            if (matched != null) {
+                t = matched.canonical();
+                i += matched.words().length - 1;
+            } else if (tokens.get(i).equals("ste")) {
+                // "Ste 4" is a suite; "Ste-Foy" and "Ste Catherine" are Sainte.
+                t = i + 1 < tokens.size() && startsUnitNumber(tokens.get(i + 1)) ? "unit" : "ste";
+            } else {
+                t = TOKENS.getOrDefault(tokens.get(i), tokens.get(i));
+            }
+
+            String prev = out.isEmpty() ? null : out.get(out.size() - 1);
+            if (t.equals("unit") && "unit".equals(prev)) continue;
+            if (prev != null && isPostalLeft(prev) && isPostalRight(t)) {
+                out.set(out.size() - 1, prev + t);
+                continue;
+            }
+            out.add(t);
+        }
+        if (!out.isEmpty() && out.get(out.size() - 1).equals("canada")) {
+            out.remove(out.size() - 1);
+        }
+        return String.join(" ", out);
+    }
+
+    /**
+     * Lower-case ASCII letter/digit runs. "#" is its own token; apostrophes vanish
+     * ("John's" -> "johns"), as do dots inside initials ("N.W." -> "nw"); anything else
+     * separates tokens. Combining marks left by NFKD are dropped.
+     */
+    private static List<String> tokenize(String s) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder cur = new StringBuilder(16);
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 128 && Character.isLetterOrDigit(c)) {
+                cur.append(Character.toLowerCase(c));
+            } else if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                // Accent left over from NFKD: skip.
+            } else if (Character.isLetterOrDigit(c)) {
+                cur.append(Character.toLowerCase(c));
+            } else if (c == '\'' || c == '\u2019') {
+                // Joined: "John's" -> "johns".
+            } else if (c == '.' && cur.length() == 1 && i + 1 < n && Character.isLetter(s.charAt(i + 1))
+                    && Character.isLetter(cur.charAt(0))) {
+                // Initials: "N.W." -> "nw".
+            } else {
+                flush(cur, tokens);
+                if (c == '#') tokens.add("#");
+                if (c == '&') tokens.add("and");
+            }
+        }
+        flush(cur, tokens);
+        return tokens;
+    }
+
+    private static void flush(StringBuilder cur, List<String> tokens) {
+        if (cur.length() > 0) {
+            tokens.add(cur.toString());
+            cur.setLength(0);
+        }
+    }
+
+    /** The longest phrase starting at token i, or null. */
+    private static Phrase matchPhrase(List<String> tokens, int i) {
+        for (Phrase p : PHRASES) {
+            String[] words = p.words();
+            if (i + words.length > tokens.size()) continue;
+            boolean match = true;
+            for (int w = 0; w < words.length && match; w++) {
+                match = tokens.get(i + w).equals(words[w]);
+            }
+            if (match) return p;
+        }
+        return null;
+    }
+
+    /** "4", "4b" or "#". */
+    private static boolean startsUnitNumber(String t) {
+        return t.equals("#") || isDigit(t.charAt(0));
+    }
+
+    /** "n6a" */
+    private static boolean isPostalLeft(String t) {
+        return t.length() == 3 && isLetter(t.charAt(0)) && isDigit(t.charAt(1)) && isLetter(t.charAt(2));
+    }
+
+    /** "1b2" */
+    private static boolean isPostalRight(String t) {
+        return t.length() == 3 && isDigit(t.charAt(0)) && isLetter(t.charAt(1)) && isDigit(t.charAt(2));
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'a' && c <= 'z';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 128) return false;
+        }
+        return true;
+    }
+
+    private record Phrase(String[] words, String canonical) {}
+}
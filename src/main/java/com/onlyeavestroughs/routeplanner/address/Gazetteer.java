@@ -0,0 +1,268 @@
+package com.onlyeavestroughs.routeplanner.address;
+
+import com.onlyeavestroughs.routeplanner.util.HashUtil;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local table of known addresses and coordinates, consulted before the geocode cache and ORS.
+ *
+ * The source is a CSV of address,lat,lng (optional header; quote addresses that contain
+ * commas). It is compiled once into a binary index beside the cache: a 32-byte header
+ * (magic, source size and mtime, entry count, capacity) and an open-addressing table of
+ * 16-byte slots (64-bit key, lat and lng in micro-degrees). Every address is stored twice,
+ * under the fingerprint of its trimmed text and of its AddressNormalizer canonical form.
+ *
+ * Opening maps the index read-only and lookups probe the mapping directly, so startup is
+ * O(1) however large the gazetteer; the index is rebuilt only when the CSV's size or mtime
+ * changes. An exact hit costs one hash and a probe; a spelling variant also pays for
+ * canonicalization. Keys are 64-bit fingerprints, so two addresses could in principle
+ * collide; at a million entries the odds are about 1 in 10^7.
+ */
+public final class Gazetteer {
+
+    private static final int MAGIC = 0x475A5431; // "GZT1"
+    private static final int HEADER_BYTES = 32;
+    private static final int SLOT_BYTES = 16;
+    /** Keeps exact-text keys apart from canonical keys. */
+    private static final long EXACT_SALT = 0x5DEECE66DL;
+
+    private final ByteBuffer table;
+    private final int capacity;
+    private final int entries;
+
+    private final LongAdder exactHits = new LongAdder();
+    private final LongAdder normalizedHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private Gazetteer(ByteBuffer table, int capacity, int entries) {
+        this.table = table;
+        this.capacity = capacity;
+        this.entries = entries;
+    }
+
+    /** Maps indexFile, rebuilding it first from csv when it is missing or stale. */
+    public static Gazetteer open(Path csv, Path indexFile) throws IOException {
+        long size = Files.size(csv);
+        long mtime = Files.getLastModifiedTime(csv).toMillis();
+        if (!isCurrent(indexFile, size, mtime)) {
+            build(csv, indexFile, size, mtime);
+        }
+
+        try (FileChannel ch = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            int entries = map.getInt(20);
+            int capacity = map.getInt(24);
+            return new Gazetteer(map.slice(HEADER_BYTES, capacity * SLOT_BYTES), capacity, entries);
+        }
+    }
+
+    /** Returns the known coordinates for the address, or null. Safe for concurrent use. */
+    public Match lookup(String address) {
+        if (address == null || entries == 0) return null;
+        String trimmed = address.trim();
+
+        int slot = find(exactKey(trimmed));
+        if (slot >= 0) {
+            exactHits.increment();
+            return match(slot, true);
+        }
+        slot = find(canonicalKey(trimmed));
+        if (slot >= 0) {
+            normalizedHits.increment();
+            return match(slot, false);
+        }
+        misses.increment();
+        return null;
+    }
+
+    public int size() {
+        return entries;
+    }
+
+    public Stats stats() {
+        return new Stats(entries, exactHits.sum(), normalizedHits.sum(), misses.sum());
+    }
+
+    private Match match(int slot, boolean exact) {
+        int base = slot * SLOT_BYTES;
+        return new Match(table.getInt(base + 8) / 1e6, table.getInt(base + 12) / 1e6, exact);
+    }
+
+    /** Slot holding key, or -1. */
+    private int find(long key) {
+        int mask = capacity - 1;
+        int slot = slotFor(key, mask);
+        while (true) {
+            long k = table.getLong(slot * SLOT_BYTES);
+            if (k == key) return slot;
+            if (k == 0) return -1;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // ---------------------------------------------------------------- build
+
+    private static boolean isCurrent(Path indexFile, long sourceSize, long sourceMtime) throws IOException {
+        if (!Files.exists(indexFile) || Files.size(indexFile) < HEADER_BYTES) return false;
+        try (FileChannel ch = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES);
+            while (h.hasRemaining() && ch.read(h) >= 0) {}
+            h.flip();
+            if (h.getInt(0) != MAGIC || h.getLong(4) != sourceSize || h.getLong(12) != sourceMtime) return false;
+            return ch.size() == HEADER_BYTES + (long) h.getInt(24) * SLOT_BYTES;
+        }
+    }
+
+    private static void build(Path csv, Path indexFile, long sourceSize, long sourceMtime) throws IOException {
+        // Two keys per row; capacity keeps the load factor at or under 1/2.
+        int rows = 0;
+        long[] keys = new long[1024];
+        int[] latE6 = new int[1024];
+        int[] lngE6 = new int[1024];
+
+        try (BufferedReader in = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            String line;
+            boolean first = true;
+            while ((line = in.readLine()) != null) {
+                Row row = parse(line);
+                if (row == null) {
+                    if (!first && !line.isBlank()) {
+                        System.err.println("WARN: gazetteer: skipping unreadable row: " + line);
+                    }
+                    first = false;
+                    continue;
+                }
+                first = false;
+                if (2 * rows + 2 > keys.length) {
+                    keys = Arrays.copyOf(keys, keys.length * 2);
+                    latE6 = Arrays.copyOf(latE6, latE6.length * 2);
+                    lngE6 = Arrays.copyOf(lngE6, lngE6.length * 2);
+                }
+                int lat = (int) Math.round(row.lat() * 1e6);
+                int lng = (int) Math.round(row.lng() * 1e6);
+                keys[2 * rows] = exactKey(row.address());
+                keys[2 * rows + 1] = canonicalKey(row.address());
+                latE6[2 * rows] = latE6[2 * rows + 1] = lat;
+                lngE6[2 * rows] = lngE6[2 * rows + 1] = lng;
+                rows++;
+            }
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(16, rows * 4 - 1)) << 1;
+        ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + capacity * SLOT_BYTES);
+        out.putInt(0, MAGIC).putLong(4, sourceSize).putLong(12, sourceMtime).putInt(20, rows).putInt(24, capacity);
+        ByteBuffer slots = out.slice(HEADER_BYTES, capacity * SLOT_BYTES);
+        int mask = capacity - 1;
+        // Later rows win for the same key, as in the geocode cache log.
+        for (int i = 0; i < 2 * rows; i++) {
+            int slot = slotFor(keys[i], mask);
+            while (true) {
+                long k = slots.getLong(slot * SLOT_BYTES);
+                if (k == 0 || k == keys[i]) break;
+                slot = (slot + 1) & mask;
+            }
+            int base = slot * SLOT_BYTES;
+            slots.putLong(base, keys[i]).putInt(base + 8, latE6[i]).putInt(base + 12, lngE6[i]);
+        }
+
+        Files.createDirectories(indexFile.toAbsolutePath().getParent());
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.rewind();
+            while (out.hasRemaining()) ch.write(out);
+            ch.force(true);
+        }
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("Built gazetteer index " + indexFile + " (" + rows + " addresses)");
+    }
+
+    /** address,lat,lng with an optionally double-quoted address. Returns null for headers and bad rows. */
+    static Row parse(String line) {
+        String s = line.trim();
+        if (s.isEmpty()) return null;
+
+        String address;
+        String rest;
+        if (s.charAt(0) == '"') {
+            StringBuilder sb = new StringBuilder();
+            int i = 1;
+            while (i < s.length()) {
+                char c = s.charAt(i);
+                if (c == '"') {
+                    if (i + 1 < s.length() && s.charAt(i + 1) == '"') {
+                        sb.append('"');
+                        i += 2;
+                        continue;
+                    }
+                    break;
+                }
+                sb.append(c);
+                i++;
+            }
+            int comma = s.indexOf(',', i);
+            if (comma < 0) return null;
+            address = sb.toString();
+            rest = s.substring(comma + 1);
+        } else {
+            int lngComma = s.lastIndexOf(',');
+            int latComma = lngComma <= 0 ? -1 : s.lastIndexOf(',', lngComma - 1);
+            if (latComma < 0) return null;
+            address = s.substring(0, latComma);
+            rest = s.substring(latComma + 1);
+        }
+
+        int comma = rest.indexOf(',');
+        if (comma < 0) return null;
+        try {
+            double lat = Double.parseDouble(rest.substring(0, comma).trim());
+            double lng = Double.parseDouble(rest.substring(comma + 1).trim());
+            if (address.isBlank() || Math.abs(lat) > 90 || Math.abs(lng) > 180) return null;
+            return new Row(address.trim(), lat, lng);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // ---------------------------------------------------------------- keys
+
+    private static long exactKey(String trimmed) {
+        return nonZero(HashUtil.fingerprint64(trimmed) ^ EXACT_SALT);
+    }
+
+    private static long canonicalKey(String address) {
+        return nonZero(HashUtil.fingerprint64(AddressNormalizer.canonical(address)));
+    }
+
+    /** 0 marks an empty slot. */
+    private static long nonZero(long key) {
+        return key == 0 ? 1 : key;
+    }
+
+    private static int slotFor(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    record Row(String address, double lat, double lng) {}
+
+    public record Match(double lat, double lng, boolean exact) {}
+
+    public record Stats(int entries, long exactHits, long normalizedHits, long misses) {
+        public long hits() {
+            return exactHits + normalizedHits;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.onlyeavestroughs.routeplanner.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.onlyeavestroughs.routeplanner.util.HashUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Legacy Milestone 2 layout: one pretty-printed JSON file per address under
+ * cache/geocode/&lt;sha1(key)&gt;.json.
+ */
+public final class FileGeocodeCache implements GeocodeCache {
+
+    private final Path dir;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public FileGeocodeCache(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+    }
+
+    @Override
+    public GeocodeCacheEntry get(String key) throws IOException {
+        Path file = fileFor(GeocodeCache.keyOf(key));
+        try {
+            return read(mapper, file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void put(GeocodeCacheEntry entry) throws IOException {
+        ObjectNode node = mapper.createObjectNode().put("address", entry.address());
+        if (entry.negative()) {
+            node.put("failure", entry.failure());
+        } else {
+            node.put("lat", entry.lat()).put("lng", entry.lng());
+        }
+        node.put("cachedAt", entry.cachedAt());
+        mapper.writerWithDefaultPrettyPrinter().writeValue(fileFor(entry.key()).toFile(), node);
+    }
+
+    @Override
+    public int size() {
+        try (var files = Files.newDirectoryStream(dir, "*.json")) {
+            int n = 0;
+            for (Path ignored : files) n++;
+            return n;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() {}
+
+    private Path fileFor(String key) {
+        return dir.resolve(fileName(key));
+    }
+
+    /** Where the entry for key lives in the directory. */
+    static String fileName(String key) {
+        return HashUtil.sha1Hex(key) + ".json";
+    }
+
+    /**
+     * Reads one legacy cache file. Returns null when the file is corrupt or has neither
+     * coordinates nor a failure (a negative entry).
+     * Throws NoSuchFileException when it does not exist.
+     */
+    static GeocodeCacheEntry read(ObjectMapper mapper, Path file) throws IOException {
+        JsonNode node;
+        try (InputStream in = Files.newInputStream(file)) {
+            node = mapper.readTree(in);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+        if (node != null && node.hasNonNull("failure")) {
+            return GeocodeCacheEntry.negative(node.path("address").asText(""), node.get("failure").asText(),
+                    node.path("cachedAt").asText(null));
+        }
+        if (node == null || !node.hasNonNull("lat") || !node.hasNonNull("lng")) {
+            return null;
+        }
+        return new GeocodeCacheEntry(
+                node.path("address").asText(""),
+                node.get("lat").asDouble(),
+                node.get("lng").asDouble(),
+                node.path("cachedAt").asText(null)
+        );
+    }
+}
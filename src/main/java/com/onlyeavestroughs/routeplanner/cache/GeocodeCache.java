@@ -0,0 +1,29 @@
+package com.onlyeavestroughs.routeplanner.cache;
+
+import com.onlyeavestroughs.routeplanner.address.AddressNormalizer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Storage backend for geocode results, keyed by canonical address (see AddressNormalizer).
+ * Implementations must be safe for concurrent use by the geocode pipeline.
+ */
+public interface GeocodeCache extends Closeable {
+
+    /** Returns the cached entry for an address or its key, or null on a miss. */
+    GeocodeCacheEntry get(String key) throws IOException;
+
+    void put(GeocodeCacheEntry entry) throws IOException;
+
+    int size();
+
+    /**
+     * Cache key for an address: what two lookups must agree on to share an entry.
+     * Idempotent, so keyOf(keyOf(a)) == keyOf(a) and implementations may apply it to
+     * whatever get() is passed.
+     */
+    static String keyOf(String address) {
+        return AddressNormalizer.canonical(address);
+    }
+}
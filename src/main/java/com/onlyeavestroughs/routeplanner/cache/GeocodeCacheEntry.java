@@ -0,0 +1,45 @@
+package com.onlyeavestroughs.routeplanner.cache;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * One cached geocode result. cachedAt is an ISO-8601 instant, as written since Milestone 2.
+ *
+ * failure is null for a found address. Otherwise the entry is a negative result: ORS could
+ * not resolve the address, failure names why (a GeocodeFailure constant) and lat/lng are NaN.
+ * Negative entries are kept for a shorter TTL (see MemoryGeocodeCache).
+ */
+public record GeocodeCacheEntry(
+        String address,
+        double lat,
+        double lng,
+        String cachedAt,
+        String failure
+) {
+    public GeocodeCacheEntry(String address, double lat, double lng, String cachedAt) {
+        this(address, lat, lng, cachedAt, null);
+    }
+
+    public static GeocodeCacheEntry negative(String address, String failure, String cachedAt) {
+        return new GeocodeCacheEntry(address, Double.NaN, Double.NaN, cachedAt, failure);
+    }
+
+    public boolean negative() {
+        return failure != null;
+    }
+
+    public String key() {
+        return GeocodeCache.keyOf(address);
+    }
+
+    /** cachedAt as an instant, or null when it is missing or unreadable. */
+    public Instant cachedInstant() {
+        if (cachedAt == null) return null;
+        try {
+            return Instant.parse(cachedAt);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.onlyeavestroughs.routeplanner.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Offline upkeep of the geocode cache: what is in it and how old it is, and removing what
+ * no run should read again (expired, corrupt, misplaced or superseded entries).
+ *
+ * files backend: the directory is streamed, never listed whole, and its entries are handed
+ * to virtual threads in batches of BATCH, at most BATCHES_IN_FLIGHT at a time, so a cache
+ * of 100k+ files is scanned on every core in bounded memory. Each file is read once:
+ * - unreadable JSON, or no address or coordinates: deleted;
+ * - no usable cachedAt: rewritten with the file's modification time;
+ * - stored under another name than its key's hash (written before keys were canonical,
+ *   so no lookup finds it): moved to that name, or deleted if an entry at least as new
+ *   is already there;
+ * - older than the TTL (failureTtl for negative entries): deleted.
+ *
+ * log backend: opening the log already reads and CRC-checks every record (see
+ * LogGeocodeCache). Expired entries are dropped and compact() rewrites the log with the
+ * rest, which also removes superseded and corrupt records. A dry run opens the log
+ * read-only: a legacy directory still to be imported is reported on, not imported, and
+ * a torn final record is counted as corrupt, not truncated. Found entries without a
+ * cachedAt never expire, as in MemoryGeocodeCache.
+ *
+ * With apply false nothing is changed and the report gives what would have been.
+ */
+public final class GeocodeCacheMaintenance {
+    private GeocodeCacheMaintenance() {}
+
+    static final int BATCH = 256;
+    static final int BATCHES_IN_FLIGHT = 4 * Runtime.getRuntime().availableProcessors();
+
+    /** Upper bounds (days) of the age buckets; AGE_LABELS has one more, plus "unknown". */
+    private static final int[] AGE_LIMIT_DAYS = {1, 7, 30, 90, 365};
+    public static final List<String> AGE_LABELS = List.of(
+            "< 1 day", "1-7 days", "7-30 days", "30-90 days", "90-365 days", "> 1 year", "unknown");
+
+    // ---------------------------------------------------------------- files backend
+
+    /** ttl may be null for no expiry; failureTtl (for negative entries) may not. */
+    public static Report maintainFiles(Path dir, Duration ttl, Duration failureTtl, boolean apply) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Tally total = new Tally();
+        if (!Files.isDirectory(dir)) return total.report(GeocodeCaches.BACKEND_FILES, apply, 0, start);
+
+        FileGeocodeCache store = new FileGeocodeCache(dir);
+        ObjectMapper mapper = new ObjectMapper();
+        Instant now = Instant.now();
+        Object relocate = new Object();
+        Semaphore inFlight = new Semaphore(BATCHES_IN_FLIGHT);
+        AtomicReference<IOException> failure = new AtomicReference<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.json")) {
+            List<Path> batch = new ArrayList<>(BATCH);
+            for (Path f : files) {
+                batch.add(f);
+                if (batch.size() < BATCH) continue;
+                submit(executor, inFlight, batch, total, failure, b -> scanFiles(b, dir, store, mapper, ttl, failureTtl, now, apply, relocate));
+                batch = new ArrayList<>(BATCH);
+                if (failure.get() != null) break;
+            }
+            if (!batch.isEmpty()) {
+                submit(executor, inFlight, batch, total, failure, b -> scanFiles(b, dir, store, mapper, ttl, failureTtl, now, apply, relocate));
+            }
+        }
+        if (failure.get() != null) throw failure.get();
+        return total.report(GeocodeCaches.BACKEND_FILES, apply, total.bytes - total.bytesFreed, start);
+    }
+
+    private interface BatchScan {
+        Tally scan(List<Path> batch) throws IOException;
+    }
+
+    private static void submit(ExecutorService executor, Semaphore inFlight, List<Path> batch, Tally total,
+                               AtomicReference<IOException> failure, BatchScan scan) throws InterruptedException {
+        inFlight.acquire();
+        executor.execute(() -> {
+            try {
+                Tally t = scan.scan(batch);
+                synchronized (total) {
+                    total.add(t);
+                }
+            } catch (IOException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private static Tally scanFiles(List<Path> batch, Path dir, FileGeocodeCache store, ObjectMapper mapper,
+                                   Duration ttl, Duration failureTtl, Instant now, boolean apply,
+                                   Object relocate) throws IOException {
+        Tally t = new Tally();
+        for (Path f : batch) {
+            long size;
+            GeocodeCacheEntry e;
+            try {
+                size = Files.size(f);
+                e = FileGeocodeCache.read(mapper, f);
+            } catch (NoSuchFileException gone) {
+                continue; // moved or deleted since it was listed
+            }
+            t.bytes += size;
+            if (e == null || e.address().isBlank()) {
+                t.corrupt++;
+                t.bytesFreed += size;
+                if (apply) Files.deleteIfExists(f);
+                continue;
+            }
+            t.entries++;
+            if (e.negative()) t.failures++;
+
+            Instant at = e.cachedInstant();
+            boolean rewrite = at == null;
+            if (rewrite) {
+                at = Files.getLastModifiedTime(f).toInstant();
+                e = new GeocodeCacheEntry(e.address(), e.lat(), e.lng(), at.toString(), e.failure());
+            }
+            t.age(at, now);
+            if (expired(e, at, ttl, failureTtl, now)) {
+                t.expired++;
+                t.bytesFreed += size;
+                if (apply) Files.deleteIfExists(f);
+                continue;
+            }
+
+            Path home = dir.resolve(FileGeocodeCache.fileName(e.key()));
+            if (!home.equals(f)) {
+                // Rare; serialized so two strays for one key cannot both win.
+                synchronized (relocate) {
+                    GeocodeCacheEntry there = readIfExists(mapper, home);
+                    Instant thereAt = there == null || !there.key().equals(e.key()) ? null : there.cachedInstant();
+                    if (thereAt != null && !thereAt.isBefore(at)) {
+                        t.superseded++;
+                        t.bytesFreed += size;
+                    } else {
+                        t.repaired++;
+                        if (apply) store.put(e);
+                    }
+                    if (apply) Files.deleteIfExists(f);
+                }
+            } else if (rewrite) {
+                t.repaired++;
+                if (apply) store.put(e);
+            }
+        }
+        return t;
+    }
+
+    private static GeocodeCacheEntry readIfExists(ObjectMapper mapper, Path f) throws IOException {
+        try {
+            return FileGeocodeCache.read(mapper, f);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    // ---------------------------------------------------------------- log backend
+
+    /**
+     * ttl may be null for no expiry; failureTtl (for negative entries) may not. With apply,
+     * imports a legacy cache/geocode directory first, as runs do.
+     */
+    public static Report maintainLog(Path logFile, Path legacyDir, Duration ttl, Duration failureTtl, boolean apply)
+            throws IOException {
+        long start = System.nanoTime();
+        Instant now = Instant.now();
+        Tally t = new Tally();
+        t.bytes = Files.exists(logFile) ? Files.size(logFile) : 0;
+        try (LogGeocodeCache cache = apply
+                ? LogGeocodeCache.openWithMigration(logFile, legacyDir)
+                : LogGeocodeCache.openReadOnly(logFile, legacyDir)) {
+            t.corrupt = cache.corruptRecords() + (cache.tornBytes() > 0 ? 1 : 0);
+            t.superseded = cache.logRecords() - cache.size();
+            ObjectMapper mapper = new ObjectMapper();
+            long bytesAfter = 0;
+            for (GeocodeCacheEntry e : cache.entries()) {
+                t.entries++;
+                if (e.negative()) t.failures++;
+                Instant at = e.cachedInstant();
+                t.age(at, now);
+                if (expired(e, at, ttl, failureTtl, now)) t.expired++;
+                else if (!apply) bytesAfter += LogGeocodeCache.encode(mapper, e).length;
+            }
+            if (apply) {
+                bytesAfter = cache.compact(e -> !expired(e, e.cachedInstant(), ttl, failureTtl, now)).bytesAfter();
+            }
+            t.bytesFreed = t.bytes - bytesAfter;
+            Report r = t.report(GeocodeCaches.BACKEND_LOG, apply, bytesAfter, start);
+            return cache.pendingMigration() ? r.withPendingMigration(legacyDir) : r;
+        }
+    }
+
+    /** As MemoryGeocodeCache decides it; at is e's cachedAt, or null when it has none. */
+    private static boolean expired(GeocodeCacheEntry e, Instant at, Duration ttl, Duration failureTtl, Instant now) {
+        if (e.negative()) return at == null || failureTtl.isZero() || at.plus(failureTtl).isBefore(now);
+        return ttl != null && at != null && at.plus(ttl).isBefore(now);
+    }
+
+    // ---------------------------------------------------------------- report
+
+    /** Counts for one scan (or one batch of it). */
+    private static final class Tally {
+        int entries;
+        int failures;
+        long bytes;
+        long bytesFreed;
+        final long[] ages = new long[AGE_LABELS.size()];
+        int expired;
+        int corrupt;
+        int repaired;
+        int superseded;
+
+        void age(Instant at, Instant now) {
+            if (at == null) {
+                ages[ages.length - 1]++;
+                return;
+            }
+            long days = Duration.between(at, now).toDays();
+            int b = 0;
+            while (b < AGE_LIMIT_DAYS.length && days >= AGE_LIMIT_DAYS[b]) b++;
+            ages[b]++;
+        }
+
+        void add(Tally o) {
+            entries += o.entries;
+            failures += o.failures;
+            bytes += o.bytes;
+            bytesFreed += o.bytesFreed;
+            for (int i = 0; i < ages.length; i++) ages[i] += o.ages[i];
+            expired += o.expired;
+            corrupt += o.corrupt;
+            repaired += o.repaired;
+            superseded += o.superseded;
+        }
+
+        Report report(String backend, boolean applied, long bytesAfter, long startNanos) {
+            return new Report(backend, applied, entries, failures, bytes, ages.clone(), expired, corrupt, repaired, superseded,
+                    bytesAfter, (System.nanoTime() - startNanos) / 1_000_000L, null);
+        }
+    }
+
+    /**
+     * entries: readable entries (live keys for the log), before expiry; failures: how many
+     * of them are negative (addresses ORS could not resolve). ageCounts follows
+     * AGE_LABELS. superseded: older records or copies of a key that were (or would be)
+     * dropped. With applied false, bytesAfter is what the cache would shrink to.
+     * pendingMigration: the legacy directory a dry run found still to be imported (the
+     * counts are then that directory's entries), else null.
+     */
+    public record Report(String backend, boolean applied, int entries, int failures, long bytes, long[] ageCounts, int expired,
+                         int corrupt, int repaired, int superseded, long bytesAfter, long elapsedMs,
+                         Path pendingMigration) {
+
+        Report withPendingMigration(Path legacyDir) {
+            return new Report(backend, applied, entries, failures, bytes, ageCounts, expired, corrupt, repaired,
+                    superseded, bytesAfter, elapsedMs, legacyDir);
+        }
+
+        public String toText() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("- Backend: ").append(backend).append(applied ? "" : " (dry run: nothing changed)").append("\n");
+            if (pendingMigration != null) {
+                sb.append("- Pending: ").append(pendingMigration).append(" is imported into the log on the next run\n");
+            }
+            sb.append("- Entries: ").append(entries).append(" (").append(failures).append(" cached failures)\n");
+            sb.append("- Bytes: ").append(bytes).append(" -> ").append(bytesAfter).append("\n");
+            sb.append("- Age:");
+            for (int i = 0; i < ageCounts.length; i++) {
+                if (ageCounts[i] > 0) sb.append(" ").append(AGE_LABELS.get(i)).append(" ").append(ageCounts[i]).append(";");
+            }
+            if (sb.charAt(sb.length() - 1) == ';') sb.setLength(sb.length() - 1);
+            sb.append("\n");
+            sb.append("- Expired (TTL): ").append(expired).append("\n");
+            sb.append("- Corrupt removed: ").append(corrupt).append("\n");
+            sb.append("- Repaired: ").append(repaired).append("\n");
+            sb.append("- Superseded removed: ").append(superseded).append("\n");
+            sb.append("- Elapsed: ").append(elapsedMs).append(" ms\n");
+            return sb.toString();
+        }
+    }
+}
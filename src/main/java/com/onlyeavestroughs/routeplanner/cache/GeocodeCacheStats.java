@@ -0,0 +1,19 @@
+package com.onlyeavestroughs.routeplanner.cache;
+
+/**
+ * Counters reported by MemoryGeocodeCache.
+ * misses are lookups that found nothing usable in either tier (and so went to ORS).
+ * failureHits are the hits that were negative entries: known failures not sent again.
+ */
+public record GeocodeCacheStats(
+        long memoryHits,
+        long diskHits,
+        long misses,
+        long failureHits,
+        long evictions,
+        long expired
+) {
+    public long hits() {
+        return memoryHits + diskHits;
+    }
+}
@@ -0,0 +1,28 @@
+package com.onlyeavestroughs.routeplanner.cache;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public final class GeocodeCaches {
+    public static final String BACKEND_LOG = "log";
+    public static final String BACKEND_FILES = "files";
+
+    private GeocodeCaches() {}
+
+    /**
+     * Opens the configured backend under cacheRoot.
+     * - log:   cache/geocode.log (imports cache/geocode/*.json on first open)
+     * - files: cache/geocode/&lt;sha1&gt;.json (Milestone 2 layout)
+     */
+    public static GeocodeCache open(String backend, Path cacheRoot) throws IOException {
+        return switch (backend) {
+            case BACKEND_LOG -> LogGeocodeCache.openWithMigration(logFile(cacheRoot), cacheRoot.resolve("geocode"));
+            case BACKEND_FILES -> new FileGeocodeCache(cacheRoot.resolve("geocode"));
+            default -> throw new IllegalStateException("Unknown geocode cache backend: " + backend);
+        };
+    }
+
+    public static Path logFile(Path cacheRoot) {
+        return cacheRoot.resolve("geocode.log");
+    }
+}
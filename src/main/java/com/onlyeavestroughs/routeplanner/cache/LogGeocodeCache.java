@@ -0,0 +1,426 @@
+package com.onlyeavestroughs.routeplanner.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Single-file geocode cache: an append-only log plus an in-memory hash index.
+ *
+ * Each record is one line: 8 hex digits of CRC32, a tab, then compact JSON.
+ * Appends are forced to disk before put() returns. On open, a record without its
+ * trailing newline (torn append) is truncated away and records failing the CRC are
+ * skipped, so a crash mid-write never poisons the rest of the log.
+ * Later records for the same key win; compact() rewrites the log with only those.
+ * A negative entry's record has "failure" in place of lat and lng.
+ *
+ * openReadOnly() loads the same index without touching the disk (no import, no
+ * truncation, no file created), for reporting on a cache without changing it.
+ *
+ * Processes with the log open for writing hold a shared FileLock on &lt;log&gt;.lock for as
+ * long as it is open. compact() replaces the log file, which would strand their appends
+ * on the old one, so it needs that lock exclusively and fails while anyone else has the
+ * log open.
+ */
+public final class LogGeocodeCache implements GeocodeCache {
+
+    private final Path logFile;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, GeocodeCacheEntry> index = new ConcurrentHashMap<>();
+
+    private FileChannel channel; // null when read-only
+    private LogLock lock; // null when read-only
+    private int logRecords;
+    private int corruptRecords;
+    private long tornBytes;
+    private boolean pendingMigration;
+
+    private LogGeocodeCache(Path logFile) {
+        this.logFile = logFile;
+    }
+
+    public static LogGeocodeCache open(Path logFile) throws IOException {
+        LogGeocodeCache cache = new LogGeocodeCache(logFile);
+        cache.load();
+        return cache;
+    }
+
+    /**
+     * Opens the log, first importing a legacy per-file cache directory if the log
+     * does not exist yet. The imported directory is renamed to &lt;dir&gt;.legacy.
+     */
+    public static LogGeocodeCache openWithMigration(Path logFile, Path legacyDir) throws IOException {
+        if (!Files.exists(logFile) && Files.isDirectory(legacyDir)) {
+            migrate(legacyDir, logFile);
+        }
+        return open(logFile);
+    }
+
+    /**
+     * Loads the log for reading only. When the log does not exist yet but legacyDir does,
+     * the index holds what the first openWithMigration() would import from it.
+     * put() and compact() throw IllegalStateException.
+     */
+    public static LogGeocodeCache openReadOnly(Path logFile, Path legacyDir) throws IOException {
+        LogGeocodeCache cache = new LogGeocodeCache(logFile);
+        if (!Files.exists(logFile) && Files.isDirectory(legacyDir)) {
+            for (GeocodeCacheEntry e : readLegacy(cache.mapper, legacyDir)) {
+                cache.index.put(e.key(), e);
+                cache.logRecords++;
+            }
+            cache.pendingMigration = true;
+        } else {
+            cache.tornBytes = cache.readLog();
+        }
+        return cache;
+    }
+
+    @Override
+    public GeocodeCacheEntry get(String key) {
+        return index.get(GeocodeCache.keyOf(key));
+    }
+
+    @Override
+    public synchronized void put(GeocodeCacheEntry entry) throws IOException {
+        requireWritable();
+        ByteBuffer buf = ByteBuffer.wrap(encode(mapper, entry));
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        channel.force(false);
+        index.put(entry.key(), entry);
+        logRecords++;
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    public int corruptRecords() {
+        return corruptRecords;
+    }
+
+    /** Bytes of a torn final append found on open; open() truncates them, openReadOnly() leaves them. */
+    public long tornBytes() {
+        return tornBytes;
+    }
+
+    /** Opened read-only before a legacy directory was imported: the entries are that directory's. */
+    public boolean pendingMigration() {
+        return pendingMigration;
+    }
+
+    /** Valid records in the log, counting superseded ones. */
+    public int logRecords() {
+        return logRecords;
+    }
+
+    /** The live entry of every key (a read-only view). */
+    public Collection<GeocodeCacheEntry> entries() {
+        return Collections.unmodifiableCollection(index.values());
+    }
+
+    /** Rewrites the log with one record per live key, replacing it atomically. */
+    public synchronized CompactResult compact() throws IOException {
+        return compact(e -> true);
+    }
+
+    /** As compact(), also dropping the entries keep rejects, from the log and the index. */
+    public synchronized CompactResult compact(Predicate<GeocodeCacheEntry> keep) throws IOException {
+        requireWritable();
+        long bytesBefore = channel.size();
+        int recordsBefore = logRecords;
+        int corruptBefore = corruptRecords;
+
+        List<GeocodeCacheEntry> kept = new ArrayList<>(index.size());
+        for (GeocodeCacheEntry e : index.values()) {
+            if (keep.test(e)) kept.add(e);
+        }
+        Path tmp = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+
+        FileLock exclusive = lock.exclusive();
+        try {
+            writeLog(mapper, tmp, kept);
+            try {
+                Files.move(tmp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // The old log and its channel are untouched, so the cache stays usable.
+                Files.deleteIfExists(tmp);
+                throw e;
+            }
+            FileChannel old = channel;
+            channel = openAppend(logFile);
+            old.close();
+        } finally {
+            lock.share(exclusive);
+        }
+
+        index.values().removeIf(e -> !keep.test(e));
+        logRecords = index.size();
+        corruptRecords = 0;
+        return new CompactResult(recordsBefore, logRecords, corruptBefore, bytesBefore, channel.size());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (channel != null) channel.close();
+        } finally {
+            if (lock != null) lock.release();
+            lock = null;
+        }
+    }
+
+    private void load() throws IOException {
+        Files.createDirectories(logFile.toAbsolutePath().getParent());
+        lock = LogLock.acquire(logFile);
+        long torn = tornBytes = readLog();
+
+        channel = openAppend(logFile);
+        if (torn > 0) {
+            // Torn final append from a crash: drop it so the next record starts on a clean line.
+            channel.truncate(channel.size() - torn);
+            channel.force(true);
+        }
+    }
+
+    /** Fills the index from the log and returns the length of a torn final record (0 if none). */
+    private long readLog() throws IOException {
+        long offset = 0;
+        long goodEnd = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(logFile), 1 << 16)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            int b;
+            while ((b = in.read()) != -1) {
+                offset++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                GeocodeCacheEntry e = decode(mapper, line.toByteArray());
+                if (e != null) {
+                    index.put(e.key(), e);
+                    logRecords++;
+                } else {
+                    corruptRecords++;
+                }
+                goodEnd = offset;
+                line.reset();
+            }
+        } catch (NoSuchFileException e) {
+            // New cache.
+        }
+        return offset - goodEnd;
+    }
+
+    private void requireWritable() {
+        if (channel == null) throw new IllegalStateException("geocode log opened read-only: " + logFile);
+    }
+
+    private static FileChannel openAppend(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static void migrate(Path legacyDir, Path logFile) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<GeocodeCacheEntry> entries = readLegacy(mapper, legacyDir);
+
+        Files.createDirectories(logFile.toAbsolutePath().getParent());
+        Path tmp = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+        writeLog(mapper, tmp, entries);
+        Files.move(tmp, logFile, StandardCopyOption.ATOMIC_MOVE);
+
+        Path retired = legacyDir.resolveSibling(legacyDir.getFileName() + ".legacy");
+        if (!Files.exists(retired)) {
+            Files.move(legacyDir, retired);
+        }
+        System.out.println("Migrated " + entries.size() + " geocode cache files into " + logFile);
+    }
+
+    private static List<GeocodeCacheEntry> readLegacy(ObjectMapper mapper, Path legacyDir) throws IOException {
+        List<GeocodeCacheEntry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(legacyDir, "*.json")) {
+            for (Path f : files) {
+                GeocodeCacheEntry e = FileGeocodeCache.read(mapper, f);
+                if (e != null && !e.address().isBlank()) entries.add(e);
+            }
+        }
+        return entries;
+    }
+
+    private static void writeLog(ObjectMapper mapper, Path file, List<GeocodeCacheEntry> entries) throws IOException {
+        try (FileChannel out = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream(1 << 16);
+            for (GeocodeCacheEntry e : entries) {
+                chunk.write(encode(mapper, e));
+                if (chunk.size() >= 1 << 16) {
+                    writeFully(out, chunk.toByteArray());
+                    chunk.reset();
+                }
+            }
+            writeFully(out, chunk.toByteArray());
+            out.force(true);
+        }
+    }
+
+    private static void writeFully(FileChannel out, byte[] bytes) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+    }
+
+    static byte[] encode(ObjectMapper mapper, GeocodeCacheEntry e) throws IOException {
+        ObjectNode node = mapper.createObjectNode().put("address", e.address());
+        if (e.negative()) {
+            node.put("failure", e.failure());
+        } else {
+            node.put("lat", e.lat()).put("lng", e.lng());
+        }
+        node.put("cachedAt", e.cachedAt());
+        byte[] json = mapper.writeValueAsBytes(node);
+
+        CRC32 crc = new CRC32();
+        crc.update(json);
+        byte[] prefix = String.format("%08x\t", crc.getValue()).getBytes(StandardCharsets.US_ASCII);
+
+        byte[] out = new byte[prefix.length + json.length + 1];
+        System.arraycopy(prefix, 0, out, 0, prefix.length);
+        System.arraycopy(json, 0, out, prefix.length, json.length);
+        out[out.length - 1] = '\n';
+        return out;
+    }
+
+    /** Returns null when the line is not a valid record. */
+    static GeocodeCacheEntry decode(ObjectMapper mapper, byte[] line) {
+        if (line.length < 10 || line[8] != '\t') return null;
+        try {
+            long expected = Long.parseLong(new String(line, 0, 8, StandardCharsets.US_ASCII), 16);
+            CRC32 crc = new CRC32();
+            crc.update(line, 9, line.length - 9);
+            if (crc.getValue() != expected) return null;
+
+            JsonNode node = mapper.readTree(line, 9, line.length - 9);
+            if (!node.hasNonNull("address")) return null;
+            if (node.hasNonNull("failure")) {
+                return GeocodeCacheEntry.negative(node.get("address").asText(), node.get("failure").asText(),
+                        node.path("cachedAt").asText(null));
+            }
+            if (!node.hasNonNull("lat") || !node.hasNonNull("lng")) return null;
+            return new GeocodeCacheEntry(
+                    node.get("address").asText(),
+                    node.get("lat").asDouble(),
+                    node.get("lng").asDouble(),
+                    node.path("cachedAt").asText(null)
+            );
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * The shared lock on &lt;log&gt;.lock, one per log file in this JVM (FileLock is per
+     * process), counting the caches that have the log open.
+     */
+    private static final class LogLock {
+        private static final Map<Path, LogLock> OPEN = new HashMap<>();
+
+        private final Path logFile;
+        private final FileChannel channel;
+        private FileLock shared;
+        private int users;
+
+        private LogLock(Path logFile, FileChannel channel, FileLock shared) {
+            this.logFile = logFile;
+            this.channel = channel;
+            this.shared = shared;
+        }
+
+        static LogLock acquire(Path logFile) throws IOException {
+            Path key = logFile.toAbsolutePath().normalize();
+            synchronized (OPEN) {
+                LogLock l = OPEN.get(key);
+                if (l == null) {
+                    FileChannel ch = FileChannel.open(key.resolveSibling(key.getFileName() + ".lock"),
+                            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    try {
+                        // Blocks while another process compacts.
+                        l = new LogLock(key, ch, ch.lock(0, Long.MAX_VALUE, true));
+                    } catch (IOException | RuntimeException e) {
+                        ch.close();
+                        throw e;
+                    }
+                    OPEN.put(key, l);
+                }
+                l.users++;
+                return l;
+            }
+        }
+
+        /** Trades the shared lock for an exclusive one; fails while anyone else has the log open. */
+        FileLock exclusive() throws IOException {
+            synchronized (OPEN) {
+                String inUse = "geocode log is open elsewhere (a run, serve, batch or prefetch): " + logFile
+                        + "; stop it before compacting";
+                if (users > 1) throw new IllegalStateException(inUse);
+                shared.release();
+                FileLock exclusive = channel.tryLock();
+                if (exclusive == null) {
+                    shared = channel.lock(0, Long.MAX_VALUE, true);
+                    throw new IllegalStateException(inUse);
+                }
+                shared = null;
+                return exclusive;
+            }
+        }
+
+        void share(FileLock exclusive) throws IOException {
+            synchronized (OPEN) {
+                exclusive.release();
+                shared = channel.lock(0, Long.MAX_VALUE, true);
+            }
+        }
+
+        void release() throws IOException {
+            synchronized (OPEN) {
+                if (--users > 0) return;
+                OPEN.remove(logFile);
+                channel.close(); // releases the lock
+            }
+        }
+    }
+
+    public record CompactResult(
+            int recordsBefore,
+            int recordsAfter,
+            int corruptDropped,
+            long bytesBefore,
+            long bytesAfter
+    ) {}
+}
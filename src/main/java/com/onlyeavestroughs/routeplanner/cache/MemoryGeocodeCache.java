@@ -0,0 +1,131 @@
+package com.onlyeavestroughs.routeplanner.cache;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-process tier in front of a disk-backed GeocodeCache.
+ *
+ * LRU eviction once maxEntries is reached. When ttl is set, entries whose cachedAt is
+ * older than ttl are treated as misses in both tiers so the address is re-geocoded.
+ * Negative entries (addresses ORS could not resolve) expire after failureTtl instead,
+ * so a fixed source address or a better ORS answer is picked up within days; with a
+ * zero failureTtl they are not stored at all. Writes go through to the disk tier.
+ */
+public final class MemoryGeocodeCache implements GeocodeCache {
+
+    private final GeocodeCache disk;
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Duration failureTtl;
+    private final Map<String, GeocodeCacheEntry> lru;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failureHits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    /** ttl may be null for no expiry. Negative entries are neither stored nor returned. */
+    public MemoryGeocodeCache(GeocodeCache disk, int maxEntries, Duration ttl) {
+        this(disk, maxEntries, ttl, Duration.ZERO);
+    }
+
+    /** ttl may be null for no expiry; failureTtl applies to negative entries and must not be null. */
+    public MemoryGeocodeCache(GeocodeCache disk, int maxEntries, Duration ttl, Duration failureTtl) {
+        this.disk = disk;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttl = ttl;
+        this.failureTtl = failureTtl;
+        this.lru = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, GeocodeCacheEntry> eldest) {
+                if (size() > MemoryGeocodeCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public GeocodeCacheEntry get(String address) throws IOException {
+        String key = GeocodeCache.keyOf(address);
+        GeocodeCacheEntry e;
+        synchronized (lru) {
+            e = lru.get(key);
+            if (e != null && isExpired(e)) {
+                lru.remove(key);
+                expired.increment();
+                e = null;
+            }
+        }
+        if (e != null) {
+            memoryHits.increment();
+            if (e.negative()) failureHits.increment();
+            return e;
+        }
+
+        e = disk.get(key);
+        if (e == null) {
+            misses.increment();
+            return null;
+        }
+        if (isExpired(e)) {
+            expired.increment();
+            misses.increment();
+            return null;
+        }
+
+        diskHits.increment();
+        if (e.negative()) failureHits.increment();
+        synchronized (lru) {
+            lru.put(key, e);
+        }
+        return e;
+    }
+
+    @Override
+    public void put(GeocodeCacheEntry entry) throws IOException {
+        if (entry.negative() && failureTtl.isZero()) return;
+        disk.put(entry);
+        synchronized (lru) {
+            lru.put(entry.key(), entry);
+        }
+    }
+
+    @Override
+    public int size() {
+        return disk.size();
+    }
+
+    public GeocodeCacheStats stats() {
+        return new GeocodeCacheStats(
+                memoryHits.sum(),
+                diskHits.sum(),
+                misses.sum(),
+                failureHits.sum(),
+                evictions.sum(),
+                expired.sum()
+        );
+    }
+
+    @Override
+    public void close() throws IOException {
+        disk.close();
+    }
+
+    private boolean isExpired(GeocodeCacheEntry e) {
+        Duration limit = e.negative() ? failureTtl : ttl;
+        if (limit == null) return false;
+        Instant at = e.cachedInstant();
+        if (at == null) return e.negative();
+        return at.plus(limit).isBefore(Instant.now());
+    }
+}
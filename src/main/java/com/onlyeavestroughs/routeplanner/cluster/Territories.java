@@ -0,0 +1,21 @@
+package com.onlyeavestroughs.routeplanner.cluster;
+
+/**
+ * Stops split into one territory per crew. Indices follow the matrix convention:
+ * 0 is the depot (territoryOf[0] = -1), stops are 1..n-1.
+ * overCapacity is set when the limits could not all be met and some territory took
+ * more than its share.
+ */
+public record Territories(
+        String method,
+        int[] territoryOf,
+        int[][] members,
+        double[] serviceMinutes,
+        int iterations,
+        boolean overCapacity,
+        long elapsedMs
+) {
+    public int count() {
+        return members.length;
+    }
+}
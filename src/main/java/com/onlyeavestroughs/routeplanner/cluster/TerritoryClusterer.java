@@ -0,0 +1,334 @@
+package com.onlyeavestroughs.routeplanner.cluster;
+
+import com.onlyeavestroughs.routeplanner.spatial.Planar;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Splits geocoded stops into one compact territory per crew, before routing.
+ *
+ * kmeans: capacitated k-means on coordinates projected to local planar meters. Centers
+ * start from k-means++ drawn from a SplittableRandom(seed); each round assigns stops in
+ * order of regret (distance to their second-nearest center minus the nearest), so the
+ * stops with the most to lose pick first and the ones that spill over to a neighbouring
+ * territory are those on its border. Stops go to the nearest center with room left under
+ * maxStops and maxServiceMinutes. Rounds repeat until no stop moves or maxIterations.
+ *
+ * sweep: stops by bearing from the depot (starting after the widest empty wedge), cut
+ * into consecutive sectors of near-equal service minutes, within the same limits.
+ *
+ * Both are deterministic for a given seed. Territories are numbered by the bearing of
+ * their center from the depot, so route numbers go around the depot in order.
+ */
+public final class TerritoryClusterer {
+
+    public static final String METHOD_NONE = "none";
+    public static final String METHOD_KMEANS = "kmeans";
+    public static final String METHOD_SWEEP = "sweep";
+
+    private static final int PARALLEL_MIN_POINTS = 20_000;
+
+    private final int territories;
+    private final int maxStops;
+    private final double maxServiceMinutes;
+    private final long seed;
+    private final int maxIterations;
+
+    /**
+     * @param maxStops           per-territory stop cap; 0 = ceil(stops / territories) + 10%
+     * @param maxServiceMinutes  per-territory service-time cap; 0 = no limit
+     */
+    public TerritoryClusterer(int territories, int maxStops, double maxServiceMinutes, long seed, int maxIterations) {
+        this.territories = Math.max(1, territories);
+        this.maxStops = maxStops;
+        this.maxServiceMinutes = maxServiceMinutes > 0 ? maxServiceMinutes : Double.POSITIVE_INFINITY;
+        this.seed = seed;
+        this.maxIterations = Math.max(1, maxIterations);
+    }
+
+    /**
+     * @param serviceMinutes  estimated on-site minutes per point (index 0, the depot, is ignored)
+     */
+    public Territories cluster(String method, double[] lat, double[] lng, double[] serviceMinutes) {
+        return switch (method) {
+            case METHOD_KMEANS -> kmeans(lat, lng, serviceMinutes);
+            case METHOD_SWEEP -> sweep(lat, lng, serviceMinutes);
+            default -> throw new IllegalArgumentException("Unknown clustering method: " + method);
+        };
+    }
+
+    // ---------------------------------------------------------------- k-means
+
+    public Territories kmeans(double[] lat, double[] lng, double[] serviceMinutes) {
+        long start = System.nanoTime();
+        int n = lat.length;
+        int k = territories;
+        int cap = capFor(n - 1);
+        double[] x = new double[n];
+        double[] y = new double[n];
+        Planar.project(lat, lng, x, y);
+
+        double[] cx = new double[k];
+        double[] cy = new double[k];
+        seedCenters(x, y, cx, cy);
+
+        int[] territoryOf = new int[n];
+        Arrays.fill(territoryOf, -1);
+        int[] previous = new int[n];
+        double[] dist = new double[n * k];
+        double[] regret = new double[n];
+        boolean overCapacity = false;
+        int iterations = 0;
+
+        while (iterations < maxIterations) {
+            iterations++;
+            distances(x, y, cx, cy, dist, regret);
+
+            System.arraycopy(territoryOf, 0, previous, 0, n);
+            overCapacity = assign(byRegret(regret), dist, serviceMinutes, cap, territoryOf);
+            if (Arrays.equals(territoryOf, previous)) break;
+
+            recenter(x, y, territoryOf, cx, cy);
+        }
+
+        return finish(METHOD_KMEANS, lat, lng, serviceMinutes, territoryOf, iterations, overCapacity, start);
+    }
+
+    /** k-means++: each further center is drawn with probability proportional to squared distance. */
+    private void seedCenters(double[] x, double[] y, double[] cx, double[] cy) {
+        int n = x.length;
+        int k = cx.length;
+        if (n <= 1) return;
+        SplittableRandom rnd = new SplittableRandom(seed);
+        double[] d2 = new double[n];
+        Arrays.fill(d2, Double.POSITIVE_INFINITY);
+
+        int pick = 1 + rnd.nextInt(n - 1);
+        for (int c = 0; c < k; c++) {
+            cx[c] = x[pick];
+            cy[c] = y[pick];
+            if (c == k - 1) break;
+
+            double total = 0;
+            for (int i = 1; i < n; i++) {
+                double dx = x[i] - cx[c];
+                double dy = y[i] - cy[c];
+                d2[i] = Math.min(d2[i], dx * dx + dy * dy);
+                total += d2[i];
+            }
+            if (total <= 0) {
+                pick = 1 + rnd.nextInt(n - 1);
+                continue;
+            }
+            double target = rnd.nextDouble() * total;
+            pick = n - 1;
+            for (int i = 1; i < n; i++) {
+                target -= d2[i];
+                if (target < 0) {
+                    pick = i;
+                    break;
+                }
+            }
+        }
+    }
+
+    /** Fills dist[i * k + c] (meters) and each stop's regret; rows run in parallel for large inputs. */
+    private static void distances(double[] x, double[] y, double[] cx, double[] cy, double[] dist, double[] regret) {
+        int n = x.length;
+        int k = cx.length;
+        IntStream rows = IntStream.range(1, n);
+        if (n >= PARALLEL_MIN_POINTS) rows = rows.parallel();
+        rows.forEach(i -> {
+            double best = Double.POSITIVE_INFINITY;
+            double second = Double.POSITIVE_INFINITY;
+            for (int c = 0; c < k; c++) {
+                double dx = x[i] - cx[c];
+                double dy = y[i] - cy[c];
+                double d = Math.sqrt(dx * dx + dy * dy);
+                dist[i * k + c] = d;
+                if (d < best) {
+                    second = best;
+                    best = d;
+                } else if (d < second) {
+                    second = d;
+                }
+            }
+            regret[i] = k == 1 ? 0 : second - best;
+        });
+    }
+
+    /** Stops 1..n-1, largest regret first; ties by index so the order is deterministic. */
+    private static int[] byRegret(double[] regret) {
+        int stops = regret.length - 1;
+        long[] packed = new long[stops];
+        long maxKey = (1L << 39) - 1;
+        for (int i = 1; i <= stops; i++) {
+            // Sortable key: inverted regret (decimeters) in the high bits, stop index in the low 24.
+            long q = Math.min(maxKey, (long) (regret[i] * 10));
+            packed[i - 1] = ((maxKey - q) << 24) | i;
+        }
+        Arrays.sort(packed);
+
+        int[] out = new int[stops];
+        for (int i = 0; i < stops; i++) out[i] = (int) (packed[i] & 0xFFFFFF);
+        return out;
+    }
+
+    /**
+     * Greedy capacitated assignment: each stop, in order, to its nearest territory with room.
+     * When none has room the stop goes where it overloads least. Returns true in that case.
+     */
+    private boolean assign(int[] order, double[] dist, double[] serviceMinutes, int cap, int[] territoryOf) {
+        int k = territories;
+        int[] count = new int[k];
+        double[] load = new double[k];
+        boolean over = false;
+
+        for (int i : order) {
+            double w = serviceMinutes[i];
+            int best = -1;
+            double bestDist = Double.POSITIVE_INFINITY;
+            for (int c = 0; c < k; c++) {
+                if (count[c] + 1 > cap || load[c] + w > maxServiceMinutes) continue;
+                double d = dist[i * k + c];
+                if (d < bestDist) {
+                    bestDist = d;
+                    best = c;
+                }
+            }
+            if (best < 0) {
+                over = true;
+                best = leastOverloaded(count, load, w, cap);
+            }
+            territoryOf[i] = best;
+            count[best]++;
+            load[best] += w;
+        }
+        return over;
+    }
+
+    private int leastOverloaded(int[] count, double[] load, double w, int cap) {
+        int best = 0;
+        double bestRatio = Double.POSITIVE_INFINITY;
+        for (int c = 0; c < count.length; c++) {
+            double ratio = Math.max((count[c] + 1) / (double) cap, (load[c] + w) / maxServiceMinutes);
+            if (ratio < bestRatio) {
+                bestRatio = ratio;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private static void recenter(double[] x, double[] y, int[] territoryOf, double[] cx, double[] cy) {
+        int k = cx.length;
+        double[] sx = new double[k];
+        double[] sy = new double[k];
+        int[] count = new int[k];
+        for (int i = 1; i < x.length; i++) {
+            int c = territoryOf[i];
+            sx[c] += x[i];
+            sy[c] += y[i];
+            count[c]++;
+        }
+        for (int c = 0; c < k; c++) {
+            // An empty territory keeps its old center.
+            if (count[c] == 0) continue;
+            cx[c] = sx[c] / count[c];
+            cy[c] = sy[c] / count[c];
+        }
+    }
+
+    // ---------------------------------------------------------------- sweep
+
+    public Territories sweep(double[] lat, double[] lng, double[] serviceMinutes) {
+        long start = System.nanoTime();
+        int n = lat.length;
+        int cap = capFor(n - 1);
+        int[] territoryOf = new int[n];
+        Arrays.fill(territoryOf, -1);
+
+        // Sectors are balanced on service minutes, or on stop counts when no minutes are known.
+        double total = 0;
+        for (int i = 1; i < n; i++) total += serviceMinutes[i];
+        boolean byCount = total <= 0;
+        double remaining = byCount ? n - 1 : total;
+
+        int[] order = Planar.sweepOrder(lat, lng);
+        boolean overCapacity = false;
+        int t = 0;
+        int count = 0;
+        double load = 0;
+        double balanced = 0;
+        double target = remaining / territories;
+        for (int i : order) {
+            double w = serviceMinutes[i];
+            double b = byCount ? 1 : w;
+            boolean limit = count + 1 > cap || load + w > maxServiceMinutes;
+            if ((limit || (count > 0 && balanced >= target)) && t < territories - 1) {
+                t++;
+                count = 0;
+                load = 0;
+                balanced = 0;
+                target = remaining / (territories - t);
+            } else if (limit) {
+                overCapacity = true;
+            }
+            territoryOf[i] = t;
+            count++;
+            load += w;
+            balanced += b;
+            remaining -= b;
+        }
+
+        return finish(METHOD_SWEEP, lat, lng, serviceMinutes, territoryOf, 1, overCapacity, start);
+    }
+
+    // ---------------------------------------------------------------- helpers
+
+    private int capFor(int stops) {
+        return Planar.capPerGroup(stops, territories, maxStops);
+    }
+
+    /** Renumbers territories by the bearing of their centroid from the depot and builds member lists. */
+    private Territories finish(String method, double[] lat, double[] lng, double[] serviceMinutes,
+                               int[] territoryOf, int iterations, boolean overCapacity, long startNanos) {
+        int k = territories;
+        int n = lat.length;
+        double[] sLat = new double[k];
+        double[] sLng = new double[k];
+        int[] count = new int[k];
+        for (int i = 1; i < n; i++) {
+            int c = territoryOf[i];
+            sLat[c] += lat[i];
+            sLng[c] += lng[i];
+            count[c]++;
+        }
+
+        long[] packed = new long[k];
+        for (int c = 0; c < k; c++) {
+            // Empty territories sort last.
+            double a = count[c] == 0 ? 4 : Planar.bearing(lat[0], lng[0], sLat[c] / count[c], sLng[c] / count[c]);
+            packed[c] = ((long) ((a + Math.PI) * 1e9) << 16) | c;
+        }
+        Arrays.sort(packed);
+        int[] rank = new int[k];
+        for (int r = 0; r < k; r++) rank[(int) (packed[r] & 0xFFFF)] = r;
+
+        int[][] members = new int[k][];
+        double[] minutes = new double[k];
+        int[] fill = new int[k];
+        for (int c = 0; c < k; c++) members[rank[c]] = new int[count[c]];
+        for (int i = 1; i < n; i++) {
+            int r = rank[territoryOf[i]];
+            territoryOf[i] = r;
+            members[r][fill[r]++] = i;
+            minutes[r] += serviceMinutes[i];
+        }
+
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000L;
+        return new Territories(method, territoryOf, members, minutes, iterations, overCapacity, elapsedMs);
+    }
+}
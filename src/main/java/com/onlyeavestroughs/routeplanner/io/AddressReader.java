@@ -1,53 +1,163 @@
 package com.onlyeavestroughs.routeplanner.io;
 
+import com.onlyeavestroughs.routeplanner.address.AddressNormalizer;
+import com.onlyeavestroughs.routeplanner.util.HashUtil;
+import com.onlyeavestroughs.routeplanner.util.LongHashSet;
+import com.onlyeavestroughs.routeplanner.util.LongIntHashMap;
+import com.onlyeavestroughs.routeplanner.util.TimeOfDay;
+
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
- * Milestone 1: basic TXT ingestion.
+ * Streaming TXT ingestion.
  * - trims whitespace
  * - drops blank lines
  * - removes exact duplicates (preserves first occurrence order)
+ * - optionally merges near-duplicates: lines whose AddressNormalizer canonical form
+ *   matches an earlier line ("123 Main St." / "123 main street")
+ * - splits off optional "|" fields after the address: a time window "09:00-11:30" and/or
+ *   on-site minutes "45" ("123 Main St | 09:00-11:30 | 45"). Duplicates are judged on
+ *   the address alone and the first line's fields win; unreadable fields are counted and
+ *   ignored.
+ *
+ * Lines are read one at a time through a 64 KB buffer; duplicates are detected by a
+ * 64-bit fingerprint in a primitive hash set, so memory holds only the cleaned list.
  */
 public final class AddressReader {
     private AddressReader() {}
 
+    private static final int BUFFER_CHARS = 1 << 16;
+
     public static ReadResult read(Path inputFile) throws IOException {
-        List<String> raw = Files.readAllLines(inputFile, StandardCharsets.UTF_8);
+        return read(inputFile, a -> {});
+    }
 
+    /**
+     * Reads the file and hands each cleaned address to onAddress as soon as it is accepted,
+     * so the next stage can start before the whole file is read.
+     */
+    public static ReadResult read(Path inputFile, Consumer<String> onAddress) throws IOException {
+        return read(inputFile, false, onAddress);
+    }
+
+    /**
+     * As read(Path, Consumer); with mergeNearDuplicates, a line whose canonical form was
+     * already seen is dropped and reported in nearDuplicates instead of handed on.
+     */
+    public static ReadResult read(Path inputFile, boolean mergeNearDuplicates, Consumer<String> onAddress) throws IOException {
+        int rawLines = 0;
         int blankLines = 0;
         int duplicates = 0;
+        int unreadableFields = 0;
 
-        Set<String> seen = new LinkedHashSet<>();
+        int expected = Math.max(1024, (int) Math.min(1 << 24, Files.size(inputFile) / 32));
+        LongHashSet seen = new LongHashSet(expected);
+        LongIntHashMap canonicalSeen = mergeNearDuplicates ? new LongIntHashMap(expected) : null;
         List<String> cleaned = new ArrayList<>();
+        List<NearDuplicate> nearDuplicates = new ArrayList<>();
+        Map<String, Timing> timings = new HashMap<>();
 
-        for (String line : raw) {
-            if (line == null) continue;
-            String s = line.trim();
-            if (s.isEmpty()) {
-                blankLines++;
-                continue;
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(inputFile), StandardCharsets.UTF_8.newDecoder()),
+                BUFFER_CHARS)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                rawLines++;
+                String s = line.trim();
+                int bar = s.indexOf('|');
+                String fields = null;
+                if (bar >= 0) {
+                    fields = s.substring(bar + 1);
+                    s = s.substring(0, bar).trim();
+                }
+                if (s.isEmpty()) {
+                    blankLines++;
+                    continue;
+                }
+                if (!seen.add(HashUtil.fingerprint64(s))) {
+                    duplicates++;
+                    continue;
+                }
+                if (canonicalSeen != null) {
+                    long key = HashUtil.fingerprint64(AddressNormalizer.canonical(s));
+                    int first = canonicalSeen.putIfAbsent(key, cleaned.size());
+                    if (first >= 0) {
+                        nearDuplicates.add(new NearDuplicate(s, cleaned.get(first)));
+                        continue;
+                    }
+                }
+                cleaned.add(s);
+                if (fields != null) {
+                    Timing t = parseTiming(fields);
+                    unreadableFields += t.unreadable();
+                    if (t.windowOpen() >= 0 || t.serviceSeconds() >= 0) timings.put(s, t);
+                }
+                onAddress.accept(s);
             }
-            if (!seen.add(s)) {
-                duplicates++;
+        }
+
+        return new ReadResult(rawLines, blankLines, duplicates, cleaned, nearDuplicates, timings, unreadableFields);
+    }
+
+    /** "09:00-11:30" and/or "45" (minutes, "45 min" also accepted), separated by "|". */
+    static Timing parseTiming(String fields) {
+        int open = -1;
+        int close = -1;
+        int service = -1;
+        int unreadable = 0;
+        for (String raw : fields.split("\\|")) {
+            String f = raw.trim();
+            if (f.isEmpty()) continue;
+            int dash = f.indexOf('-');
+            if (dash > 0) {
+                int a = TimeOfDay.parse(f.substring(0, dash));
+                int b = TimeOfDay.parse(f.substring(dash + 1));
+                if (a >= 0 && b > a) {
+                    open = a;
+                    close = b;
+                } else {
+                    unreadable++;
+                }
                 continue;
             }
-            cleaned.add(s);
+            String minutes = f.endsWith("min") ? f.substring(0, f.length() - 3).trim() : f;
+            try {
+                double m = Double.parseDouble(minutes);
+                if (m >= 0 && m <= 24 * 60) service = (int) Math.round(m * 60);
+                else unreadable++;
+            } catch (NumberFormatException e) {
+                unreadable++;
+            }
         }
-
-        return new ReadResult(raw.size(), blankLines, duplicates, cleaned);
+        return new Timing(open, close, service, unreadable);
     }
 
     public record ReadResult(
             int rawLineCount,
             int blankLineCount,
             int duplicateLineCount,
-            List<String> addresses
+            List<String> addresses,
+            List<NearDuplicate> nearDuplicates,
+            Map<String, Timing> timings,
+            int unreadableFields
     ) {}
+
+    /**
+     * The "|" fields of one address: window bounds and on-site time in seconds (since
+     * midnight for the window), -1 where not given.
+     */
+    public record Timing(int windowOpen, int windowClose, int serviceSeconds, int unreadable) {}
+
+    /** A line dropped because it normalizes to the same address as keptAs. */
+    public record NearDuplicate(String address, String keptAs) {}
 }
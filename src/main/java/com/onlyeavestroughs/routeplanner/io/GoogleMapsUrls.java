@@ -0,0 +1,91 @@
+package com.onlyeavestroughs.routeplanner.io;
+
+/**
+ * Google Maps direction links ("Maps URLs", api=1) for routes, built from the stops'
+ * coordinates rather than their addresses: links stay short, need no escaping, and open on
+ * the point that was planned even where Maps would read the address differently.
+ *
+ * A route is the depot, its stops in order, and the depot again. One link takes an origin,
+ * a destination and at most maxWaypoints points in between (Maps allows 9 on desktop and
+ * in the apps), so a longer route is cut into consecutive chunk links, each starting where
+ * the previous one ended.
+ *
+ * Coordinates are indexed like the matrix (0 = depot). Reuses one buffer across links, so
+ * an instance is for one thread.
+ */
+public final class GoogleMapsUrls {
+
+    static final String BASE = "https://www.google.com/maps/dir/?api=1";
+
+    private final double[] lat;
+    private final double[] lng;
+    private final int maxWaypoints;
+    private final String travelMode;
+    private final StringBuilder sb = new StringBuilder(512);
+
+    public GoogleMapsUrls(double[] lat, double[] lng, int maxWaypoints, String orsProfile) {
+        if (maxWaypoints < 1) throw new IllegalArgumentException("maxWaypoints must be at least 1");
+        this.lat = lat;
+        this.lng = lng;
+        this.maxWaypoints = maxWaypoints;
+        this.travelMode = travelMode(orsProfile);
+    }
+
+    /** Maps travel mode for an ORS profile name (driving-car, cycling-road, foot-walking, ...). */
+    static String travelMode(String orsProfile) {
+        if (orsProfile.startsWith("cycling")) return "bicycling";
+        if (orsProfile.startsWith("foot") || orsProfile.equals("wheelchair")) return "walking";
+        return "driving";
+    }
+
+    /** Links needed for route: 0 for an empty route, 1 when it fits in one link. */
+    public int linkCount(int[] route) {
+        if (route.length == 0) return 0;
+        // route.length + 1 legs; a link covers maxWaypoints + 1 of them.
+        return (route.length + 1 + maxWaypoints) / (maxWaypoints + 1);
+    }
+
+    /**
+     * Link number c (0-based, below linkCount) of route. Its origin is the previous link's
+     * destination: the depot for the first link, a stop for the others.
+     */
+    public String link(int[] route, int c) {
+        int last = route.length + 1; // position of the returning depot
+        int from = c * (maxWaypoints + 1);
+        int to = Math.min(from + maxWaypoints + 1, last);
+        sb.setLength(0);
+        sb.append(BASE).append("&origin=");
+        appendPoint(route, from, last);
+        sb.append("&destination=");
+        appendPoint(route, to, last);
+        sb.append("&travelmode=").append(travelMode);
+        if (to - from > 1) {
+            sb.append("&waypoints=");
+            for (int q = from + 1; q < to; q++) {
+                if (q > from + 1) sb.append("%7C");
+                appendPoint(route, q, last);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Position q along depot, route..., depot. */
+    private void appendPoint(int[] route, int q, int last) {
+        int point = q == 0 || q == last ? 0 : route[q - 1];
+        appendFixed6(lat[point]);
+        sb.append(',');
+        appendFixed6(lng[point]);
+    }
+
+    /** Six decimals (about 10 cm), without going through String.format. */
+    private void appendFixed6(double v) {
+        long micro = Math.round(v * 1e6);
+        if (micro < 0) {
+            sb.append('-');
+            micro = -micro;
+        }
+        sb.append(micro / 1_000_000).append('.');
+        long frac = micro % 1_000_000;
+        for (long d = 100_000; d > 0; d /= 10) sb.append((char) ('0' + frac / d % 10));
+    }
+}
@@ -0,0 +1,108 @@
+package com.onlyeavestroughs.routeplanner.io;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onlyeavestroughs.routeplanner.runtime.StopTable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * An earlier run's plan, read back from its routes.json for incremental re-planning.
+ * routes hold stop IDs in visiting order, as written under orderedStopIds; stops has the
+ * previous depot in row 0.
+ */
+public record PreviousPlan(
+        Path file,
+        String runId,
+        String depotAddress,
+        StopTable stops,
+        int[][] routes
+) {
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /**
+     * A routes.bin is read directly; for routes.json a routes.bin beside it is preferred
+     * (no JSON parse) while it still matches the JSON, falling back to the JSON if the JSON
+     * changed since or the binary is damaged.
+     */
+    public static PreviousPlan load(Path file) throws IOException {
+        if (file.getFileName().toString().endsWith(".bin")) return RoutesBinary.read(file);
+        Path bin = file.resolveSibling("routes.bin");
+        if (Files.isRegularFile(bin)) {
+            try {
+                if (RoutesBinary.matches(bin, file)) return RoutesBinary.read(bin);
+                System.err.println("WARN: incremental: " + file.getFileName() + " changed after " + bin.getFileName()
+                        + " was written; reading " + file.getFileName());
+            } catch (IOException e) {
+                System.err.println("WARN: incremental: " + e.getMessage() + "; reading " + file.getFileName());
+            }
+        }
+        return read(file);
+    }
+
+    public static PreviousPlan read(Path routesJson) throws IOException {
+        JsonNode root;
+        try (InputStream in = Files.newInputStream(routesJson)) {
+            root = JSON.readTree(in);
+        }
+        if (root == null || !root.path("stops").isArray() || !root.path("routes").isArray()) {
+            throw new IOException("not a routes.json: " + routesJson);
+        }
+
+        JsonNode depot = root.path("depot");
+        String depotAddress = depot.path("address").asText("");
+        StopTable stops = new StopTable(depotAddress, depot.path("lat").asDouble(Double.NaN),
+                depot.path("lng").asDouble(Double.NaN), root.get("stops").size());
+        for (JsonNode s : root.get("stops")) {
+            stops.add(s.path("id").asInt(), s.path("address").asText(),
+                    s.path("lat").asDouble(), s.path("lng").asDouble(), StopTable.PREVIOUS_PLAN);
+        }
+
+        JsonNode routeNodes = root.get("routes");
+        int[][] routes = new int[routeNodes.size()][];
+        for (int r = 0; r < routes.length; r++) {
+            JsonNode ids = routeNodes.get(r).path("orderedStopIds");
+            routes[r] = new int[ids.size()];
+            for (int p = 0; p < ids.size(); p++) routes[r][p] = ids.get(p).asInt();
+        }
+
+        return new PreviousPlan(routesJson, root.path("runId").asText(""), depotAddress, stops, routes);
+    }
+
+    /**
+     * The newest plan under outRoot that accept() takes, skipping excludeRunId and
+     * unreadable files; null when none. Run IDs are timestamps, so newest is the greatest
+     * name. Batch runs plan several depots into one outRoot, hence the filter.
+     */
+    public static PreviousPlan findLatest(Path outRoot, String excludeRunId, Predicate<PreviousPlan> accept)
+            throws IOException {
+        if (!Files.isDirectory(outRoot)) return null;
+        List<Path> candidates;
+        try (Stream<Path> dirs = Files.list(outRoot)) {
+            candidates = dirs.filter(d -> !d.getFileName().toString().equals(excludeRunId))
+                    .map(d -> d.resolve("routes.json"))
+                    .filter(Files::isRegularFile)
+                    .sorted(Comparator.comparing((Path f) -> f.getParent().getFileName().toString()).reversed())
+                    .toList();
+        }
+        for (Path file : candidates) {
+            try {
+                PreviousPlan plan = load(file);
+                if (accept.test(plan)) return plan;
+            } catch (IOException e) {
+                System.err.println("WARN: incremental: skipping unreadable " + file + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /** How the current input differs from the previous plan's stops. */
+    public record Diff(Path previousRoutes, int kept, int added, int removed) {}
+}
@@ -1,8 +1,25 @@
 package com.onlyeavestroughs.routeplanner.io;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.onlyeavestroughs.routeplanner.address.Gazetteer;
+import com.onlyeavestroughs.routeplanner.cache.GeocodeCacheStats;
+import com.onlyeavestroughs.routeplanner.cluster.Territories;
+import com.onlyeavestroughs.routeplanner.matrix.CostMatrix;
+import com.onlyeavestroughs.routeplanner.matrix.MatrixResult;
+import com.onlyeavestroughs.routeplanner.optimize.OptimizeResult;
+import com.onlyeavestroughs.routeplanner.optimize.TimeWindows.Schedule;
+import com.onlyeavestroughs.routeplanner.ors.GeocodeFailure;
+import com.onlyeavestroughs.routeplanner.ors.HttpStats;
 import com.onlyeavestroughs.routeplanner.ors.OrsGeocoder.GeocodeOutcome;
-import com.onlyeavestroughs.routeplanner.runtime.RunApp.Stop;
 import com.onlyeavestroughs.routeplanner.runtime.RunConfig;
+import com.onlyeavestroughs.routeplanner.runtime.RunMetrics;
+import com.onlyeavestroughs.routeplanner.runtime.StopTable;
+import com.onlyeavestroughs.routeplanner.util.TimeOfDay;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -11,15 +28,28 @@ import java.nio.file.Path;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public final class ReportWriter {
     private ReportWriter() {}
 
-    public static void writeRoutesTxt(Path file, RunConfig cfg, GeocodeOutcome depotGeo, List<Stop> stops) throws IOException {
+    /** Shared: ObjectMapper is thread-safe once configured, and building one is not cheap. */
+    private static final ObjectMapper JSON = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /** schedules is aligned with plan.routes(); null leaves out arrival times. */
+    public static void writeRoutesTxt(
+            Path file,
+            RunConfig cfg,
+            GeocodeOutcome depotGeo,
+            StopTable stops,
+            CostMatrix matrix,
+            OptimizeResult plan,
+            Schedule[] schedules
+    ) throws IOException {
         StringBuilder sb = new StringBuilder();
 
-        sb.append("Route Planner - Milestone 2\n");
+        sb.append("Route Planner - Milestone 3\n");
         sb.append("Run ID: ").append(cfg.runId()).append("\n");
         sb.append("Profile: ").append(cfg.profile()).append("\n");
         sb.append("Generated: ")
@@ -36,29 +66,212 @@ public final class ReportWriter {
         sb.append("\n");
 
         sb.append("Stops (geocoded): ").append(stops.size()).append("\n");
-        for (Stop s : stops) {
+        for (int row = 1; row <= stops.size(); row++) {
             sb.append(String.format("%3d. %s\n     (%.6f, %.6f)\n",
-                    s.id(), s.address(), s.lat(), s.lng()));
+                    stops.id(row), stops.address(row), stops.lat(row), stops.lng(row)));
         }
 
-        sb.append("\nNOTE: Optimization/matrix not implemented yet (Milestone 2).\n");
+        GoogleMapsUrls maps = new GoogleMapsUrls(stops.lat(), stops.lng(), cfg.googleMapsMaxWaypoints(), cfg.profile());
+        for (int r = 0; r < plan.routes().length; r++) {
+            int[] order = plan.routes()[r];
+            Schedule sched = schedules == null ? null : schedules[r];
+            sb.append("\nRoute ").append(r + 1).append(": ").append(order.length).append(" stops, ")
+                    .append(String.format("%.1f km, %s", matrix.tourDistance(order) / 1000.0, hoursMinutes(matrix.tourDuration(order))));
+            if (sched != null) {
+                sb.append(", back ").append(TimeOfDay.format(sched.returnTime()));
+                if (sched.lateReturn()) sb.append(" (after shift end)");
+            }
+            sb.append("\n");
+            int links = maps.linkCount(order);
+            for (int c = 0; c < links; c++) {
+                sb.append(links == 1 ? "  Map: " : "  Map " + (c + 1) + "/" + links + ": ")
+                        .append(maps.link(order, c)).append("\n");
+            }
+            for (int p = 0; p < order.length; p++) {
+                int row = order[p];
+                if (sched == null) {
+                    sb.append(String.format("%3d. [#%d] %s\n", p + 1, stops.id(row), stops.address(row)));
+                    continue;
+                }
+                sb.append(String.format("%3d. %s [#%d] %s", p + 1, TimeOfDay.format(sched.arrival()[p]),
+                        stops.id(row), stops.address(row)));
+                if (stops.hasWindow(row)) {
+                    sb.append("  (window ").append(TimeOfDay.format(stops.windowOpen(row))).append("-")
+                            .append(TimeOfDay.format(stops.windowClose(row)));
+                    if (sched.arrival()[p] > stops.windowClose(row)) sb.append(", LATE");
+                    else if (sched.start()[p] > sched.arrival()[p]) sb.append(", wait");
+                    sb.append(")");
+                }
+                sb.append("\n");
+            }
+        }
 
         Files.writeString(file, sb.toString(), StandardCharsets.UTF_8);
     }
 
+    /**
+     * Streams routes.json straight from the run's stop table; no intermediate tree is built.
+     * Each stop and route sits on its own line (see LinePerElementPrinter). A stop's window
+     * and on-site minutes are only written when it has a window or differs from
+     * serviceMinutesPerStop; schedules (null for none) adds arrival times per route. A route
+     * that fits one Google Maps link gets it as googleMapsUrlPrimary; a longer one gets
+     * consecutive chunk links in googleMapsUrlFallback instead.
+     */
+    public static void writeRoutesJson(
+            Path file,
+            RunConfig cfg,
+            StopTable stops,
+            CostMatrix matrix,
+            OptimizeResult plan,
+            Schedule[] schedules
+    ) throws IOException {
+        int defaultServiceSeconds = (int) Math.round(cfg.serviceMinutesPerStop() * 60);
+        try (JsonGenerator g = JSON.getFactory().createGenerator(Files.newOutputStream(file), JsonEncoding.UTF8)) {
+            g.setPrettyPrinter(new LinePerElementPrinter());
+            g.writeStartObject();
+            g.writeNumberField("milestone", 3);
+            g.writeStringField("version", "0.4.0");
+            g.writeStringField("runId", cfg.runId());
+            g.writeStringField("profile", cfg.profile());
+
+            g.writeObjectFieldStart("depot");
+            g.writeStringField("address", cfg.depotAddress());
+            g.writeNumberField("lat", stops.lat(0));
+            g.writeNumberField("lng", stops.lng(0));
+            g.writeEndObject();
+
+            g.writeObjectFieldStart("io");
+            g.writeStringField("inputFile", cfg.inputFile().toString());
+            g.writeStringField("outDir", file.getParent().toString());
+            g.writeStringField("cacheDir", cfg.cacheRoot().toString());
+            g.writeEndObject();
+
+            g.writeArrayFieldStart("stops");
+            for (int row = 1; row <= stops.size(); row++) {
+                g.writeStartObject();
+                g.writeNumberField("id", stops.id(row));
+                g.writeStringField("address", stops.address(row));
+                g.writeNumberField("lat", stops.lat(row));
+                g.writeNumberField("lng", stops.lng(row));
+                if (stops.hasWindow(row)) {
+                    g.writeStringField("window", TimeOfDay.format(stops.windowOpen(row)) + "-"
+                            + TimeOfDay.format(stops.windowClose(row)));
+                }
+                if (stops.serviceSeconds(row) != defaultServiceSeconds) {
+                    g.writeNumberField("serviceMinutes", stops.serviceSeconds(row) / 60.0);
+                }
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+
+            g.writeArrayFieldStart("failedStops");
+            for (int i = 0; i < stops.failedCount(); i++) {
+                g.writeStartObject();
+                g.writeStringField("address", stops.failedAddress(i));
+                g.writeStringField("code", stops.failure(i).name());
+                g.writeStringField("detail", stops.failureDetail(i));
+                if (stops.failureCached(i)) g.writeBooleanField("cached", true);
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+
+            GoogleMapsUrls maps = new GoogleMapsUrls(stops.lat(), stops.lng(), cfg.googleMapsMaxWaypoints(), cfg.profile());
+            g.writeArrayFieldStart("routes");
+            for (int r = 0; r < plan.routes().length; r++) {
+                int[] order = plan.routes()[r];
+                int[] ids = stops.ids(order);
+
+                g.writeStartObject();
+                g.writeNumberField("routeIndex", r + 1);
+                g.writeFieldName("orderedStopIds");
+                g.writeArray(ids, 0, ids.length);
+                g.writeNumberField("totalDistanceMeters", Math.round(matrix.tourDistance(order)));
+                g.writeNumberField("totalDurationSeconds", Math.round(matrix.tourDuration(order)));
+                if (schedules != null) {
+                    Schedule sched = schedules[r];
+                    g.writeArrayFieldStart("arrivals");
+                    for (double a : sched.arrival()) g.writeString(TimeOfDay.format(a));
+                    g.writeEndArray();
+                    g.writeStringField("returnTime", TimeOfDay.format(sched.returnTime()));
+                    g.writeNumberField("lateStops", sched.lateStops());
+                }
+                int links = maps.linkCount(order);
+                if (links == 1) g.writeStringField("googleMapsUrlPrimary", maps.link(order, 0));
+                else g.writeNullField("googleMapsUrlPrimary");
+                g.writeArrayFieldStart("googleMapsUrlFallback");
+                for (int c = 0; links > 1 && c < links; c++) g.writeString(maps.link(order, c));
+                g.writeEndArray();
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            g.writeEndObject();
+        }
+    }
+
+    /**
+     * Top-level fields one per line, and one line per element of top-level arrays (a stop,
+     * a route); anything deeper stays compact. A fraction of a fully indented file's size
+     * and still readable and diffable line by line.
+     */
+    static final class LinePerElementPrinter extends MinimalPrettyPrinter {
+        private static final long serialVersionUID = 1L;
+
+        /** 1 inside the root object, 2 inside an array or object directly under it, ... */
+        private static int depth(JsonGenerator g) {
+            int d = 0;
+            for (JsonStreamContext c = g.getOutputContext(); !c.inRoot(); c = c.getParent()) d++;
+            return d;
+        }
+
+        @Override
+        public void writeStartObject(JsonGenerator g) throws IOException {
+            g.writeRaw(depth(g) == 1 ? "{\n  " : "{");
+        }
+
+        @Override
+        public void writeObjectEntrySeparator(JsonGenerator g) throws IOException {
+            g.writeRaw(depth(g) == 1 ? ",\n  " : ",");
+        }
+
+        @Override
+        public void writeEndObject(JsonGenerator g, int nrOfEntries) throws IOException {
+            g.writeRaw(depth(g) == 1 ? "\n}\n" : "}");
+        }
+
+        @Override
+        public void beforeArrayValues(JsonGenerator g) throws IOException {
+            if (depth(g) == 2) g.writeRaw("\n    ");
+        }
+
+        @Override
+        public void writeArrayValueSeparator(JsonGenerator g) throws IOException {
+            g.writeRaw(depth(g) == 2 ? ",\n    " : ",");
+        }
+
+        @Override
+        public void writeEndArray(JsonGenerator g, int nrOfValues) throws IOException {
+            g.writeRaw(depth(g) == 2 && nrOfValues > 0 ? "\n  ]" : "]");
+        }
+    }
+
     public static void writeDebugReport(
             Path file,
             RunConfig cfg,
             AddressReader.ReadResult readResult,
             GeocodeOutcome depotGeo,
-            List<String> stopsRaw,
-            List<String> failedStops,
-            int cacheHits,
-            int apiHits
+            StopTable stops,
+            GeocodeCacheStats cacheStats,
+            Gazetteer.Stats gazetteerStats,
+            MatrixResult matrix,
+            Territories territories,
+            PreviousPlan.Diff replan,
+            OptimizeResult plan,
+            Schedule[] schedules,
+            RunMetrics metrics
     ) throws IOException {
         StringBuilder sb = new StringBuilder();
 
-        sb.append("Route Planner - Debug Report (Milestone 2)\n");
+        sb.append("Route Planner - Debug Report (Milestone 3)\n");
         sb.append("Run ID: ").append(cfg.runId()).append("\n");
         sb.append("Input: ").append(cfg.inputFile()).append("\n");
         sb.append("Profile: ").append(cfg.profile()).append("\n\n");
@@ -67,30 +280,262 @@ public final class ReportWriter {
         sb.append("- Raw lines: ").append(readResult.rawLineCount()).append("\n");
         sb.append("- Blank lines removed: ").append(readResult.blankLineCount()).append("\n");
         sb.append("- Exact duplicates removed: ").append(readResult.duplicateLineCount()).append("\n");
+        sb.append("- Near-duplicates merged: ").append(readResult.nearDuplicates().size()).append("\n");
         sb.append("- Cleaned lines: ").append(readResult.addresses().size()).append("\n");
-        sb.append("- Stops after depot strip: ").append(stopsRaw.size()).append("\n\n");
+        int geocoded = stops == null ? 0 : stops.size();
+        int failed = stops == null ? 0 : stops.failedCount();
+        sb.append("- Stops after depot strip: ").append(geocoded + failed).append("\n\n");
+
+        if (!readResult.nearDuplicates().isEmpty()) {
+            sb.append("Near-duplicate list (merged into the first spelling):\n");
+            for (AddressReader.NearDuplicate d : readResult.nearDuplicates()) {
+                sb.append("- \"").append(d.address()).append("\" -> \"").append(d.keptAs()).append("\"\n");
+            }
+            sb.append("\n");
+        }
 
         sb.append("Geocoding\n");
         if (depotGeo != null) {
             sb.append("- Depot: ").append(depotGeo.success() ? "OK" : "FAILED").append(" (\"").append(cfg.depotAddress()).append("\")\n");
             sb.append("  Details: ").append(depotGeo.message()).append("\n");
         }
-        sb.append("- Cache hits: ").append(cacheHits).append("\n");
-        sb.append("- API hits: ").append(apiHits).append("\n");
-        sb.append("- Failed stops: ").append(failedStops.size()).append("\n\n");
+        if (gazetteerStats != null) {
+            sb.append("- Gazetteer hits (exact): ").append(gazetteerStats.exactHits()).append("\n");
+            sb.append("- Gazetteer hits (normalized): ").append(gazetteerStats.normalizedHits()).append("\n");
+            sb.append("- Gazetteer misses: ").append(gazetteerStats.misses())
+                    .append(" of ").append(gazetteerStats.entries()).append(" known addresses\n");
+        }
+        sb.append("- Cache hits (memory): ").append(cacheStats.memoryHits()).append("\n");
+        sb.append("- Cache hits (disk): ").append(cacheStats.diskHits()).append("\n");
+        sb.append("- Cache misses (sent to ORS): ").append(cacheStats.misses()).append("\n");
+        sb.append("- Known failures (from cache, not sent): ").append(cacheStats.failureHits()).append("\n");
+        sb.append("- Memory cache evictions: ").append(cacheStats.evictions()).append("\n");
+        sb.append("- Expired entries (TTL): ").append(cacheStats.expired()).append("\n");
+        if (stops != null && geocoded > 0) {
+            sb.append("- Stop coordinates from:");
+            int[] bySource = stops.sourceCounts();
+            for (byte src = 1; src < bySource.length; src++) {
+                if (bySource[src] > 0) sb.append(" ").append(StopTable.sourceName(src)).append(" ").append(bySource[src]);
+            }
+            sb.append("\n");
+        }
+        sb.append("- Failed stops: ").append(failed);
+        if (failed > 0) {
+            int[] byCode = stops.failureCounts();
+            String sep = " (";
+            for (GeocodeFailure f : GeocodeFailure.values()) {
+                if (byCode[f.ordinal()] == 0) continue;
+                sb.append(sep).append(f).append(" ").append(byCode[f.ordinal()]);
+                sep = ", ";
+            }
+            sb.append(")");
+        }
+        sb.append("\n\n");
 
-        if (!failedStops.isEmpty()) {
+        int cachedFailures = failed == 0 ? 0 : stops.cachedFailureCount();
+        if (failed > cachedFailures) {
             sb.append("Failed stop list:\n");
-            for (String f : failedStops) {
-                sb.append("- ").append(f).append("\n");
+            appendFailures(sb, stops, false);
+            sb.append("\n");
+        }
+        if (cachedFailures > 0) {
+            // Failed before and cached, so not retried: fix these in the source data.
+            sb.append("Known bad addresses (cached failures, not sent to ORS):\n");
+            appendFailures(sb, stops, true);
+            sb.append("\n");
+        }
+
+        if (matrix != null) {
+            int n = matrix.matrix().size();
+            sb.append("Matrix\n");
+            sb.append("- Engine: ").append(matrix.engine()).append("\n");
+            sb.append("- Size: ").append(n).append(" x ").append(n).append(" (depot + stops)\n");
+            sb.append("- Cells from cache: ").append(matrix.cellsFromCache()).append("\n");
+            sb.append("- Cells fetched: ").append(matrix.cellsFetched()).append("\n");
+            sb.append("- Requests: ").append(matrix.requests()).append("\n\n");
+        }
+
+        if (territories != null) {
+            sb.append("Territories\n");
+            sb.append("- Method: ").append(territories.method()).append("\n");
+            sb.append("- Rounds: ").append(territories.iterations()).append("\n");
+            sb.append("- Elapsed: ").append(territories.elapsedMs()).append(" ms\n");
+            if (territories.overCapacity()) {
+                sb.append("- WARNING: stop/service limits could not all be met; some territories are over capacity\n");
+            }
+            for (int t = 0; t < territories.count(); t++) {
+                sb.append(String.format("  #%d: %d stops, %.0f service min\n",
+                        t + 1, territories.members()[t].length, territories.serviceMinutes()[t]));
             }
             sb.append("\n");
         }
 
+        if (replan != null) {
+            sb.append("Incremental re-plan\n");
+            sb.append("- Previous plan: ").append(replan.previousRoutes()).append("\n");
+            sb.append("- Stops kept in place: ").append(replan.kept()).append("\n");
+            sb.append("- Stops added (cheapest insertion): ").append(replan.added()).append("\n");
+            sb.append("- Stops removed: ").append(replan.removed()).append("\n\n");
+        }
+
+        if (plan != null) {
+            sb.append("Optimizer\n");
+            sb.append("- Objective: ").append(cfg.optimizeFor()).append("\n");
+            sb.append("- Crews: ").append(plan.routes().length).append("\n");
+            sb.append(String.format("- Construction cost: %.1f\n", plan.constructionCost()));
+            sb.append(String.format("- Final cost: %.1f\n", plan.cost()));
+            sb.append(replan != null ? "- Repair rounds: " : plan.workers().isEmpty() ? "- Local search passes: " : "- Perturbation rounds: ")
+                    .append(plan.passes()).append("\n");
+            sb.append("- Elapsed: ").append(plan.elapsedMs()).append(" ms")
+                    .append(plan.timedOut() ? " (time budget reached)" : "").append("\n");
+            if (!plan.workers().isEmpty()) {
+                sb.append("- Workers: ").append(plan.workers().size()).append("\n");
+                for (OptimizeResult.WorkerStats w : plan.workers()) {
+                    sb.append(String.format("  #%d: start %.1f -> best %.1f, %d iterations, %d improvements, %d ms, stopped on %s\n",
+                            w.worker(), w.startCost(), w.bestCost(), w.iterations(), w.improvements(),
+                            w.elapsedMs(), w.stopReason()));
+                }
+            }
+            sb.append("\n");
+        }
+
+        if (plan != null && schedules != null) {
+            appendSchedule(sb, cfg, readResult, stops, plan, schedules);
+        }
+
+        if (metrics != null) {
+            sb.append("Timings (ms; read and geocode overlap, normalize is summed per address)\n");
+            for (Map.Entry<String, Long> e : metrics.stagesMs().entrySet()) {
+                sb.append("- ").append(e.getKey()).append(": ").append(e.getValue()).append("\n");
+            }
+            sb.append("\n");
+            appendHttp(sb, "Geocode HTTP", metrics.geocodeHttp());
+            appendHttp(sb, "Matrix HTTP", metrics.matrixHttp());
+
+            sb.append("I/O (bytes; this report is counted in metrics.json)\n");
+            metrics.bytesRead().forEach((k, v) -> sb.append("- read ").append(k).append(": ").append(v).append("\n"));
+            metrics.bytesWritten().forEach((k, v) -> sb.append("- wrote ").append(k).append(": ").append(v).append("\n"));
+            sb.append("\n");
+        }
+
         sb.append("Notes\n");
-        sb.append("- Milestone 2 geocodes depot + stops and caches results under cache/geocode/.\n");
+        sb.append("- Depot + stops are geocoded and cached under ")
+                .append(cfg.cacheRoot()).append(" (").append(cfg.geocodeCacheBackend()).append(" backend).\n");
         sb.append("- If a stop fails geocoding, it is skipped for now and reported above.\n");
+        if (cfg.geocodeFailureTtlDays() > 0) {
+            sb.append("- Addresses ORS cannot resolve are not retried for ").append(cfg.geocodeFailureTtlDays())
+                    .append(" days (geocodeFailureTtlDays).\n");
+        }
 
         Files.writeString(file, sb.toString(), StandardCharsets.UTF_8);
     }
+
+    /** The failed stops whose failure did (cached) or did not come from the geocode cache. */
+    private static void appendFailures(StringBuilder sb, StopTable stops, boolean cached) {
+        for (int i = 0; i < stops.failedCount(); i++) {
+            if (stops.failureCached(i) != cached) continue;
+            sb.append("- ").append(stops.failedAddress(i)).append(" | ").append(stops.failure(i))
+                    .append(": ").append(stops.failureDetail(i)).append("\n");
+        }
+    }
+
+    private static void appendSchedule(StringBuilder sb, RunConfig cfg, AddressReader.ReadResult readResult,
+                                       StopTable stops, OptimizeResult plan, Schedule[] schedules) {
+        int windowed = 0;
+        for (int row = 1; row <= stops.size(); row++) if (stops.hasWindow(row)) windowed++;
+        int lateStops = 0;
+        int lateReturns = 0;
+        double lateSeconds = 0;
+        for (Schedule s : schedules) {
+            lateStops += s.lateStops();
+            if (s.lateReturn()) lateReturns++;
+            lateSeconds += s.lateSeconds();
+        }
+        sb.append("Schedule\n");
+        sb.append("- Shift: ").append(TimeOfDay.format(cfg.shiftStartSeconds())).append(" - ")
+                .append(cfg.shiftEndSeconds() < 0 ? "open" : TimeOfDay.format(cfg.shiftEndSeconds())).append("\n");
+        sb.append("- Stops with time windows: ").append(windowed).append("\n");
+        if (readResult.unreadableFields() > 0) {
+            sb.append("- Unreadable window/service fields (ignored): ").append(readResult.unreadableFields()).append("\n");
+        }
+        sb.append("- Late stops: ").append(lateStops).append("\n");
+        sb.append("- Routes back after shift end: ").append(lateReturns).append("\n");
+        sb.append(String.format("- Total lateness: %.0f min\n", lateSeconds / 60.0));
+        for (int r = 0; r < schedules.length; r++) {
+            int[] order = plan.routes()[r];
+            Schedule s = schedules[r];
+            for (int p = 0; p < order.length; p++) {
+                int row = order[p];
+                if (!stops.hasWindow(row) || s.arrival()[p] <= stops.windowClose(row)) continue;
+                sb.append("  Route ").append(r + 1).append(": ").append(stops.address(row))
+                        .append(" arrives ").append(TimeOfDay.format(s.arrival()[p]))
+                        .append(", window ").append(TimeOfDay.format(stops.windowOpen(row))).append("-")
+                        .append(TimeOfDay.format(stops.windowClose(row))).append("\n");
+            }
+        }
+        sb.append("\n");
+    }
+
+    private static void appendHttp(StringBuilder sb, String title, HttpStats h) {
+        if (h == null || h.requests() == 0) return;
+        sb.append(title).append("\n");
+        sb.append("- Requests: ").append(h.requests()).append(" (ok ").append(h.ok())
+                .append(", 429 ").append(h.throttled()).append(", 5xx ").append(h.serverErrors())
+                .append(", other ").append(h.otherErrors()).append(", network errors ").append(h.networkErrors()).append(")\n");
+        sb.append("- Retries: ").append(h.retries()).append("\n");
+        sb.append(String.format("- Latency p50 / p95 / p99 / max: %.1f / %.1f / %.1f / %.1f ms\n",
+                h.p50Micros() / 1000.0, h.p95Micros() / 1000.0, h.p99Micros() / 1000.0, h.maxMicros() / 1000.0));
+        sb.append("- Bytes sent / received: ").append(h.bytesSent()).append(" / ").append(h.bytesReceived()).append("\n\n");
+    }
+
+    /** Machine-readable counterpart of the debug report's counters and timings. */
+    public static void writeMetricsJson(
+            Path file,
+            RunConfig cfg,
+            RunMetrics metrics,
+            GeocodeCacheStats cacheStats,
+            Gazetteer.Stats gazetteerStats,
+            MatrixResult matrix,
+            OptimizeResult plan
+    ) throws IOException {
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("runId", cfg.runId());
+        root.put("stagesMs", metrics.stagesMs());
+        root.put("geocodeHttp", metrics.geocodeHttp());
+        root.put("matrixHttp", metrics.matrixHttp());
+        root.put("geocodeCache", cacheStats);
+        root.put("gazetteer", gazetteerStats);
+
+        if (matrix != null) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("engine", matrix.engine());
+            m.put("size", matrix.matrix().size());
+            m.put("cellsFromCache", matrix.cellsFromCache());
+            m.put("cellsFetched", matrix.cellsFetched());
+            m.put("requests", matrix.requests());
+            root.put("matrix", m);
+        }
+        if (plan != null) {
+            Map<String, Object> o = new LinkedHashMap<>();
+            o.put("routes", plan.routes().length);
+            o.put("constructionCost", plan.constructionCost());
+            o.put("cost", plan.cost());
+            o.put("passes", plan.passes());
+            o.put("elapsedMs", plan.elapsedMs());
+            o.put("timedOut", plan.timedOut());
+            root.put("optimizer", o);
+        }
+
+        Map<String, Object> bytes = new LinkedHashMap<>();
+        bytes.put("read", metrics.bytesRead());
+        bytes.put("written", metrics.bytesWritten());
+        root.put("bytes", bytes);
+
+        JSON.writeValue(file.toFile(), root);
+    }
+
+    private static String hoursMinutes(double seconds) {
+        long minutes = Math.round(seconds / 60.0);
+        return String.format("%d:%02d h", minutes / 60, minutes % 60);
+    }
 }
@@ -0,0 +1,213 @@
+package com.onlyeavestroughs.routeplanner.io;
+
+import com.onlyeavestroughs.routeplanner.optimize.OptimizeResult;
+import com.onlyeavestroughs.routeplanner.runtime.RunConfig;
+import com.onlyeavestroughs.routeplanner.runtime.StopTable;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * routes.bin: a columnar companion to routes.json for tools that load plans in bulk
+ * (and for incremental re-planning, which reads it instead of parsing JSON when present).
+ *
+ * Little-endian, so it can be memory-mapped as-is (e.g. numpy.memmap):
+ *
+ *   int    magic "RTB2", stopCount, routeCount, totalRouteStops, stringBytes
+ *   double depotLat, depotLng
+ *   long   size and modification time (epoch ms) of the routes.json written alongside,
+ *          or -1 and 0 when there is none
+ *   int[stopCount]        stop IDs
+ *   double[stopCount]     lat, then double[stopCount] lng
+ *   int[routeCount + 1]   offsets into the route stop IDs (route r = [off[r], off[r+1]))
+ *   int[totalRouteStops]  stop IDs in visiting order
+ *   int[stopCount + 3]    offsets into the string blob: runId, depot address, then one
+ *                         address per stop
+ *   byte[stringBytes]     UTF-8 string blob
+ *
+ * The routes.json stamp lets PreviousPlan tell whether the JSON was edited or replaced
+ * after the binary was written, in which case the JSON wins.
+ */
+public final class RoutesBinary {
+    private RoutesBinary() {}
+
+    static final int MAGIC = 0x32425452; // "RTB2" read little-endian
+    private static final int HEADER_BYTES = 5 * 4 + 2 * 8 + 2 * 8;
+
+    /** A routes.bin not tied to any routes.json. */
+    public static void write(Path file, RunConfig cfg, StopTable stops, OptimizeResult plan) throws IOException {
+        write(file, null, cfg, stops, plan);
+    }
+
+    /** routesJson, when not null, must already be written: its size and mtime go in the header. */
+    public static void write(Path file, Path routesJson, RunConfig cfg, StopTable stops, OptimizeResult plan)
+            throws IOException {
+        long jsonBytes = routesJson == null ? -1 : Files.size(routesJson);
+        long jsonMtime = routesJson == null ? 0 : Files.getLastModifiedTime(routesJson).toMillis();
+        int n = stops.size();
+        int[][] routes = plan.routes();
+        int total = 0;
+        for (int[] route : routes) total += route.length;
+
+        byte[][] strings = new byte[n + 2][];
+        strings[0] = cfg.runId().getBytes(StandardCharsets.UTF_8);
+        strings[1] = cfg.depotAddress().getBytes(StandardCharsets.UTF_8);
+        int stringBytes = strings[0].length + strings[1].length;
+        for (int i = 0; i < n; i++) {
+            strings[i + 2] = stops.address(i + 1).getBytes(StandardCharsets.UTF_8);
+            stringBytes += strings[i + 2].length;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024)) {
+            Columns w = new Columns(out, buf);
+            w.putInt(MAGIC);
+            w.putInt(n);
+            w.putInt(routes.length);
+            w.putInt(total);
+            w.putInt(stringBytes);
+            w.putDouble(stops.lat(0));
+            w.putDouble(stops.lng(0));
+            w.putLong(jsonBytes);
+            w.putLong(jsonMtime);
+
+            for (int r = 1; r <= n; r++) w.putInt(stops.id(r));
+            for (int r = 1; r <= n; r++) w.putDouble(stops.lat(r));
+            for (int r = 1; r <= n; r++) w.putDouble(stops.lng(r));
+
+            int off = 0;
+            w.putInt(0);
+            for (int[] route : routes) w.putInt(off += route.length);
+            for (int[] route : routes) {
+                for (int row : route) w.putInt(stops.id(row));
+            }
+
+            off = 0;
+            w.putInt(0);
+            for (byte[] str : strings) w.putInt(off += str.length);
+            w.flush();
+            for (byte[] str : strings) out.write(str);
+        }
+    }
+
+    /**
+     * True when bin was written alongside routesJson as it is now (same size and mtime).
+     * False for a routes.bin of another version or one written without a routes.json.
+     */
+    public static boolean matches(Path bin, Path routesJson) throws IOException {
+        if (Files.size(bin) < HEADER_BYTES) return false;
+        ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel ch = FileChannel.open(bin, StandardOpenOption.READ)) {
+            while (h.hasRemaining() && ch.read(h) >= 0) {}
+        }
+        return h.getInt(0) == MAGIC
+                && h.getLong(36) == Files.size(routesJson)
+                && h.getLong(44) == Files.getLastModifiedTime(routesJson).toMillis();
+    }
+
+    /**
+     * Maps the file read-only and copies its columns straight into a StopTable (no per-stop
+     * objects besides the address strings); IOException if it is not a whole routes.bin.
+     */
+    public static PreviousPlan read(Path file) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        ByteBuffer b = map.order(ByteOrder.LITTLE_ENDIAN);
+        if (b.capacity() < HEADER_BYTES || b.getInt(0) != MAGIC) throw new IOException("not a routes.bin: " + file);
+        int n = b.getInt(4);
+        int routeCount = b.getInt(8);
+        int total = b.getInt(12);
+        int stringBytes = b.getInt(16);
+        long expected = HEADER_BYTES + 4L * n + 16L * n + 4L * (routeCount + 1) + 4L * total + 4L * (n + 3) + stringBytes;
+        if (n < 0 || routeCount < 0 || total < 0 || stringBytes < 0 || b.capacity() != expected) {
+            throw new IOException("truncated or corrupt routes.bin: " + file);
+        }
+
+        // Row 0 of each column is the depot; the file's stop columns land at 1..n.
+        int[] ids = new int[n + 1];
+        double[] lat = new double[n + 1];
+        double[] lng = new double[n + 1];
+        lat[0] = b.getDouble(20);
+        lng[0] = b.getDouble(28);
+        b.position(HEADER_BYTES);
+        int[] routeOff = new int[routeCount + 1];
+        int[] routeIds = new int[total];
+        int[] strOff = new int[n + 3];
+        b.asIntBuffer().get(ids, 1, n);
+        b.position(b.position() + 4 * n);
+        b.asDoubleBuffer().get(lat, 1, n);
+        b.position(b.position() + 8 * n);
+        b.asDoubleBuffer().get(lng, 1, n);
+        b.position(b.position() + 8 * n);
+        b.asIntBuffer().get(routeOff);
+        b.position(b.position() + 4 * (routeCount + 1));
+        b.asIntBuffer().get(routeIds);
+        b.position(b.position() + 4 * total);
+        b.asIntBuffer().get(strOff);
+        b.position(b.position() + 4 * (n + 3));
+        byte[] blob = new byte[stringBytes];
+        b.get(blob);
+        if (!ascending(routeOff, total) || !ascending(strOff, stringBytes)) {
+            throw new IOException("corrupt offsets in routes.bin: " + file);
+        }
+
+        String depotAddress = string(blob, strOff, 1);
+        String[] addresses = new String[n + 1];
+        addresses[0] = depotAddress;
+        for (int i = 1; i <= n; i++) addresses[i] = string(blob, strOff, i + 1);
+        int[][] routes = new int[routeCount][];
+        for (int r = 0; r < routeCount; r++) {
+            routes[r] = Arrays.copyOfRange(routeIds, routeOff[r], routeOff[r + 1]);
+        }
+        return new PreviousPlan(file, string(blob, strOff, 0), depotAddress,
+                StopTable.wrap(ids, lat, lng, addresses, StopTable.PREVIOUS_PLAN), routes);
+    }
+
+    /** off starts at 0, never decreases and ends at end. */
+    private static boolean ascending(int[] off, int end) {
+        if (off[0] != 0 || off[off.length - 1] != end) return false;
+        for (int i = 1; i < off.length; i++) {
+            if (off[i] < off[i - 1]) return false;
+        }
+        return true;
+    }
+
+    private static String string(byte[] blob, int[] off, int i) {
+        return new String(blob, off[i], off[i + 1] - off[i], StandardCharsets.UTF_8);
+    }
+
+    /** Little-endian primitives through one reused buffer. */
+    private record Columns(OutputStream out, ByteBuffer buf) {
+        void putInt(int v) throws IOException {
+            if (buf.remaining() < 4) flush();
+            buf.putInt(v);
+        }
+
+        void putDouble(double v) throws IOException {
+            if (buf.remaining() < 8) flush();
+            buf.putDouble(v);
+        }
+
+        void putLong(long v) throws IOException {
+            if (buf.remaining() < 8) flush();
+            buf.putLong(v);
+        }
+
+        void flush() throws IOException {
+            out.write(buf.array(), 0, buf.position());
+            buf.clear();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.onlyeavestroughs.routeplanner.matrix;
+
+/**
+ * Dense n x n travel costs, stored row-major in flat primitive arrays.
+ * Index 0 is the depot; index i (1..n-1) is the i-th geocoded stop.
+ * Unroutable pairs hold Double.POSITIVE_INFINITY.
+ */
+public final class CostMatrix {
+
+    private final int n;
+    private final double[] distances;
+    private final double[] durations;
+
+    public CostMatrix(int n) {
+        this(n, new double[n * n], new double[n * n]);
+    }
+
+    public CostMatrix(int n, double[] distances, double[] durations) {
+        if (distances.length != n * n || durations.length != n * n) {
+            throw new IllegalArgumentException("matrix arrays must be n*n");
+        }
+        this.n = n;
+        this.distances = distances;
+        this.durations = durations;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    /** Meters. */
+    public double distance(int from, int to) {
+        return distances[from * n + to];
+    }
+
+    /** Seconds. */
+    public double duration(int from, int to) {
+        return durations[from * n + to];
+    }
+
+    public void set(int from, int to, double distanceMeters, double durationSeconds) {
+        distances[from * n + to] = distanceMeters;
+        durations[from * n + to] = durationSeconds;
+    }
+
+    /** Meters for depot -> stops... -> depot. */
+    public double tourDistance(int[] stops) {
+        return tour(distances, stops);
+    }
+
+    /** Seconds for depot -> stops... -> depot. */
+    public double tourDuration(int[] stops) {
+        return tour(durations, stops);
+    }
+
+    private double tour(double[] costs, int[] stops) {
+        if (stops.length == 0) return 0;
+        double total = costs[stops[0]] + costs[stops[stops.length - 1] * n];
+        for (int p = 1; p < stops.length; p++) {
+            total += costs[stops[p - 1] * n + stops[p]];
+        }
+        return total;
+    }
+
+    /** Backing row-major array; callers must not resize it. */
+    public double[] distances() {
+        return distances;
+    }
+
+    /** Backing row-major array; callers must not resize it. */
+    public double[] durations() {
+        return durations;
+    }
+}
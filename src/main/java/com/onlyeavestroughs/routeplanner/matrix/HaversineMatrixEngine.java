@@ -0,0 +1,72 @@
+package com.onlyeavestroughs.routeplanner.matrix;
+
+import java.util.stream.IntStream;
+
+/**
+ * Offline cost matrix: great-circle distance times a road detour factor, and duration
+ * from an average speed for the profile.
+ *
+ * Trig inputs are precomputed per point so the inner loop is branch-free arithmetic over
+ * flat arrays; rows are filled in parallel once the matrix is large enough to pay for it.
+ */
+public final class HaversineMatrixEngine implements MatrixEngine {
+
+    private static final double EARTH_RADIUS_M = 6_371_008.8;
+    private static final int PARALLEL_MIN_POINTS = 256;
+
+    private final double detourFactor;
+    private final double metersPerSecond;
+
+    public HaversineMatrixEngine(double detourFactor, double averageSpeedKmh) {
+        if (detourFactor <= 0) throw new IllegalArgumentException("detourFactor must be > 0");
+        if (averageSpeedKmh <= 0) throw new IllegalArgumentException("averageSpeedKmh must be > 0");
+        this.detourFactor = detourFactor;
+        this.metersPerSecond = averageSpeedKmh / 3.6;
+    }
+
+    @Override
+    public MatrixResult compute(double[] lat, double[] lng) {
+        int n = lat.length;
+        double[] latRad = new double[n];
+        double[] lngRad = new double[n];
+        double[] cosLat = new double[n];
+        for (int i = 0; i < n; i++) {
+            latRad[i] = Math.toRadians(lat[i]);
+            lngRad[i] = Math.toRadians(lng[i]);
+            cosLat[i] = Math.cos(latRad[i]);
+        }
+
+        double[] meters = new double[n * n];
+        double[] seconds = new double[n * n];
+        double scale = 2 * EARTH_RADIUS_M * detourFactor;
+        double invSpeed = 1.0 / metersPerSecond;
+
+        IntStream rows = IntStream.range(0, n);
+        if (n >= PARALLEL_MIN_POINTS) rows = rows.parallel();
+        rows.forEach(i -> {
+            double lat1 = latRad[i];
+            double lng1 = lngRad[i];
+            double cos1 = cosLat[i];
+            int base = i * n;
+            for (int j = 0; j < n; j++) {
+                double sLat = Math.sin((latRad[j] - lat1) * 0.5);
+                double sLng = Math.sin((lngRad[j] - lng1) * 0.5);
+                double a = sLat * sLat + cos1 * cosLat[j] * sLng * sLng;
+                double d = scale * Math.asin(Math.sqrt(Math.min(1.0, a)));
+                meters[base + j] = d;
+                seconds[base + j] = d * invSpeed;
+            }
+        });
+
+        return new MatrixResult(new CostMatrix(n, meters, seconds), "haversine", 0, 0, 0);
+    }
+
+    public static double greatCircleMeters(double lat1, double lng1, double lat2, double lng2) {
+        double p1 = Math.toRadians(lat1);
+        double p2 = Math.toRadians(lat2);
+        double sLat = Math.sin((p2 - p1) * 0.5);
+        double sLng = Math.sin(Math.toRadians(lng2 - lng1) * 0.5);
+        double a = sLat * sLat + Math.cos(p1) * Math.cos(p2) * sLng * sLng;
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.sqrt(Math.min(1.0, a)));
+    }
+}
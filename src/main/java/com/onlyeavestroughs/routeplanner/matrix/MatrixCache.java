@@ -0,0 +1,208 @@
+package com.onlyeavestroughs.routeplanner.matrix;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk cache of single matrix cells, one append-only file per ORS profile
+ * (cache/matrix/&lt;profile&gt;.bin).
+ *
+ * Cells are keyed by the from/to coordinates rounded to 1e-6 degrees, so adding a stop
+ * to a list only needs its own row and column fetched. Records are a fixed 24 bytes
+ * (from key, to key, float meters, float seconds).
+ * The in-memory index is an open-addressing table over primitive arrays.
+ *
+ * Several processes may share the file (serve and prefetch, say). It is written only in
+ * append mode and under an exclusive FileLock, and each append first indexes the records
+ * other processes added since. A torn tail can then only be a writer that died
+ * mid-append, so it is truncated under the same lock.
+ */
+public final class MatrixCache implements Closeable {
+
+    private static final int RECORD_BYTES = 24;
+    /** FileLock only excludes other processes; caches on the same file in this JVM share a monitor. */
+    private static final ConcurrentHashMap<Path, Object> FILE_MONITORS = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final Object fileMonitor;
+    private FileChannel reader;
+    private FileChannel appender;
+    /** Bytes of the file already in the index. */
+    private long indexed;
+
+    private long[] fromKeys;
+    private long[] toKeys;
+    private float[] meters;
+    private float[] seconds;
+    private boolean[] used;
+    private int size;
+
+    private MatrixCache(Path file) {
+        this.file = file;
+        this.fileMonitor = FILE_MONITORS.computeIfAbsent(file.toAbsolutePath().normalize(), p -> new Object());
+        allocate(1024);
+    }
+
+    public static MatrixCache open(Path cacheRoot, String profile) throws IOException {
+        Path dir = cacheRoot.resolve("matrix");
+        Files.createDirectories(dir);
+        MatrixCache cache = new MatrixCache(dir.resolve(profile + ".bin"));
+        cache.load();
+        return cache;
+    }
+
+    /** Packs a coordinate into one long: lat and lng in micro-degrees. */
+    public static long pointKey(double lat, double lng) {
+        long latE6 = Math.round(lat * 1e6);
+        long lngE6 = Math.round(lng * 1e6);
+        return (latE6 << 32) | (lngE6 & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Copies the cached cell into matrix[from][to] and returns true, or returns false on a miss.
+     */
+    public synchronized boolean fill(long fromKey, long toKey, CostMatrix m, int from, int to) {
+        int slot = find(fromKey, toKey);
+        if (!used[slot]) return false;
+        m.set(from, to, meters[slot], seconds[slot]);
+        return true;
+    }
+
+    /** Stores cells and appends them to disk in one forced write. */
+    public synchronized void putAll(long[] fromKeys, long[] toKeys, double[] metersIn, double[] secondsIn, int count) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(count * RECORD_BYTES);
+        for (int i = 0; i < count; i++) {
+            buf.putLong(fromKeys[i]).putLong(toKeys[i]).putFloat((float) metersIn[i]).putFloat((float) secondsIn[i]);
+        }
+        buf.flip();
+        synchronized (fileMonitor) {
+            FileLock lock = appender.lock();
+            try {
+                catchUp();
+                while (buf.hasRemaining()) {
+                    appender.write(buf);
+                }
+                appender.force(false);
+                indexed = appender.size();
+            } finally {
+                lock.release();
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            insert(fromKeys[i], toKeys[i], (float) metersIn[i], (float) secondsIn[i]);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (appender != null) appender.close();
+        } finally {
+            if (reader != null) reader.close();
+        }
+    }
+
+    private void load() throws IOException {
+        appender = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        reader = FileChannel.open(file, StandardOpenOption.READ);
+        synchronized (fileMonitor) {
+            FileLock lock = appender.lock();
+            try {
+                catchUp();
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Indexes the records appended since the last call and drops a torn tail. Only with the
+     * file lock held: then no other writer is mid-append.
+     */
+    private void catchUp() throws IOException {
+        long len = reader.size();
+        long whole = len - (len % RECORD_BYTES);
+
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_BYTES * 4096);
+        long pos = indexed;
+        while (pos < whole) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), whole - pos));
+            while (buf.hasRemaining()) {
+                if (reader.read(buf, pos + buf.position()) < 0) break;
+            }
+            buf.flip();
+            while (buf.remaining() >= RECORD_BYTES) {
+                insert(buf.getLong(), buf.getLong(), buf.getFloat(), buf.getFloat());
+            }
+            pos += buf.limit();
+        }
+
+        if (whole != len) {
+            appender.truncate(whole);
+            appender.force(true);
+        }
+        indexed = whole;
+    }
+
+    private void insert(long from, long to, float m, float s) {
+        if ((size + 1) * 2 > used.length) grow();
+        int slot = find(from, to);
+        if (!used[slot]) {
+            used[slot] = true;
+            fromKeys[slot] = from;
+            toKeys[slot] = to;
+            size++;
+        }
+        meters[slot] = m;
+        seconds[slot] = s;
+    }
+
+    private int find(long from, long to) {
+        int mask = used.length - 1;
+        long h = from * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(to * 0xC2B2AE3D27D4EB4FL, 31);
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (used[slot] && (fromKeys[slot] != from || toKeys[slot] != to)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldFrom = fromKeys;
+        long[] oldTo = toKeys;
+        float[] oldMeters = meters;
+        float[] oldSeconds = seconds;
+        boolean[] oldUsed = used;
+
+        allocate(oldUsed.length * 2);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (!oldUsed[i]) continue;
+            int slot = find(oldFrom[i], oldTo[i]);
+            used[slot] = true;
+            fromKeys[slot] = oldFrom[i];
+            toKeys[slot] = oldTo[i];
+            meters[slot] = oldMeters[i];
+            seconds[slot] = oldSeconds[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        fromKeys = new long[capacity];
+        toKeys = new long[capacity];
+        meters = new float[capacity];
+        seconds = new float[capacity];
+        used = new boolean[capacity];
+    }
+}
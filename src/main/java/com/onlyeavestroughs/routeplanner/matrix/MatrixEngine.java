@@ -0,0 +1,9 @@
+package com.onlyeavestroughs.routeplanner.matrix;
+
+/**
+ * Computes the travel-cost matrix for a set of points (index 0 = depot).
+ */
+public interface MatrixEngine {
+
+    MatrixResult compute(double[] lat, double[] lng) throws Exception;
+}
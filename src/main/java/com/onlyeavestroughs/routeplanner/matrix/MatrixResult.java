@@ -0,0 +1,12 @@
+package com.onlyeavestroughs.routeplanner.matrix;
+
+/**
+ * Output of the matrix stage plus where the cells came from.
+ */
+public record MatrixResult(
+        CostMatrix matrix,
+        String engine,
+        int cellsFromCache,
+        int cellsFetched,
+        int requests
+) {}
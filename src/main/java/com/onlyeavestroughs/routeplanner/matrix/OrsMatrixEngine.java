@@ -0,0 +1,156 @@
+package com.onlyeavestroughs.routeplanner.matrix;
+
+import com.onlyeavestroughs.routeplanner.ors.OrsMatrixClient;
+import com.onlyeavestroughs.routeplanner.ors.OrsMatrixClient.MatrixTile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Builds a CostMatrix from the ORS Matrix API, fetching only cells missing from MatrixCache.
+ *
+ * Rows are grouped by their exact set of missing columns, and each group is cut into
+ * tileSize x tileSize requests. Cells between points with the same key (the diagonal)
+ * need no fetch, but may ride along in a tile: rows are first grouped by their missing
+ * columns plus their same-key ones, so a cold run (or a block of rows cut short by an
+ * interrupted run) tiles as one block, ceil(n/tileSize)^2 requests when cold. A row left
+ * alone by that is grouped by its missing columns only: adding one stop to a cached list
+ * yields two groups (the new row, and the new column for everyone else), i.e. O(n) new
+ * cells. Same-key cells inside a fetched tile keep their zero. Tiles are fetched
+ * concurrently on virtual threads.
+ */
+public final class OrsMatrixEngine implements MatrixEngine {
+
+    private final OrsMatrixClient client;
+    private final MatrixCache cache;
+    private final int tileSize;
+    private final int concurrency;
+
+    public OrsMatrixEngine(OrsMatrixClient client, MatrixCache cache, int tileSize, int concurrency) {
+        this.client = client;
+        this.cache = cache;
+        this.tileSize = Math.max(1, tileSize);
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    @Override
+    public MatrixResult compute(double[] lat, double[] lng) throws Exception {
+        int n = lat.length;
+        CostMatrix m = new CostMatrix(n);
+
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = MatrixCache.pointKey(lat[i], lng[i]);
+        }
+
+        int fromCache = 0;
+        BitSet[] missing = new BitSet[n];
+        Map<BitSet, List<Integer>> withSame = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            missing[i] = new BitSet(n);
+            BitSet same = new BitSet(n);
+            for (int j = 0; j < n; j++) {
+                if (keys[i] == keys[j]) {
+                    m.set(i, j, 0, 0);
+                    same.set(j);
+                } else if (cache.fill(keys[i], keys[j], m, i, j)) {
+                    fromCache++;
+                } else {
+                    missing[i].set(j);
+                }
+            }
+            if (missing[i].isEmpty()) continue;
+            same.or(missing[i]);
+            withSame.computeIfAbsent(same, k -> new ArrayList<>()).add(i);
+        }
+        Map<BitSet, List<Integer>> groups = new LinkedHashMap<>();
+        for (Map.Entry<BitSet, List<Integer>> g : withSame.entrySet()) {
+            if (g.getValue().size() > 1) {
+                groups.computeIfAbsent(g.getKey(), k -> new ArrayList<>()).addAll(g.getValue());
+            } else {
+                int i = g.getValue().get(0);
+                groups.computeIfAbsent(missing[i], k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        List<int[][]> tiles = new ArrayList<>();
+        int fetched = 0;
+        for (Map.Entry<BitSet, List<Integer>> g : groups.entrySet()) {
+            int[] rows = g.getValue().stream().mapToInt(Integer::intValue).toArray();
+            int[] cols = g.getKey().stream().toArray();
+            for (int r = 0; r < rows.length; r += tileSize) {
+                for (int c = 0; c < cols.length; c += tileSize) {
+                    int[] src = Arrays.copyOfRange(rows, r, Math.min(rows.length, r + tileSize));
+                    int[] dst = Arrays.copyOfRange(cols, c, Math.min(cols.length, c + tileSize));
+                    tiles.add(new int[][]{src, dst});
+                    for (int a : src) {
+                        for (int b : dst) if (keys[a] != keys[b]) fetched++;
+                    }
+                }
+            }
+        }
+
+        fetchTiles(tiles, lat, lng, keys, m);
+        return new MatrixResult(m, "ors", fromCache, fetched, tiles.size());
+    }
+
+    private void fetchTiles(List<int[][]> tiles, double[] lat, double[] lng, long[] keys, CostMatrix m) throws Exception {
+        if (tiles.isEmpty()) return;
+
+        Semaphore inFlight = new Semaphore(concurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int[][] tile : tiles) {
+                futures.add(executor.submit(() -> {
+                    inFlight.acquire();
+                    try {
+                        fetchTile(tile[0], tile[1], lat, lng, keys, m);
+                    } finally {
+                        inFlight.release();
+                    }
+                    return null;
+                }));
+            }
+            try {
+                for (Future<?> f : futures) f.get();
+            } catch (ExecutionException e) {
+                executor.shutdownNow();
+                if (e.getCause() instanceof Exception cause) throw cause;
+                throw e;
+            }
+        }
+    }
+
+    private void fetchTile(int[] src, int[] dst, double[] lat, double[] lng, long[] keys, CostMatrix m) throws Exception {
+        MatrixTile tile = client.fetch(lat, lng, src, dst);
+
+        int cells = src.length * dst.length;
+        long[] fromKeys = new long[cells];
+        long[] toKeys = new long[cells];
+        double[] meters = new double[cells];
+        double[] seconds = new double[cells];
+        int count = 0;
+        int k = 0;
+        for (int r = 0; r < src.length; r++) {
+            for (int c = 0; c < dst.length; c++, k++) {
+                if (keys[src[r]] == keys[dst[c]]) continue; // stays 0, as set in compute
+                m.set(src[r], dst[c], tile.meters()[k], tile.seconds()[k]);
+                fromKeys[count] = keys[src[r]];
+                toKeys[count] = keys[dst[c]];
+                meters[count] = tile.meters()[k];
+                seconds[count] = tile.seconds()[k];
+                count++;
+            }
+        }
+        cache.putAll(fromKeys, toKeys, meters, seconds, count);
+    }
+}
@@ -0,0 +1,141 @@
+package com.onlyeavestroughs.routeplanner.optimize;
+
+import com.onlyeavestroughs.routeplanner.cluster.Territories;
+import com.onlyeavestroughs.routeplanner.optimize.OptimizeResult.WorkerStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Routes each territory on its own: one single-crew multi-start search per territory over
+ * the territory's slice of the matrix (depot + its stops), all territories in parallel.
+ *
+ * The starts and threads budgets are shared out across territories, and each territory's
+ * search is seeded from the base seed plus its index, so results stay reproducible for a
+ * given seed and number of starts, whatever the thread count.
+ * With more territories than threads some wait for a thread, so the time budget is one
+ * deadline for the whole call: a territory gets whatever time is left when it starts.
+ * Route k of the result is territory k.
+ */
+public final class ClusteredOptimizer {
+
+    private final double[] costs;
+    private final double[] lat;
+    private final double[] lng;
+    private final Territories territories;
+    private final TimeWindows windows;
+    private final int starts;
+    private final int threads;
+    private final long seed;
+    private final int plateauIterations;
+    private final int maxIterations;
+    private final long timeBudgetMs;
+
+    /**
+     * @param costs    row-major n x n costs over the full stop list, index 0 = depot
+     * @param windows  time windows over the same indices, or null
+     * @param starts   seeded starts in all (see MultiStartOptimizer); threads: how many run at once
+     */
+    public ClusteredOptimizer(double[] costs, double[] lat, double[] lng, Territories territories, TimeWindows windows,
+                              int starts, int threads, long seed, int plateauIterations, int maxIterations,
+                              long timeBudgetMs) {
+        this.costs = costs;
+        this.lat = lat;
+        this.lng = lng;
+        this.territories = territories;
+        this.windows = windows;
+        this.starts = Math.max(1, starts);
+        this.threads = Math.max(1, threads);
+        this.seed = seed;
+        this.plateauIterations = plateauIterations;
+        this.maxIterations = maxIterations;
+        this.timeBudgetMs = timeBudgetMs;
+    }
+
+    public OptimizeResult optimize() throws Exception {
+        long start = System.nanoTime();
+        long deadline = start + Math.max(1, timeBudgetMs) * 1_000_000L;
+        int k = territories.count();
+        int perTerritory = Math.max(1, starts / Math.max(1, k));
+        int threadsPerTerritory = Math.max(1, threads / Math.max(1, k));
+
+        List<Future<OptimizeResult>> futures = new ArrayList<>(k);
+        List<OptimizeResult> results = new ArrayList<>(k);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(k, threads)));
+        try {
+            for (int t = 0; t < k; t++) {
+                int territory = t;
+                futures.add(executor.submit(() -> optimizeTerritory(territory, perTerritory, threadsPerTerritory, deadline)));
+            }
+            for (Future<OptimizeResult> f : futures) {
+                try {
+                    results.add(f.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception cause) throw cause;
+                    throw e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int[][] routes = new int[k][];
+        double cost = 0;
+        double constructionCost = 0;
+        int passes = 0;
+        boolean timedOut = false;
+        List<WorkerStats> stats = new ArrayList<>();
+        for (int t = 0; t < k; t++) {
+            OptimizeResult r = results.get(t);
+            int[] members = territories.members()[t];
+            int[] route = r.routes().length == 0 ? new int[0] : r.routes()[0];
+            routes[t] = new int[route.length];
+            for (int p = 0; p < route.length; p++) {
+                routes[t][p] = members[route[p] - 1];
+            }
+            cost += r.cost();
+            constructionCost += r.constructionCost();
+            passes += r.passes();
+            timedOut |= r.timedOut();
+            for (WorkerStats w : r.workers()) {
+                stats.add(new WorkerStats(t * perTerritory + w.worker(), w.seed(), w.iterations(), w.improvements(),
+                        w.startCost(), w.bestCost(), w.elapsedMs(), w.stopReason()));
+            }
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+        return new OptimizeResult(routes, cost, constructionCost, passes, elapsedMs, timedOut, stats);
+    }
+
+    private OptimizeResult optimizeTerritory(int t, int territoryStarts, int territoryThreads, long deadline) {
+        int[] members = territories.members()[t];
+        int m = members.length + 1;
+        int n = lat.length;
+
+        // Local index 0 is the depot, local index p is members[p - 1].
+        int[] global = new int[m];
+        for (int p = 1; p < m; p++) global[p] = members[p - 1];
+        double[] subLat = new double[m];
+        double[] subLng = new double[m];
+        double[] subCosts = new double[m * m];
+        for (int a = 0; a < m; a++) {
+            int ga = global[a];
+            subLat[a] = lat[ga];
+            subLng[a] = lng[ga];
+            for (int b = 0; b < m; b++) {
+                subCosts[a * m + b] = costs[ga * n + global[b]];
+            }
+        }
+
+        TimeWindows subWindows = windows == null || !windows.constrained() ? null : windows.subset(global);
+        // At least 1 ms: a territory picked up after the deadline still gets its construction.
+        long budgetMs = Math.max(1, (deadline - System.nanoTime()) / 1_000_000L);
+        RouteOptimizer base = new RouteOptimizer(subCosts, subLat, subLng, 1, members.length, budgetMs, subWindows);
+        return new MultiStartOptimizer(base, territoryStarts, territoryThreads, seed + t, plateauIterations,
+                maxIterations, budgetMs).optimize();
+    }
+}
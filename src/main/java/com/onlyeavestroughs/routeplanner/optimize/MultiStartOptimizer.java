@@ -0,0 +1,147 @@
+package com.onlyeavestroughs.routeplanner.optimize;
+
+import com.onlyeavestroughs.routeplanner.optimize.OptimizeResult.WorkerStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Parallel multi-start iterated local search on a ForkJoinPool.
+ *
+ * Worker 0 starts from the plain sweep; the others start from a sweep rotated by their own
+ * SplittableRandom. Each worker then loops perturb -> local search from its best solution
+ * until it goes plateauIterations without improving, hits maxIterations, or the shared
+ * deadline passes. Every improvement is published to a shared best, ordered by cost then
+ * worker index. Workers never read each other's solutions, so a given seed and number of
+ * starts reproduce the same routes unless the time budget cuts a worker short. How many
+ * threads run the starts does not matter, so plans can be compared across machines.
+ */
+public final class MultiStartOptimizer {
+
+    private static final double EPS = 1e-9;
+
+    private final RouteOptimizer base;
+    private final int workers;
+    private final int threads;
+    private final long seed;
+    private final int plateauIterations;
+    private final int maxIterations;
+    private final long budgetNanos;
+
+    /** One thread per start. */
+    public MultiStartOptimizer(RouteOptimizer base, int workers, long seed, int plateauIterations, int maxIterations, long timeBudgetMs) {
+        this(base, workers, workers, seed, plateauIterations, maxIterations, timeBudgetMs);
+    }
+
+    /** starts: seeded workers (they decide the result); threads: how many run at once. */
+    public MultiStartOptimizer(RouteOptimizer base, int starts, int threads, long seed, int plateauIterations,
+                               int maxIterations, long timeBudgetMs) {
+        this.base = base;
+        this.workers = Math.max(1, starts);
+        this.threads = Math.max(1, Math.min(threads, this.workers));
+        this.seed = seed;
+        this.plateauIterations = Math.max(1, plateauIterations);
+        this.maxIterations = Math.max(0, maxIterations);
+        this.budgetNanos = Math.max(1, timeBudgetMs) * 1_000_000L;
+    }
+
+    public OptimizeResult optimize() {
+        long start = System.nanoTime();
+        long deadline = start + budgetNanos;
+        AtomicReference<Best> shared = new AtomicReference<>();
+
+        List<ForkJoinTask<WorkerStats>> tasks = new ArrayList<>(workers);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (int w = 0; w < workers; w++) {
+                int worker = w;
+                tasks.add(pool.submit(() -> runWorker(worker, deadline, shared)));
+            }
+
+            List<WorkerStats> stats = new ArrayList<>(workers);
+            for (ForkJoinTask<WorkerStats> t : tasks) {
+                stats.add(t.join());
+            }
+
+            Best winner = shared.get();
+            int totalIterations = stats.stream().mapToInt(WorkerStats::iterations).sum();
+            boolean timedOut = stats.stream().anyMatch(s -> s.stopReason().equals("time budget"));
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+            return new OptimizeResult(winner.routes(), winner.cost(), winner.constructionCost(),
+                    totalIterations, elapsedMs, timedOut, stats);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private WorkerStats runWorker(int worker, long deadline, AtomicReference<Best> shared) {
+        long start = System.nanoTime();
+        long workerSeed = seed * 0x9E3779B97F4A7C15L + worker;
+        SplittableRandom rnd = new SplittableRandom(workerSeed);
+
+        RouteOptimizer search = base.newWorker();
+        search.startClock(deadline);
+        search.construct(worker == 0 ? null : rnd);
+        double constructionCost = search.totalCost();
+        search.localSearch();
+
+        int[][] best = search.snapshot();
+        double bestCost = search.totalCost();
+        double startCost = bestCost;
+        publish(shared, new Best(bestCost, worker, best, constructionCost));
+
+        int iterations = 0;
+        int improvements = 0;
+        int sinceImprovement = 0;
+        String stopReason = "plateau";
+        int strength = Math.max(2, Math.min(10, best.length * 2));
+
+        while (true) {
+            if (search.timedOut() || System.nanoTime() - deadline >= 0) {
+                stopReason = "time budget";
+                break;
+            }
+            if (iterations >= maxIterations) {
+                stopReason = "max iterations";
+                break;
+            }
+            if (sinceImprovement >= plateauIterations) {
+                break;
+            }
+
+            search.restore(best);
+            search.perturb(rnd, strength);
+            search.localSearch();
+            iterations++;
+
+            double cost = search.totalCost();
+            if (cost < bestCost - EPS) {
+                best = search.snapshot();
+                bestCost = cost;
+                improvements++;
+                sinceImprovement = 0;
+                publish(shared, new Best(bestCost, worker, best, constructionCost));
+            } else {
+                sinceImprovement++;
+            }
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+        return new WorkerStats(worker, workerSeed, iterations, improvements, startCost, bestCost, elapsedMs, stopReason);
+    }
+
+    private static void publish(AtomicReference<Best> shared, Best candidate) {
+        shared.accumulateAndGet(candidate, (cur, next) -> cur == null || next.beats(cur) ? next : cur);
+    }
+
+    private record Best(double cost, int worker, int[][] routes, double constructionCost) {
+        boolean beats(Best other) {
+            if (cost < other.cost - EPS) return true;
+            return cost <= other.cost + EPS && worker < other.worker;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.onlyeavestroughs.routeplanner.optimize;
+
+import java.util.List;
+
+/**
+ * Optimized routes as matrix indices (1..n-1; the depot, index 0, is implicit at both ends).
+ * workers is empty for a single-start run. With binding time windows, cost includes the
+ * time-warp penalty (see RouteOptimizer).
+ */
+public record OptimizeResult(
+        int[][] routes,
+        double cost,
+        double constructionCost,
+        int passes,
+        long elapsedMs,
+        boolean timedOut,
+        List<WorkerStats> workers
+) {
+    public record WorkerStats(
+            int worker,
+            long seed,
+            int iterations,
+            int improvements,
+            double startCost,
+            double bestCost,
+            long elapsedMs,
+            String stopReason
+    ) {}
+}
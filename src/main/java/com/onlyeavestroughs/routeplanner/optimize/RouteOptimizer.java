@@ -0,0 +1,851 @@
+package com.onlyeavestroughs.routeplanner.optimize;
+
+import com.onlyeavestroughs.routeplanner.spatial.KdTree;
+import com.onlyeavestroughs.routeplanner.spatial.NeighborLists;
+import com.onlyeavestroughs.routeplanner.spatial.Planar;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Multi-vehicle route optimizer over a primitive cost matrix.
+ *
+ * Construction: sweep around the depot, cut into crews contiguous sectors of near-equal
+ * stop counts, each ordered by nearest neighbour. Improvement: 2-opt within a route and
+ * Or-opt (move a run of 1-3 stops, within or between routes) until no move improves or
+ * the time budget runs out. maxStopsPerRoute keeps the crews' workloads balanced.
+ *
+ * The matrix may be asymmetric: 2-opt uses forward/backward prefix sums so a reversal
+ * is still priced in O(1).
+ *
+ * From NEIGHBOR_MIN_POINTS up, both moves only consider new edges to each stop's
+ * NEIGHBORS nearest stops (from a KdTree), which makes a pass roughly O(n * k)
+ * instead of O(n^2).
+ *
+ * repair() starts from an existing plan instead: new stops go in by cheapest insertion,
+ * then Or-opt runs only around stops whose neighbourhood changed and 2-opt only on routes
+ * that changed, so the work follows the size of the change rather than n.
+ *
+ * With TimeWindows that can bind, each route also keeps time-warp summaries of every
+ * prefix (depot + first q stops) and suffix (stop p.. + depot), rebuilt only when the
+ * route changes. A move's schedule is then the concatenation of a prefix, the moved stops
+ * and a suffix, so inserting or relocating a segment between routes is checked in O(1)
+ * without walking the rest of either route. Moves within one route that reorder a middle
+ * part (2-opt, Or-opt inside a route) walk that part, but only for moves whose travel
+ * saving could beat the current best even with all of the route's time warp removed.
+ * Time warp costs TIME_WARP_PENALTY per second on top of travel cost.
+ */
+public final class RouteOptimizer {
+
+    private static final double EPS = 1e-9;
+    /** Stand-in for a cell ORS could not route (null, infinite or NaN): finite, so sums stay comparable. */
+    static final double UNROUTABLE = 1e9;
+    private static final int MAX_SEGMENT = 3;
+    private static final int NEIGHBORS = 16;
+    private static final int NEIGHBOR_MIN_POINTS = 200;
+    /** Cost units per second of time warp; high enough that any on-time plan beats a late one. */
+    static final double TIME_WARP_PENALTY = 1_000;
+
+    private final int n;
+    private final double[] c;
+    private final double[] lat;
+    private final double[] lng;
+    private final int crews;
+    private final int maxStops;
+    private final long budgetNanos;
+    private final NeighborLists neighbors;
+    private final TimeWindows tw;
+
+    private int[][] routes;
+    private int[] len;
+    private int[] routeOf;
+    private int[] pos;
+    private double bestDelta;
+    private int bestRoute;
+    private int bestPos;
+    private long deadline;
+    private boolean timedOut;
+
+    // Time-warp summaries (tw only): pre*[k][q] covers the depot and the first q stops of
+    // route k, suf*[k][p] stops p.. and the return to the depot. D = duration, W = time
+    // warp, E/L = earliest/latest start that achieves D and W.
+    private double[][] preD, preW, preE, preL;
+    private double[][] sufD, sufW, sufE, sufL;
+    private double[] warp;
+    private double accD, accW, accE, accL;
+    private int accLast;
+    private double removedWarp;
+
+    /**
+     * @param costs     row-major n x n costs, index 0 = depot
+     * @param maxStops  per-route stop cap; 0 = ceil(stops / crews) + 10%
+     */
+    public RouteOptimizer(double[] costs, double[] lat, double[] lng, int crews, int maxStops, long timeBudgetMs) {
+        this(costs, lat, lng, crews, maxStops, timeBudgetMs, null);
+    }
+
+    /** @param windows time windows and service times; null, or unconstrained, ignores time */
+    public RouteOptimizer(double[] costs, double[] lat, double[] lng, int crews, int maxStops, long timeBudgetMs,
+                          TimeWindows windows) {
+        this(Math.max(1, crews), Planar.capPerGroup(lat.length - 1, Math.max(1, crews), maxStops), timeBudgetMs,
+                sanitize(costs), lat, lng,
+                lat.length >= NEIGHBOR_MIN_POINTS ? new KdTree(lat, lng).neighborLists(NEIGHBORS) : null,
+                windows != null && windows.constrained() ? windows : null);
+    }
+
+    private RouteOptimizer(int crews, int maxStops, long timeBudgetMs, double[] c, double[] lat, double[] lng,
+                           NeighborLists neighbors, TimeWindows tw) {
+        this.n = lat.length;
+        this.neighbors = neighbors;
+        this.tw = tw;
+        this.c = c;
+        this.lat = lat;
+        this.lng = lng;
+        this.crews = crews;
+        this.maxStops = maxStops;
+        this.budgetNanos = Math.max(1, timeBudgetMs) * 1_000_000L;
+    }
+
+    /** Another search over the same (shared, read-only) matrix, for parallel workers. */
+    RouteOptimizer newWorker() {
+        return new RouteOptimizer(crews, maxStops, budgetNanos / 1_000_000L, c, lat, lng, neighbors, tw);
+    }
+
+    /** costs with every non-finite cell replaced by UNROUTABLE, as a copy. */
+    static double[] sanitize(double[] costs) {
+        double[] out = new double[costs.length];
+        for (int i = 0; i < costs.length; i++) {
+            double v = costs[i];
+            out[i] = Double.isFinite(v) ? v : UNROUTABLE;
+        }
+        return out;
+    }
+
+    /** Single deterministic start: sweep construction, then local search. */
+    public OptimizeResult optimize() {
+        long start = System.nanoTime();
+        startClock(start + budgetNanos);
+
+        construct(null);
+        double constructionCost = totalCost();
+        int passes = localSearch();
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+        return new OptimizeResult(snapshot(), totalCost(), constructionCost, passes, elapsedMs, timedOut, List.of());
+    }
+
+    /**
+     * Incremental re-plan. previous holds the last plan's routes as matrix indices, with -1
+     * where a stop has since been removed; inserted are the stops to add. Routes beyond
+     * crews are dissolved and their stops inserted too.
+     */
+    public OptimizeResult repair(int[][] previous, int[] inserted) {
+        long start = System.nanoTime();
+        startClock(start + budgetNanos);
+
+        routes = new int[crews][];
+        len = new int[crews];
+        routeOf = new int[n];
+        pos = new int[n];
+        Arrays.fill(routeOf, -1);
+        initTimes();
+
+        WorkQueue work = new WorkQueue(n);
+        boolean[] touched = new boolean[crews];
+        int[] toInsert = Arrays.copyOf(inserted, n);
+        int inserts = inserted.length;
+        for (int k = 0; k < Math.max(crews, previous.length); k++) {
+            int[] r = k < previous.length ? previous[k] : new int[0];
+            int[] keep = new int[r.length];
+            int m = 0;
+            for (int p = 0; p < r.length; p++) {
+                if (r[p] >= 0) {
+                    keep[m++] = r[p];
+                } else if (k < crews) {
+                    // The stops either side of a removed one lost an edge.
+                    if (m > 0) work.push(keep[m - 1]);
+                    if (p + 1 < r.length && r[p + 1] >= 0) work.push(r[p + 1]);
+                    touched[k] = true;
+                }
+            }
+            if (k < crews) {
+                routes[k] = Arrays.copyOf(keep, Math.max(maxStops, m) + MAX_SEGMENT);
+                len[k] = m;
+                reindex(k, 0, m - 1);
+                retime(k);
+            } else {
+                System.arraycopy(keep, 0, toInsert, inserts, m);
+                inserts += m;
+            }
+        }
+
+        for (int i = 0; i < inserts; i++) {
+            int x = toInsert[i];
+            insertCheapest(x);
+            touched[routeOf[x]] = true;
+            work.push(x);
+        }
+        double constructionCost = totalCost();
+
+        int rounds = focusedSearch(work, touched);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+        return new OptimizeResult(snapshot(), totalCost(), constructionCost, rounds, elapsedMs, timedOut, List.of());
+    }
+
+    void startClock(long deadlineNanos) {
+        deadline = deadlineNanos;
+        timedOut = false;
+    }
+
+    boolean timedOut() {
+        return timedOut;
+    }
+
+    /** 2-opt + Or-opt to a local optimum (or the deadline). Returns passes made. */
+    int localSearch() {
+        int passes = 0;
+        boolean improved = true;
+        while (improved && !timeUp()) {
+            improved = false;
+            for (int k = 0; k < crews; k++) {
+                improved |= twoOpt(k);
+            }
+            improved |= orOpt();
+            passes++;
+        }
+        return passes;
+    }
+
+    /**
+     * Kicks the current solution out of its local optimum: relocates a few random stops to
+     * random positions (respecting the per-route cap) and reverses one random segment.
+     */
+    void perturb(SplittableRandom rnd, int moves) {
+        for (int m = 0; m < moves; m++) {
+            int k = rnd.nextInt(crews);
+            if (len[k] == 0) continue;
+            int s = rnd.nextInt(len[k]);
+            int k2 = rnd.nextInt(crews);
+            if (k2 != k && len[k2] + 1 > maxStops) continue;
+            int q = rnd.nextInt(len[k2] + 1);
+            if (k2 == k && (q == s || q == s + 1)) continue;
+            moveSegment(k, s, 1, k2, q);
+        }
+        int k = rnd.nextInt(crews);
+        if (len[k] >= 3) {
+            int i = rnd.nextInt(len[k] - 1);
+            int j = i + 1 + rnd.nextInt(Math.min(len[k] - i - 1, 20));
+            reverse(routes[k], i, j);
+            reindex(k, i, j);
+            retime(k);
+        }
+    }
+
+    int[][] snapshot() {
+        int[][] out = new int[crews][];
+        for (int k = 0; k < crews; k++) {
+            out[k] = Arrays.copyOf(routes[k], len[k]);
+        }
+        return out;
+    }
+
+    void restore(int[][] solution) {
+        for (int k = 0; k < crews; k++) {
+            int[] r = solution[k];
+            if (routes[k].length < r.length) routes[k] = new int[r.length + MAX_SEGMENT];
+            System.arraycopy(r, 0, routes[k], 0, r.length);
+            len[k] = r.length;
+            reindex(k, 0, len[k] - 1);
+            retime(k);
+        }
+    }
+
+    // ---------------------------------------------------------------- construction
+
+    /**
+     * Sweep construction. With rnd, the sweep starts at a random bearing instead of the
+     * widest empty wedge, which gives each parallel worker a different starting point.
+     */
+    void construct(SplittableRandom rnd) {
+        int stops = n - 1;
+        routes = new int[crews][Math.max(1, maxStops + MAX_SEGMENT)];
+        len = new int[crews];
+        routeOf = new int[n];
+        pos = new int[n];
+        initTimes();
+        if (stops == 0) return;
+
+        int[] order = Planar.sweepOrder(lat, lng);
+        if (rnd != null) {
+            int shift = rnd.nextInt(stops);
+            int[] rotated = new int[stops];
+            for (int i = 0; i < stops; i++) rotated[i] = order[(shift + i) % stops];
+            order = rotated;
+        }
+        int base = stops / crews;
+        int extra = stops % crews;
+        int p = 0;
+        for (int k = 0; k < crews; k++) {
+            int size = base + (k < extra ? 1 : 0);
+            int[] sector = Arrays.copyOfRange(order, p, p + size);
+            p += size;
+            if (tw == null) nearestNeighbour(sector, routes[k]);
+            else earliestStartNext(sector, routes[k]);
+            len[k] = size;
+            reindex(k, 0, size - 1);
+            retime(k);
+        }
+    }
+
+    private void nearestNeighbour(int[] sector, int[] into) {
+        boolean[] taken = new boolean[sector.length];
+        int cur = 0;
+        for (int p = 0; p < sector.length; p++) {
+            int best = -1;
+            double bestCost = Double.MAX_VALUE;
+            for (int q = 0; q < sector.length; q++) {
+                if (taken[q]) continue;
+                double d = cost(cur, sector[q]);
+                if (d < bestCost) {
+                    bestCost = d;
+                    best = q;
+                }
+            }
+            taken[best] = true;
+            cur = sector[best];
+            into[p] = cur;
+        }
+    }
+
+    /**
+     * Nearest neighbour's counterpart with time windows: next is the stop whose service can
+     * start soonest, nudged towards stops whose window closes within URGENT_SECONDS.
+     */
+    private void earliestStartNext(int[] sector, int[] into) {
+        final double urgentSeconds = 4 * 3600;
+        boolean[] taken = new boolean[sector.length];
+        int cur = 0;
+        double now = tw.earliest[0];
+        for (int p = 0; p < sector.length; p++) {
+            int best = -1;
+            double bestKey = Double.MAX_VALUE;
+            for (int q = 0; q < sector.length; q++) {
+                if (taken[q]) continue;
+                int x = sector[q];
+                double arrive = now + tw.travel[cur * n + x];
+                double key = Math.max(arrive, tw.earliest[x]) - now
+                        + 0.5 * Math.min(tw.latest[x] - arrive, urgentSeconds);
+                if (key < bestKey) {
+                    bestKey = key;
+                    best = q;
+                }
+            }
+            taken[best] = true;
+            int x = sector[best];
+            now = Math.max(now + tw.travel[cur * n + x], tw.earliest[x]) + tw.service[x];
+            cur = x;
+            into[p] = cur;
+        }
+    }
+
+    // ---------------------------------------------------------------- 2-opt
+
+    private boolean twoOpt(int k) {
+        int m = len[k];
+        if (m < 3) return false;
+        int[] r = routes[k];
+        double[] fwd = new double[m];
+        double[] bwd = new double[m];
+        prefixSums(r, m, fwd, bwd);
+
+        boolean any = false;
+        boolean improved = true;
+        while (improved && !timeUp()) {
+            improved = false;
+            for (int i = 0; i < m - 1; i++) {
+                int prev = i == 0 ? 0 : r[i - 1];
+                if (neighbors == null) {
+                    for (int j = i + 1; j < m; j++) {
+                        improved |= tryReverse(k, r, m, i, j, prev, fwd, bwd);
+                    }
+                } else {
+                    // Only reversals where a new edge (prev -> r[j] or r[i] -> r[j+1]) is short.
+                    for (int rank = 0; rank < neighbors.count(prev); rank++) {
+                        int cand = neighbors.get(prev, rank);
+                        if (cand == 0 || routeOf[cand] != k || pos[cand] <= i) continue;
+                        improved |= tryReverse(k, r, m, i, pos[cand], prev, fwd, bwd);
+                    }
+                    int ai = r[i];
+                    for (int rank = 0; rank < neighbors.count(ai); rank++) {
+                        int cand = neighbors.get(ai, rank);
+                        if (cand == 0 || routeOf[cand] != k || pos[cand] - 1 <= i) continue;
+                        improved |= tryReverse(k, r, m, i, pos[cand] - 1, prev, fwd, bwd);
+                    }
+                }
+                if (timeUp()) break;
+            }
+            any |= improved;
+        }
+        return any;
+    }
+
+    private boolean tryReverse(int k, int[] r, int m, int i, int j, int prev, double[] fwd, double[] bwd) {
+        int ai = r[i];
+        int aj = r[j];
+        int next = j == m - 1 ? 0 : r[j + 1];
+        double delta = cost(prev, aj) + (bwd[j] - bwd[i]) + cost(ai, next)
+                - cost(prev, ai) - (fwd[j] - fwd[i]) - cost(aj, next);
+        if (tw != null) {
+            if (delta - TIME_WARP_PENALTY * warp[k] >= -EPS) return false;
+            accPrefix(k, i);
+            for (int p = j; p >= i; p--) accStop(r[p]);
+            accSuffix(k, j + 1);
+            delta += TIME_WARP_PENALTY * (accW - warp[k]);
+        }
+        if (delta >= -EPS) return false;
+
+        reverse(r, i, j);
+        reindex(k, i, j);
+        retime(k);
+        prefixSums(r, m, fwd, bwd);
+        return true;
+    }
+
+    private void prefixSums(int[] r, int m, double[] fwd, double[] bwd) {
+        fwd[0] = 0;
+        bwd[0] = 0;
+        for (int p = 1; p < m; p++) {
+            fwd[p] = fwd[p - 1] + cost(r[p - 1], r[p]);
+            bwd[p] = bwd[p - 1] + cost(r[p], r[p - 1]);
+        }
+    }
+
+    private static void reverse(int[] r, int i, int j) {
+        while (i < j) {
+            int t = r[i];
+            r[i++] = r[j];
+            r[j--] = t;
+        }
+    }
+
+    // ---------------------------------------------------------------- repair
+
+    /**
+     * Puts x where it adds the least cost, in a route with room if there is one. With
+     * neighbour lists only the slots next to x's routed neighbours (and empty routes)
+     * are priced; if none qualifies, every slot is.
+     */
+    private void insertCheapest(int x) {
+        bestDelta = Double.MAX_VALUE;
+        bestRoute = -1;
+        bestPos = -1;
+        if (neighbors != null) {
+            for (int rank = 0; rank < neighbors.count(x); rank++) {
+                int v = neighbors.get(x, rank);
+                if (v == 0 || routeOf[v] < 0) continue;
+                considerSlot(x, routeOf[v], pos[v], true);
+                considerSlot(x, routeOf[v], pos[v] + 1, true);
+            }
+            for (int k = 0; k < crews; k++) {
+                if (len[k] == 0) considerSlot(x, k, 0, true);
+            }
+        }
+        if (bestRoute < 0) {
+            for (int k = 0; k < crews; k++) {
+                for (int q = 0; q <= len[k]; q++) considerSlot(x, k, q, true);
+            }
+        }
+        if (bestRoute < 0) {
+            // Every route is at the cap: ignore it rather than drop the stop.
+            for (int k = 0; k < crews; k++) {
+                for (int q = 0; q <= len[k]; q++) considerSlot(x, k, q, false);
+            }
+        }
+
+        int k = bestRoute;
+        int q = bestPos;
+        if (routes[k].length < len[k] + 1) routes[k] = Arrays.copyOf(routes[k], len[k] + 1 + MAX_SEGMENT);
+        System.arraycopy(routes[k], q, routes[k], q + 1, len[k] - q);
+        routes[k][q] = x;
+        len[k]++;
+        reindex(k, q, len[k] - 1);
+        retime(k);
+    }
+
+    private void considerSlot(int x, int k, int q, boolean capped) {
+        if (capped && len[k] + 1 > maxStops) return;
+        int u = node(k, q - 1);
+        int v = node(k, q);
+        double delta = cost(u, x) + cost(x, v) - cost(u, v);
+        if (tw != null) {
+            accPrefix(k, q);
+            accStop(x);
+            accSuffix(k, q);
+            delta += TIME_WARP_PENALTY * (accW - warp[k]);
+        }
+        if (delta < bestDelta) {
+            bestDelta = delta;
+            bestRoute = k;
+            bestPos = q;
+        }
+    }
+
+    /**
+     * Or-opt from a work queue of stops instead of full sweeps: each queued stop tries to
+     * move the segments of up to MAX_SEGMENT that contain it. A move queues the stops it
+     * touched (the segment and its old and new neighbours). When the queue drains, 2-opt
+     * runs on the routes that changed; routes 2-opt improves are queued again. Returns
+     * rounds made.
+     */
+    private int focusedSearch(WorkQueue work, boolean[] touched) {
+        int rounds = 0;
+        while (!timeUp()) {
+            rounds++;
+            while (!work.isEmpty() && !timeUp()) {
+                int x = work.pop();
+                int k = routeOf[x];
+                if (k < 0) continue;
+                boolean moved = false;
+                for (int segLen = 1; segLen <= MAX_SEGMENT && !moved; segLen++) {
+                    for (int s = Math.max(0, pos[x] - segLen + 1); s <= pos[x] && s + segLen <= len[k] && !moved; s++) {
+                        int before = node(k, s - 1);
+                        int after = node(k, s + segLen);
+                        int[] seg = Arrays.copyOfRange(routes[k], s, s + segLen);
+                        if (!tryMoveSegment(k, s, segLen)) continue;
+                        moved = true;
+
+                        int k2 = routeOf[seg[0]];
+                        touched[k] = true;
+                        touched[k2] = true;
+                        work.push(before);
+                        work.push(after);
+                        work.push(node(k2, pos[seg[0]] - 1));
+                        work.push(node(k2, pos[seg[segLen - 1]] + 1));
+                        for (int y : seg) work.push(y);
+                    }
+                }
+            }
+
+            boolean improved = false;
+            for (int k = 0; k < crews; k++) {
+                if (!touched[k]) continue;
+                touched[k] = false;
+                if (!twoOpt(k)) continue;
+                improved = true;
+                for (int p = 0; p < len[k]; p++) work.push(routes[k][p]);
+            }
+            if (!improved) break;
+        }
+        return rounds;
+    }
+
+    /** FIFO of stop indices; a stop is queued at most once at a time, the depot never. */
+    private static final class WorkQueue {
+        private final int[] items;
+        private final boolean[] queued;
+        private int head;
+        private int size;
+
+        WorkQueue(int n) {
+            items = new int[n];
+            queued = new boolean[n];
+        }
+
+        void push(int x) {
+            if (x == 0 || queued[x]) return;
+            queued[x] = true;
+            items[(head + size) % items.length] = x;
+            size++;
+        }
+
+        int pop() {
+            int x = items[head];
+            head = (head + 1) % items.length;
+            size--;
+            queued[x] = false;
+            return x;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+
+    // ---------------------------------------------------------------- Or-opt
+
+    /** One sweep over every segment; applies the best insertion found for each. */
+    private boolean orOpt() {
+        boolean any = false;
+        for (int k = 0; k < crews; k++) {
+            for (int s = 0; s < len[k]; s++) {
+                if (timeUp()) return any;
+                for (int segLen = 1; segLen <= MAX_SEGMENT && s + segLen <= len[k]; segLen++) {
+                    if (tryMoveSegment(k, s, segLen)) {
+                        any = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return any;
+    }
+
+    private boolean tryMoveSegment(int k, int s, int segLen) {
+        int[] r = routes[k];
+        int first = r[s];
+        int last = r[s + segLen - 1];
+        int before = node(k, s - 1);
+        int after = node(k, s + segLen);
+        double removeGain = cost(before, first) + cost(last, after) - cost(before, after);
+        if (tw != null) {
+            accPrefix(k, s);
+            accSuffix(k, s + segLen);
+            removedWarp = accW - warp[k];
+        }
+
+        bestDelta = -EPS;
+        bestRoute = -1;
+        bestPos = -1;
+        if (neighbors == null) {
+            for (int k2 = 0; k2 < crews; k2++) {
+                for (int q = 0; q <= len[k2]; q++) {
+                    considerInsert(k, s, segLen, first, last, removeGain, k2, q);
+                }
+            }
+        } else {
+            // Insert right after a neighbour of first, or right before a neighbour of last.
+            for (int rank = 0; rank < neighbors.count(first); rank++) {
+                int v = neighbors.get(first, rank);
+                if (v != 0) considerInsert(k, s, segLen, first, last, removeGain, routeOf[v], pos[v] + 1);
+            }
+            for (int rank = 0; rank < neighbors.count(last); rank++) {
+                int u = neighbors.get(last, rank);
+                if (u != 0) considerInsert(k, s, segLen, first, last, removeGain, routeOf[u], pos[u]);
+            }
+        }
+        if (bestRoute < 0) return false;
+
+        moveSegment(k, s, segLen, bestRoute, bestPos);
+        return true;
+    }
+
+    /** Prices inserting the segment between node(k2, q-1) and node(k2, q); keeps the best. */
+    private void considerInsert(int k, int s, int segLen, int first, int last, double removeGain, int k2, int q) {
+        if (k2 == k && q >= s && q <= s + segLen) return;
+        if (k2 != k && len[k2] + segLen > maxStops) return;
+        int u = node(k2, q - 1);
+        int v = node(k2, q);
+        double delta = cost(u, first) + cost(last, v) - cost(u, v) - removeGain;
+        if (tw != null) {
+            if (k2 != k) {
+                delta += TIME_WARP_PENALTY * removedWarp;
+                if (delta - TIME_WARP_PENALTY * warp[k2] >= bestDelta) return;
+                accPrefix(k2, q);
+                for (int p = s; p < s + segLen; p++) accStop(routes[k][p]);
+                accSuffix(k2, q);
+                delta += TIME_WARP_PENALTY * (accW - warp[k2]);
+            } else {
+                if (delta - TIME_WARP_PENALTY * warp[k] >= bestDelta) return;
+                delta += TIME_WARP_PENALTY * (warpAfterShift(k, s, segLen, q) - warp[k]);
+            }
+        }
+        if (delta < bestDelta) {
+            bestDelta = delta;
+            bestRoute = k2;
+            bestPos = q;
+        }
+    }
+
+    private void moveSegment(int k, int s, int segLen, int k2, int q) {
+        int[] seg = Arrays.copyOfRange(routes[k], s, s + segLen);
+
+        int[] r = routes[k];
+        System.arraycopy(r, s + segLen, r, s, len[k] - s - segLen);
+        len[k] -= segLen;
+        if (k2 == k && q > s) q -= segLen;
+
+        int[] r2 = routes[k2];
+        if (r2.length < len[k2] + segLen) {
+            r2 = routes[k2] = Arrays.copyOf(r2, len[k2] + segLen + MAX_SEGMENT);
+        }
+        System.arraycopy(r2, q, r2, q + segLen, len[k2] - q);
+        System.arraycopy(seg, 0, r2, q, segLen);
+        len[k2] += segLen;
+
+        reindex(k, Math.min(s, len[k]), len[k] - 1);
+        reindex(k2, q, len[k2] - 1);
+        retime(k);
+        if (k2 != k) retime(k2);
+    }
+
+    /** Refreshes routeOf/pos for positions from..to of route k. */
+    private void reindex(int k, int from, int to) {
+        int[] r = routes[k];
+        for (int p = Math.max(0, from); p <= to; p++) {
+            routeOf[r[p]] = k;
+            pos[r[p]] = p;
+        }
+    }
+
+    // ---------------------------------------------------------------- time windows
+
+    private void initTimes() {
+        if (tw == null) return;
+        preD = new double[crews][];
+        preW = new double[crews][];
+        preE = new double[crews][];
+        preL = new double[crews][];
+        sufD = new double[crews][];
+        sufW = new double[crews][];
+        sufE = new double[crews][];
+        sufL = new double[crews][];
+        warp = new double[crews];
+    }
+
+    /** Rebuilds route k's prefix/suffix summaries and its time warp; O(len). */
+    private void retime(int k) {
+        if (tw == null) return;
+        int m = len[k];
+        int[] r = routes[k];
+        if (preD[k] == null || preD[k].length < m + 1) {
+            int cap = Math.max(m, r.length) + 1;
+            preD[k] = new double[cap];
+            preW[k] = new double[cap];
+            preE[k] = new double[cap];
+            preL[k] = new double[cap];
+            sufD[k] = new double[cap];
+            sufW[k] = new double[cap];
+            sufE[k] = new double[cap];
+            sufL[k] = new double[cap];
+        }
+
+        accDepot();
+        storePrefix(k, 0);
+        for (int p = 0; p < m; p++) {
+            accStop(r[p]);
+            storePrefix(k, p + 1);
+        }
+        accConcat(0, 0, tw.earliest[0], tw.latest[0], 0);
+        warp[k] = accW;
+
+        accDepot();
+        storeSuffix(k, m);
+        for (int p = m - 1; p >= 0; p--) {
+            int x = r[p];
+            accD = tw.service[x];
+            accW = 0;
+            accE = tw.earliest[x];
+            accL = tw.latest[x];
+            accLast = x;
+            accSuffix(k, p + 1);
+            storeSuffix(k, p);
+        }
+    }
+
+    /** Time warp of route k with its segment [s, s + segLen) moved to slot q (q outside it). */
+    private double warpAfterShift(int k, int s, int segLen, int q) {
+        int[] r = routes[k];
+        if (q < s) {
+            accPrefix(k, q);
+            for (int p = s; p < s + segLen; p++) accStop(r[p]);
+            for (int p = q; p < s; p++) accStop(r[p]);
+            accSuffix(k, s + segLen);
+        } else {
+            accPrefix(k, s);
+            for (int p = s + segLen; p < q; p++) accStop(r[p]);
+            for (int p = s; p < s + segLen; p++) accStop(r[p]);
+            accSuffix(k, q);
+        }
+        return accW;
+    }
+
+    private void accDepot() {
+        accD = 0;
+        accW = 0;
+        accE = tw.earliest[0];
+        accL = tw.latest[0];
+        accLast = 0;
+    }
+
+    /** Accumulator := depot + the first q stops of route k. */
+    private void accPrefix(int k, int q) {
+        accD = preD[k][q];
+        accW = preW[k][q];
+        accE = preE[k][q];
+        accL = preL[k][q];
+        accLast = q == 0 ? 0 : routes[k][q - 1];
+    }
+
+    private void accStop(int x) {
+        accConcat(tw.service[x], 0, tw.earliest[x], tw.latest[x], x);
+        accLast = x;
+    }
+
+    /** Appends stops p.. of route k and the return to the depot. */
+    private void accSuffix(int k, int p) {
+        accConcat(sufD[k][p], sufW[k][p], sufE[k][p], sufL[k][p], node(k, p));
+        accLast = 0;
+    }
+
+    /** Accumulator := accumulator followed by a sequence summarized as (d, w, e, l) starting at first. */
+    private void accConcat(double d, double w, double e, double l, int first) {
+        double t = tw.travel[accLast * n + first];
+        double delta = accD - accW + t;
+        double wait = Math.max(e - delta - accL, 0);
+        double late = Math.max(accE + delta - l, 0);
+        accE = Math.max(e - delta, accE) - wait;
+        accL = Math.min(l - delta, accL) + late;
+        accD += d + t + wait;
+        accW += w + late;
+    }
+
+    private void storePrefix(int k, int q) {
+        preD[k][q] = accD;
+        preW[k][q] = accW;
+        preE[k][q] = accE;
+        preL[k][q] = accL;
+    }
+
+    private void storeSuffix(int k, int p) {
+        sufD[k][p] = accD;
+        sufW[k][p] = accW;
+        sufE[k][p] = accE;
+        sufL[k][p] = accL;
+    }
+
+    // ---------------------------------------------------------------- helpers
+
+    private int node(int k, int p) {
+        return p < 0 || p >= len[k] ? 0 : routes[k][p];
+    }
+
+    private double cost(int from, int to) {
+        return c[from * n + to];
+    }
+
+    /** Travel cost plus, with time windows, TIME_WARP_PENALTY per second of time warp. */
+    double totalCost() {
+        double total = 0;
+        for (int k = 0; k < crews; k++) {
+            total += routeCost(routes[k], len[k]);
+            if (tw != null) total += TIME_WARP_PENALTY * warp[k];
+        }
+        return total;
+    }
+
+    private double routeCost(int[] r, int m) {
+        if (m == 0) return 0;
+        double total = cost(0, r[0]) + cost(r[m - 1], 0);
+        for (int p = 1; p < m; p++) total += cost(r[p - 1], r[p]);
+        return total;
+    }
+
+    private boolean timeUp() {
+        if (System.nanoTime() - deadline >= 0) {
+            timedOut = true;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,124 @@
+package com.onlyeavestroughs.routeplanner.optimize;
+
+/**
+ * Time windows and on-site durations, in seconds (window bounds since midnight), indexed
+ * like the matrix: index 0 is the depot, whose window is the crews' shift. Routes leave
+ * the depot no earlier than the shift start and should be back by its end.
+ *
+ * RouteOptimizer prices windows with the time-warp model (Vidal et al., 2013): waiting
+ * for a window to open is free, and arriving after it closes counts as travelling back to
+ * the closing time, with each second of that "time warp" penalized. Unlike rejecting late
+ * routes outright, this lets the search start from an infeasible construction and work
+ * its way out, and every move is still priced from per-route prefix/suffix summaries.
+ */
+public final class TimeWindows {
+
+    /** Closing time meaning "no window": late enough never to bind. */
+    public static final double NONE = 1e9;
+
+    final int n;
+    final double[] travel;
+    final double[] earliest;
+    final double[] latest;
+    final double[] service;
+    private final boolean constrained;
+
+    /**
+     * @param travelSeconds row-major n x n travel times (CostMatrix.durations()); unroutable
+     *                      (non-finite) legs are taken as RouteOptimizer.UNROUTABLE seconds
+     * @param latest        closing times; NONE where a stop (or the shift) has no end
+     */
+    public TimeWindows(double[] travelSeconds, double[] earliest, double[] latest, double[] service) {
+        this.n = earliest.length;
+        if (latest.length != n || service.length != n || travelSeconds.length != n * n) {
+            throw new IllegalArgumentException("time window columns and matrix must all cover " + n + " points");
+        }
+        this.travel = finite(travelSeconds) ? travelSeconds : RouteOptimizer.sanitize(travelSeconds);
+        this.earliest = earliest;
+        this.latest = latest;
+        this.service = service;
+        boolean any = false;
+        for (double l : latest) any |= l < NONE;
+        this.constrained = any;
+    }
+
+    /**
+     * An infinite leg would turn the time-warp sums (l - inf + inf) into NaN, and every
+     * move priced from them would look like an improvement.
+     */
+    private static boolean finite(double[] values) {
+        for (double v : values) {
+            if (!Double.isFinite(v)) return false;
+        }
+        return true;
+    }
+
+    /** False when nothing closes, so no route can be late and the optimizer can ignore time. */
+    public boolean constrained() {
+        return constrained;
+    }
+
+    /** The same windows restricted to global[0..] (global[0] = the depot), for a territory. */
+    TimeWindows subset(int[] global) {
+        int m = global.length;
+        double[] t = new double[m * m];
+        double[] e = new double[m];
+        double[] l = new double[m];
+        double[] s = new double[m];
+        for (int a = 0; a < m; a++) {
+            int ga = global[a];
+            e[a] = earliest[ga];
+            l[a] = latest[ga];
+            s[a] = service[ga];
+            for (int b = 0; b < m; b++) t[a * m + b] = travel[ga * n + global[b]];
+        }
+        return new TimeWindows(t, e, l, s);
+    }
+
+    /**
+     * The crew's day along one route: leave the depot at the shift start, wait at a stop
+     * that is not open yet, start straight away at one that is already closed (and count
+     * it late).
+     */
+    public Schedule schedule(int[] route) {
+        double[] arrival = new double[route.length];
+        double[] start = new double[route.length];
+        double t = earliest[0];
+        double late = 0;
+        int lateStops = 0;
+        int prev = 0;
+        for (int p = 0; p < route.length; p++) {
+            int x = route[p];
+            arrival[p] = t + travel[prev * n + x];
+            start[p] = Math.max(arrival[p], earliest[x]);
+            if (arrival[p] > latest[x]) {
+                late += arrival[p] - latest[x];
+                lateStops++;
+            }
+            t = start[p] + service[x];
+            prev = x;
+        }
+        double back = t + travel[prev * n];
+        if (back > latest[0]) late += back - latest[0];
+        return new Schedule(arrival, start, back, late, lateStops, back > latest[0]);
+    }
+
+    public double earliest(int i) {
+        return earliest[i];
+    }
+
+    public double latest(int i) {
+        return latest[i];
+    }
+
+    public double service(int i) {
+        return service[i];
+    }
+
+    /**
+     * Times along one route, aligned with its stops. lateSeconds sums how far past closing
+     * each late stop (and a late return) was reached.
+     */
+    public record Schedule(double[] arrival, double[] start, double returnTime, double lateSeconds, int lateStops,
+                           boolean lateReturn) {}
+}
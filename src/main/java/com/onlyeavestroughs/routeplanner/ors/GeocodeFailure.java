@@ -0,0 +1,40 @@
+package com.onlyeavestroughs.routeplanner.ors;
+
+/**
+ * Why a geocode failed. Stored as a byte (ordinal) per failed stop in StopTable, so only
+ * ever append constants; routes.json and the debug report use the names.
+ */
+public enum GeocodeFailure {
+    /** Nothing left after trimming. */
+    BLANK_ADDRESS,
+    /** ORS answered but found nothing. */
+    NO_RESULTS,
+    /** ORS answered 200 with a body we could not use. */
+    BAD_RESPONSE,
+    /** ORS refused the request (4xx other than 429); retrying will not help. */
+    REJECTED,
+    /** Still 429 after every retry, or told to wait longer than we are willing to. */
+    THROTTLED,
+    /** A 5xx: 502/503/504 still failing after every retry, or any other 5xx (500, 501) at once. */
+    SERVER_ERROR,
+    /** No HTTP response at all (connect, timeout, reset) after every retry. */
+    NETWORK_ERROR;
+
+    private static final GeocodeFailure[] VALUES = values();
+
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    public static GeocodeFailure of(byte code) {
+        return VALUES[code];
+    }
+
+    /** The constant called name (as stored in negative cache entries), or null. */
+    public static GeocodeFailure named(String name) {
+        for (GeocodeFailure f : VALUES) {
+            if (f.name().equals(name)) return f;
+        }
+        return null;
+    }
+}
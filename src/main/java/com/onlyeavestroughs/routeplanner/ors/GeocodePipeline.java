@@ -0,0 +1,68 @@
+package com.onlyeavestroughs.routeplanner.ors;
+
+import com.onlyeavestroughs.routeplanner.ors.OrsGeocoder.GeocodeOutcome;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Concurrent geocoding stage.
+ *
+ * Each submitted address starts on a virtual thread (local gazetteer/cache lookups) and,
+ * on a miss, continues as a non-blocking request on the geocoder's async engine. A
+ * semaphore caps how many lookups are in flight: submit() blocks once the cap is reached,
+ * which also keeps a streaming reader from running far ahead of the network. The
+ * geocoder's RateLimiter caps requests per second. Results come back in submission
+ * order, so stop IDs match the serial path.
+ */
+public final class GeocodePipeline implements AutoCloseable {
+
+    private final OrsGeocoder geocoder;
+    private final Semaphore inFlight;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<CompletableFuture<GeocodeOutcome>> pending = new ArrayList<>();
+
+    public GeocodePipeline(OrsGeocoder geocoder, int concurrency) {
+        this.geocoder = geocoder;
+        this.inFlight = new Semaphore(Math.max(1, concurrency));
+    }
+
+    public void submit(String address) {
+        inFlight.acquireUninterruptibly();
+        CompletableFuture<GeocodeOutcome> f;
+        try {
+            f = CompletableFuture.supplyAsync(() -> geocoder.forwardGeocodeAsync(address), executor)
+                    .thenCompose(outcome -> outcome);
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        f.whenComplete((outcome, err) -> inFlight.release());
+        pending.add(f);
+    }
+
+    /** Waits for every submitted lookup; outcomes are in submission order. */
+    public List<GeocodeOutcome> awaitAll() throws Exception {
+        List<GeocodeOutcome> out = new ArrayList<>(pending.size());
+        for (CompletableFuture<GeocodeOutcome> f : pending) {
+            try {
+                out.add(f.get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception cause) throw cause;
+                throw e;
+            }
+        }
+        pending.clear();
+        return out;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
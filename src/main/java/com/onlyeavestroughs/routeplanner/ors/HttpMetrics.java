@@ -0,0 +1,94 @@
+package com.onlyeavestroughs.routeplanner.ors;
+
+import com.onlyeavestroughs.routeplanner.util.LatencyHistogram;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters for one ORS client: every attempt is a request, and each request ends as
+ * ok, throttled (429), a server error (5xx), another HTTP error, or a network error.
+ * Latency is send to response headers. Lock-free; read with snapshot().
+ */
+public final class HttpMetrics {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder ok = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder otherErrors = new LongAdder();
+    private final LongAdder networkErrors = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+
+    void response(int code, long nanos) {
+        requests.increment();
+        latency.recordNanos(nanos);
+        if (code == 200) ok.increment();
+        else if (code == 429) throttled.increment();
+        else if (code >= 500) serverErrors.increment();
+        else otherErrors.increment();
+    }
+
+    void networkError() {
+        requests.increment();
+        networkErrors.increment();
+    }
+
+    void retry() {
+        retries.increment();
+    }
+
+    /**
+     * Counts a request as sent: its request line, Host and the headers set on it, plus the
+     * body. Headers the HTTP client adds itself are not seen here and are left out.
+     */
+    void sent(HttpRequest request, long bodyBytes) {
+        URI uri = request.uri();
+        String target = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+        long bytes = request.method().length() + 1 + target.length() + " HTTP/1.1\r\n".length()
+                + "Host: \r\n".length() + uri.getRawAuthority().length();
+        for (Map.Entry<String, List<String>> h : request.headers().map().entrySet()) {
+            for (String v : h.getValue()) bytes += h.getKey().length() + 2 + v.length() + 2;
+        }
+        bytesSent.add(bytes + 2 + bodyBytes);
+    }
+
+    void received(long bytes) {
+        bytesReceived.add(bytes);
+    }
+
+    /** Wraps a response body so the bytes read from it are counted. */
+    InputStream counting(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) bytesReceived.increment();
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buf, int off, int len) throws IOException {
+                int n = super.read(buf, off, len);
+                if (n > 0) bytesReceived.add(n);
+                return n;
+            }
+        };
+    }
+
+    public HttpStats snapshot() {
+        return new HttpStats(requests.sum(), ok.sum(), retries.sum(), throttled.sum(), serverErrors.sum(),
+                otherErrors.sum(), networkErrors.sum(), bytesSent.sum(), bytesReceived.sum(),
+                latency.percentileMicros(0.50), latency.percentileMicros(0.95), latency.percentileMicros(0.99),
+                latency.maxMicros());
+    }
+}
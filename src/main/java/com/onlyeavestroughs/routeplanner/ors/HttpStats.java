@@ -0,0 +1,20 @@
+package com.onlyeavestroughs.routeplanner.ors;
+
+/**
+ * Point-in-time copy of an ORS client's HttpMetrics. Latencies are in microseconds.
+ */
+public record HttpStats(
+        long requests,
+        long ok,
+        long retries,
+        long throttled,
+        long serverErrors,
+        long otherErrors,
+        long networkErrors,
+        long bytesSent,
+        long bytesReceived,
+        long p50Micros,
+        long p95Micros,
+        long p99Micros,
+        long maxMicros
+) {}
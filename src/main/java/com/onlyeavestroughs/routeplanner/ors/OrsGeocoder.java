@@ -2,110 +2,317 @@ package com.onlyeavestroughs.routeplanner.ors;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.onlyeavestroughs.routeplanner.util.HashUtil;
+import com.onlyeavestroughs.routeplanner.address.AddressNormalizer;
+import com.onlyeavestroughs.routeplanner.address.Gazetteer;
+import com.onlyeavestroughs.routeplanner.cache.GeocodeCache;
+import com.onlyeavestroughs.routeplanner.cache.GeocodeCacheEntry;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * Forward geocoding using openrouteservice public API.
  *
  * Uses Authorization header for API key (preferred by ORS docs).
  * Returns best match coordinates (lng, lat) from features[0].
+ *
+ * Lookup order: local gazetteer (if any), then the geocode cache, then ORS; only
+ * addresses missing from both local sources cost an HTTP request. Answers that say the
+ * address itself is the problem (no results, or a 400/422) are cached as negative
+ * entries, and a cached one fails the lookup straight away, marked fromCache. A lookup whose
+ * canonical address is already on the wire (from this plan or a concurrent one) waits
+ * for that request instead of sending its own.
+ *
+ * Requests are non-blocking (sendAsync on one shared HTTP/2 client, so connections are
+ * reused); callers bound how many are in flight (see GeocodePipeline). Retries wait on the
+ * server's Retry-After or x-ratelimit-reset when given, else jittered exponential backoff,
+ * and are scheduled rather than slept. Response bodies are parsed straight off the stream.
  */
 public final class OrsGeocoder {
 
     private static final String BASE_URL = "https://api.openrouteservice.org";
 
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MS = 400;
+    private static final long MAX_BACKOFF_MS = 10_000;
+    /** A longer Retry-After means the daily quota is gone; fail instead of waiting. */
+    private static final long MAX_SERVER_DELAY_MS = 120_000;
+
     private final String apiKey;
-    private final Path cacheDir;
+    private final String baseUrl;
+    private final GeocodeCache cache;
     private final HttpClient http;
     private final ObjectMapper mapper;
+    private final RateLimiter limiter;
+    private final Gazetteer gazetteer;
+    private final HttpMetrics metrics = new HttpMetrics();
+    /** ORS lookups in flight by canonical address; entries leave once the result is cached. */
+    private final ConcurrentHashMap<String, CompletableFuture<GeocodeOutcome>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder sharedLookups = new LongAdder();
+    /** Runs response parsing and scheduled retries; virtual threads, so blocking reads are cheap. */
+    private final Executor executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public OrsGeocoder(String apiKey, GeocodeCache cache) {
+        this(apiKey, cache, RateLimiter.unlimited());
+    }
+
+    public OrsGeocoder(String apiKey, GeocodeCache cache, RateLimiter limiter) {
+        this(apiKey, cache, limiter, BASE_URL);
+    }
+
+    /** gazetteer may be null. */
+    public OrsGeocoder(String apiKey, GeocodeCache cache, RateLimiter limiter, Gazetteer gazetteer) {
+        this(apiKey, cache, limiter, BASE_URL, gazetteer);
+    }
 
-    public OrsGeocoder(String apiKey, Path cacheDir) {
+    /** baseUrl points the geocoder at another ORS-compatible server (e.g. a local stub). */
+    public OrsGeocoder(String apiKey, GeocodeCache cache, RateLimiter limiter, String baseUrl) {
+        this(apiKey, cache, limiter, baseUrl, null);
+    }
+
+    public OrsGeocoder(String apiKey, GeocodeCache cache, RateLimiter limiter, String baseUrl, Gazetteer gazetteer) {
         this.apiKey = apiKey;
-        this.cacheDir = cacheDir;
+        this.baseUrl = baseUrl;
+        this.cache = cache;
+        this.limiter = limiter;
+        this.gazetteer = gazetteer;
         this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
                 .connectTimeout(Duration.ofSeconds(10))
+                .executor(executor)
                 .build();
         this.mapper = new ObjectMapper();
     }
 
+    /** Request counts and latencies so far. */
+    public HttpStats httpStats() {
+        return metrics.snapshot();
+    }
+
+    /** Lookups answered by joining another caller's in-flight request. */
+    public long sharedLookups() {
+        return sharedLookups.sum();
+    }
+
+    /** Blocking form of forwardGeocodeAsync. */
     public GeocodeOutcome forwardGeocode(String address) throws Exception {
+        try {
+            return forwardGeocodeAsync(address).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Local sources are checked on the calling thread; a miss returns a future that
+     * completes when ORS answers or retries run out. Only I/O errors on the local cache
+     * complete it exceptionally; every HTTP failure is a failed GeocodeOutcome.
+     */
+    public CompletableFuture<GeocodeOutcome> forwardGeocodeAsync(String address) {
         String normalized = address == null ? "" : address.trim();
         if (normalized.isEmpty()) {
-            return GeocodeOutcome.fail(address, "blank address", false);
+            return CompletableFuture.completedFuture(GeocodeOutcome.fail(address, GeocodeFailure.BLANK_ADDRESS, "blank address", false));
         }
 
-        Files.createDirectories(cacheDir);
-        Path cacheFile = cacheDir.resolve(HashUtil.sha1Hex(normalized) + ".json");
+        try {
+            GeocodeOutcome local = lookupLocal(address, normalized);
+            if (local != null) return CompletableFuture.completedFuture(local);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
-        // Cache hit
-        if (Files.exists(cacheFile)) {
-            try {
-                JsonNode cached = mapper.readTree(cacheFile.toFile());
-                if (cached.hasNonNull("lat") && cached.hasNonNull("lng")) {
-                    double lat = cached.get("lat").asDouble();
-                    double lng = cached.get("lng").asDouble();
-                    return GeocodeOutcome.ok(address, lat, lng, true, "cache");
-                }
-            } catch (Exception ignored) {
-                // Corrupted cache -> fall back to API and overwrite it.
-            }
+        String key = AddressNormalizer.canonical(normalized);
+        CompletableFuture<GeocodeOutcome> mine = new CompletableFuture<>();
+        CompletableFuture<GeocodeOutcome> pending = inFlight.putIfAbsent(key, mine);
+        if (pending != null) {
+            sharedLookups.increment();
+            return pending.thenApply(o -> new GeocodeOutcome(o.success(), address, o.lat(), o.lng(), o.fromCache(),
+                    o.message(), o.failure()));
         }
+        attempt(address, normalized, 1).whenComplete((outcome, err) -> {
+            inFlight.remove(key, mine);
+            if (err != null) mine.completeExceptionally(err);
+            else mine.complete(outcome);
+        });
+        return mine;
+    }
 
-        // API call with basic retry/backoff
-        int maxAttempts = 5;
-        long backoffMs = 400;
+    /**
+     * The gazetteer's or the cache's answer for address, or null when neither knows it (or
+     * it is blank). Never sends a request.
+     */
+    public GeocodeOutcome lookupLocal(String address) throws IOException {
+        String normalized = address == null ? "" : address.trim();
+        return normalized.isEmpty() ? null : lookupLocal(address, normalized);
+    }
 
-        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
-            HttpResponse<String> resp;
-            try {
-                resp = http.send(buildRequest(normalized), HttpResponse.BodyHandlers.ofString());
-            } catch (Exception e) {
-                if (attempt == maxAttempts) {
-                    return GeocodeOutcome.fail(address, "HTTP error: " + e.getMessage(), false);
-                }
-                Thread.sleep(backoffMs);
-                backoffMs *= 2;
-                continue;
+    private GeocodeOutcome lookupLocal(String address, String normalized) throws IOException {
+        // Known address: no cache read, no request
+        if (gazetteer != null) {
+            Gazetteer.Match known = gazetteer.lookup(normalized);
+            if (known != null) {
+                return GeocodeOutcome.ok(address, known.lat(), known.lng(), true,
+                        known.exact() ? "gazetteer" : "gazetteer (normalized)");
             }
+        }
+        // Cache hit (corrupt entries read as misses and get overwritten by the next fetch)
+        GeocodeCacheEntry cached = cache.get(normalized);
+        if (cached == null) return null;
+        if (!cached.negative()) return GeocodeOutcome.ok(address, cached.lat(), cached.lng(), true, "cache");
+        GeocodeFailure failure = GeocodeFailure.named(cached.failure());
+        if (failure == null) return null; // written by a newer version; ask again
+        return GeocodeOutcome.fail(address, failure, "cached failure since " + cached.cachedAt(), true);
+    }
+
+    // ---------------------------------------------------------------- request engine
+
+    private CompletableFuture<GeocodeOutcome> attempt(String address, String normalized, int attempt) {
+        long waitNanos = limiter.tryAcquire();
+        if (waitNanos > 0) {
+            return later(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1, () -> attempt(address, normalized, attempt));
+        }
+        HttpRequest request = buildRequest(normalized);
+        metrics.sent(request, 0);
+        long sentAt = System.nanoTime();
+        return http.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                .handleAsync((resp, err) -> {
+                    if (err != null) metrics.networkError();
+                    else metrics.response(resp.statusCode(), System.nanoTime() - sentAt);
+                    return onResponse(address, normalized, attempt, resp, err);
+                }, executor)
+                .thenCompose(f -> f);
+    }
 
-            int code = resp.statusCode();
-            if (code == 200) {
-                return parseAndCache(address, resp.body(), cacheFile);
+    private CompletableFuture<GeocodeOutcome> onResponse(
+            String address, String normalized, int attempt, HttpResponse<InputStream> resp, Throwable err) {
+        if (err != null) {
+            Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            if (attempt == MAX_ATTEMPTS) {
+                return done(GeocodeOutcome.fail(address, GeocodeFailure.NETWORK_ERROR, "HTTP error: " + cause.getMessage(), false));
             }
+            metrics.retry();
+            return later(backoffMs(attempt), () -> attempt(address, normalized, attempt + 1));
+        }
+
+        int code = resp.statusCode();
+        if (code == 200) {
+            honorRateLimitHeaders(resp.headers());
+            return done(parseAndCache(address, metrics.counting(resp.body())));
+        }
+
+        String snippet = drain(metrics.counting(resp.body()));
+        boolean retryable = code == 429 || code == 502 || code == 503 || code == 504;
+        if (!retryable) {
+            GeocodeFailure failure = code >= 500 ? GeocodeFailure.SERVER_ERROR : GeocodeFailure.REJECTED;
+            // 401/403 and the like are about the key or the account, not this address; a 404
+            // usually means a wrong orsBaseUrl or proxy path, so it is not cached either.
+            if (code == 400 || code == 422) cacheFailure(address, failure);
+            return done(GeocodeOutcome.fail(address, failure, "ORS error HTTP " + code + ": " + snippet, false));
+        }
+
+        long serverDelay = serverDelayMs(resp.headers(), System.currentTimeMillis());
+        if (attempt == MAX_ATTEMPTS || serverDelay > MAX_SERVER_DELAY_MS) {
+            GeocodeFailure failure = code == 429 ? GeocodeFailure.THROTTLED : GeocodeFailure.SERVER_ERROR;
+            return done(GeocodeOutcome.fail(address, failure, "ORS error HTTP " + code, false));
+        }
+        long delayMs = serverDelay >= 0 ? serverDelay : backoffMs(attempt);
+        metrics.retry();
+
+        // Throttled: the whole pipeline backs off together via the shared limiter
+        if (code == 429) {
+            limiter.pause(Duration.ofMillis(delayMs));
+            return attempt(address, normalized, attempt + 1);
+        }
 
-            // Retry throttling / transient server errors
-            if (code == 429 || code == 502 || code == 503 || code == 504) {
-                if (attempt == maxAttempts) {
-                    return GeocodeOutcome.fail(address, "ORS error HTTP " + code, false);
+        // Transient server error: only this request waits
+        return later(delayMs, () -> attempt(address, normalized, attempt + 1));
+    }
+
+    /** When ORS reports the quota window is used up, hold everyone until it resets. */
+    private void honorRateLimitHeaders(HttpHeaders headers) {
+        if (headers.firstValueAsLong("x-ratelimit-remaining").orElse(1) > 0) return;
+        long delayMs = rateLimitResetMs(headers, System.currentTimeMillis());
+        if (delayMs > 0 && delayMs <= MAX_SERVER_DELAY_MS) {
+            limiter.pause(Duration.ofMillis(delayMs));
+        }
+    }
+
+    private CompletableFuture<GeocodeOutcome> later(long delayMs, Supplier<CompletableFuture<GeocodeOutcome>> next) {
+        Executor delayed = CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS, executor);
+        return CompletableFuture.supplyAsync(next, delayed).thenCompose(f -> f);
+    }
+
+    private static CompletableFuture<GeocodeOutcome> done(GeocodeOutcome outcome) {
+        return CompletableFuture.completedFuture(outcome);
+    }
+
+    /** Exponential with equal jitter: uniform in [cap/2, cap], cap = base * 2^(attempt-1). */
+    static long backoffMs(int attempt) {
+        long cap = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempt - 1, 20));
+        return cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+    }
+
+    /**
+     * Delay the server asked for, or -1: Retry-After (delta-seconds or HTTP date), else
+     * x-ratelimit-reset when x-ratelimit-remaining is 0.
+     */
+    static long serverDelayMs(HttpHeaders headers, long nowMs) {
+        String retryAfter = headers.firstValue("retry-after").orElse(null);
+        if (retryAfter != null) {
+            String v = retryAfter.trim();
+            try {
+                return Math.max(0, Long.parseLong(v) * 1000);
+            } catch (NumberFormatException notSeconds) {
+                try {
+                    return Math.max(0, ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() - nowMs);
+                } catch (DateTimeParseException ignored) {
+                    // fall through to the rate-limit headers
                 }
-                Thread.sleep(backoffMs);
-                backoffMs *= 2;
-                continue;
             }
-
-            // Non-retryable
-            return GeocodeOutcome.fail(address, "ORS error HTTP " + code + ": " + safeSnippet(resp.body()), false);
         }
+        if (headers.firstValueAsLong("x-ratelimit-remaining").orElse(1) == 0) {
+            return rateLimitResetMs(headers, nowMs);
+        }
+        return -1;
+    }
 
-        return GeocodeOutcome.fail(address, "unknown geocode failure", false);
+    /** x-ratelimit-reset is epoch seconds on ORS; small values are read as seconds from now. */
+    private static long rateLimitResetMs(HttpHeaders headers, long nowMs) {
+        long reset = headers.firstValueAsLong("x-ratelimit-reset").orElse(-1);
+        if (reset < 0) return -1;
+        return reset > 1_000_000_000L ? Math.max(0, reset * 1000 - nowMs) : reset * 1000;
     }
 
     private HttpRequest buildRequest(String address) {
         String text = URLEncoder.encode(address, StandardCharsets.UTF_8);
 
         // boundary.country=CA helps disambiguate within Canada.
-        String url = BASE_URL + "/geocode/search?text=" + text + "&size=1&boundary.country=CA";
+        String url = baseUrl + "/geocode/search?text=" + text + "&size=1&boundary.country=CA";
 
         return HttpRequest.newBuilder()
                 .uri(URI.create(url))
@@ -116,54 +323,79 @@ public final class OrsGeocoder {
                 .build();
     }
 
-    private GeocodeOutcome parseAndCache(String originalAddress, String body, Path cacheFile) throws Exception {
-        JsonNode root = mapper.readTree(body);
-        JsonNode features = root.get("features");
+    private GeocodeOutcome parseAndCache(String originalAddress, InputStream body) {
+        JsonNode root;
+        try (InputStream in = body) {
+            root = mapper.readTree(in);
+        } catch (IOException e) {
+            return GeocodeOutcome.fail(originalAddress, GeocodeFailure.BAD_RESPONSE, "unreadable response: " + e.getMessage(), false);
+        }
+        JsonNode features = root == null ? null : root.get("features");
         if (features == null || !features.isArray() || features.isEmpty()) {
-            return GeocodeOutcome.fail(originalAddress, "no geocode results", false);
+            cacheFailure(originalAddress, GeocodeFailure.NO_RESULTS);
+            return GeocodeOutcome.fail(originalAddress, GeocodeFailure.NO_RESULTS, "no geocode results", false);
         }
 
         JsonNode first = features.get(0);
         JsonNode geom = first.get("geometry");
         JsonNode coords = geom == null ? null : geom.get("coordinates");
         if (coords == null || !coords.isArray() || coords.size() < 2) {
-            return GeocodeOutcome.fail(originalAddress, "invalid geometry in response", false);
+            return GeocodeOutcome.fail(originalAddress, GeocodeFailure.BAD_RESPONSE, "invalid geometry in response", false);
         }
 
         double lng = coords.get(0).asDouble();
         double lat = coords.get(1).asDouble();
 
-        JsonNode cacheNode = mapper.createObjectNode()
-                .put("address", originalAddress)
-                .put("lat", lat)
-                .put("lng", lng)
-                .put("cachedAt", Instant.now().toString());
-
-        mapper.writerWithDefaultPrettyPrinter().writeValue(cacheFile.toFile(), cacheNode);
+        try {
+            cache.put(new GeocodeCacheEntry(originalAddress.trim(), lat, lng, Instant.now().toString()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
 
         return GeocodeOutcome.ok(originalAddress, lat, lng, false, "api");
     }
 
+    private void cacheFailure(String originalAddress, GeocodeFailure failure) {
+        try {
+            cache.put(GeocodeCacheEntry.negative(originalAddress.trim(), failure.name(), Instant.now().toString()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Reads (at most) the start of an error body for the message and releases the connection. */
+    private static String drain(InputStream body) {
+        try (InputStream in = body) {
+            String b = new String(in.readNBytes(256), StandardCharsets.UTF_8);
+            in.transferTo(OutputStream.nullOutputStream());
+            return safeSnippet(b);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
     private static String safeSnippet(String body) {
         if (body == null) return "";
         String b = body.replaceAll("\n", " ").trim();
         return b.length() <= 200 ? b : b.substring(0, 200) + "...";
     }
 
+    /** failure is null on success; message is human-readable detail either way. */
     public record GeocodeOutcome(
             boolean success,
             String address,
             double lat,
             double lng,
             boolean fromCache,
-            String message
+            String message,
+            GeocodeFailure failure
     ) {
         public static GeocodeOutcome ok(String address, double lat, double lng, boolean fromCache, String msg) {
-            return new GeocodeOutcome(true, address, lat, lng, fromCache, msg);
+            return new GeocodeOutcome(true, address, lat, lng, fromCache, msg, null);
         }
 
-        public static GeocodeOutcome fail(String address, String msg, boolean fromCache) {
-            return new GeocodeOutcome(false, address, Double.NaN, Double.NaN, fromCache, msg);
+        public static GeocodeOutcome fail(String address, GeocodeFailure failure, String msg, boolean fromCache) {
+            return new GeocodeOutcome(false, address, Double.NaN, Double.NaN, fromCache, msg, failure);
         }
     }
 }
@@ -0,0 +1,174 @@
+package com.onlyeavestroughs.routeplanner.ors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * openrouteservice Matrix API (POST /v2/matrix/{profile}).
+ *
+ * One call fetches a sources x destinations tile; callers are responsible for keeping
+ * tiles inside the API's location limits.
+ */
+public final class OrsMatrixClient {
+
+    private static final String BASE_URL = "https://api.openrouteservice.org";
+
+    private final String apiKey;
+    private final String baseUrl;
+    private final String profile;
+    private final RateLimiter limiter;
+    private final HttpClient http;
+    private final ObjectMapper mapper;
+    private final HttpMetrics metrics = new HttpMetrics();
+
+    public OrsMatrixClient(String apiKey, String profile, RateLimiter limiter) {
+        this(apiKey, profile, limiter, BASE_URL);
+    }
+
+    /** baseUrl points the client at another ORS-compatible server (e.g. a local stub). */
+    public OrsMatrixClient(String apiKey, String profile, RateLimiter limiter, String baseUrl) {
+        this.apiKey = apiKey;
+        this.baseUrl = baseUrl;
+        this.profile = profile;
+        this.limiter = limiter;
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.mapper = new ObjectMapper();
+    }
+
+    public String profile() {
+        return profile;
+    }
+
+    /** Request counts and latencies so far. */
+    public HttpStats httpStats() {
+        return metrics.snapshot();
+    }
+
+    /**
+     * Fetches distances (m) and durations (s) from each source to each destination.
+     * sources/destinations index into lat/lng. Unroutable pairs come back as +Infinity.
+     */
+    public MatrixTile fetch(double[] lat, double[] lng, int[] sources, int[] destinations) throws Exception {
+        // Sources and destinations may overlap; send each point once.
+        Map<Integer, Integer> position = new LinkedHashMap<>();
+        for (int i : sources) position.putIfAbsent(i, position.size());
+        for (int i : destinations) position.putIfAbsent(i, position.size());
+
+        ObjectNode body = mapper.createObjectNode();
+        ArrayNode locations = body.putArray("locations");
+        for (int i : position.keySet()) {
+            locations.addArray().add(lng[i]).add(lat[i]);
+        }
+        ArrayNode src = body.putArray("sources");
+        for (int i : sources) src.add(position.get(i));
+        ArrayNode dst = body.putArray("destinations");
+        for (int i : destinations) dst.add(position.get(i));
+        body.putArray("metrics").add("distance").add("duration");
+        body.put("units", "m");
+
+        String json = mapper.writeValueAsString(body);
+
+        int maxAttempts = 5;
+        long backoffMs = 1000;
+
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            if (attempt > 1) metrics.retry();
+            HttpResponse<String> resp;
+            try {
+                limiter.acquire();
+                HttpRequest request = buildRequest(json);
+                long sentAt = System.nanoTime();
+                metrics.sent(request, json.getBytes(StandardCharsets.UTF_8).length);
+                resp = http.send(request, HttpResponse.BodyHandlers.ofString());
+                metrics.response(resp.statusCode(), System.nanoTime() - sentAt);
+                metrics.received(resp.body().length());
+            } catch (Exception e) {
+                metrics.networkError();
+                if (attempt == maxAttempts) {
+                    throw new IllegalStateException("ORS matrix HTTP error: " + e.getMessage(), e);
+                }
+                Thread.sleep(backoffMs);
+                backoffMs *= 2;
+                continue;
+            }
+
+            int code = resp.statusCode();
+            if (code == 200) {
+                return parse(resp.body(), sources.length, destinations.length);
+            }
+            if (code == 429) {
+                if (attempt == maxAttempts) break;
+                limiter.pause(Duration.ofMillis(backoffMs));
+                backoffMs *= 2;
+                continue;
+            }
+            if (code == 502 || code == 503 || code == 504) {
+                if (attempt == maxAttempts) break;
+                Thread.sleep(backoffMs);
+                backoffMs *= 2;
+                continue;
+            }
+            throw new IllegalStateException("ORS matrix error HTTP " + code + ": " + snippet(resp.body()));
+        }
+
+        throw new IllegalStateException("ORS matrix request failed after " + maxAttempts + " attempts");
+    }
+
+    private HttpRequest buildRequest(String json) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/v2/matrix/" + profile))
+                .timeout(Duration.ofSeconds(60))
+                .header("Authorization", apiKey)
+                .header("Accept", "application/json")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private MatrixTile parse(String body, int rows, int cols) throws Exception {
+        JsonNode root = mapper.readTree(body);
+        double[] meters = readGrid(root.get("distances"), rows, cols, "distances");
+        double[] seconds = readGrid(root.get("durations"), rows, cols, "durations");
+        return new MatrixTile(meters, seconds);
+    }
+
+    private static double[] readGrid(JsonNode grid, int rows, int cols, String name) {
+        if (grid == null || !grid.isArray() || grid.size() != rows) {
+            throw new IllegalStateException("ORS matrix response missing " + name);
+        }
+        double[] out = new double[rows * cols];
+        for (int r = 0; r < rows; r++) {
+            JsonNode row = grid.get(r);
+            if (row == null || row.size() != cols) {
+                throw new IllegalStateException("ORS matrix response has a short " + name + " row");
+            }
+            for (int c = 0; c < cols; c++) {
+                JsonNode v = row.get(c);
+                out[r * cols + c] = v == null || v.isNull() ? Double.POSITIVE_INFINITY : v.asDouble();
+            }
+        }
+        return out;
+    }
+
+    private static String snippet(String body) {
+        if (body == null) return "";
+        String b = body.replaceAll("\n", " ").trim();
+        return b.length() <= 200 ? b : b.substring(0, 200) + "...";
+    }
+
+    /** Row-major sources x destinations. */
+    public record MatrixTile(double[] meters, double[] seconds) {}
+}
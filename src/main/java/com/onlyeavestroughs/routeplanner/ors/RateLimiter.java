@@ -0,0 +1,75 @@
+package com.onlyeavestroughs.routeplanner.ors;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket shared by every ORS call in a run.
+ *
+ * pause() stalls all callers at once, so a 429 makes the whole pipeline back off
+ * together instead of each request sleeping on its own schedule.
+ */
+public final class RateLimiter {
+
+    private final double permitsPerSecond;
+    private final double capacity;
+
+    private double tokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) throw new IllegalArgumentException("permitsPerSecond must be > 0");
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = Math.max(1, burst);
+        this.tokens = this.capacity;
+        this.lastRefillNanos = System.nanoTime();
+        this.pausedUntilNanos = lastRefillNanos;
+    }
+
+    public static RateLimiter unlimited() {
+        return new RateLimiter(Double.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = tryAcquire()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, 1_000_000L));
+        }
+    }
+
+    /**
+     * Takes a permit if one is free and returns 0; otherwise returns how many nanoseconds
+     * to wait before trying again. For async callers that must not block a thread.
+     */
+    public synchronized long tryAcquire() {
+        long now = System.nanoTime();
+        if (now - pausedUntilNanos < 0) {
+            return pausedUntilNanos - now;
+        }
+        refill(now);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / permitsPerSecond * 1_000_000_000L));
+    }
+
+    /** Blocks every caller for at least the given duration and drains the bucket. */
+    public synchronized void pause(Duration d) {
+        long now = System.nanoTime();
+        long until = now + d.toNanos();
+        if (until - pausedUntilNanos > 0) {
+            pausedUntilNanos = until;
+        }
+        tokens = 0;
+        lastRefillNanos = pausedUntilNanos;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefillNanos;
+        if (elapsed <= 0) return;
+        tokens = Math.min(capacity, tokens + elapsed / 1_000_000_000.0 * permitsPerSecond);
+        lastRefillNanos = now;
+    }
+}
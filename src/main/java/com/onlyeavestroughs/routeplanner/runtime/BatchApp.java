@@ -0,0 +1,180 @@
+package com.onlyeavestroughs.routeplanner.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.onlyeavestroughs.routeplanner.cache.GeocodeCacheStats;
+import com.onlyeavestroughs.routeplanner.ors.HttpStats;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * "batch &lt;jobs.jsonl&gt;": plans many depots/inputs in one process, e.g. every branch
+ * overnight.
+ *
+ * Each non-blank line is a JSON object of run-config.json overrides (typically depot,
+ * input, profile and crews) plus an optional "name". Jobs run batchConcurrency at a time
+ * on one PlannerServices, so they share the geocode and matrix caches, and an address two
+ * jobs look up at once costs one ORS request. Every job gets its own run directory. A bad
+ * line or a failed job is recorded and the other jobs still run.
+ *
+ * The summary (per-job status, timings and counts) is printed and written to
+ * &lt;outRoot&gt;/batch_&lt;timestamp&gt;.json. Exit code 1 when any job failed.
+ */
+public final class BatchApp {
+    private BatchApp() {}
+
+    private static final ObjectMapper JSON = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    public static int runFromProjectConfig(Path jobsFile) {
+        try {
+            ObjectNode base = ProjectConfigLoader.readTree(Path.of("run-config.json"));
+            ProjectConfig pcfg = ProjectConfigLoader.fromTree(base);
+            List<String> lines = Files.readAllLines(jobsFile, StandardCharsets.UTF_8);
+
+            Summary summary;
+            try (PlannerServices services = PlannerServices.open(RunConfig.from(pcfg, null))) {
+                summary = run(base, lines, services, pcfg.batchConcurrency);
+            }
+
+            Path outRoot = Path.of(pcfg.outRoot).toAbsolutePath();
+            Files.createDirectories(outRoot);
+            Path summaryFile = outRoot.resolve("batch_" + ZonedDateTime.now(ZoneId.of("America/Toronto"))
+                    .format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".json");
+            JSON.writeValue(summaryFile.toFile(), summary);
+
+            System.out.print(summary.toText());
+            System.out.println("Summary: " + summaryFile);
+            return summary.failed() == 0 ? 0 : 1;
+
+        } catch (Exception e) {
+            System.err.println("ERROR: " + e.getClass().getName() + ": " + e.getMessage());
+            System.err.println("Working directory: " + System.getProperty("user.dir"));
+            e.printStackTrace();
+            return 2;
+        }
+    }
+
+    /** Runs every job in lines (JSON objects; blank lines skipped) and waits for all of them. */
+    static Summary run(ObjectNode base, List<String> lines, PlannerServices services, int concurrency)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        Semaphore slots = new Semaphore(concurrency, true);
+        List<Future<JobResult>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i).trim();
+                if (line.isEmpty()) continue;
+                int lineNo = i + 1;
+                futures.add(executor.submit(() -> runJob(base, lineNo, line, services, slots)));
+            }
+        }
+
+        List<JobResult> jobs = new ArrayList<>();
+        for (Future<JobResult> f : futures) {
+            try {
+                jobs.add(f.get());
+            } catch (Exception e) {
+                throw new IllegalStateException("batch job crashed", e);
+            }
+        }
+        return new Summary((System.nanoTime() - start) / 1_000_000L, jobs, services.geocoder.httpStats(),
+                services.geocoder.sharedLookups(), services.geocodeCache.stats());
+    }
+
+    private static JobResult runJob(ObjectNode base, int lineNo, String line, PlannerServices services,
+                                    Semaphore slots) {
+        long submitted = System.nanoTime();
+        String name = "line " + lineNo;
+        ProjectConfig pcfg;
+        try {
+            JsonNode job = JSON.readTree(line);
+            if (!(job instanceof ObjectNode obj)) throw new IllegalArgumentException("not a JSON object");
+            JsonNode nameNode = obj.remove("name");
+            if (nameNode != null && !nameNode.asText().isBlank()) name = nameNode.asText().trim();
+            pcfg = ProjectConfigLoader.fromTree(ProjectConfigLoader.overlay(base, obj));
+        } catch (IOException | RuntimeException e) {
+            return JobResult.failed(lineNo, name, 0, 0, "bad job: " + e.getMessage());
+        }
+
+        slots.acquireUninterruptibly();
+        long started = System.nanoTime();
+        long queuedMs = (started - submitted) / 1_000_000L;
+        try {
+            RunApp.RunResult r = RunApp.plan(pcfg, services, new RunMetrics());
+            return new JobResult(lineNo, name, true, r.dirs().runDir().getFileName().toString(),
+                    r.dirs().runDir().toString(), r.stops(), r.failed(), r.cost(), queuedMs,
+                    (System.nanoTime() - started) / 1_000_000L, r.stagesMs(), null);
+        } catch (Exception e) {
+            System.err.println("ERROR: batch job " + name + ": " + e.getClass().getName() + ": " + e.getMessage());
+            return JobResult.failed(lineNo, name, queuedMs, (System.nanoTime() - started) / 1_000_000L,
+                    e.getClass().getSimpleName() + ": " + e.getMessage());
+        } finally {
+            slots.release();
+        }
+    }
+
+    public record JobResult(
+            int line,
+            String name,
+            boolean ok,
+            String runId,
+            String runDir,
+            int stops,
+            int failedStops,
+            double cost,
+            long queuedMs,
+            long wallMs,
+            Map<String, Long> stagesMs,
+            String error
+    ) {
+        static JobResult failed(int line, String name, long queuedMs, long wallMs, String error) {
+            return new JobResult(line, name, false, null, null, 0, 0, 0, queuedMs, wallMs, Map.of(), error);
+        }
+    }
+
+    /** geocodeHttp, sharedLookups and geocodeCache are totals over the whole batch. */
+    public record Summary(
+            long wallMs,
+            List<JobResult> jobs,
+            HttpStats geocodeHttp,
+            long sharedLookups,
+            GeocodeCacheStats geocodeCache
+    ) {
+        public long failed() {
+            return jobs.stream().filter(j -> !j.ok()).count();
+        }
+
+        String toText() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.ROOT, "Batch: %d jobs, %d failed, %.1f s wall%n",
+                    jobs.size(), failed(), wallMs / 1000.0));
+            for (JobResult j : jobs) {
+                if (j.ok()) {
+                    sb.append(String.format(Locale.ROOT, "- %-24s ok     %5d stops %4d failed  queued %6d ms  ran %7d ms  %s%n",
+                            j.name(), j.stops(), j.failedStops(), j.queuedMs(), j.wallMs(), j.runDir()));
+                } else {
+                    sb.append(String.format(Locale.ROOT, "- %-24s FAILED %s%n", j.name(), j.error()));
+                }
+            }
+            sb.append(String.format(Locale.ROOT, "Geocode: %d ORS requests, %d shared between jobs in flight%n",
+                    geocodeHttp.requests(), sharedLookups));
+            return sb.toString();
+        }
+    }
+}
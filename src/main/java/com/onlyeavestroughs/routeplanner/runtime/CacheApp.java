@@ -0,0 +1,79 @@
+package com.onlyeavestroughs.routeplanner.runtime;
+
+import com.onlyeavestroughs.routeplanner.cache.GeocodeCacheMaintenance;
+import com.onlyeavestroughs.routeplanner.cache.GeocodeCaches;
+import com.onlyeavestroughs.routeplanner.cache.LogGeocodeCache;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Cache maintenance commands (run via Main with a command argument).
+ */
+public final class CacheApp {
+    private CacheApp() {}
+
+    /** Rewrites cache/geocode.log with one record per address (migrating legacy files first). */
+    public static int compactFromProjectConfig() {
+        try {
+            ProjectConfig pcfg = ProjectConfigLoader.loadFromProjectRoot();
+            Path cacheRoot = Path.of(pcfg.cacheRoot).toAbsolutePath();
+
+            try (LogGeocodeCache cache = LogGeocodeCache.openWithMigration(
+                    GeocodeCaches.logFile(cacheRoot), cacheRoot.resolve("geocode"))) {
+                LogGeocodeCache.CompactResult r = cache.compact();
+                System.out.println("Compacted " + GeocodeCaches.logFile(cacheRoot));
+                System.out.println("- Records: " + r.recordsBefore() + " -> " + r.recordsAfter());
+                System.out.println("- Corrupt records dropped: " + r.corruptDropped());
+                System.out.println("- Bytes: " + r.bytesBefore() + " -> " + r.bytesAfter());
+            }
+            return 0;
+
+        } catch (Exception e) {
+            System.err.println("ERROR: " + e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            return 2;
+        }
+    }
+
+    /**
+     * Reports the geocode cache's size and age, expires entries past the TTL
+     * (geocodeCacheTtlDays, or --ttl-days N; cached failures after geocodeFailureTtlDays),
+     * removes or repairs corrupt entries and compacts the store. --dry-run only reports.
+     */
+    public static int maintainFromProjectConfig(String[] args) {
+        boolean dryRun = false;
+        int ttlDays = -1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--dry-run")) {
+                dryRun = true;
+            } else if (args[i].equals("--ttl-days") && i + 1 < args.length && args[i + 1].matches("\\d{1,6}")) {
+                ttlDays = Integer.parseInt(args[++i]);
+            } else {
+                System.err.println("Usage: routeplanner maintain-cache [--dry-run] [--ttl-days N]");
+                return 64;
+            }
+        }
+        try {
+            ProjectConfig pcfg = ProjectConfigLoader.loadFromProjectRoot();
+            Path cacheRoot = Path.of(pcfg.cacheRoot).toAbsolutePath();
+            if (ttlDays < 0) ttlDays = pcfg.geocodeCacheTtlDays;
+            Duration ttl = ttlDays > 0 ? Duration.ofDays(ttlDays) : null;
+            Duration failureTtl = Duration.ofDays(pcfg.geocodeFailureTtlDays);
+
+            GeocodeCacheMaintenance.Report r = pcfg.geocodeCacheBackend.equals(GeocodeCaches.BACKEND_FILES)
+                    ? GeocodeCacheMaintenance.maintainFiles(cacheRoot.resolve("geocode"), ttl, failureTtl, !dryRun)
+                    : GeocodeCacheMaintenance.maintainLog(GeocodeCaches.logFile(cacheRoot), cacheRoot.resolve("geocode"),
+                            ttl, failureTtl, !dryRun);
+            System.out.println("Geocode cache under " + cacheRoot
+                    + (ttl == null ? " (no TTL)" : " (TTL " + ttlDays + " days)"));
+            System.out.print(r.toText());
+            return 0;
+
+        } catch (Exception e) {
+            System.err.println("ERROR: " + e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            return 2;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.onlyeavestroughs.routeplanner.runtime;
+
+import com.onlyeavestroughs.routeplanner.address.Gazetteer;
+import com.onlyeavestroughs.routeplanner.cache.GeocodeCaches;
+import com.onlyeavestroughs.routeplanner.cache.MemoryGeocodeCache;
+import com.onlyeavestroughs.routeplanner.matrix.MatrixCache;
+import com.onlyeavestroughs.routeplanner.ors.OrsGeocoder;
+import com.onlyeavestroughs.routeplanner.ors.OrsMatrixClient;
+import com.onlyeavestroughs.routeplanner.ors.RateLimiter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Everything a plan uses besides its own config: the geocode cache, gazetteer, ORS
+ * clients (with their rate limiters and HTTP connections) and the matrix caches.
+ *
+ * A CLI run opens one set for a single plan. Serve mode keeps one set open, so only the
+ * first plan pays for loading caches and opening connections. All members are safe to
+ * share between concurrent plans. Their counters are cumulative, so in serve mode the
+ * cache and HTTP figures in a run's report are totals since the service started.
+ */
+final class PlannerServices implements AutoCloseable {
+
+    final Path cacheDir;
+    final MemoryGeocodeCache geocodeCache;
+    final Gazetteer gazetteer;
+    final OrsGeocoder geocoder;
+
+    private final String orsApiKey;
+    private final String orsBaseUrl;
+    private final RateLimiter matrixLimiter;
+    private final Map<String, MatrixCache> matrixCaches = new HashMap<>();
+    private final Map<String, OrsMatrixClient> matrixClients = new HashMap<>();
+
+    private PlannerServices(RunConfig cfg, MemoryGeocodeCache geocodeCache, Gazetteer gazetteer) {
+        this.cacheDir = cfg.cacheRoot();
+        this.geocodeCache = geocodeCache;
+        this.gazetteer = gazetteer;
+        this.geocoder = new OrsGeocoder(cfg.orsApiKey(), geocodeCache,
+                new RateLimiter(cfg.geocodeRequestsPerSecond(), 1), cfg.orsBaseUrl(), gazetteer);
+        this.orsApiKey = cfg.orsApiKey();
+        this.orsBaseUrl = cfg.orsBaseUrl();
+        // One limiter for every profile: the ORS quota is per API key.
+        this.matrixLimiter = new RateLimiter(cfg.matrixRequestsPerSecond(), 1);
+    }
+
+    /** Opens the caches under cfg.cacheRoot(); only the cache and ORS settings of cfg are used. */
+    static PlannerServices open(RunConfig cfg) throws IOException {
+        Files.createDirectories(cfg.cacheRoot());
+        Duration ttl = cfg.geocodeCacheTtlDays() > 0 ? Duration.ofDays(cfg.geocodeCacheTtlDays()) : null;
+        MemoryGeocodeCache geocodeCache = new MemoryGeocodeCache(
+                GeocodeCaches.open(cfg.geocodeCacheBackend(), cfg.cacheRoot()), cfg.geocodeMemoryCacheSize(), ttl,
+                Duration.ofDays(cfg.geocodeFailureTtlDays()));
+        try {
+            return new PlannerServices(cfg, geocodeCache, openGazetteer(cfg));
+        } catch (IOException | RuntimeException e) {
+            geocodeCache.close();
+            throw e;
+        }
+    }
+
+    /** Opened on first use and kept until close. */
+    synchronized MatrixCache matrixCache(String profile) throws IOException {
+        MatrixCache cache = matrixCaches.get(profile);
+        if (cache == null) {
+            cache = MatrixCache.open(cacheDir, profile);
+            matrixCaches.put(profile, cache);
+        }
+        return cache;
+    }
+
+    synchronized OrsMatrixClient matrixClient(String profile) {
+        return matrixClients.computeIfAbsent(profile, p -> new OrsMatrixClient(orsApiKey, p, matrixLimiter, orsBaseUrl));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            for (MatrixCache cache : matrixCaches.values()) cache.close();
+            matrixCaches.clear();
+        } finally {
+            geocodeCache.close();
+        }
+    }
+
+    /** Null when no gazetteer is configured. */
+    private static Gazetteer openGazetteer(RunConfig cfg) throws IOException {
+        if (cfg.gazetteerFile() == null) return null;
+        long start = System.nanoTime();
+        Gazetteer gazetteer = Gazetteer.open(cfg.gazetteerFile(), cfg.cacheRoot().resolve("gazetteer.idx"));
+        System.out.println("Gazetteer: " + gazetteer.size() + " known addresses ("
+                + (System.nanoTime() - start) / 1_000_000L + " ms to open)");
+        return gazetteer;
+    }
+}
@@ -0,0 +1,194 @@
+package com.onlyeavestroughs.routeplanner.runtime;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onlyeavestroughs.routeplanner.address.AddressNormalizer;
+import com.onlyeavestroughs.routeplanner.io.AddressReader;
+import com.onlyeavestroughs.routeplanner.matrix.MatrixResult;
+import com.onlyeavestroughs.routeplanner.matrix.OrsMatrixEngine;
+import com.onlyeavestroughs.routeplanner.ors.OrsGeocoder;
+import com.onlyeavestroughs.routeplanner.ors.OrsGeocoder.GeocodeOutcome;
+import com.onlyeavestroughs.routeplanner.util.HashUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * "prefetch [addresses.txt]": warms the caches the evening before, so tomorrow's plan finds
+ * every address (and optionally every matrix cell) already cached.
+ *
+ * The file (default: run-config.json's input) is read the way a run reads it, with the same
+ * cleaning and near-duplicate merging. Each address is looked up in the gazetteer and the
+ * geocode cache, and only misses go to ORS, one at a time at prefetchRequestsPerSecond. With
+ * prefetchMatrix the matrix for the depot and every geocoded stop is then filled into the
+ * matrix cache at the same rate, when matrixEngine is ors or auto.
+ *
+ * Progress is saved to cache/prefetch/&lt;input hash&gt;.json every PROGRESS_EVERY addresses.
+ * Rerun on an unchanged file, the prefetch carries on after the last saved address; a
+ * changed file starts over. Matrix cells are cached tile by tile, so an interrupted matrix
+ * pass only fetches what is still missing.
+ */
+public final class PrefetchApp {
+    private PrefetchApp() {}
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    static final int PROGRESS_EVERY = 25;
+
+    /** input: the address file, or null for run-config.json's input. */
+    public static int prefetchFromProjectConfig(Path input) {
+        try {
+            ProjectConfig pcfg = ProjectConfigLoader.loadFromProjectRoot();
+            if (input != null) pcfg.input = input.toString();
+            pcfg.geocodeRequestsPerSecond = Math.min(pcfg.geocodeRequestsPerSecond, pcfg.prefetchRequestsPerSecond);
+            pcfg.matrixRequestsPerSecond = Math.min(pcfg.matrixRequestsPerSecond, pcfg.prefetchRequestsPerSecond);
+            RunConfig cfg = RunConfig.from(pcfg, null);
+
+            Result r;
+            try (PlannerServices services = PlannerServices.open(cfg)) {
+                r = run(cfg, services, pcfg.prefetchMatrix);
+            }
+
+            System.out.println("Prefetched " + cfg.inputFile());
+            if (r.resumedAt() > 0) System.out.println("- Resumed after address " + r.resumedAt());
+            System.out.println("- Addresses: " + r.addresses());
+            System.out.println("- Already cached: " + r.cacheHits());
+            System.out.println("- Fetched from ORS: " + r.fetched());
+            System.out.println("- Failed: " + r.failed());
+            if (r.matrix() != null) {
+                System.out.println("- Matrix cells cached before: " + r.matrix().cellsFromCache());
+                System.out.println("- Matrix cells fetched: " + r.matrix().cellsFetched()
+                        + " (" + r.matrix().requests() + " requests)");
+            }
+            System.out.println("- Elapsed: " + r.elapsedMs() + " ms");
+            System.out.println("- Progress: " + r.progressFile());
+            return r.failed() == 0 ? 0 : 1;
+
+        } catch (Exception e) {
+            System.err.println("ERROR: " + e.getClass().getName() + ": " + e.getMessage());
+            System.err.println("Working directory: " + System.getProperty("user.dir"));
+            e.printStackTrace();
+            return 2;
+        }
+    }
+
+    /**
+     * Prefetches cfg.inputFile() into services' caches, resuming from its progress file.
+     * Counts in the result are for the file as a whole, including earlier interrupted runs.
+     */
+    static Result run(RunConfig cfg, PlannerServices services, boolean matrix) throws Exception {
+        long start = System.nanoTime();
+        Path input = cfg.inputFile();
+        Path progressFile = progressFile(cfg.cacheRoot(), input);
+        long inputBytes = Files.size(input);
+        long inputModified = Files.getLastModifiedTime(input).toMillis();
+
+        String depotKey = AddressNormalizer.canonical(cfg.depotAddress());
+        List<String> addresses = new ArrayList<>();
+        AddressReader.read(input, cfg.mergeNearDuplicates(), a -> {
+            if (!AddressNormalizer.canonical(a).equals(depotKey)) addresses.add(a);
+        });
+
+        Progress p = loadProgress(progressFile, input, inputBytes, inputModified);
+        if (p == null || p.done() > addresses.size()) {
+            p = new Progress(input.toString(), inputBytes, inputModified, addresses.size(), 0, 0, 0, 0, false);
+        }
+        int resumedAt = p.done();
+
+        OrsGeocoder geocoder = services.geocoder;
+        GeocodeOutcome depot = geocoder.forwardGeocode(cfg.depotAddress());
+        int hits = p.cacheHits();
+        int fetched = p.fetched();
+        int failed = p.failed();
+        for (int i = resumedAt; i < addresses.size(); i++) {
+            String a = addresses.get(i);
+            GeocodeOutcome local = geocoder.lookupLocal(a);
+            if (local != null) {
+                if (local.success()) hits++;
+                else failed++; // a cached failure: known bad, not asked again
+            } else if (geocoder.forwardGeocode(a).success()) {
+                fetched++;
+            } else {
+                failed++;
+            }
+            if ((i + 1) % PROGRESS_EVERY == 0 || i + 1 == addresses.size()) {
+                p = new Progress(p.input(), inputBytes, inputModified, addresses.size(), i + 1, hits, fetched, failed, false);
+                saveProgress(progressFile, p);
+            }
+        }
+
+        MatrixResult matrixResult = null;
+        if (matrix && !p.matrixDone()) {
+            if (cfg.matrixEngine().equals("haversine")) {
+                System.err.println("WARN: prefetch: matrixEngine is haversine; nothing to prefetch for the matrix");
+            } else if (!depot.success()) {
+                System.err.println("WARN: prefetch: depot did not geocode (" + depot.message() + "); skipping the matrix");
+            } else {
+                matrixResult = prefetchMatrix(cfg, services, depot, addresses);
+                p = new Progress(p.input(), inputBytes, inputModified, addresses.size(), p.done(), hits, fetched, failed, true);
+                saveProgress(progressFile, p);
+            }
+        }
+
+        return new Result(addresses.size(), resumedAt, hits, fetched, failed, matrixResult, progressFile,
+                (System.nanoTime() - start) / 1_000_000L);
+    }
+
+    /** Depot plus every stop now known locally: the matrix the next plan of this file needs. */
+    private static MatrixResult prefetchMatrix(RunConfig cfg, PlannerServices services, GeocodeOutcome depot,
+                                               List<String> addresses) throws Exception {
+        double[] lat = new double[addresses.size() + 1];
+        double[] lng = new double[addresses.size() + 1];
+        lat[0] = depot.lat();
+        lng[0] = depot.lng();
+        int n = 1;
+        for (String a : addresses) {
+            GeocodeOutcome o = services.geocoder.lookupLocal(a);
+            if (o == null || !o.success()) continue;
+            lat[n] = o.lat();
+            lng[n] = o.lng();
+            n++;
+        }
+        // One tile at a time: the rate limiter paces them anyway.
+        return new OrsMatrixEngine(services.matrixClient(cfg.profile()), services.matrixCache(cfg.profile()),
+                cfg.matrixTileSize(), 1).compute(Arrays.copyOf(lat, n), Arrays.copyOf(lng, n));
+    }
+
+    static Path progressFile(Path cacheRoot, Path input) {
+        String hash = HashUtil.sha1Hex(input.toAbsolutePath().normalize().toString()).substring(0, 16);
+        return cacheRoot.resolve("prefetch").resolve(hash + ".json");
+    }
+
+    /** Null when there is none, it is unreadable, or input has changed since it was written. */
+    private static Progress loadProgress(Path file, Path input, long inputBytes, long inputModified) {
+        if (!Files.isRegularFile(file)) return null;
+        try {
+            Progress p = JSON.readValue(file.toFile(), Progress.class);
+            if (p.inputBytes() == inputBytes && p.inputModifiedMs() == inputModified) return p;
+            System.out.println("Prefetch: " + input + " changed since the last prefetch; starting over");
+        } catch (IOException e) {
+            System.err.println("WARN: prefetch: unreadable progress file " + file + "; starting over");
+        }
+        return null;
+    }
+
+    /** Written aside and moved into place, so an interruption never leaves half a file. */
+    private static void saveProgress(Path file, Progress p) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        JSON.writeValue(tmp.toFile(), p);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** The progress file: done = addresses handled, in the reader's order. */
+    record Progress(String input, long inputBytes, long inputModifiedMs, int addresses, int done,
+                    int cacheHits, int fetched, int failed, boolean matrixDone) {}
+
+    /** matrix is null when the matrix was not prefetched this time. */
+    record Result(int addresses, int resumedAt, int cacheHits, int fetched, int failed, MatrixResult matrix,
+                  Path progressFile, long elapsedMs) {}
+}
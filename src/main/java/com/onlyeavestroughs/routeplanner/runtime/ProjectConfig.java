@@ -2,6 +2,9 @@ package com.onlyeavestroughs.routeplanner.runtime;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Configuration stored in run-config.json (project root).
  * Designed for IntelliJ ▶ runs (no CLI args required).
@@ -20,6 +23,170 @@ public final class ProjectConfig {
     /** REQUIRED: OpenRouteService API key (fake keys are fine for repo). */
     public String orsApiKey;
 
+    /** ORS server for geocoding and matrices: the public API, or a self-hosted instance. */
+    public String orsBaseUrl = "https://api.openrouteservice.org";
+
     /** ORS profile (we’ll keep driving-car for now). */
     public String profile = "driving-car";
+
+    /**
+     * Merge input lines that only differ in case, punctuation or abbreviations
+     * ("123 Main St." / "123 main street") before geocoding.
+     */
+    public boolean mergeNearDuplicates = true;
+
+    /**
+     * Optional CSV of known addresses (address,lat,lng). Matches are taken from it before
+     * the geocode cache and ORS. Compiled to cacheRoot/gazetteer.idx on first use.
+     */
+    public String gazetteerFile = "";
+
+    /** Max geocode lookups in flight at once. */
+    public int geocodeConcurrency = 8;
+
+    /** Geocode request budget; the ORS free plan allows 100/minute. */
+    public double geocodeRequestsPerSecond = 1.6;
+
+    /** Geocode cache storage: "log" (single indexed file) or "files" (one JSON per address). */
+    public String geocodeCacheBackend = "log";
+
+    /** Entries kept in the in-process LRU tier. */
+    public int geocodeMemoryCacheSize = 10_000;
+
+    /** Re-geocode entries older than this many days (by cachedAt). 0 = never expire. */
+    public int geocodeCacheTtlDays = 0;
+
+    /**
+     * Addresses ORS could not resolve (no results, 400/422) are cached and not sent again
+     * for this many days. 0 = never cache failures.
+     */
+    public int geocodeFailureTtlDays = 7;
+
+    /** Max sources (and destinations) per ORS matrix request. */
+    public int matrixTileSize = 25;
+
+    /** Max matrix tiles in flight at once. */
+    public int matrixConcurrency = 4;
+
+    /** Matrix request budget; the ORS free plan allows 40/minute. */
+    public double matrixRequestsPerSecond = 0.66;
+
+    /**
+     * Cost matrix source:
+     * - "auto": ORS Matrix API, falling back to haversine if ORS fails
+     * - "ors": ORS only (a failure aborts the run)
+     * - "haversine": offline great-circle estimate, no API calls
+     */
+    public String matrixEngine = "auto";
+
+    /** Road distance / straight-line distance, used by the haversine engine. */
+    public double detourFactor = 1.3;
+
+    /** Average speed per ORS profile for the haversine engine; missing profiles use built-in defaults. */
+    public Map<String, Double> averageSpeedKmh = new LinkedHashMap<>();
+
+    /** Number of crews (routes) to split the day across. */
+    public int crews = 4;
+
+    /** Per-route stop cap that keeps crews balanced. 0 = even split + 10%. */
+    public int maxStopsPerRoute = 0;
+
+    /** Wall-clock budget for route optimization. */
+    public long optimizerTimeBudgetMs = 5_000;
+
+    /** What the optimizer minimizes: "duration" or "distance". */
+    public String optimizeFor = "duration";
+
+    /** Threads running the optimizer's starts. 0 = one per CPU core. */
+    public int optimizerWorkers = 0;
+
+    /**
+     * Randomized starts the optimizer runs (split across territories when clustering).
+     * 0 = one per optimizerWorkers thread, which makes the count, and so the routes,
+     * depend on the machine's cores; set it to get the same plan on every machine.
+     */
+    public int optimizerStarts = 0;
+
+    /**
+     * Seed for the randomized starts. The same seed and optimizerStarts reproduce the same
+     * routes on any machine, unless optimizerTimeBudgetMs cuts the search short.
+     */
+    public long optimizerSeed = 1;
+
+    /** A worker stops after this many perturbations in a row without improving. */
+    public int optimizerPlateauIterations = 200;
+
+    /** Hard cap on perturbations per worker. */
+    public int optimizerMaxIterations = 10_000;
+
+    /**
+     * Split stops into one territory per crew before routing, then route each on its own:
+     * - "none": one optimization across all crews
+     * - "kmeans": capacitated k-means (compact territories)
+     * - "sweep": balanced sectors around the depot
+     */
+    public String clusterMethod = "none";
+
+    /**
+     * On-site minutes for a stop whose input line gives none ("address | 09:00-11:00 | 45"
+     * gives 45). Used for arrival times and to balance territories.
+     */
+    public double serviceMinutesPerStop = 30;
+
+    /** When crews leave the depot, "HH:MM". */
+    public String shiftStart = "08:00";
+
+    /** When crews must be back at the depot, "HH:MM"; blank = no limit. */
+    public String shiftEnd = "";
+
+    /** Per-territory cap on estimated service minutes. 0 = no cap (stop cap still applies). */
+    public double maxServiceMinutesPerRoute = 0;
+
+    /** Hard cap on k-means assign/recenter rounds. */
+    public int clusterMaxIterations = 50;
+
+    /**
+     * Start from the previous run's routes.json: reuse its coordinates, insert new stops
+     * into its routes and repair locally instead of planning from scratch.
+     */
+    public boolean incremental = false;
+
+    /**
+     * routes.json (or routes.bin) to start from in incremental mode. Blank = newest run
+     * under outRoot planned from the same depot.
+     */
+    public String previousRoutes = "";
+
+    /**
+     * Also write routes.bin: stop IDs, coordinates and routes in little-endian columns that
+     * can be memory-mapped. Incremental runs read it instead of routes.json when present.
+     */
+    public boolean writeRoutesBinary = false;
+
+    /**
+     * Stops between origin and destination in one Google Maps link (Maps takes 9); longer
+     * routes are split into consecutive links.
+     */
+    public int googleMapsMaxWaypoints = 9;
+
+    /** Loopback port for "serve" mode. */
+    public int servePort = 8765;
+
+    /**
+     * Plans "serve" mode runs at once; further requests wait. Each plan already uses
+     * optimizerWorkers cores, so more rarely helps.
+     */
+    public int serveMaxConcurrentPlans = 2;
+
+    /** Jobs a "batch" run plans at once; they share the geocode and matrix caches. */
+    public int batchConcurrency = 2;
+
+    /**
+     * ORS requests per second for "prefetch" (geocode and matrix alike), kept well under the
+     * planning rates so an evening prefetch leaves quota for daytime runs.
+     */
+    public double prefetchRequestsPerSecond = 0.5;
+
+    /** Also fill the matrix cache for the depot and the prefetched stops (ORS engine only). */
+    public boolean prefetchMatrix = false;
 }
@@ -1,29 +1,114 @@
 package com.onlyeavestroughs.routeplanner.runtime;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.onlyeavestroughs.routeplanner.util.TimeOfDay;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 public final class ProjectConfigLoader {
     private ProjectConfigLoader() {}
 
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /**
+     * Fields read once per process: the shared caches and ORS clients are built from them,
+     * or they size the serve/batch runner. Per-plan overrides may not change them.
+     */
+    public static final Set<String> PROCESS_FIELDS = Set.of(
+            "orsApiKey", "orsBaseUrl", "cacheRoot", "geocodeCacheBackend", "geocodeMemoryCacheSize", "geocodeCacheTtlDays",
+            "geocodeFailureTtlDays", "gazetteerFile", "geocodeRequestsPerSecond", "matrixRequestsPerSecond",
+            "servePort", "serveMaxConcurrentPlans", "batchConcurrency");
+
+    private static final Set<String> FIELDS = fieldNames();
+
+    private static final Map<String, Double> DEFAULT_SPEEDS_KMH = Map.of(
+            "driving-car", 50.0,
+            "driving-hgv", 45.0,
+            "cycling-regular", 15.0,
+            "foot-walking", 5.0
+    );
+
+    /** Average speed for the profile; unknown profiles assume car speed. */
+    static double speedFor(ProjectConfig cfg, String profile) {
+        Double v = cfg.averageSpeedKmh.get(profile);
+        return v != null && v > 0 ? v : DEFAULT_SPEEDS_KMH.get("driving-car");
+    }
+
     public static ProjectConfig loadFromProjectRoot() {
+        Path cfgPath = Path.of("run-config.json");
+        if (!Files.exists(cfgPath)) {
+            throw new IllegalStateException(
+                    "Missing run-config.json in working directory: " + Path.of(".").toAbsolutePath()
+            );
+        }
+        return load(cfgPath);
+    }
+
+    /** Loads, validates and defaults a run-config.json style file. */
+    public static ProjectConfig load(Path cfgPath) {
         try {
-            Path cfgPath = Path.of("run-config.json");
-            if (!Files.exists(cfgPath)) {
-                throw new IllegalStateException(
-                        "Missing run-config.json in working directory: " + Path.of(".").toAbsolutePath()
-                );
-            }
+            ProjectConfig cfg = JSON.readValue(cfgPath.toFile(), ProjectConfig.class);
 
-            ObjectMapper mapper = new ObjectMapper();
-            ProjectConfig cfg = mapper.readValue(cfgPath.toFile(), ProjectConfig.class);
+            validateAndDefault(cfg);
+            return cfg;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to load " + cfgPath.getFileName() + ": " + e.getMessage(), e);
+        }
+    }
 
+    /** The raw run-config.json, for callers that layer per-request overrides on top. */
+    public static ObjectNode readTree(Path cfgPath) {
+        try {
+            JsonNode node = JSON.readTree(cfgPath.toFile());
+            if (!(node instanceof ObjectNode obj)) throw new IllegalStateException("not a JSON object");
+            return obj;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to load " + cfgPath.getFileName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * base with a plan's overrides laid over it. Unknown fields (likely typos) and
+     * PROCESS_FIELDS are rejected with IllegalArgumentException.
+     */
+    public static ObjectNode overlay(ObjectNode base, JsonNode overrides) {
+        ObjectNode merged = base.deepCopy();
+        if (overrides == null || overrides.isMissingNode() || overrides.isNull()) return merged;
+        if (!(overrides instanceof ObjectNode obj)) throw new IllegalArgumentException("overrides must be a JSON object");
+
+        for (Iterator<String> it = obj.fieldNames(); it.hasNext(); ) {
+            String field = it.next();
+            if (!FIELDS.contains(field)) throw new IllegalArgumentException("unknown config field: " + field);
+            if (PROCESS_FIELDS.contains(field)) {
+                throw new IllegalArgumentException(field + " is fixed for the process and cannot be set per plan");
+            }
+        }
+        merged.setAll(obj);
+        return merged;
+    }
+
+    /** Validates and defaults a config given as a JSON tree (e.g. run-config.json plus overrides). */
+    public static ProjectConfig fromTree(JsonNode node) {
+        try {
+            ProjectConfig cfg = JSON.treeToValue(node, ProjectConfig.class);
             validateAndDefault(cfg);
             return cfg;
+        } catch (IllegalStateException e) {
+            throw e;
         } catch (Exception e) {
-            throw new IllegalStateException("Failed to load run-config.json: " + e.getMessage(), e);
+            throw new IllegalStateException("Invalid config: " + e.getMessage(), e);
         }
     }
 
@@ -39,14 +124,88 @@ public final class ProjectConfigLoader {
         if (isBlank(cfg.profile)) cfg.profile = "driving-car";
         if (isBlank(cfg.outRoot)) cfg.outRoot = "output";
         if (isBlank(cfg.cacheRoot)) cfg.cacheRoot = "cache";
+        if (cfg.geocodeConcurrency <= 0) cfg.geocodeConcurrency = 8;
+        if (cfg.geocodeRequestsPerSecond <= 0) cfg.geocodeRequestsPerSecond = 1.6;
+        if (cfg.gazetteerFile == null) cfg.gazetteerFile = "";
+        if (isBlank(cfg.geocodeCacheBackend)) cfg.geocodeCacheBackend = "log";
+        if (cfg.geocodeMemoryCacheSize <= 0) cfg.geocodeMemoryCacheSize = 10_000;
+        if (isBlank(cfg.orsBaseUrl)) cfg.orsBaseUrl = "https://api.openrouteservice.org";
+        if (cfg.geocodeCacheTtlDays < 0) cfg.geocodeCacheTtlDays = 0;
+        if (cfg.geocodeFailureTtlDays < 0) cfg.geocodeFailureTtlDays = 0;
+        if (cfg.matrixTileSize <= 0) cfg.matrixTileSize = 25;
+        if (cfg.matrixConcurrency <= 0) cfg.matrixConcurrency = 4;
+        if (cfg.matrixRequestsPerSecond <= 0) cfg.matrixRequestsPerSecond = 0.66;
+        if (isBlank(cfg.matrixEngine)) cfg.matrixEngine = "auto";
+        if (cfg.detourFactor <= 0) cfg.detourFactor = 1.3;
+        if (cfg.crews <= 0) cfg.crews = 4;
+        if (cfg.maxStopsPerRoute < 0) cfg.maxStopsPerRoute = 0;
+        if (cfg.optimizerTimeBudgetMs <= 0) cfg.optimizerTimeBudgetMs = 5_000;
+        if (isBlank(cfg.optimizeFor)) cfg.optimizeFor = "duration";
+        if (cfg.optimizerWorkers <= 0) cfg.optimizerWorkers = Runtime.getRuntime().availableProcessors();
+        if (cfg.optimizerStarts <= 0) cfg.optimizerStarts = cfg.optimizerWorkers;
+        if (cfg.optimizerPlateauIterations <= 0) cfg.optimizerPlateauIterations = 200;
+        if (cfg.optimizerMaxIterations < 0) cfg.optimizerMaxIterations = 10_000;
+        if (isBlank(cfg.clusterMethod)) cfg.clusterMethod = "none";
+        if (cfg.serviceMinutesPerStop < 0) cfg.serviceMinutesPerStop = 30;
+        if (cfg.maxServiceMinutesPerRoute < 0) cfg.maxServiceMinutesPerRoute = 0;
+        if (cfg.clusterMaxIterations <= 0) cfg.clusterMaxIterations = 50;
+        if (cfg.previousRoutes == null) cfg.previousRoutes = "";
+        if (cfg.servePort <= 0) cfg.servePort = 8765;
+        if (cfg.serveMaxConcurrentPlans <= 0) cfg.serveMaxConcurrentPlans = 2;
+        if (cfg.batchConcurrency <= 0) cfg.batchConcurrency = 2;
+        if (cfg.googleMapsMaxWaypoints <= 0) cfg.googleMapsMaxWaypoints = 9;
+        if (cfg.prefetchRequestsPerSecond <= 0) cfg.prefetchRequestsPerSecond = 0.5;
+        if (isBlank(cfg.shiftStart)) cfg.shiftStart = "08:00";
+        if (cfg.shiftEnd == null) cfg.shiftEnd = "";
+        if (cfg.averageSpeedKmh == null) cfg.averageSpeedKmh = new LinkedHashMap<>();
+        for (Map.Entry<String, Double> e : DEFAULT_SPEEDS_KMH.entrySet()) {
+            Double v = cfg.averageSpeedKmh.get(e.getKey());
+            if (v == null || v <= 0) cfg.averageSpeedKmh.put(e.getKey(), e.getValue());
+        }
 
         // Trim
         cfg.depot = cfg.depot.trim();
         cfg.input = cfg.input.trim();
         cfg.orsApiKey = cfg.orsApiKey.trim();
+        cfg.orsBaseUrl = cfg.orsBaseUrl.trim().replaceAll("/+$", "");
         cfg.profile = cfg.profile.trim();
         cfg.outRoot = cfg.outRoot.trim();
         cfg.cacheRoot = cfg.cacheRoot.trim();
+        cfg.gazetteerFile = cfg.gazetteerFile.trim();
+        cfg.geocodeCacheBackend = cfg.geocodeCacheBackend.trim().toLowerCase(Locale.ROOT);
+        cfg.matrixEngine = cfg.matrixEngine.trim().toLowerCase(Locale.ROOT);
+        cfg.optimizeFor = cfg.optimizeFor.trim().toLowerCase(Locale.ROOT);
+        cfg.clusterMethod = cfg.clusterMethod.trim().toLowerCase(Locale.ROOT);
+        cfg.previousRoutes = cfg.previousRoutes.trim();
+        cfg.shiftStart = cfg.shiftStart.trim();
+        cfg.shiftEnd = cfg.shiftEnd.trim();
+
+        if (!List.of("auto", "ors", "haversine").contains(cfg.matrixEngine)) {
+            throw new IllegalStateException("run-config.json matrixEngine must be auto, ors or haversine");
+        }
+        if (!List.of("duration", "distance").contains(cfg.optimizeFor)) {
+            throw new IllegalStateException("run-config.json optimizeFor must be duration or distance");
+        }
+        if (!List.of("none", "kmeans", "sweep").contains(cfg.clusterMethod)) {
+            throw new IllegalStateException("run-config.json clusterMethod must be none, kmeans or sweep");
+        }
+        if (cfg.googleMapsMaxWaypoints > 25) {
+            throw new IllegalStateException("run-config.json googleMapsMaxWaypoints must be at most 25");
+        }
+        if (TimeOfDay.parse(cfg.shiftStart) < 0) {
+            throw new IllegalStateException("run-config.json shiftStart must be HH:MM");
+        }
+        if (!cfg.shiftEnd.isEmpty() && TimeOfDay.parse(cfg.shiftEnd) <= TimeOfDay.parse(cfg.shiftStart)) {
+            throw new IllegalStateException("run-config.json shiftEnd must be HH:MM after shiftStart");
+        }
+    }
+
+    private static Set<String> fieldNames() {
+        Set<String> names = new TreeSet<>();
+        for (Field f : ProjectConfig.class.getFields()) {
+            if (!Modifier.isStatic(f.getModifiers())) names.add(f.getName());
+        }
+        return names;
     }
 
     private static boolean isBlank(String s) {
@@ -1,16 +1,34 @@
 package com.onlyeavestroughs.routeplanner.runtime;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.onlyeavestroughs.routeplanner.address.AddressNormalizer;
+import com.onlyeavestroughs.routeplanner.address.Gazetteer;
+import com.onlyeavestroughs.routeplanner.cluster.Territories;
+import com.onlyeavestroughs.routeplanner.cluster.TerritoryClusterer;
+import com.onlyeavestroughs.routeplanner.cache.MemoryGeocodeCache;
 import com.onlyeavestroughs.routeplanner.io.AddressReader;
+import com.onlyeavestroughs.routeplanner.io.PreviousPlan;
 import com.onlyeavestroughs.routeplanner.io.ReportWriter;
+import com.onlyeavestroughs.routeplanner.io.RoutesBinary;
+import com.onlyeavestroughs.routeplanner.matrix.CostMatrix;
+import com.onlyeavestroughs.routeplanner.matrix.HaversineMatrixEngine;
+import com.onlyeavestroughs.routeplanner.matrix.MatrixCache;
+import com.onlyeavestroughs.routeplanner.matrix.MatrixEngine;
+import com.onlyeavestroughs.routeplanner.matrix.MatrixResult;
+import com.onlyeavestroughs.routeplanner.matrix.OrsMatrixEngine;
+import com.onlyeavestroughs.routeplanner.ors.GeocodePipeline;
 import com.onlyeavestroughs.routeplanner.ors.OrsGeocoder;
 import com.onlyeavestroughs.routeplanner.ors.OrsGeocoder.GeocodeOutcome;
+import com.onlyeavestroughs.routeplanner.ors.OrsMatrixClient;
+import com.onlyeavestroughs.routeplanner.optimize.ClusteredOptimizer;
+import com.onlyeavestroughs.routeplanner.optimize.MultiStartOptimizer;
+import com.onlyeavestroughs.routeplanner.optimize.OptimizeResult;
+import com.onlyeavestroughs.routeplanner.optimize.RouteOptimizer;
+import com.onlyeavestroughs.routeplanner.optimize.TimeWindows;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.ZoneId;
@@ -24,148 +42,357 @@ public final class RunApp {
     public static int runFromProjectConfig() {
         try {
             ProjectConfig pcfg = ProjectConfigLoader.loadFromProjectRoot();
+            RunMetrics metrics = new RunMetrics();
 
-            String runId = makeRunId();
-            RunConfig cfg = new RunConfig(
-                    pcfg.depot.trim(),
-                    Path.of(pcfg.input).toAbsolutePath(),
-                    Path.of(pcfg.outRoot).toAbsolutePath(),
-                    Path.of(pcfg.cacheRoot).toAbsolutePath(),
-                    runId,
-                    pcfg.orsApiKey.trim(),
-                    pcfg.profile.trim()
-            );
+            PlannerServices services = metrics.stage("caches", () -> PlannerServices.open(RunConfig.from(pcfg, null)));
+            try (services) {
+                plan(pcfg, services, metrics);
+            }
+            return 0;
 
-            RunDirs dirs = initDirs(cfg);
+        } catch (Exception e) {
+            System.err.println("ERROR: " + e.getClass().getName() + ": " + e.getMessage());
+            System.err.println("Working directory: " + System.getProperty("user.dir"));
+            e.printStackTrace();
+            return 2;
+        }
+    }
 
+    /**
+     * One plan with already-open services: allocates a run directory under outRoot and
+     * writes the run's outputs there. Safe to call concurrently with the same services.
+     */
+    static RunResult plan(ProjectConfig pcfg, PlannerServices services, RunMetrics metrics) throws Exception {
+        RunConfig cfg = RunConfig.from(pcfg, allocateRunId(Path.of(pcfg.outRoot).toAbsolutePath()));
+        RunDirs dirs = initDirs(cfg, services.cacheDir);
+        return runPipeline(cfg, dirs, services, metrics);
+    }
+
+    private static RunResult runPipeline(
+            RunConfig cfg,
+            RunDirs dirs,
+            PlannerServices services,
+            RunMetrics metrics
+    ) throws Exception {
+        OrsGeocoder geocoder = services.geocoder;
+        MemoryGeocodeCache geocodeCache = services.geocodeCache;
+        Gazetteer gazetteer = services.gazetteer;
+
+        GeocodeOutcome depotGeo = metrics.stage("depot", () -> geocoder.forwardGeocode(cfg.depotAddress()));
+        if (!depotGeo.success()) {
             AddressReader.ReadResult read = AddressReader.read(cfg.inputFile());
-            List<String> stopsRaw = stripDepotIfPresent(read.addresses(), cfg.depotAddress());
+            metrics.geocodeHttp(geocoder.httpStats());
+            writeReports(cfg, dirs, read, depotGeo, null, geocodeCache, gazetteer, null, null, null, null, null, metrics);
+            throw new IllegalStateException("Depot geocoding failed: " + depotGeo.message());
+        }
 
-            OrsGeocoder geocoder = new OrsGeocoder(cfg.orsApiKey(), dirs.cacheDir().resolve("geocode"));
+        // Incremental mode: stops already in the previous plan keep its coordinates.
+        String depotKey = AddressNormalizer.canonical(cfg.depotAddress());
+        PreviousPlan previous = cfg.incremental() ? loadPreviousPlan(cfg, depotKey) : null;
+        Map<String, Integer> previousByKey = new HashMap<>();
+        if (previous != null) {
+            metrics.read("previous routes.json", Files.size(previous.file()));
+            StopTable old = previous.stops();
+            for (int row = 1; row <= old.size(); row++) {
+                previousByKey.putIfAbsent(AddressNormalizer.canonical(old.address(row)), row);
+            }
+        }
 
-            GeocodeOutcome depotGeo = geocoder.forwardGeocode(cfg.depotAddress());
-            if (!depotGeo.success()) {
-                ReportWriter.writeDebugReport(dirs.debugReport(), cfg, read, depotGeo, List.of(), List.of(), 0, 0);
-                throw new IllegalStateException("Depot geocoding failed: " + depotGeo.message());
+        // Addresses go to the geocoder as they are read, so lookups overlap the file read.
+        List<String> stopsRaw = new ArrayList<>();
+        List<GeocodeOutcome> reused = new ArrayList<>();
+        Geocoded geocoded = metrics.stage("geocode", () -> {
+            try (GeocodePipeline pipeline = new GeocodePipeline(geocoder, cfg.geocodeConcurrency())) {
+                AddressReader.ReadResult r = metrics.stage("read", () ->
+                        AddressReader.read(cfg.inputFile(), cfg.mergeNearDuplicates(), addr -> {
+                            long normalizeStart = System.nanoTime();
+                            String key = AddressNormalizer.canonical(addr);
+                            metrics.addNormalizeNanos(System.nanoTime() - normalizeStart);
+                            if (key.equals(depotKey)) return;
+                            stopsRaw.add(addr);
+                            Integer known = previousByKey.get(key);
+                            if (known != null) {
+                                reused.add(GeocodeOutcome.ok(addr, previous.stops().lat(known), previous.stops().lng(known),
+                                        true, "previous run"));
+                            } else {
+                                reused.add(null);
+                                pipeline.submit(addr);
+                            }
+                        }));
+                return new Geocoded(r, pipeline.awaitAll());
             }
+        });
+        AddressReader.ReadResult read = geocoded.read();
+        List<GeocodeOutcome> outcomes = geocoded.outcomes();
+        metrics.read("input", Files.size(cfg.inputFile()));
+        metrics.geocodeHttp(geocoder.httpStats());
 
-            List<Stop> stops = new ArrayList<>();
-            List<String> failedStops = new ArrayList<>();
-            int cacheHits = depotGeo.fromCache() ? 1 : 0;
-            int apiHits = depotGeo.fromCache() ? 0 : 1;
-
-            int id = 1;
-            for (String addr : stopsRaw) {
-                GeocodeOutcome geo = geocoder.forwardGeocode(addr);
-                if (geo.success()) {
-                    stops.add(new Stop(id++, addr, geo.lat(), geo.lng()));
-                    if (geo.fromCache()) cacheHits++; else apiHits++;
+        // Matrix/optimizer index i is table row i: 0 is the depot, stop IDs follow input order.
+        StopTable stops = new StopTable(cfg.depotAddress(), depotGeo.lat(), depotGeo.lng(), stopsRaw.size());
+        int defaultServiceSeconds = (int) Math.round(cfg.serviceMinutesPerStop() * 60);
+        int id = 1;
+        int fetched = 0;
+        for (int i = 0; i < stopsRaw.size(); i++) {
+            String addr = stopsRaw.get(i);
+            boolean fromPrevious = reused.get(i) != null;
+            GeocodeOutcome geo = fromPrevious ? reused.get(i) : outcomes.get(fetched++);
+            if (geo.success()) {
+                byte source = fromPrevious ? StopTable.PREVIOUS_PLAN : geo.fromCache() ? StopTable.CACHE : StopTable.ORS;
+                AddressReader.Timing t = read.timings().get(addr);
+                if (t == null) {
+                    stops.add(id++, addr, geo.lat(), geo.lng(), source,
+                            StopTable.NO_WINDOW, StopTable.NO_WINDOW, defaultServiceSeconds);
                 } else {
-                    failedStops.add(addr + " | " + geo.message());
+                    stops.add(id++, addr, geo.lat(), geo.lng(), source, t.windowOpen(), t.windowClose(),
+                            t.serviceSeconds() >= 0 ? t.serviceSeconds() : defaultServiceSeconds);
                 }
+            } else {
+                stops.addFailure(addr, geo.failure(), geo.message(), geo.fromCache());
             }
+        }
+        double[] lat = stops.lat();
+        double[] lng = stops.lng();
 
-            ReportWriter.writeRoutesTxt(dirs.routesTxt(), cfg, depotGeo, stops);
-            writeRoutesJson(dirs.routesJson(), cfg, depotGeo, stops, failedStops);
-            ReportWriter.writeDebugReport(dirs.debugReport(), cfg, read, depotGeo, stopsRaw, failedStops, cacheHits, apiHits);
+        Replan diffed = previous == null ? null : diffAgainst(previous, stops);
+        boolean mostlyNew = diffed != null && diffed.diff().added() + diffed.diff().removed() > diffed.diff().kept();
+        if (mostlyNew) {
+            System.err.println("WARN: more than half the stops changed since " + previous.file()
+                    + "; planning from scratch");
+        }
+        Replan replan = mostlyNew ? null : diffed;
 
-            System.out.println("Run created: " + dirs.runDir());
-            System.out.println("- " + dirs.routesTxt());
-            System.out.println("- " + dirs.routesJson());
-            System.out.println("- " + dirs.debugReport());
-            return 0;
+        Territories territories = replan == null ? metrics.stage("cluster", () -> clusterStops(cfg, stops)) : null;
+        MatrixResult matrix = metrics.stage("matrix", () -> buildMatrix(cfg, services, lat, lng, metrics));
+        TimeWindows windows = timeWindows(cfg, stops, matrix.matrix());
+        OptimizeResult plan = metrics.stage("optimize", () -> replan == null
+                ? optimizeRoutes(cfg, matrix.matrix(), lat, lng, territories, windows)
+                : repairRoutes(cfg, matrix.matrix(), lat, lng, replan, windows));
+        TimeWindows.Schedule[] schedules = new TimeWindows.Schedule[plan.routes().length];
+        for (int r = 0; r < schedules.length; r++) schedules[r] = windows.schedule(plan.routes()[r]);
 
-        } catch (Exception e) {
-            System.err.println("ERROR: " + e.getClass().getName() + ": " + e.getMessage());
-            System.err.println("Working directory: " + System.getProperty("user.dir"));
-            e.printStackTrace();
-            return 2;
-        }
-    }
+        metrics.stage("write", () -> {
+            ReportWriter.writeRoutesTxt(dirs.routesTxt(), cfg, depotGeo, stops, matrix.matrix(), plan, schedules);
+            ReportWriter.writeRoutesJson(dirs.routesJson(), cfg, stops, matrix.matrix(), plan, schedules);
+            if (cfg.writeRoutesBinary()) RoutesBinary.write(dirs.routesBin(), dirs.routesJson(), cfg, stops, plan);
+        });
+        metrics.wrote("routes.txt", Files.size(dirs.routesTxt()));
+        metrics.wrote("routes.json", Files.size(dirs.routesJson()));
+        if (cfg.writeRoutesBinary()) metrics.wrote("routes.bin", Files.size(dirs.routesBin()));
+        writeReports(cfg, dirs, read, depotGeo, stops, geocodeCache, gazetteer, matrix, territories,
+                replan == null ? null : replan.diff(), plan, schedules, metrics);
 
-    private static String makeRunId() {
-        ZonedDateTime now = ZonedDateTime.now(ZoneId.of("America/Toronto"));
-        return now.format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        System.out.println("Run created: " + dirs.runDir());
+        System.out.println("- " + dirs.routesTxt());
+        System.out.println("- " + dirs.routesJson());
+        if (cfg.writeRoutesBinary()) System.out.println("- " + dirs.routesBin());
+        System.out.println("- " + dirs.debugReport());
+        System.out.println("- " + dirs.metricsJson());
+        return new RunResult(dirs, stops.size(), stops.failedCount(), plan.cost(), metrics.stagesMs());
     }
 
-    private static RunDirs initDirs(RunConfig cfg) throws Exception {
-        Files.createDirectories(cfg.outRoot());
-        Files.createDirectories(cfg.cacheRoot());
+    /**
+     * debug_report.txt, then metrics.json (which counts the report's bytes; the report cannot).
+     * stops is null when the depot failed.
+     */
+    private static void writeReports(RunConfig cfg, RunDirs dirs, AddressReader.ReadResult read, GeocodeOutcome depotGeo,
+                                     StopTable stops, MemoryGeocodeCache geocodeCache, Gazetteer gazetteer, MatrixResult matrix, Territories territories,
+                                     PreviousPlan.Diff replan, OptimizeResult plan, TimeWindows.Schedule[] schedules,
+                                     RunMetrics metrics) throws IOException {
+        Gazetteer.Stats gazetteerStats = gazetteer == null ? null : gazetteer.stats();
+        ReportWriter.writeDebugReport(dirs.debugReport(), cfg, read, depotGeo, stops, geocodeCache.stats(),
+                gazetteerStats, matrix, territories, replan, plan, schedules, metrics);
+        metrics.wrote("debug_report.txt", Files.size(dirs.debugReport()));
+        ReportWriter.writeMetricsJson(dirs.metricsJson(), cfg, metrics, geocodeCache.stats(), gazetteerStats, matrix, plan);
+    }
 
-        Path runDir = cfg.outRoot().resolve(cfg.runId());
-        Files.createDirectories(runDir);
+    private static MatrixResult buildMatrix(RunConfig cfg, PlannerServices services, double[] lat, double[] lng,
+                                            RunMetrics metrics) throws Exception {
+        MatrixEngine offline = new HaversineMatrixEngine(cfg.detourFactor(), cfg.averageSpeedKmh());
+        if (cfg.matrixEngine().equals("haversine")) {
+            return offline.compute(lat, lng);
+        }
 
-        Path routesTxt = runDir.resolve("routes.txt");
-        Path routesJson = runDir.resolve("routes.json");
-        Path debug = runDir.resolve("debug_report.txt");
+        try {
+            MatrixCache cache = services.matrixCache(cfg.profile());
+            OrsMatrixClient client = services.matrixClient(cfg.profile());
+            try {
+                return new OrsMatrixEngine(client, cache, cfg.matrixTileSize(), cfg.matrixConcurrency()).compute(lat, lng);
+            } finally {
+                metrics.matrixHttp(client.httpStats());
+            }
+        } catch (Exception e) {
+            if (!cfg.matrixEngine().equals("auto")) throw e;
+            System.err.println("WARN: ORS matrix failed, using haversine estimate: " + e.getMessage());
+            MatrixResult r = offline.compute(lat, lng);
+            return new MatrixResult(r.matrix(), "haversine (ORS failed: " + e.getMessage() + ")", 0, 0, 0);
+        }
+    }
 
-        Path cacheDir = cfg.cacheRoot();
-        Files.createDirectories(cacheDir.resolve("geocode"));
+    /** Null when clustering is off. */
+    private static Territories clusterStops(RunConfig cfg, StopTable stops) {
+        if (cfg.clusterMethod().equals(TerritoryClusterer.METHOD_NONE)) return null;
+        double[] serviceMinutes = new double[stops.size() + 1];
+        for (int row = 1; row <= stops.size(); row++) serviceMinutes[row] = stops.serviceSeconds(row) / 60.0;
+        return new TerritoryClusterer(cfg.crews(), cfg.maxStopsPerRoute(), cfg.maxServiceMinutesPerRoute(),
+                cfg.optimizerSeed(), cfg.clusterMaxIterations())
+                .cluster(cfg.clusterMethod(), stops.lat(), stops.lng(), serviceMinutes);
+    }
 
-        return new RunDirs(runDir, routesTxt, routesJson, debug, cacheDir);
+    /**
+     * Windows and on-site times over matrix indices, with the shift as the depot's window;
+     * travel times are the matrix durations whatever optimizeFor is.
+     */
+    static TimeWindows timeWindows(RunConfig cfg, StopTable stops, CostMatrix matrix) {
+        int n = stops.size() + 1;
+        double[] earliest = new double[n];
+        double[] latest = new double[n];
+        double[] service = new double[n];
+        earliest[0] = cfg.shiftStartSeconds();
+        latest[0] = cfg.shiftEndSeconds() < 0 ? TimeWindows.NONE : cfg.shiftEndSeconds();
+        for (int row = 1; row < n; row++) {
+            earliest[row] = stops.hasWindow(row) ? stops.windowOpen(row) : 0;
+            latest[row] = stops.hasWindow(row) ? stops.windowClose(row) : TimeWindows.NONE;
+            service[row] = stops.serviceSeconds(row);
+        }
+        return new TimeWindows(matrix.durations(), earliest, latest, service);
     }
 
-    private static List<String> stripDepotIfPresent(List<String> addresses, String depot) {
-        String depotNorm = normalize(depot);
-        List<String> out = new ArrayList<>();
-        for (String a : addresses) {
-            if (normalize(a).equals(depotNorm)) continue;
-            out.add(a);
+    private static OptimizeResult optimizeRoutes(RunConfig cfg, CostMatrix matrix, double[] lat, double[] lng,
+                                                 Territories territories, TimeWindows windows) throws Exception {
+        double[] costs = cfg.optimizeFor().equals("distance") ? matrix.distances() : matrix.durations();
+        if (territories != null) {
+            return new ClusteredOptimizer(costs, lat, lng, territories, windows, cfg.optimizerStarts(),
+                    cfg.optimizerWorkers(), cfg.optimizerSeed(), cfg.optimizerPlateauIterations(), cfg.optimizerMaxIterations(),
+                    cfg.optimizerTimeBudgetMs())
+                    .optimize();
         }
-        return out;
+        RouteOptimizer base = new RouteOptimizer(costs, lat, lng, cfg.crews(), cfg.maxStopsPerRoute(),
+                cfg.optimizerTimeBudgetMs(), windows);
+        return new MultiStartOptimizer(base, cfg.optimizerStarts(), cfg.optimizerWorkers(), cfg.optimizerSeed(),
+                cfg.optimizerPlateauIterations(), cfg.optimizerMaxIterations(), cfg.optimizerTimeBudgetMs())
+                .optimize();
     }
 
-    private static String normalize(String s) {
-        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    /**
+     * The plan to start from: previousRoutes if set, else the newest run from the same
+     * depot. Null (with a warning) when there is none or previousRoutes was made for
+     * another depot.
+     */
+    private static PreviousPlan loadPreviousPlan(RunConfig cfg, String depotKey) throws IOException {
+        PreviousPlan previous;
+        if (cfg.previousRoutes() == null) {
+            previous = PreviousPlan.findLatest(cfg.outRoot(), cfg.runId(),
+                    p -> AddressNormalizer.canonical(p.depotAddress()).equals(depotKey));
+            if (previous == null) {
+                System.err.println("WARN: incremental: no previous routes.json for this depot; planning from scratch");
+                return null;
+            }
+        } else {
+            if (!Files.isRegularFile(cfg.previousRoutes())) {
+                System.err.println("WARN: incremental: " + cfg.previousRoutes() + " not found; planning from scratch");
+                return null;
+            }
+            previous = PreviousPlan.load(cfg.previousRoutes());
+            if (!AddressNormalizer.canonical(previous.depotAddress()).equals(depotKey)) {
+                System.err.println("WARN: incremental: " + cfg.previousRoutes()
+                        + " was planned from another depot; planning from scratch");
+                return null;
+            }
+        }
+        System.out.println("Incremental: starting from " + previous.file());
+        return previous;
     }
 
-    private static void writeRoutesJson(Path file, RunConfig cfg, GeocodeOutcome depot, List<Stop> stops, List<String> failedStops) throws Exception {
-        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
-
-        Map<String, Object> root = new LinkedHashMap<>();
-        root.put("milestone", 2);
-        root.put("version", "0.2.0");
-        root.put("runId", cfg.runId());
-        root.put("profile", cfg.profile());
-
-        Map<String, Object> depotObj = new LinkedHashMap<>();
-        depotObj.put("address", cfg.depotAddress());
-        depotObj.put("lat", depot.lat());
-        depotObj.put("lng", depot.lng());
-        root.put("depot", depotObj);
-
-        Map<String, Object> io = new LinkedHashMap<>();
-        io.put("inputFile", cfg.inputFile().toString());
-        io.put("outDir", file.getParent().toString());
-        io.put("cacheDir", cfg.cacheRoot().toString());
-        root.put("io", io);
-
-        List<Map<String, Object>> stopObjs = new ArrayList<>();
-        for (Stop s : stops) {
-            Map<String, Object> o = new LinkedHashMap<>();
-            o.put("id", s.id());
-            o.put("address", s.address());
-            o.put("lat", s.lat());
-            o.put("lng", s.lng());
-            stopObjs.add(o);
+    /**
+     * Maps the previous routes onto this run's matrix indices by canonical address: -1
+     * marks a stop no longer in the input, and stops the previous plan never routed are
+     * returned for insertion.
+     */
+    static Replan diffAgainst(PreviousPlan previous, StopTable stops) {
+        Map<String, Integer> indexOf = new HashMap<>();
+        for (int row = 1; row <= stops.size(); row++) {
+            indexOf.putIfAbsent(AddressNormalizer.canonical(stops.address(row)), row);
         }
-        root.put("stops", stopObjs);
-        root.put("failedStops", failedStops);
-
-        // Placeholder for upcoming milestones (splitting, ordering, Google Maps URLs)
-        List<Map<String, Object>> routes = new ArrayList<>();
-        for (int r = 1; r <= 4; r++) {
-            Map<String, Object> route = new LinkedHashMap<>();
-            route.put("routeIndex", r);
-            route.put("orderedStopIds", List.of());
-            route.put("googleMapsUrlPrimary", null);
-            route.put("googleMapsUrlFallback", List.of());
-            routes.add(route);
+        Map<Integer, String> keyOfId = new HashMap<>();
+        StopTable old = previous.stops();
+        for (int row = 1; row <= old.size(); row++) keyOfId.put(old.id(row), AddressNormalizer.canonical(old.address(row)));
+
+        boolean[] routed = new boolean[stops.size() + 1];
+        int kept = 0;
+        int removed = 0;
+        int[][] routes = new int[previous.routes().length][];
+        for (int r = 0; r < routes.length; r++) {
+            int[] ids = previous.routes()[r];
+            routes[r] = new int[ids.length];
+            for (int p = 0; p < ids.length; p++) {
+                Integer idx = indexOf.get(keyOfId.get(ids[p]));
+                if (idx == null || routed[idx]) {
+                    routes[r][p] = -1;
+                    removed++;
+                } else {
+                    routes[r][p] = idx;
+                    routed[idx] = true;
+                    kept++;
+                }
+            }
         }
-        root.put("routes", routes);
 
-        mapper.writeValue(file.toFile(), root);
+        int[] inserted = new int[stops.size() - kept];
+        int added = 0;
+        for (int i = 1; i <= stops.size(); i++) {
+            if (!routed[i]) inserted[added++] = i;
+        }
+        return new Replan(routes, inserted, new PreviousPlan.Diff(previous.file(), kept, added, removed));
+    }
+
+    private static OptimizeResult repairRoutes(RunConfig cfg, CostMatrix matrix, double[] lat, double[] lng, Replan replan,
+                                               TimeWindows windows) {
+        double[] costs = cfg.optimizeFor().equals("distance") ? matrix.distances() : matrix.durations();
+        return new RouteOptimizer(costs, lat, lng, cfg.crews(), cfg.maxStopsPerRoute(), cfg.optimizerTimeBudgetMs(), windows)
+                .repair(replan.routes(), replan.inserted());
+    }
+
+    /** Previous routes in this run's matrix indices (-1 = removed) plus the stops to insert. */
+    record Replan(int[][] routes, int[] inserted, PreviousPlan.Diff diff) {}
+
+    private record Geocoded(AddressReader.ReadResult read, List<GeocodeOutcome> outcomes) {}
+
+    /** Where a plan's outputs went, and its headline numbers. */
+    record RunResult(RunDirs dirs, int stops, int failed, double cost, Map<String, Long> stagesMs) {}
+
+    private static String makeRunId() {
+        ZonedDateTime now = ZonedDateTime.now(ZoneId.of("America/Toronto"));
+        return now.format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+    }
+
+    /**
+     * A timestamp run ID whose directory this call created. Runs started in the same second
+     * (serve mode) get _2, _3, ... suffixes, which still sort after the plain ID.
+     */
+    private static String allocateRunId(Path outRoot) throws IOException {
+        Files.createDirectories(outRoot);
+        String base = makeRunId();
+        for (int k = 1; ; k++) {
+            String runId = k == 1 ? base : base + "_" + k;
+            try {
+                Files.createDirectory(outRoot.resolve(runId));
+                return runId;
+            } catch (FileAlreadyExistsException e) {
+                // taken by a concurrent or earlier run
+            }
+        }
     }
 
-    public record Stop(int id, String address, double lat, double lng) {}
+    private static RunDirs initDirs(RunConfig cfg, Path cacheDir) throws Exception {
+        Path runDir = cfg.outRoot().resolve(cfg.runId());
+        Files.createDirectories(runDir);
+
+        Path routesTxt = runDir.resolve("routes.txt");
+        Path routesJson = runDir.resolve("routes.json");
+        Path routesBin = runDir.resolve("routes.bin");
+        Path debug = runDir.resolve("debug_report.txt");
+        Path metrics = runDir.resolve("metrics.json");
+
+        return new RunDirs(runDir, routesTxt, routesJson, routesBin, debug, metrics, cacheDir);
+    }
 }
@@ -1,5 +1,7 @@
 package com.onlyeavestroughs.routeplanner.runtime;
 
+import com.onlyeavestroughs.routeplanner.util.TimeOfDay;
+
 import java.nio.file.Path;
 
 public record RunConfig(
@@ -9,5 +11,86 @@ public record RunConfig(
         Path cacheRoot,
         String runId,
         String orsApiKey,
-        String profile
-) {}
+        String profile,
+        boolean mergeNearDuplicates,
+        Path gazetteerFile,
+        int geocodeConcurrency,
+        double geocodeRequestsPerSecond,
+        String geocodeCacheBackend,
+        int geocodeMemoryCacheSize,
+        int geocodeCacheTtlDays,
+        int matrixTileSize,
+        int matrixConcurrency,
+        double matrixRequestsPerSecond,
+        String matrixEngine,
+        double detourFactor,
+        double averageSpeedKmh,
+        int crews,
+        int maxStopsPerRoute,
+        long optimizerTimeBudgetMs,
+        String optimizeFor,
+        int optimizerWorkers,
+        long optimizerSeed,
+        int optimizerPlateauIterations,
+        int optimizerMaxIterations,
+        String clusterMethod,
+        double serviceMinutesPerStop,
+        double maxServiceMinutesPerRoute,
+        int clusterMaxIterations,
+        boolean incremental,
+        Path previousRoutes,
+        boolean writeRoutesBinary,
+        int shiftStartSeconds,
+        int shiftEndSeconds,
+        int googleMapsMaxWaypoints,
+        int geocodeFailureTtlDays,
+        String orsBaseUrl,
+        int optimizerStarts
+) {
+    /** Resolves a loaded (validated) ProjectConfig into the settings for one run. */
+    public static RunConfig from(ProjectConfig pcfg, String runId) {
+        return new RunConfig(
+                pcfg.depot.trim(),
+                Path.of(pcfg.input).toAbsolutePath(),
+                Path.of(pcfg.outRoot).toAbsolutePath(),
+                Path.of(pcfg.cacheRoot).toAbsolutePath(),
+                runId,
+                pcfg.orsApiKey.trim(),
+                pcfg.profile.trim(),
+                pcfg.mergeNearDuplicates,
+                pcfg.gazetteerFile.isBlank() ? null : Path.of(pcfg.gazetteerFile).toAbsolutePath(),
+                pcfg.geocodeConcurrency,
+                pcfg.geocodeRequestsPerSecond,
+                pcfg.geocodeCacheBackend,
+                pcfg.geocodeMemoryCacheSize,
+                pcfg.geocodeCacheTtlDays,
+                pcfg.matrixTileSize,
+                pcfg.matrixConcurrency,
+                pcfg.matrixRequestsPerSecond,
+                pcfg.matrixEngine,
+                pcfg.detourFactor,
+                ProjectConfigLoader.speedFor(pcfg, pcfg.profile),
+                pcfg.crews,
+                pcfg.maxStopsPerRoute,
+                pcfg.optimizerTimeBudgetMs,
+                pcfg.optimizeFor,
+                pcfg.optimizerWorkers,
+                pcfg.optimizerSeed,
+                pcfg.optimizerPlateauIterations,
+                pcfg.optimizerMaxIterations,
+                pcfg.clusterMethod,
+                pcfg.serviceMinutesPerStop,
+                pcfg.maxServiceMinutesPerRoute,
+                pcfg.clusterMaxIterations,
+                pcfg.incremental,
+                pcfg.previousRoutes.isBlank() ? null : Path.of(pcfg.previousRoutes).toAbsolutePath(),
+                pcfg.writeRoutesBinary,
+                TimeOfDay.parse(pcfg.shiftStart),
+                pcfg.shiftEnd.isBlank() ? -1 : TimeOfDay.parse(pcfg.shiftEnd),
+                pcfg.googleMapsMaxWaypoints,
+                pcfg.geocodeFailureTtlDays,
+                pcfg.orsBaseUrl,
+                pcfg.optimizerStarts
+        );
+    }
+}
@@ -6,6 +6,8 @@ public record RunDirs(
         Path runDir,
         Path routesTxt,
         Path routesJson,
+        Path routesBin,
         Path debugReport,
+        Path metricsJson,
         Path cacheDir
 ) {}
@@ -0,0 +1,107 @@
+package com.onlyeavestroughs.routeplanner.runtime;
+
+import com.onlyeavestroughs.routeplanner.ors.HttpStats;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where a run's time and I/O went: wall time per stage (in the order stages started),
+ * bytes read and written by file, and the ORS clients' HTTP stats.
+ *
+ * Stages are timed with one nanoTime pair each; per-address work (normalize) is summed
+ * from the reader thread with a LongAdder. Read and geocode overlap because the reader
+ * streams into the geocode pipeline, so stage times can add up to more than the total.
+ */
+public final class RunMetrics {
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> stageNanos = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, Long> bytesRead = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, Long> bytesWritten = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final LongAdder normalizeNanos = new LongAdder();
+    private volatile HttpStats geocodeHttp;
+    private volatile HttpStats matrixHttp;
+
+    /** Times a stage: {@code matrix = metrics.stage("matrix", () -> build())}. Repeats add up. */
+    public <T, E extends Exception> T stage(String name, StageBody<T, E> body) throws E {
+        stageNanos.putIfAbsent(name, 0L);
+        long started = System.nanoTime();
+        try {
+            return body.run();
+        } finally {
+            stageNanos.merge(name, System.nanoTime() - started, Long::sum);
+        }
+    }
+
+    /** stage() for a body with no result. */
+    public <E extends Exception> void stage(String name, StageTask<E> body) throws E {
+        stage(name, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    public void addNormalizeNanos(long nanos) {
+        normalizeNanos.add(nanos);
+    }
+
+    public void read(String what, long bytes) {
+        bytesRead.merge(what, bytes, Long::sum);
+    }
+
+    public void wrote(String what, long bytes) {
+        bytesWritten.merge(what, bytes, Long::sum);
+    }
+
+    public void geocodeHttp(HttpStats stats) {
+        geocodeHttp = stats;
+    }
+
+    public void matrixHttp(HttpStats stats) {
+        matrixHttp = stats;
+    }
+
+    /** Stage wall times in ms, plus normalize (summed) and total. */
+    public Map<String, Long> stagesMs() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        synchronized (stageNanos) {
+            stageNanos.forEach((k, v) -> out.put(k, v / 1_000_000L));
+        }
+        out.put("normalize", normalizeNanos.sum() / 1_000_000L);
+        out.put("total", (System.nanoTime() - startNanos) / 1_000_000L);
+        return out;
+    }
+
+    public Map<String, Long> bytesRead() {
+        synchronized (bytesRead) {
+            return new LinkedHashMap<>(bytesRead);
+        }
+    }
+
+    public Map<String, Long> bytesWritten() {
+        synchronized (bytesWritten) {
+            return new LinkedHashMap<>(bytesWritten);
+        }
+    }
+
+    /** Null when no geocode request was made through a geocoder that reported. */
+    public HttpStats geocodeHttp() {
+        return geocodeHttp;
+    }
+
+    /** Null when the ORS matrix engine was not used. */
+    public HttpStats matrixHttp() {
+        return matrixHttp;
+    }
+
+    public interface StageBody<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    public interface StageTask<E extends Exception> {
+        void run() throws E;
+    }
+}
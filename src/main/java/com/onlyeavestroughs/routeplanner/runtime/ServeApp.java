@@ -0,0 +1,250 @@
+package com.onlyeavestroughs.routeplanner.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * "serve": a long-running planner on a loopback HTTP port, so dispatchers can re-plan
+ * without paying for a JVM start and a cold geocode cache every time.
+ *
+ * The geocode cache, gazetteer, ORS clients and matrix caches are opened once at start
+ * and shared by all plans (see PlannerServices). Each request runs on its own virtual
+ * thread; at most serveMaxConcurrentPlans plans optimize at once and the rest wait.
+ *
+ * POST /plan      body: run-config.json fields to override for this plan, e.g.
+ *                 {"input": "tomorrow.txt", "crews": 5}; ProjectConfigLoader.PROCESS_FIELDS
+ *                 cannot be overridden. Relative paths resolve against
+ *                 the service's working directory. Replies with the run's output files
+ *                 and headline numbers once the plan is written.
+ * GET  /status    uptime, plan counters and cache counters.
+ * POST /shutdown  finishes running plans, answers waiting ones 503, closes the caches and
+ *                 exits.
+ */
+public final class ServeApp {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final ObjectNode base;
+    private final PlannerServices services;
+    private final int maxConcurrentPlans;
+    /** Fair, so plans start in arrival order and stop() queues behind the waiting ones. */
+    final Semaphore planSlots;
+    private final long startNanos = System.nanoTime();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    private final CountDownLatch shutdownRequested = new CountDownLatch(1);
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    ServeApp(ObjectNode base, PlannerServices services, int maxConcurrentPlans) {
+        this.base = base;
+        this.services = services;
+        this.maxConcurrentPlans = maxConcurrentPlans;
+        this.planSlots = new Semaphore(maxConcurrentPlans, true);
+    }
+
+    public static int serveFromProjectConfig() {
+        try {
+            ObjectNode base = ProjectConfigLoader.readTree(Path.of("run-config.json"));
+            ProjectConfig pcfg = ProjectConfigLoader.fromTree(base);
+
+            long start = System.nanoTime();
+            ServeApp app = new ServeApp(base, PlannerServices.open(RunConfig.from(pcfg, null)),
+                    pcfg.serveMaxConcurrentPlans);
+            Runtime.getRuntime().addShutdownHook(new Thread(app::stop));
+            int port = app.start(pcfg.servePort);
+
+            System.out.println("Serving on http://127.0.0.1:" + port + " (caches ready in "
+                    + (System.nanoTime() - start) / 1_000_000L + " ms, "
+                    + app.services.geocodeCache.size() + " cached addresses)");
+            app.awaitShutdownRequest();
+            app.stop();
+            return 0;
+
+        } catch (Exception e) {
+            System.err.println("ERROR: " + e.getClass().getName() + ": " + e.getMessage());
+            System.err.println("Working directory: " + System.getProperty("user.dir"));
+            e.printStackTrace();
+            return 2;
+        }
+    }
+
+    /** Binds to loopback (port 0 = any free port) and returns the bound port. */
+    int start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/plan", this::handlePlan);
+        server.createContext("/status", this::handleStatus);
+        server.createContext("/shutdown", this::handleShutdown);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    void awaitShutdownRequest() throws InterruptedException {
+        shutdownRequested.await();
+    }
+
+    /**
+     * Refuses new plans, waits for running ones, then stops the server and closes the
+     * caches. Idempotent; also run by the shutdown hook on SIGTERM. A second call returns
+     * only once the first has closed everything, so the JVM cannot halt mid-close.
+     */
+    void stop() {
+        if (!stopped.compareAndSet(false, true)) {
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        shutdownRequested.countDown();
+        try {
+            // Holding every slot means no plan is running. Plans queued before this call
+            // get their slot first, see stopped and give it back with a 503.
+            planSlots.acquireUninterruptibly(maxConcurrentPlans);
+            if (server != null) server.stop(0);
+            if (executor != null) executor.shutdownNow();
+        } finally {
+            try {
+                services.close();
+            } catch (IOException e) {
+                System.err.println("WARN: closing caches failed: " + e.getMessage());
+            } finally {
+                closed.countDown();
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- handlers
+
+    private void handlePlan(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (!ex.getRequestMethod().equals("POST")) {
+                reply(ex, 405, Map.of("error", "use POST"));
+                return;
+            }
+
+            ProjectConfig pcfg;
+            try {
+                pcfg = ProjectConfigLoader.fromTree(ProjectConfigLoader.overlay(base, readBody(ex.getRequestBody())));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                reply(ex, 400, Map.of("error", e.getMessage()));
+                return;
+            }
+
+            long queued = System.nanoTime();
+            try {
+                if (stopped.get()) throw new InterruptedException();
+                planSlots.acquire();
+            } catch (InterruptedException e) {
+                reply(ex, 503, Map.of("error", "shutting down"));
+                return;
+            }
+            if (stopped.get()) {
+                // Queued when stop() came in: do not start a plan on caches about to close.
+                try {
+                    reply(ex, 503, Map.of("error", "shutting down"));
+                } finally {
+                    planSlots.release();
+                }
+                return;
+            }
+            running.incrementAndGet();
+            long started = System.nanoTime();
+            try {
+                RunApp.RunResult r = RunApp.plan(pcfg, services, new RunMetrics());
+                completed.incrementAndGet();
+
+                Map<String, Object> body = new LinkedHashMap<>();
+                body.put("runId", r.dirs().runDir().getFileName().toString());
+                body.put("runDir", r.dirs().runDir().toString());
+                body.put("routesJson", r.dirs().routesJson().toString());
+                body.put("routesTxt", r.dirs().routesTxt().toString());
+                body.put("debugReport", r.dirs().debugReport().toString());
+                body.put("metricsJson", r.dirs().metricsJson().toString());
+                body.put("stops", r.stops());
+                body.put("failedStops", r.failed());
+                body.put("cost", r.cost());
+                body.put("queuedMs", (started - queued) / 1_000_000L);
+                body.put("stagesMs", r.stagesMs());
+                reply(ex, 200, body);
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                System.err.println("ERROR: plan failed: " + e.getClass().getName() + ": " + e.getMessage());
+                reply(ex, 500, Map.of("error", e.getClass().getSimpleName() + ": " + e.getMessage()));
+            } finally {
+                running.decrementAndGet();
+                planSlots.release();
+            }
+        }
+    }
+
+    private void handleStatus(HttpExchange ex) throws IOException {
+        try (ex) {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("uptimeMs", (System.nanoTime() - startNanos) / 1_000_000L);
+            body.put("plansRunning", running.get());
+            body.put("plansWaiting", planSlots.getQueueLength());
+            body.put("plansCompleted", completed.get());
+            body.put("plansFailed", failed.get());
+            body.put("geocodeCache", services.geocodeCache.stats());
+            body.put("gazetteer", services.gazetteer == null ? null : services.gazetteer.stats());
+            body.put("geocodeHttp", services.geocoder.httpStats());
+            reply(ex, 200, body);
+        }
+    }
+
+    private void handleShutdown(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (!ex.getRequestMethod().equals("POST")) {
+                reply(ex, 405, Map.of("error", "use POST"));
+                return;
+            }
+            reply(ex, 202, Map.of("status", "stopping"));
+        }
+        shutdownRequested.countDown();
+    }
+
+    // ---------------------------------------------------------------- request parsing
+
+    private static JsonNode readBody(InputStream in) {
+        try {
+            return JSON.readTree(in);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("request body is not JSON: " + e.getMessage());
+        }
+    }
+
+    private static void reply(HttpExchange ex, int code, Object body) throws IOException {
+        byte[] bytes = JSON.writeValueAsBytes(body);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.onlyeavestroughs.routeplanner.runtime;
+
+import com.onlyeavestroughs.routeplanner.ors.GeocodeFailure;
+
+import java.util.Arrays;
+
+/**
+ * A run's stops as parallel primitive columns instead of one record per stop.
+ *
+ * Row 0 is the depot and rows 1..size() the geocoded stops, so lat() and lng() are the
+ * matrix, clusterer and optimizer inputs as they stand: index i there is row i here, and
+ * routes (int[] of indices) look their stops up directly. Each row carries a source byte
+ * saying where its coordinates came from, and its time window and on-site seconds.
+ *
+ * Stops that failed to geocode never get a row index; they are kept in their own columns
+ * with a GeocodeFailure code, the detail text, and whether the failure came from the
+ * geocode cache (a known bad address, not sent to ORS this run).
+ *
+ * Addresses are stored by reference (the reader's strings), never copied. Built by one
+ * thread, then read-only; the arrays handed out are the table's own and must not be
+ * modified.
+ */
+public final class StopTable {
+
+    /** Row sources (the status byte). */
+    public static final byte DEPOT = 0;
+    public static final byte ORS = 1;
+    public static final byte CACHE = 2;
+    public static final byte PREVIOUS_PLAN = 3;
+
+    private static final String[] SOURCE_NAMES = {"depot", "ORS", "cache/gazetteer", "previous plan"};
+
+    /** windowOpen/windowClose of a stop without a time window. */
+    public static final int NO_WINDOW = -1;
+
+    private int[] ids;
+    private double[] lat;
+    private double[] lng;
+    private String[] addresses;
+    private byte[] sources;
+    private int[] windowOpen;
+    private int[] windowClose;
+    private int[] serviceSeconds;
+    private int rows;
+
+    private String[] failedAddresses = new String[0];
+    private byte[] failureCodes = new byte[0];
+    private String[] failureDetails = new String[0];
+    private boolean[] failureCached = new boolean[0];
+    private int failed;
+
+    /** An empty table holding only the depot; expectedStops presizes the columns. */
+    public StopTable(String depotAddress, double depotLat, double depotLng, int expectedStops) {
+        int capacity = Math.max(expectedStops, 0) + 1;
+        ids = new int[capacity];
+        lat = new double[capacity];
+        lng = new double[capacity];
+        addresses = new String[capacity];
+        sources = new byte[capacity];
+        windowOpen = new int[capacity];
+        windowClose = new int[capacity];
+        serviceSeconds = new int[capacity];
+        add(0, depotAddress, depotLat, depotLng, DEPOT);
+    }
+
+    private StopTable(int[] ids, double[] lat, double[] lng, String[] addresses, byte[] sources) {
+        this.ids = ids;
+        this.lat = lat;
+        this.lng = lng;
+        this.addresses = addresses;
+        this.sources = sources;
+        this.rows = ids.length;
+        this.windowOpen = new int[rows];
+        this.windowClose = new int[rows];
+        this.serviceSeconds = new int[rows];
+        Arrays.fill(windowOpen, NO_WINDOW);
+        Arrays.fill(windowClose, NO_WINDOW);
+    }
+
+    /**
+     * Adopts already-filled columns (row 0 = depot) without copying, e.g. as read from
+     * routes.bin. Every row but the depot gets source.
+     */
+    public static StopTable wrap(int[] ids, double[] lat, double[] lng, String[] addresses, byte source) {
+        int n = ids.length;
+        if (n == 0 || lat.length != n || lng.length != n || addresses.length != n) {
+            throw new IllegalArgumentException("columns must have one equal, non-zero length");
+        }
+        byte[] sources = new byte[n];
+        Arrays.fill(sources, 1, n, source);
+        return new StopTable(ids, lat, lng, addresses, sources);
+    }
+
+    /** Appends a geocoded stop without a time window or on-site time and returns its row. */
+    public int add(int id, String address, double lat, double lng, byte source) {
+        return add(id, address, lat, lng, source, NO_WINDOW, NO_WINDOW, 0);
+    }
+
+    /** As add(), with a window in seconds since midnight (NO_WINDOW for none) and on-site seconds. */
+    public int add(int id, String address, double lat, double lng, byte source,
+                   int windowOpen, int windowClose, int serviceSeconds) {
+        if (rows == ids.length) grow(rows + (rows >> 1) + 1);
+        ids[rows] = id;
+        this.lat[rows] = lat;
+        this.lng[rows] = lng;
+        addresses[rows] = address;
+        sources[rows] = source;
+        this.windowOpen[rows] = windowOpen;
+        this.windowClose[rows] = windowClose;
+        this.serviceSeconds[rows] = serviceSeconds;
+        return rows++;
+    }
+
+    public void addFailure(String address, GeocodeFailure failure, String detail) {
+        addFailure(address, failure, detail, false);
+    }
+
+    /** cached: the failure was answered by the geocode cache rather than by ORS this run. */
+    public void addFailure(String address, GeocodeFailure failure, String detail, boolean cached) {
+        if (failed == failureCodes.length) {
+            int capacity = failed + (failed >> 1) + 4;
+            failedAddresses = Arrays.copyOf(failedAddresses, capacity);
+            failureCodes = Arrays.copyOf(failureCodes, capacity);
+            failureDetails = Arrays.copyOf(failureDetails, capacity);
+            failureCached = Arrays.copyOf(failureCached, capacity);
+        }
+        failedAddresses[failed] = address;
+        failureCodes[failed] = failure.code();
+        failureDetails[failed] = detail;
+        failureCached[failed] = cached;
+        failed++;
+    }
+
+    // ---------------------------------------------------------------- rows
+
+    /** Geocoded stops, not counting the depot. */
+    public int size() {
+        return rows - 1;
+    }
+
+    public int id(int row) {
+        return ids[row];
+    }
+
+    public String address(int row) {
+        return addresses[row];
+    }
+
+    public double lat(int row) {
+        return lat[row];
+    }
+
+    public double lng(int row) {
+        return lng[row];
+    }
+
+    public byte source(int row) {
+        return sources[row];
+    }
+
+    public boolean hasWindow(int row) {
+        return windowOpen[row] != NO_WINDOW;
+    }
+
+    public int windowOpen(int row) {
+        return windowOpen[row];
+    }
+
+    public int windowClose(int row) {
+        return windowClose[row];
+    }
+
+    public int serviceSeconds(int row) {
+        return serviceSeconds[row];
+    }
+
+    /** Latitudes of the depot and every stop, exactly size() + 1 long. */
+    public double[] lat() {
+        trim();
+        return lat;
+    }
+
+    /** Longitudes of the depot and every stop, exactly size() + 1 long. */
+    public double[] lng() {
+        trim();
+        return lng;
+    }
+
+    /** Stop IDs of the given rows, e.g. a route in visiting order. */
+    public int[] ids(int[] rowIndices) {
+        int[] out = new int[rowIndices.length];
+        for (int p = 0; p < rowIndices.length; p++) out[p] = ids[rowIndices[p]];
+        return out;
+    }
+
+    /** Stops per source, indexed by the source byte. */
+    public int[] sourceCounts() {
+        int[] counts = new int[SOURCE_NAMES.length];
+        for (int r = 1; r < rows; r++) counts[sources[r]]++;
+        return counts;
+    }
+
+    public static String sourceName(byte source) {
+        return SOURCE_NAMES[source];
+    }
+
+    // ---------------------------------------------------------------- failures
+
+    public int failedCount() {
+        return failed;
+    }
+
+    public String failedAddress(int i) {
+        return failedAddresses[i];
+    }
+
+    public GeocodeFailure failure(int i) {
+        return GeocodeFailure.of(failureCodes[i]);
+    }
+
+    public String failureDetail(int i) {
+        return failureDetails[i];
+    }
+
+    public boolean failureCached(int i) {
+        return failureCached[i];
+    }
+
+    /** Failed stops whose failure came from the geocode cache. */
+    public int cachedFailureCount() {
+        int n = 0;
+        for (int i = 0; i < failed; i++) if (failureCached[i]) n++;
+        return n;
+    }
+
+    /** Failed stops per code, indexed by GeocodeFailure ordinal. */
+    public int[] failureCounts() {
+        int[] counts = new int[GeocodeFailure.values().length];
+        for (int i = 0; i < failed; i++) counts[failureCodes[i]]++;
+        return counts;
+    }
+
+    private void trim() {
+        if (ids.length != rows) grow(rows);
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        lat = Arrays.copyOf(lat, capacity);
+        lng = Arrays.copyOf(lng, capacity);
+        addresses = Arrays.copyOf(addresses, capacity);
+        sources = Arrays.copyOf(sources, capacity);
+        windowOpen = Arrays.copyOf(windowOpen, capacity);
+        windowClose = Arrays.copyOf(windowClose, capacity);
+        serviceSeconds = Arrays.copyOf(serviceSeconds, capacity);
+    }
+}
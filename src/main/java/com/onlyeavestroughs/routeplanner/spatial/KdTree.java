@@ -0,0 +1,251 @@
+package com.onlyeavestroughs.routeplanner.spatial;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Static 2-d tree over geocoded points, for k-nearest and radius queries.
+ *
+ * Coordinates are projected once to local planar meters with Planar.project. The tree is
+ * implicit: point indices are stored in one int[] arranged by recursive median partitioning,
+ * so building and querying allocate no node objects.
+ */
+public final class KdTree {
+
+    private static final int PARALLEL_MIN_POINTS = 2_048;
+
+    private final double[] x;
+    private final double[] y;
+    private final int[] tree;
+
+    public KdTree(double[] lat, double[] lng) {
+        int n = lat.length;
+        this.x = new double[n];
+        this.y = new double[n];
+        Planar.project(lat, lng, x, y);
+        this.tree = new int[n];
+        for (int i = 0; i < n; i++) tree[i] = i;
+        build(0, n, 0);
+    }
+
+    public int size() {
+        return tree.length;
+    }
+
+    /**
+     * Writes up to k nearest points other than {@code point} into out (nearest first).
+     * Returns how many were written.
+     */
+    public int kNearest(int point, int k, int[] out) {
+        return kNearest(x[point], y[point], point, k, out, new double[k]);
+    }
+
+    /** Straight-line meters between two indexed points. */
+    public double distance(int a, int b) {
+        double dx = x[a] - x[b];
+        double dy = y[a] - y[b];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Writes indices of all points within radiusMeters of {@code point} (excluding itself)
+     * into out, growing it if needed. Returns the (possibly new) array; the first
+     * {@code counts[0]} entries are valid.
+     */
+    public int[] withinRadius(int point, double radiusMeters, int[] out, int[] counts) {
+        Radius r = new Radius(x[point], y[point], point, radiusMeters * radiusMeters, out);
+        radius(0, tree.length, 0, r);
+        counts[0] = r.count;
+        return r.out;
+    }
+
+    /** k nearest neighbours of every point; rows are computed in parallel for large inputs. */
+    public NeighborLists neighborLists(int k) {
+        int n = tree.length;
+        int kk = Math.max(0, Math.min(k, n - 1));
+        int[] ids = new int[n * kk];
+        int[] counts = new int[n];
+        if (kk == 0) return new NeighborLists(kk, ids, counts);
+
+        IntStream points = IntStream.range(0, n);
+        if (n >= PARALLEL_MIN_POINTS) points = points.parallel();
+        points.forEach(i -> {
+            int[] row = new int[kk];
+            int c = kNearest(x[i], y[i], i, kk, row, new double[kk]);
+            System.arraycopy(row, 0, ids, i * kk, c);
+            counts[i] = c;
+        });
+        return new NeighborLists(kk, ids, counts);
+    }
+
+    // ---------------------------------------------------------------- build
+
+    private void build(int lo, int hi, int depth) {
+        if (hi - lo <= 1) return;
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, (depth & 1) == 0 ? x : y);
+        build(lo, mid, depth + 1);
+        build(mid + 1, hi, depth + 1);
+    }
+
+    /** Quickselect on tree[lo..hi] so tree[k] holds the median along the axis. */
+    private void select(int lo, int hi, int k, double[] axis) {
+        while (hi > lo) {
+            double pivot = axis[tree[(lo + hi) >>> 1]];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (axis[tree[i]] < pivot) i++;
+                while (axis[tree[j]] > pivot) j--;
+                if (i <= j) {
+                    int t = tree[i];
+                    tree[i++] = tree[j];
+                    tree[j--] = t;
+                }
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    // ---------------------------------------------------------------- k-nearest
+
+    private int kNearest(double qx, double qy, int exclude, int k, int[] out, double[] dist) {
+        if (k <= 0) return 0;
+        Knn q = new Knn(qx, qy, exclude, k, out, dist);
+        knn(0, tree.length, 0, q);
+
+        // out/dist hold a max-heap; sort ascending by distance.
+        int c = q.count;
+        for (int end = c - 1; end > 0; end--) {
+            swap(out, dist, 0, end);
+            siftDown(out, dist, 0, end);
+        }
+        return c;
+    }
+
+    private void knn(int lo, int hi, int depth, Knn q) {
+        if (hi <= lo) return;
+        int mid = (lo + hi) >>> 1;
+        int p = tree[mid];
+
+        if (p != q.exclude) {
+            double dx = x[p] - q.x;
+            double dy = y[p] - q.y;
+            q.offer(p, dx * dx + dy * dy);
+        }
+
+        double diff = (depth & 1) == 0 ? q.x - x[p] : q.y - y[p];
+        if (diff < 0) {
+            knn(lo, mid, depth + 1, q);
+            if (diff * diff < q.worst()) knn(mid + 1, hi, depth + 1, q);
+        } else {
+            knn(mid + 1, hi, depth + 1, q);
+            if (diff * diff < q.worst()) knn(lo, mid, depth + 1, q);
+        }
+    }
+
+    private static final class Knn {
+        final double x;
+        final double y;
+        final int exclude;
+        final int k;
+        final int[] ids;
+        final double[] dist;
+        int count;
+
+        Knn(double x, double y, int exclude, int k, int[] ids, double[] dist) {
+            this.x = x;
+            this.y = y;
+            this.exclude = exclude;
+            this.k = k;
+            this.ids = ids;
+            this.dist = dist;
+        }
+
+        double worst() {
+            return count < k ? Double.POSITIVE_INFINITY : dist[0];
+        }
+
+        void offer(int id, double d2) {
+            if (count < k) {
+                ids[count] = id;
+                dist[count] = d2;
+                siftUp(ids, dist, count++);
+            } else if (d2 < dist[0]) {
+                ids[0] = id;
+                dist[0] = d2;
+                siftDown(ids, dist, 0, count);
+            }
+        }
+    }
+
+    private static void siftUp(int[] ids, double[] dist, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (dist[parent] >= dist[i]) return;
+            swap(ids, dist, parent, i);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] ids, double[] dist, int i, int size) {
+        while (true) {
+            int l = 2 * i + 1;
+            if (l >= size) return;
+            int r = l + 1;
+            int big = r < size && dist[r] > dist[l] ? r : l;
+            if (dist[i] >= dist[big]) return;
+            swap(ids, dist, i, big);
+            i = big;
+        }
+    }
+
+    private static void swap(int[] ids, double[] dist, int a, int b) {
+        int ti = ids[a];
+        ids[a] = ids[b];
+        ids[b] = ti;
+        double td = dist[a];
+        dist[a] = dist[b];
+        dist[b] = td;
+    }
+
+    // ---------------------------------------------------------------- radius
+
+    private void radius(int lo, int hi, int depth, Radius q) {
+        if (hi <= lo) return;
+        int mid = (lo + hi) >>> 1;
+        int p = tree[mid];
+
+        double dx = x[p] - q.x;
+        double dy = y[p] - q.y;
+        if (p != q.exclude && dx * dx + dy * dy <= q.r2) q.add(p);
+
+        double diff = (depth & 1) == 0 ? q.x - x[p] : q.y - y[p];
+        if (diff < 0 || diff * diff <= q.r2) radius(lo, mid, depth + 1, q);
+        if (diff >= 0 || diff * diff <= q.r2) radius(mid + 1, hi, depth + 1, q);
+    }
+
+    private static final class Radius {
+        final double x;
+        final double y;
+        final int exclude;
+        final double r2;
+        int[] out;
+        int count;
+
+        Radius(double x, double y, int exclude, double r2, int[] out) {
+            this.x = x;
+            this.y = y;
+            this.exclude = exclude;
+            this.r2 = r2;
+            this.out = out == null || out.length == 0 ? new int[16] : out;
+        }
+
+        void add(int id) {
+            if (count == out.length) out = Arrays.copyOf(out, count * 2);
+            out[count++] = id;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.onlyeavestroughs.routeplanner.spatial;
+
+/**
+ * The k nearest other points for every point, flat: neighbors of i are
+ * ids[i * k .. i * k + count(i) - 1], nearest first.
+ */
+public record NeighborLists(int k, int[] ids, int[] counts) {
+
+    public int count(int point) {
+        return counts[point];
+    }
+
+    public int get(int point, int rank) {
+        return ids[point * k + rank];
+    }
+}
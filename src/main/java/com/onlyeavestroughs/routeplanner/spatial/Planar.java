@@ -0,0 +1,94 @@
+package com.onlyeavestroughs.routeplanner.spatial;
+
+import java.util.Arrays;
+
+/**
+ * Flat-earth geometry shared by the k-d tree, territory clustering and route construction,
+ * so that they agree on distances, bearings and crew sizes.
+ *
+ * Projection is equirectangular around the mean latitude (planar meters, accurate to well
+ * under 1% across a city). Bearings and the sweep are taken from point 0, the depot.
+ */
+public final class Planar {
+    private Planar() {}
+
+    public static final double METERS_PER_DEG_LAT = 110_574.0;
+    public static final double METERS_PER_DEG_LNG_EQUATOR = 111_320.0;
+
+    /** Fills x (east) and y (north) in meters. */
+    public static void project(double[] lat, double[] lng, double[] x, double[] y) {
+        double meanLat = 0;
+        for (double v : lat) meanLat += v;
+        meanLat = lat.length == 0 ? 0 : meanLat / lat.length;
+        double lngScale = METERS_PER_DEG_LNG_EQUATOR * Math.cos(Math.toRadians(meanLat));
+        for (int i = 0; i < lat.length; i++) {
+            x[i] = lng[i] * lngScale;
+            y[i] = lat[i] * METERS_PER_DEG_LAT;
+        }
+    }
+
+    /** Angle (radians, -pi..pi, counter-clockwise from east) of a point seen from the depot. */
+    public static double bearing(double depotLat, double depotLng, double lat, double lng) {
+        return bearing(depotLat, depotLng, Math.cos(Math.toRadians(depotLat)), lat, lng);
+    }
+
+    /** bearing() of every point from point 0; entry 0 is 0. */
+    public static double[] bearings(double[] lat, double[] lng) {
+        double[] angle = new double[lat.length];
+        if (lat.length == 0) return angle;
+        double cosDepot = Math.cos(Math.toRadians(lat[0]));
+        for (int i = 1; i < lat.length; i++) {
+            angle[i] = bearing(lat[0], lng[0], cosDepot, lat[i], lng[i]);
+        }
+        return angle;
+    }
+
+    private static double bearing(double depotLat, double depotLng, double cosDepot, double lat, double lng) {
+        return Math.atan2(lat - depotLat, (lng - depotLng) * cosDepot);
+    }
+
+    /**
+     * Stops (points 1..n-1) sorted by bearing from the depot, starting just after the widest
+     * empty wedge, so that cutting the order into runs gives contiguous sectors.
+     */
+    public static int[] sweepOrder(double[] lat, double[] lng) {
+        int n = lat.length;
+        int stops = Math.max(0, n - 1);
+        double[] angle = bearings(lat, lng);
+        long[] packed = new long[stops];
+        for (int i = 1; i < n; i++) {
+            // Sortable key: angle in the high bits, stop index in the low 24.
+            long a = (long) ((angle[i] + Math.PI) * 1e9);
+            packed[i - 1] = (a << 24) | i;
+        }
+        Arrays.sort(packed);
+
+        int[] sorted = new int[stops];
+        for (int i = 0; i < stops; i++) sorted[i] = (int) (packed[i] & 0xFFFFFF);
+
+        int startAt = 0;
+        double widest = -1;
+        for (int i = 0; i < stops; i++) {
+            double a = angle[sorted[i]];
+            double prev = angle[sorted[(i - 1 + stops) % stops]];
+            double gap = i == 0 ? a - prev + 2 * Math.PI : a - prev;
+            if (gap > widest) {
+                widest = gap;
+                startAt = i;
+            }
+        }
+
+        int[] out = new int[stops];
+        for (int i = 0; i < stops; i++) out[i] = sorted[(startAt + i) % stops];
+        return out;
+    }
+
+    /**
+     * Most stops one crew (or territory) may take: maxStops when set (but never below an
+     * even split), else an even split plus 10%.
+     */
+    public static int capPerGroup(int stops, int groups, int maxStops) {
+        int even = Math.max(1, (stops + groups - 1) / groups);
+        return maxStops > 0 ? Math.max(maxStops, even) : even + Math.max(1, even / 10);
+    }
+}
@@ -21,4 +21,23 @@ public final class HashUtil {
             throw new IllegalStateException("Unable to compute SHA-1", e);
         }
     }
+
+    /**
+     * 64-bit FNV-1a over the string's UTF-16 chars, finished with the MurmurHash3 fmix64
+     * avalanche. Cheap enough to run on every input line; the chance of two distinct
+     * addresses colliding stays below 1e-7 even at a million lines.
+     */
+    public static long fingerprint64(CharSequence s) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
 }
@@ -0,0 +1,85 @@
+package com.onlyeavestroughs.routeplanner.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent log-linear histogram of durations in microseconds.
+ *
+ * Values under 32 us get a bucket each; above that every power of two is split into 16
+ * buckets, so a reported percentile is within about 3% of the true value. recordNanos()
+ * is an index computation, one atomic bucket increment and three striped LongAdder or
+ * LongAccumulator updates (count, sum, max), all lock-free and cheap enough to leave on
+ * for every HTTP call. Values beyond 2^40 us (about 12 days) land in the last bucket.
+ */
+public final class LatencyHistogram {
+
+    private static final int LINEAR = 32;
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = LINEAR + (MAX_EXPONENT - 5 + 1) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1_000L);
+        counts.incrementAndGet(indexOf(micros));
+        total.increment();
+        sumMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    public long maxMicros() {
+        return maxMicros.get();
+    }
+
+    public double meanMicros() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) sumMicros.sum() / n;
+    }
+
+    /** Value at quantile q (0..1), as the midpoint of its bucket; 0 when empty. */
+    public long percentileMicros(double q) {
+        long n = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(maxMicros.get(), midpoint(i));
+        }
+        return maxMicros.get();
+    }
+
+    static int indexOf(long micros) {
+        if (micros < LINEAR) return (int) micros;
+        int e = 63 - Long.numberOfLeadingZeros(micros);
+        if (e > MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) (micros >>> (e - SUB_BITS)) & (SUB - 1);
+        return LINEAR + (e - 5) * SUB + sub;
+    }
+
+    static long midpoint(int index) {
+        if (index < LINEAR) return index;
+        int e = (index - LINEAR) / SUB + 5;
+        int sub = (index - LINEAR) % SUB;
+        long lower = (long) (SUB + sub) << (e - SUB_BITS);
+        long width = 1L << (e - SUB_BITS);
+        return lower + width / 2;
+    }
+}
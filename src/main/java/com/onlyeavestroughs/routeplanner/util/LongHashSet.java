@@ -0,0 +1,64 @@
+package com.onlyeavestroughs.routeplanner.util;
+
+/**
+ * Open-addressing set of longs over one primitive array (linear probing, load factor 1/2).
+ * Zero is tracked separately, so it is a valid member. Not thread-safe.
+ */
+public final class LongHashSet {
+
+    private long[] slots;
+    private boolean hasZero;
+    private int size;
+
+    public LongHashSet() {
+        this(1024);
+    }
+
+    public LongHashSet(int expected) {
+        int cap = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        slots = new long[cap];
+    }
+
+    /** Returns true if the value was not already present. */
+    public boolean add(long v) {
+        if (v == 0) {
+            if (hasZero) return false;
+            hasZero = true;
+            size++;
+            return true;
+        }
+        if ((size + 1) * 2 > slots.length) grow();
+        int slot = find(slots, v);
+        if (slots[slot] == v) return false;
+        slots[slot] = v;
+        size++;
+        return true;
+    }
+
+    public boolean contains(long v) {
+        if (v == 0) return hasZero;
+        return slots[find(slots, v)] == v;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static int find(long[] table, long v) {
+        int mask = table.length - 1;
+        long h = v * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (table[slot] != 0 && table[slot] != v) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        for (long v : old) {
+            if (v != 0) slots[find(slots, v)] = v;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.onlyeavestroughs.routeplanner.util;
+
+/**
+ * Open-addressing map from long to non-negative int over primitive arrays (linear probing,
+ * load factor 1/2). Zero is a valid key. Not thread-safe.
+ */
+public final class LongIntHashMap {
+
+    private static final int ABSENT = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int zeroValue = ABSENT;
+    private int size;
+
+    public LongIntHashMap() {
+        this(1024);
+    }
+
+    public LongIntHashMap(int expected) {
+        int cap = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new long[cap];
+        values = new int[cap];
+    }
+
+    /** Returns the value for key, or -1. */
+    public int get(long key) {
+        if (key == 0) return zeroValue;
+        int slot = find(keys, key);
+        return keys[slot] == key ? values[slot] : ABSENT;
+    }
+
+    /** Stores value unless key is present. Returns the existing value, or -1 if it was stored. */
+    public int putIfAbsent(long key, int value) {
+        if (value < 0) throw new IllegalArgumentException("value must be >= 0");
+        if (key == 0) {
+            if (zeroValue != ABSENT) return zeroValue;
+            zeroValue = value;
+            size++;
+            return ABSENT;
+        }
+        if ((size + 1) * 2 > keys.length) grow();
+        int slot = find(keys, key);
+        if (keys[slot] == key) return values[slot];
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return ABSENT;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static int find(long[] table, long key) {
+        int mask = table.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (table[slot] != 0 && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) continue;
+            int slot = find(keys, oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.onlyeavestroughs.routeplanner.util;
+
+import java.util.Locale;
+
+/** "HH:MM" clock times as seconds since midnight, the unit schedules are computed in. */
+public final class TimeOfDay {
+    private TimeOfDay() {}
+
+    /** Seconds since midnight for "H:MM" or "HH:MM" (00:00 to 24:00), or -1 if s is not one. */
+    public static int parse(String s) {
+        if (s == null) return -1;
+        String t = s.trim();
+        int colon = t.indexOf(':');
+        if (colon < 1 || colon > 2 || t.length() != colon + 3) return -1;
+        int h = 0;
+        for (int i = 0; i < colon; i++) {
+            char ch = t.charAt(i);
+            if (ch < '0' || ch > '9') return -1;
+            h = h * 10 + (ch - '0');
+        }
+        char m1 = t.charAt(colon + 1);
+        char m2 = t.charAt(colon + 2);
+        if (m1 < '0' || m1 > '5' || m2 < '0' || m2 > '9') return -1;
+        int m = (m1 - '0') * 10 + (m2 - '0');
+        if (h > 24 || (h == 24 && m > 0)) return -1;
+        return h * 3600 + m * 60;
+    }
+
+    /**
+     * "HH:MM", rounded to the minute; past midnight keeps counting (25:10). A time that
+     * cannot be reached (NaN or infinite, e.g. behind an unroutable leg) is "--:--".
+     */
+    public static String format(double seconds) {
+        if (!Double.isFinite(seconds)) return "--:--";
+        long minutes = Math.round(seconds / 60.0);
+        return String.format(Locale.ROOT, "%02d:%02d", minutes / 60, minutes % 60);
+    }
+}
@@ -0,0 +1,43 @@
+package com.onlyeavestroughs.routeplanner.address;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AddressNormalizerTest {
+
+    @Test
+    void spellingVariantsShareOneCanonicalForm() {
+        String expected = "123 main st unit 4 london on n6a1b2";
+        assertEquals(expected, AddressNormalizer.canonical("123 Main Street, Unit #4, London, Ontario N6A 1B2"));
+        assertEquals(expected, AddressNormalizer.canonical("123 MAIN ST. APT 4  LONDON ON N6A1B2, Canada"));
+        assertEquals(expected, AddressNormalizer.canonical("  123 main st suite 4 london ont n6a 1b2 "));
+
+        assertEquals("12 st johns rd nw montreal qc", AddressNormalizer.canonical("12 St. John's Rd N.W., Montréal, Québec"));
+        assertEquals("9 harbour dr victoria bc", AddressNormalizer.canonical("9 Harbour Drive, Victoria, British Columbia"));
+        assertNotEquals(AddressNormalizer.canonical("123 Main St"), AddressNormalizer.canonical("124 Main St"));
+    }
+
+    @Test
+    void steIsASuiteOnlyBeforeANumber_elseSainte() {
+        assertEquals("123 main st unit 4 london on", AddressNormalizer.canonical("123 Main St, Ste 4, London ON"));
+        assertEquals("123 main st unit 4 london on", AddressNormalizer.canonical("123 Main St Ste. #4 London ON"));
+        assertEquals("2325 ch ste foy levis qc", AddressNormalizer.canonical("2325 Ch. Ste-Foy, Lévis, QC"));
+        assertEquals("1 rue ste catherine o montreal qc", AddressNormalizer.canonical("1 Rue Ste-Catherine O, Montréal, Québec"));
+    }
+
+    @Test
+    void isIdempotent() {
+        String[] samples = {
+                "1560 Hartlet Street London Ontario",
+                "12 St. John's Rd N.W., Montréal, Québec, Canada",
+                "5 Prince Edward Island Ave, Charlottetown, PEI",
+                "#7 - 40 King St E & Main",
+                "2325 Ch. Ste-Foy, Québec, QC Ste 4"
+        };
+        for (String s : samples) {
+            String once = AddressNormalizer.canonical(s);
+            assertEquals(once, AddressNormalizer.canonical(once), s);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.onlyeavestroughs.routeplanner.address;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GazetteerTest {
+
+    @Test
+    void resolvesExactAndNormalizedMatches_missesFallThrough() throws Exception {
+        Path dir = Files.createTempDirectory("gazetteer");
+        Path csv = dir.resolve("known.csv");
+        Files.writeString(csv, String.join("\n",
+                "address,lat,lng",
+                "940 William Street London Ontario,42.990001,-81.240002",
+                "\"267 Regent St, Unit 2, London, ON\",43.01,-81.25",
+                "not a row",
+                ""), StandardCharsets.UTF_8);
+
+        Gazetteer g = Gazetteer.open(csv, dir.resolve("gazetteer.idx"));
+        assertEquals(2, g.size());
+
+        Gazetteer.Match exact = g.lookup("  940 William Street London Ontario ");
+        assertTrue(exact.exact());
+        assertEquals(42.990001, exact.lat(), 1e-9);
+        assertEquals(-81.240002, exact.lng(), 1e-9);
+
+        Gazetteer.Match variant = g.lookup("267 REGENT STREET APT 2 LONDON ONTARIO");
+        assertFalse(variant.exact());
+        assertEquals(43.01, variant.lat(), 1e-9);
+
+        assertNull(g.lookup("941 William Street London Ontario"));
+
+        Gazetteer.Stats stats = g.stats();
+        assertEquals(1, stats.exactHits());
+        assertEquals(1, stats.normalizedHits());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    void indexIsReusedUntilTheCsvChanges() throws Exception {
+        Path dir = Files.createTempDirectory("gazetteer-rebuild");
+        Path csv = dir.resolve("known.csv");
+        Path idx = dir.resolve("gazetteer.idx");
+        Files.writeString(csv, "767 Helmuth Street London Ontario,42.97,-81.22\n", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(csv, FileTime.fromMillis(1_700_000_000_000L));
+
+        Gazetteer.open(csv, idx);
+        FileTime built = FileTime.fromMillis(1_600_000_000_000L);
+        Files.setLastModifiedTime(idx, built);
+
+        Gazetteer.open(csv, idx);
+        assertEquals(built, Files.getLastModifiedTime(idx));
+
+        Files.writeString(csv, "767 Helmuth Street London Ontario,42.98,-81.23\n", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(csv, FileTime.fromMillis(1_700_000_060_000L));
+        Gazetteer g = Gazetteer.open(csv, idx);
+        assertNotEquals(built, Files.getLastModifiedTime(idx));
+        assertEquals(42.98, g.lookup("767 Helmuth Street London Ontario").lat(), 1e-9);
+    }
+}
@@ -0,0 +1,137 @@
+package com.onlyeavestroughs.routeplanner.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeocodeCacheMaintenanceTest {
+
+    @Test
+    void filesBackend_expiresRemovesCorrupt_repairsTimestampsAndStrays() throws Exception {
+        Path dir = Files.createTempDirectory("geocode-files");
+        FileGeocodeCache files = new FileGeocodeCache(dir);
+        Instant now = Instant.now();
+        // Enough entries for several batches.
+        for (int i = 0; i < 600; i++) {
+            files.put(new GeocodeCacheEntry(i + " Fresh Street London Ontario", 42.9, -81.2,
+                    now.minus(Duration.ofHours(i % 20)).toString()));
+        }
+        files.put(new GeocodeCacheEntry("1 Old Road London Ontario", 42.9, -81.2, now.minus(Duration.ofDays(400)).toString()));
+        Files.writeString(dir.resolve("corrupt.json"), "{not json", StandardCharsets.UTF_8);
+        Files.writeString(dir.resolve("nocoords.json"), "{\"address\": \"2 Nowhere Lane\"}", StandardCharsets.UTF_8);
+        // No cachedAt: dated from the file.
+        Path undated = dir.resolve(FileGeocodeCache.fileName(GeocodeCache.keyOf("3 Undated Road London Ontario")));
+        Files.writeString(undated, "{\"address\": \"3 Undated Road London Ontario\", \"lat\": 42.9, \"lng\": -81.2}",
+                StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(undated, FileTime.from(now.minus(Duration.ofDays(10))));
+        // Written under a name no lookup uses; one stray has a newer copy at home, one does not.
+        Files.writeString(dir.resolve("stray1.json"), "{\"address\": \"0 Fresh Street London Ontario\", \"lat\": 1,"
+                + " \"lng\": 2, \"cachedAt\": \"" + now.minus(Duration.ofDays(2)) + "\"}", StandardCharsets.UTF_8);
+        Files.writeString(dir.resolve("stray2.json"), "{\"address\": \"4 Stray Street London Ontario\", \"lat\": 43.1,"
+                + " \"lng\": -81.3, \"cachedAt\": \"" + now + "\"}", StandardCharsets.UTF_8);
+
+        GeocodeCacheMaintenance.Report dry = GeocodeCacheMaintenance.maintainFiles(dir, Duration.ofDays(365), Duration.ofDays(7), false);
+        assertEquals(606, files.size(), "dry run changes nothing");
+        assertEquals(1, dry.expired());
+
+        GeocodeCacheMaintenance.Report r = GeocodeCacheMaintenance.maintainFiles(dir, Duration.ofDays(365), Duration.ofDays(7), true);
+        assertEquals(604, r.entries());
+        assertEquals(1, r.expired());
+        assertEquals(2, r.corrupt());
+        assertEquals(2, r.repaired());
+        assertEquals(1, r.superseded());
+        assertEquals(601, r.ageCounts()[0]);
+        assertEquals(1, r.ageCounts()[2], "the undated entry is 10 days old");
+        assertEquals(1, r.ageCounts()[1]);
+        assertEquals(1, r.ageCounts()[5]);
+
+        assertEquals(602, files.size());
+        assertNull(files.get("1 Old Road London Ontario"));
+        assertEquals(43.1, files.get("4 Stray Street London Ontario").lat());
+        assertEquals(42.9, files.get("0 Fresh Street London Ontario").lat());
+        assertNotNull(files.get("3 Undated Road London Ontario").cachedInstant());
+        assertFalse(Files.exists(dir.resolve("stray1.json")));
+
+        GeocodeCacheMaintenance.Report again = GeocodeCacheMaintenance.maintainFiles(dir, Duration.ofDays(365), Duration.ofDays(7), true);
+        assertEquals(602, again.entries());
+        assertEquals(0, again.expired() + again.corrupt() + again.repaired() + again.superseded());
+    }
+
+    @Test
+    void logBackend_dropsExpiredSupersededAndCorruptRecords_failuresOnTheirOwnTtl() throws Exception {
+        Path root = Files.createTempDirectory("geocode-log-maint");
+        Path log = root.resolve("geocode.log");
+        Instant now = Instant.now();
+        try (LogGeocodeCache cache = LogGeocodeCache.open(log)) {
+            cache.put(new GeocodeCacheEntry("940 William Street London Ontario", 42.99, -81.24, now.minus(Duration.ofDays(3)).toString()));
+            cache.put(new GeocodeCacheEntry("940 William Street London Ontario", 42.98, -81.24, now.toString()));
+            cache.put(new GeocodeCacheEntry("767 Helmuth Street London Ontario", 42.97, -81.22, "2020-01-01T00:00:00Z"));
+            cache.put(new GeocodeCacheEntry("267 Regent St London Ontario", 43.01, -81.25, null));
+            cache.put(GeocodeCacheEntry.negative("1 Nowhere Lane", "NO_RESULTS", now.minus(Duration.ofDays(2)).toString()));
+            cache.put(GeocodeCacheEntry.negative("2 Nowhere Lane", "REJECTED", now.minus(Duration.ofDays(8)).toString()));
+        }
+        Files.writeString(log, "00000000\t{\"address\":\"bad crc\"}\n{\"torn", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+        byte[] before = Files.readAllBytes(log);
+
+        GeocodeCacheMaintenance.Report dry = GeocodeCacheMaintenance.maintainLog(log, root.resolve("geocode"),
+                Duration.ofDays(30), Duration.ofDays(7), false);
+        assertTrue(Arrays.equals(before, Files.readAllBytes(log)), "a dry run must not truncate the torn tail");
+        assertEquals(2, dry.corrupt());
+        GeocodeCacheMaintenance.Report r = GeocodeCacheMaintenance.maintainLog(log, root.resolve("geocode"),
+                Duration.ofDays(30), Duration.ofDays(7), true);
+
+        assertEquals(5, r.entries());
+        assertEquals(2, r.failures());
+        assertEquals(2, r.expired());
+        assertEquals(1, r.superseded());
+        assertEquals(2, r.corrupt());
+        assertEquals(1, r.ageCounts()[GeocodeCacheMaintenance.AGE_LABELS.size() - 1], "no cachedAt: unknown, kept");
+        assertEquals(Files.size(log), r.bytesAfter());
+        assertEquals(dry.bytesAfter(), r.bytesAfter());
+        try (LogGeocodeCache cache = LogGeocodeCache.open(log)) {
+            assertEquals(3, cache.logRecords());
+            assertEquals(0, cache.corruptRecords());
+            assertNull(cache.get("767 Helmuth Street London Ontario"));
+            assertNull(cache.get("2 Nowhere Lane"));
+            assertEquals("NO_RESULTS", cache.get("1 nowhere lane").failure());
+            assertEquals(42.98, cache.get("940 William Street London Ontario").lat());
+        }
+    }
+
+    @Test
+    void dryRun_reportsAPendingLegacyImportWithoutDoingIt() throws Exception {
+        Path root = Files.createTempDirectory("geocode-log-pending");
+        Path legacy = root.resolve("geocode");
+        FileGeocodeCache files = new FileGeocodeCache(legacy);
+        files.put(new GeocodeCacheEntry("940 William Street London Ontario", 42.99, -81.24, Instant.now().toString()));
+        files.put(new GeocodeCacheEntry("767 Helmuth Street London Ontario", 42.97, -81.22, "2020-01-01T00:00:00Z"));
+        Path log = root.resolve("geocode.log");
+
+        GeocodeCacheMaintenance.Report dry = GeocodeCacheMaintenance.maintainLog(log, legacy,
+                Duration.ofDays(365), Duration.ofDays(7), false);
+        assertEquals(legacy, dry.pendingMigration());
+        assertEquals(2, dry.entries());
+        assertEquals(1, dry.expired());
+        assertTrue(dry.toText().contains("Pending: " + legacy), dry.toText());
+        assertFalse(Files.exists(log));
+        assertTrue(Files.isDirectory(legacy));
+        assertFalse(Files.exists(root.resolve("geocode.legacy")));
+
+        GeocodeCacheMaintenance.Report r = GeocodeCacheMaintenance.maintainLog(log, legacy,
+                Duration.ofDays(365), Duration.ofDays(7), true);
+        assertNull(r.pendingMigration());
+        assertEquals(2, r.entries());
+        assertEquals(dry.bytesAfter(), r.bytesAfter());
+        assertTrue(Files.isDirectory(root.resolve("geocode.legacy")));
+    }
+}
@@ -0,0 +1,87 @@
+package com.onlyeavestroughs.routeplanner.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogGeocodeCacheTest {
+
+    @Test
+    void tornAppendIsTruncated_laterAppendsSurviveReopen() throws Exception {
+        Path dir = Files.createTempDirectory("geocode-log");
+        Path log = dir.resolve("geocode.log");
+
+        try (LogGeocodeCache cache = LogGeocodeCache.open(log)) {
+            cache.put(new GeocodeCacheEntry("940 William Street London Ontario", 42.99, -81.24, "2026-01-19T20:35:01Z"));
+        }
+        // Simulate a crash halfway through the next append.
+        Files.writeString(log, "1234abcd\t{\"address\":\"767 Hel", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (LogGeocodeCache cache = LogGeocodeCache.open(log)) {
+            assertEquals(1, cache.size());
+            cache.put(new GeocodeCacheEntry("767 Helmuth Street London Ontario", 42.97, -81.22, "2026-01-19T20:35:02Z"));
+        }
+
+        try (LogGeocodeCache cache = LogGeocodeCache.open(log)) {
+            assertEquals(2, cache.size());
+            assertEquals(0, cache.corruptRecords());
+            assertEquals(42.97, cache.get("767 Helmuth Street London Ontario").lat());
+        }
+    }
+
+    @Test
+    void migratesLegacyFiles_andCompactKeepsLatestPerKey() throws Exception {
+        Path root = Files.createTempDirectory("geocode-migrate");
+        Path legacy = root.resolve("geocode");
+        FileGeocodeCache files = new FileGeocodeCache(legacy);
+        files.put(new GeocodeCacheEntry("267 Regent St London Ontario", 43.01, -81.25, "2026-01-19T20:35:01Z"));
+        Files.writeString(legacy.resolve("corrupt.json"), "{not json", StandardCharsets.UTF_8);
+
+        try (LogGeocodeCache cache = LogGeocodeCache.openWithMigration(root.resolve("geocode.log"), legacy)) {
+            assertEquals(1, cache.size());
+            assertFalse(Files.exists(legacy));
+            assertTrue(Files.isDirectory(root.resolve("geocode.legacy")));
+
+            cache.put(new GeocodeCacheEntry("267 Regent St London Ontario", 43.02, -81.26, "2026-02-01T10:00:00Z"));
+            LogGeocodeCache.CompactResult r = cache.compact();
+            assertEquals(2, r.recordsBefore());
+            assertEquals(1, r.recordsAfter());
+        }
+
+        try (LogGeocodeCache cache = LogGeocodeCache.open(root.resolve("geocode.log"))) {
+            assertEquals(43.02, cache.get("267 Regent St London Ontario").lat());
+        }
+    }
+
+    @Test
+    void compactRefusesWhileTheLogIsOpenElsewhere_failedMoveLeavesTheCacheUsable() throws Exception {
+        Path dir = Files.createTempDirectory("geocode-log-lock");
+        Path log = dir.resolve("geocode.log");
+
+        try (LogGeocodeCache cache = LogGeocodeCache.open(log)) {
+            cache.put(new GeocodeCacheEntry("940 William Street London Ontario", 42.99, -81.24, "2026-01-19T20:35:01Z"));
+            try (LogGeocodeCache serving = LogGeocodeCache.open(log)) {
+                // As a serve process would: its appends must not go to a replaced file.
+                IllegalStateException e = assertThrows(IllegalStateException.class, cache::compact);
+                assertTrue(e.getMessage().contains("open elsewhere"), e.getMessage());
+                assertEquals(1, serving.size());
+            }
+            cache.put(new GeocodeCacheEntry("940 William Street London Ontario", 42.98, -81.24, "2026-01-20T20:35:01Z"));
+            assertEquals(1, cache.compact().recordsAfter());
+
+            // A move that fails keeps the old log and its channel.
+            Files.delete(log);
+            Files.createDirectories(log.resolve("blocker"));
+            assertThrows(IOException.class, cache::compact);
+            assertFalse(Files.exists(dir.resolve("geocode.log.tmp")));
+            cache.put(new GeocodeCacheEntry("767 Helmuth Street London Ontario", 42.97, -81.22, "2026-01-20T20:35:02Z"));
+            assertEquals(2, cache.size());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.onlyeavestroughs.routeplanner.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryGeocodeCacheTest {
+
+    private static final String WILLIAM = "940 William Street London Ontario";
+    private static final String HELMUTH = "767 Helmuth Street London Ontario";
+    private static final String REGENT = "267 Regent St London Ontario";
+
+    @Test
+    void evictsLeastRecentlyUsedAtMaxEntries_evictedEntriesReadThroughFromDisk() throws Exception {
+        Path dir = Files.createTempDirectory("geocode-memory");
+        String now = Instant.now().toString();
+
+        try (MemoryGeocodeCache cache = new MemoryGeocodeCache(LogGeocodeCache.open(dir.resolve("geocode.log")), 2, null)) {
+            cache.put(new GeocodeCacheEntry(WILLIAM, 42.99, -81.24, now));
+            cache.put(new GeocodeCacheEntry(HELMUTH, 42.97, -81.22, now));
+            cache.put(new GeocodeCacheEntry(REGENT, 43.01, -81.25, now));
+            assertEquals(1, cache.stats().evictions(), "William was the eldest of three");
+
+            assertEquals(42.99, cache.get(WILLIAM).lat());      // disk, evicts Helmuth
+            assertEquals(43.01, cache.get(REGENT).lat());       // memory
+            assertEquals(42.97, cache.get(HELMUTH).lat());      // disk, evicts William
+            assertEquals(42.99, cache.get("940 william st. london ontario").lat()); // disk, same key
+            assertNull(cache.get("1 Nowhere Road London Ontario"));
+
+            GeocodeCacheStats s = cache.stats();
+            assertEquals(1, s.memoryHits());
+            assertEquals(3, s.diskHits());
+            assertEquals(1, s.misses());
+            assertEquals(4, s.evictions());
+            assertEquals(0, s.expired());
+            assertEquals(0, s.failureHits());
+            assertEquals(3, cache.size());
+        }
+    }
+
+    @Test
+    void expiredEntriesCountAsMisses_inBothTiers() throws Exception {
+        Path dir = Files.createTempDirectory("geocode-memory-ttl");
+        Path log = dir.resolve("geocode.log");
+        String old = Instant.now().minus(Duration.ofDays(40)).toString();
+        String recent = Instant.now().minus(Duration.ofDays(2)).toString();
+        try (LogGeocodeCache disk = LogGeocodeCache.open(log)) {
+            disk.put(new GeocodeCacheEntry(WILLIAM, 42.99, -81.24, old));
+            disk.put(new GeocodeCacheEntry(HELMUTH, 42.97, -81.22, recent));
+        }
+
+        try (MemoryGeocodeCache cache = new MemoryGeocodeCache(LogGeocodeCache.open(log), 100, Duration.ofDays(30),
+                Duration.ofDays(7))) {
+            assertNull(cache.get(WILLIAM), "40 days old, TTL 30: read through from disk and dropped");
+            assertNull(cache.get(WILLIAM), "not promoted to memory, so expired again");
+            assertEquals(42.97, cache.get(HELMUTH).lat());
+
+            // A negative entry within failureTtl is a hit; past it, it is a miss even from memory.
+            cache.put(GeocodeCacheEntry.negative(REGENT, "NO_RESULTS", recent));
+            assertTrue(cache.get(REGENT).negative());
+            cache.put(GeocodeCacheEntry.negative(REGENT, "NO_RESULTS", old));
+            assertNull(cache.get(REGENT));
+
+            GeocodeCacheStats s = cache.stats();
+            assertEquals(1, s.memoryHits());
+            assertEquals(1, s.diskHits());
+            assertEquals(3, s.misses(), "two expired disk reads and the expired negative (memory then disk)");
+            assertEquals(4, s.expired());
+            assertEquals(1, s.failureHits());
+            assertEquals(0, s.evictions());
+        }
+    }
+
+    @Test
+    void zeroFailureTtl_negativeEntriesAreNotStored() throws Exception {
+        Path dir = Files.createTempDirectory("geocode-memory-neg");
+        try (MemoryGeocodeCache cache = new MemoryGeocodeCache(LogGeocodeCache.open(dir.resolve("geocode.log")), 10, null)) {
+            cache.put(GeocodeCacheEntry.negative(REGENT, "NO_RESULTS", Instant.now().toString()));
+            assertNull(cache.get(REGENT));
+            assertEquals(0, cache.size());
+            assertEquals(1, cache.stats().misses());
+        }
+    }
+}
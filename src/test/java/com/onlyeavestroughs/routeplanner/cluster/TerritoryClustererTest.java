@@ -0,0 +1,72 @@
+package com.onlyeavestroughs.routeplanner.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TerritoryClustererTest {
+
+    @Test
+    void kmeans_coversEveryStopOnce_respectsCap_sameSeedSameTerritories() {
+        int n = 2001;
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        randomStops(lat, lng, 5);
+        double[] minutes = new double[n];
+        Arrays.fill(minutes, 1, n, 30);
+
+        TerritoryClusterer clusterer = new TerritoryClusterer(4, 0, 0, 42, 50);
+        Territories a = clusterer.kmeans(lat, lng, minutes);
+        Territories b = clusterer.kmeans(lat, lng, minutes);
+
+        assertEquals(4, a.count());
+        assertFalse(a.overCapacity());
+        assertArrayEquals(a.territoryOf(), b.territoryOf());
+        assertCovers(a, n, 500 + 50);
+    }
+
+    @Test
+    void sweep_balancesServiceMinutes_withinCap() {
+        int n = 401;
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        randomStops(lat, lng, 9);
+        double[] minutes = new double[n];
+        for (int i = 1; i < n; i++) minutes[i] = i % 3 == 0 ? 90 : 20;
+
+        Territories t = new TerritoryClusterer(4, 0, 0, 1, 1).sweep(lat, lng, minutes);
+
+        assertCovers(t, n, 100 + 10);
+        double total = Arrays.stream(minutes).sum();
+        for (double load : t.serviceMinutes()) {
+            assertEquals(total / 4, load, 120);
+        }
+    }
+
+    private static void assertCovers(Territories t, int n, int cap) {
+        assertEquals(-1, t.territoryOf()[0]);
+        boolean[] seen = new boolean[n];
+        for (int k = 0; k < t.count(); k++) {
+            assertTrue(t.members()[k].length <= cap, "territory over cap: " + t.members()[k].length);
+            for (int i : t.members()[k]) {
+                assertFalse(seen[i], "stop in two territories: " + i);
+                assertEquals(k, t.territoryOf()[i]);
+                seen[i] = true;
+            }
+        }
+        for (int i = 1; i < n; i++) assertTrue(seen[i], "stop missing: " + i);
+    }
+
+    private static void randomStops(double[] lat, double[] lng, long seed) {
+        Random rnd = new Random(seed);
+        lat[0] = 42.98;
+        lng[0] = -81.25;
+        for (int i = 1; i < lat.length; i++) {
+            lat[i] = 42.85 + rnd.nextDouble() * 0.3;
+            lng[i] = -81.45 + rnd.nextDouble() * 0.4;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -34,4 +35,72 @@ class AddressReaderTest {
                 "767 Helmuth Street London Ontario"
         ), r.addresses());
     }
+
+    @Test
+    void streamsEachAddressOnce_inOrder_sameCounters() throws Exception {
+        Path tmp = Files.createTempFile("addresses", ".txt");
+        Files.writeString(tmp,
+                "940 William Street London Ontario\r\n"
+                        + "\r\n"
+                        + "767 Helmuth Street London Ontario\r\n"
+                        + "  940 William Street London Ontario\r\n"
+                        + "267 Regent St London Ontario",
+                StandardCharsets.UTF_8);
+
+        List<String> streamed = new ArrayList<>();
+        AddressReader.ReadResult r = AddressReader.read(tmp, streamed::add);
+
+        assertEquals(5, r.rawLineCount());
+        assertEquals(1, r.blankLineCount());
+        assertEquals(1, r.duplicateLineCount());
+        assertEquals(List.of(
+                "940 William Street London Ontario",
+                "767 Helmuth Street London Ontario",
+                "267 Regent St London Ontario"
+        ), streamed);
+        assertEquals(streamed, r.addresses());
+    }
+
+    @Test
+    void mergesNearDuplicates_reportsWhatTheyMergedInto() throws Exception {
+        Path tmp = Files.createTempFile("addresses", ".txt");
+        Files.write(tmp, List.of(
+                "123 Main St. London Ontario",
+                "940 William Street London Ontario",
+                "123 main street, london, ON",
+                "123 Main St. London Ontario"
+        ), StandardCharsets.UTF_8);
+
+        AddressReader.ReadResult r = AddressReader.read(tmp, true, a -> {});
+
+        assertEquals(1, r.duplicateLineCount());
+        assertEquals(List.of("123 Main St. London Ontario", "940 William Street London Ontario"), r.addresses());
+        assertEquals(List.of(new AddressReader.NearDuplicate("123 main street, london, ON", "123 Main St. London Ontario")),
+                r.nearDuplicates());
+    }
+
+    @Test
+    void readsWindowAndServiceFields_dedupesOnTheAddressAlone() throws Exception {
+        Path tmp = Files.createTempFile("addresses", ".txt");
+        Files.write(tmp, List.of(
+                "940 William Street London Ontario | 09:00-11:30 | 45",
+                "767 Helmuth Street London Ontario|13:00-12:00",
+                "940 William Street London Ontario | 14:00-15:00",
+                "267 Regent St London Ontario | 20 min | soon"
+        ), StandardCharsets.UTF_8);
+
+        AddressReader.ReadResult r = AddressReader.read(tmp);
+
+        assertEquals(1, r.duplicateLineCount());
+        assertEquals(List.of(
+                "940 William Street London Ontario",
+                "767 Helmuth Street London Ontario",
+                "267 Regent St London Ontario"
+        ), r.addresses());
+        assertEquals(new AddressReader.Timing(9 * 3600, 11 * 3600 + 1800, 45 * 60, 0),
+                r.timings().get("940 William Street London Ontario"));
+        assertNull(r.timings().get("767 Helmuth Street London Ontario"));
+        assertEquals(new AddressReader.Timing(-1, -1, 20 * 60, 1), r.timings().get("267 Regent St London Ontario"));
+        assertEquals(2, r.unreadableFields());
+    }
 }
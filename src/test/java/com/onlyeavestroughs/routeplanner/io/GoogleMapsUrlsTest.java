@@ -0,0 +1,76 @@
+package com.onlyeavestroughs.routeplanner.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GoogleMapsUrlsTest {
+
+    @Test
+    void shortRouteIsOneLink_longRouteChunksCoverEveryLegOnce() {
+        int n = 24;
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        for (int i = 0; i < n; i++) {
+            lat[i] = 42.9 + i * 0.001;
+            lng[i] = -81.2 - i * 0.0015;
+        }
+        GoogleMapsUrls maps = new GoogleMapsUrls(lat, lng, 9, "driving-hgv");
+
+        assertEquals(0, maps.linkCount(new int[0]));
+        assertEquals(GoogleMapsUrls.BASE + "&origin=42.900000,-81.200000&destination=42.900000,-81.200000"
+                        + "&travelmode=driving&waypoints=42.903000,-81.204500%7C42.901000,-81.201500",
+                maps.link(new int[]{3, 1}, 0));
+        assertEquals(1, maps.linkCount(new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9}));
+        assertEquals(2, maps.linkCount(new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}));
+
+        // 23 stops = 24 legs; at 10 legs per link: 10 + 10 + 4.
+        int[] route = new int[n - 1];
+        for (int p = 0; p < route.length; p++) route[p] = n - 1 - p;
+        int links = maps.linkCount(route);
+        assertEquals(3, links);
+        List<String> points = new ArrayList<>();
+        for (int c = 0; c < links; c++) {
+            List<String> link = points(maps.link(route, c));
+            assertTrue(link.size() <= 11);
+            if (c > 0) assertEquals(points.get(points.size() - 1), link.get(0), "chunks must join up");
+            points.addAll(c == 0 ? link : link.subList(1, link.size()));
+        }
+        assertEquals(route.length + 2, points.size());
+        assertEquals("42.900000,-81.200000", points.get(0));
+        assertEquals(points.get(0), points.get(points.size() - 1));
+        for (int p = 0; p < route.length; p++) {
+            assertEquals(String.format(Locale.ROOT, "%.6f,%.6f", lat[route[p]], lng[route[p]]), points.get(p + 1));
+        }
+    }
+
+    @Test
+    void travelModeFollowsTheOrsProfile() {
+        assertEquals("driving", GoogleMapsUrls.travelMode("driving-car"));
+        assertEquals("bicycling", GoogleMapsUrls.travelMode("cycling-regular"));
+        assertEquals("walking", GoogleMapsUrls.travelMode("foot-walking"));
+    }
+
+    /** origin, waypoints..., destination of one link. */
+    private static List<String> points(String url) {
+        String q = url.substring(GoogleMapsUrls.BASE.length() + 1);
+        String origin = null;
+        String destination = null;
+        List<String> out = new ArrayList<>();
+        List<String> waypoints = List.of();
+        for (String kv : q.split("&")) {
+            String v = kv.substring(kv.indexOf('=') + 1);
+            if (kv.startsWith("origin=")) origin = v;
+            else if (kv.startsWith("destination=")) destination = v;
+            else if (kv.startsWith("waypoints=")) waypoints = List.of(v.split("%7C"));
+        }
+        out.add(origin);
+        out.addAll(waypoints);
+        out.add(destination);
+        return out;
+    }
+}
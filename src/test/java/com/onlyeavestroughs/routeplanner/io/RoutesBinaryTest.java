@@ -0,0 +1,98 @@
+package com.onlyeavestroughs.routeplanner.io;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onlyeavestroughs.routeplanner.matrix.CostMatrix;
+import com.onlyeavestroughs.routeplanner.matrix.HaversineMatrixEngine;
+import com.onlyeavestroughs.routeplanner.optimize.OptimizeResult;
+import com.onlyeavestroughs.routeplanner.ors.GeocodeFailure;
+import com.onlyeavestroughs.routeplanner.runtime.ProjectConfigLoader;
+import com.onlyeavestroughs.routeplanner.runtime.RunConfig;
+import com.onlyeavestroughs.routeplanner.runtime.StopTable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutesBinaryTest {
+
+    @Test
+    void jsonAndBinaryCarryTheSamePlan_damagedBinaryFallsBackToJson() throws Exception {
+        Path dir = Files.createTempDirectory("routes-out");
+        RunConfig cfg = RunConfig.from(ProjectConfigLoader.fromTree(new ObjectMapper().createObjectNode()
+                .put("depot", "2050 Kains Road London Ontario")
+                .put("input", "addresses.txt")
+                .put("orsApiKey", "test")), "20260101_060000");
+
+        double[] lat = {42.98, 42.99, 43.00, 42.97, 42.95};
+        double[] lng = {-81.25, -81.24, -81.26, -81.22, -81.30};
+        // Presized too small so the columns grow; IDs deliberately not equal to matrix
+        // indices; one address needs real UTF-8.
+        StopTable stops = new StopTable(cfg.depotAddress(), lat[0], lng[0], 2);
+        stops.add(11, "940 William Street London Ontario", lat[1], lng[1], StopTable.CACHE);
+        stops.add(12, "267 Rue Régent, \"Unit 2\"", lat[2], lng[2], StopTable.ORS);
+        stops.add(13, "767 Helmuth Street London Ontario", lat[3], lng[3], StopTable.ORS);
+        stops.add(14, "12 Oxford Street West London Ontario", lat[4], lng[4], StopTable.CACHE);
+        stops.addFailure("1 Nowhere Lane", GeocodeFailure.NO_RESULTS, "no geocode results");
+        assertArrayEquals(lat, stops.lat());
+        assertArrayEquals(new int[]{0, 2, 2, 0}, stops.sourceCounts());
+        assertEquals(1, stops.failureCounts()[GeocodeFailure.NO_RESULTS.ordinal()]);
+        CostMatrix m = new HaversineMatrixEngine(1.3, 50).compute(stops.lat(), stops.lng()).matrix();
+        OptimizeResult plan = new OptimizeResult(new int[][]{{2, 1}, {3, 4}, {}}, 0, 0, 0, 0, false, List.of());
+
+        Path json = dir.resolve("routes.json");
+        Path bin = dir.resolve("routes.bin");
+        ReportWriter.writeRoutesJson(json, cfg, stops, m, plan, null);
+        RoutesBinary.write(bin, json, cfg, stops, plan);
+
+        JsonNode root = new ObjectMapper().readTree(json.toFile());
+        assertEquals(3, root.get("routes").size());
+        assertEquals(Math.round(m.tourDuration(new int[]{3, 4})), root.get("routes").get(1).get("totalDurationSeconds").asLong());
+        JsonNode failed = root.get("failedStops").get(0);
+        assertEquals("1 Nowhere Lane", failed.get("address").asText());
+        assertEquals("NO_RESULTS", failed.get("code").asText());
+        assertTrue(root.get("routes").get(2).get("googleMapsUrlPrimary").isNull());
+        assertTrue(root.get("routes").get(0).get("googleMapsUrlPrimary").asText().endsWith("&waypoints=43.000000,-81.260000%7C42.990000,-81.240000"));
+
+        PreviousPlan fromJson = PreviousPlan.read(json);
+        PreviousPlan fromBin = RoutesBinary.read(bin);
+        assertEquals(fromJson.runId(), fromBin.runId());
+        assertEquals(fromJson.depotAddress(), fromBin.depotAddress());
+        assertSameStops(stops, fromJson.stops());
+        assertSameStops(stops, fromBin.stops());
+        assertTrue(Arrays.deepEquals(new int[][]{{12, 11}, {13, 14}, {}}, fromBin.routes()));
+        assertTrue(Arrays.deepEquals(fromJson.routes(), fromBin.routes()));
+        assertEquals(bin, PreviousPlan.load(json).file());
+
+        // routes.json edited or replaced after the binary was written: the JSON wins.
+        Files.setLastModifiedTime(json, FileTime.fromMillis(Files.getLastModifiedTime(json).toMillis() + 60_000));
+        assertFalse(RoutesBinary.matches(bin, json));
+        assertEquals(json, PreviousPlan.load(json).file());
+        RoutesBinary.write(bin, json, cfg, stops, plan);
+        assertEquals(bin, PreviousPlan.load(json).file());
+        Files.writeString(json, Files.readString(json).replace("940 William", "941 William"));
+        assertEquals(json, PreviousPlan.load(json).file());
+        RoutesBinary.write(bin, json, cfg, stops, plan);
+
+        Files.write(bin, Arrays.copyOf(Files.readAllBytes(bin), (int) Files.size(bin) - 3));
+        assertThrows(IOException.class, () -> RoutesBinary.read(bin));
+        assertEquals(json, PreviousPlan.load(json).file());
+    }
+
+    private static void assertSameStops(StopTable expected, StopTable actual) {
+        assertEquals(expected.size(), actual.size());
+        assertArrayEquals(expected.lat(), actual.lat());
+        assertArrayEquals(expected.lng(), actual.lng());
+        for (int row = 1; row <= expected.size(); row++) {
+            assertEquals(expected.id(row), actual.id(row));
+            assertEquals(expected.address(row), actual.address(row));
+            assertEquals(StopTable.PREVIOUS_PLAN, actual.source(row));
+        }
+    }
+}
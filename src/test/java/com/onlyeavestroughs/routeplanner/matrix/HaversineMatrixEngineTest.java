@@ -0,0 +1,32 @@
+package com.onlyeavestroughs.routeplanner.matrix;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HaversineMatrixEngineTest {
+
+    // City halls: London, Ontario and Toronto, about 168 km apart as the crow flies.
+    private static final double[] LAT = {42.9849, 43.6532};
+    private static final double[] LNG = {-81.2453, -79.3832};
+    private static final double LONDON_TORONTO_M = 168_000;
+
+    @Test
+    void londonToToronto_matchesKnownGreatCircleDistance() {
+        assertEquals(LONDON_TORONTO_M, HaversineMatrixEngine.greatCircleMeters(LAT[0], LNG[0], LAT[1], LNG[1]), 500);
+
+        CostMatrix m = new HaversineMatrixEngine(1.0, 100).compute(LAT, LNG).matrix();
+        assertEquals(0, m.distance(0, 0));
+        assertEquals(LONDON_TORONTO_M, m.distance(0, 1), 500);
+        assertEquals(m.distance(0, 1), m.distance(1, 0), 1e-6);
+        assertEquals(m.distance(0, 1) / (100 / 3.6), m.duration(0, 1), 1e-6);
+    }
+
+    @Test
+    void detourFactorScalesDistanceAndDuration() {
+        CostMatrix straight = new HaversineMatrixEngine(1.0, 60).compute(LAT, LNG).matrix();
+        CostMatrix road = new HaversineMatrixEngine(1.3, 60).compute(LAT, LNG).matrix();
+        assertEquals(1.3 * straight.distance(0, 1), road.distance(0, 1), 1e-6);
+        assertEquals(1.3 * straight.duration(0, 1), road.duration(0, 1), 1e-6);
+    }
+}
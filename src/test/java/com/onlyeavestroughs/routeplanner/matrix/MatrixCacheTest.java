@@ -0,0 +1,86 @@
+package com.onlyeavestroughs.routeplanner.matrix;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatrixCacheTest {
+
+    @Test
+    void cellsSurviveReopen_tornTailDropped() throws Exception {
+        Path root = Files.createTempDirectory("matrix-cache");
+        int count = 5000;
+        long[] from = new long[count];
+        long[] to = new long[count];
+        double[] meters = new double[count];
+        double[] seconds = new double[count];
+        for (int i = 0; i < count; i++) {
+            from[i] = MatrixCache.pointKey(42.9 + i * 1e-4, -81.2);
+            to[i] = MatrixCache.pointKey(43.0, -81.3 - i * 1e-4);
+            meters[i] = 1000 + i;
+            seconds[i] = 60 + i;
+        }
+
+        try (MatrixCache cache = MatrixCache.open(root, "driving-car")) {
+            cache.putAll(from, to, meters, seconds, count);
+        }
+        Files.write(root.resolve("matrix/driving-car.bin"), new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (MatrixCache cache = MatrixCache.open(root, "driving-car")) {
+            assertEquals(count, cache.size());
+            CostMatrix m = new CostMatrix(2);
+            assertTrue(cache.fill(from[4321], to[4321], m, 0, 1));
+            assertEquals(1000 + 4321, m.distance(0, 1));
+            assertEquals(60 + 4321, m.duration(0, 1));
+            assertFalse(cache.fill(to[0], from[0], m, 1, 0));
+        }
+        assertEquals(count * 24L, Files.size(root.resolve("matrix/driving-car.bin")));
+    }
+
+    @Test
+    void twoWritersOnOneFile_appendWithoutOverwriting_andSeeEachOthersCells() throws Exception {
+        Path root = Files.createTempDirectory("matrix-cache-shared");
+        long[] from = new long[200];
+        long[] to = new long[200];
+        double[] meters = new double[200];
+        double[] seconds = new double[200];
+        for (int i = 0; i < 200; i++) {
+            from[i] = MatrixCache.pointKey(42.9 + i * 1e-4, -81.2);
+            to[i] = MatrixCache.pointKey(43.0, -81.3);
+            meters[i] = 1000 + i;
+            seconds[i] = 60 + i;
+        }
+
+        // As a serve process and a prefetch process would: both open before either writes.
+        try (MatrixCache a = MatrixCache.open(root, "driving-car");
+             MatrixCache b = MatrixCache.open(root, "driving-car")) {
+            a.putAll(from, to, meters, seconds, 100);
+            b.putAll(slice(from), slice(to), slice(meters), slice(seconds), 100);
+            assertEquals(200, b.size(), "b indexes a's cells before appending its own");
+            assertTrue(b.fill(from[7], to[7], new CostMatrix(2), 0, 1));
+        }
+        assertEquals(200 * 24L, Files.size(root.resolve("matrix/driving-car.bin")));
+
+        try (MatrixCache cache = MatrixCache.open(root, "driving-car")) {
+            assertEquals(200, cache.size());
+            CostMatrix m = new CostMatrix(2);
+            assertTrue(cache.fill(from[7], to[7], m, 0, 1));
+            assertEquals(1007, m.distance(0, 1));
+            assertTrue(cache.fill(from[150], to[150], m, 0, 1));
+            assertEquals(1150, m.distance(0, 1));
+        }
+    }
+
+    private static long[] slice(long[] a) {
+        return Arrays.copyOfRange(a, 100, 200);
+    }
+
+    private static double[] slice(double[] a) {
+        return Arrays.copyOfRange(a, 100, 200);
+    }
+}
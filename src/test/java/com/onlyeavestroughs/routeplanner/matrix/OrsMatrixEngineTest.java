@@ -0,0 +1,65 @@
+package com.onlyeavestroughs.routeplanner.matrix;
+
+import com.onlyeavestroughs.routeplanner.ors.OrsMatrixClient;
+import com.onlyeavestroughs.routeplanner.ors.OrsStubServer;
+import com.onlyeavestroughs.routeplanner.ors.RateLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrsMatrixEngineTest {
+
+    private static final int TILE = 10;
+
+    @Test
+    void coldRunTilesTheWholeMatrix_addedStopFetchesOnlyItsRowAndColumn() throws Exception {
+        int n = 2 * TILE;
+        double[] lat = new double[n + 1];
+        double[] lng = new double[n + 1];
+        for (int i = 0; i <= n; i++) {
+            lat[i] = 42.95 + i * 1e-3;
+            lng[i] = -81.25 - (i % 7) * 1e-3;
+        }
+        Path root = Files.createTempDirectory("ors-matrix-engine");
+
+        try (OrsStubServer stub = new OrsStubServer();
+             MatrixCache cache = MatrixCache.open(root, "driving-car")) {
+            OrsMatrixClient client = new OrsMatrixClient("test", "driving-car", RateLimiter.unlimited(), stub.baseUrl());
+            OrsMatrixEngine engine = new OrsMatrixEngine(client, cache, TILE, 2);
+
+            MatrixResult cold = engine.compute(Arrays.copyOf(lat, n), Arrays.copyOf(lng, n));
+            assertEquals(4, cold.requests(), "ceil(20/10)^2 tiles");
+            assertEquals(4, stub.matrixRequests.get());
+            assertEquals(n * (n - 1), cold.cellsFetched());
+            assertEquals(0, cold.cellsFromCache());
+            assertTrue(stub.maxLocations.get() <= 2 * TILE);
+            assertCells(cold.matrix(), lat, lng, n);
+
+            // One more stop: its row (2 tiles of the 20 other columns) and its column for
+            // the other 20 rows (2 tiles). Everything else comes from the cache.
+            MatrixResult added = engine.compute(lat, lng);
+            assertEquals(4, added.requests());
+            assertEquals(8, stub.matrixRequests.get());
+            assertEquals(2 * n, added.cellsFetched());
+            assertEquals(n * (n - 1), added.cellsFromCache());
+            assertCells(added.matrix(), lat, lng, n + 1);
+
+            MatrixResult warm = engine.compute(lat, lng);
+            assertEquals(0, warm.requests());
+            assertEquals(8, stub.matrixRequests.get());
+        }
+    }
+
+    private static void assertCells(CostMatrix m, double[] lat, double[] lng, int n) {
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double expected = i == j ? 0 : OrsStubServer.meters(lat[i], lng[i], lat[j], lng[j]);
+                assertEquals(expected, m.distance(i, j), 0.5, i + "->" + j);
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.onlyeavestroughs.routeplanner.optimize;
+
+import com.onlyeavestroughs.routeplanner.cluster.Territories;
+import com.onlyeavestroughs.routeplanner.cluster.TerritoryClusterer;
+import com.onlyeavestroughs.routeplanner.matrix.CostMatrix;
+import com.onlyeavestroughs.routeplanner.matrix.HaversineMatrixEngine;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteOptimizerTest {
+
+    @Test
+    void visitsEveryStopOnce_respectsCrewCap_improvesOnConstruction() {
+        int n = 1201;
+        Random rnd = new Random(7);
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        lat[0] = 42.98;
+        lng[0] = -81.25;
+        for (int i = 1; i < n; i++) {
+            lat[i] = 42.85 + rnd.nextDouble() * 0.3;
+            lng[i] = -81.45 + rnd.nextDouble() * 0.4;
+        }
+        CostMatrix m = new HaversineMatrixEngine(1.3, 50).compute(lat, lng).matrix();
+
+        OptimizeResult r = new RouteOptimizer(m.durations(), lat, lng, 4, 0, 10_000).optimize();
+
+        assertEquals(4, r.routes().length);
+        boolean[] seen = new boolean[n];
+        int cap = 300 + 30;
+        for (int[] route : r.routes()) {
+            assertTrue(route.length <= cap, "route over cap: " + route.length);
+            for (int idx : route) {
+                assertTrue(idx >= 1 && idx < n);
+                assertFalse(seen[idx], "stop visited twice: " + idx);
+                seen[idx] = true;
+            }
+        }
+        for (int i = 1; i < n; i++) assertTrue(seen[i], "stop missing: " + i);
+
+        assertTrue(r.cost() < r.constructionCost());
+        double recomputed = 0;
+        for (int[] route : r.routes()) recomputed += m.tourDuration(route);
+        assertEquals(recomputed, r.cost(), 1e-6);
+    }
+
+    @Test
+    void multiStart_sameSeedSameRoutes_noWorseThanSingleStart() {
+        int n = 301;
+        Random rnd = new Random(11);
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        lat[0] = 42.98;
+        lng[0] = -81.25;
+        for (int i = 1; i < n; i++) {
+            lat[i] = 42.85 + rnd.nextDouble() * 0.3;
+            lng[i] = -81.45 + rnd.nextDouble() * 0.4;
+        }
+        CostMatrix m = new HaversineMatrixEngine(1.3, 50).compute(lat, lng).matrix();
+        RouteOptimizer base = new RouteOptimizer(m.durations(), lat, lng, 4, 0, 60_000);
+
+        OptimizeResult single = base.optimize();
+        OptimizeResult a = new MultiStartOptimizer(base, 4, 42, 10, 60, 60_000).optimize();
+        OptimizeResult b = new MultiStartOptimizer(base, 4, 42, 10, 60, 60_000).optimize();
+        // Same starts on one thread (a smaller machine): the same plan.
+        OptimizeResult c = new MultiStartOptimizer(base, 4, 1, 42, 10, 60, 60_000).optimize();
+
+        assertEquals(4, a.workers().size());
+        assertArrayEquals(a.routes(), b.routes());
+        assertEquals(a.cost(), b.cost());
+        assertArrayEquals(a.routes(), c.routes());
+        assertEquals(4, c.workers().size());
+        assertTrue(a.cost() <= single.cost() + 1e-6);
+    }
+
+    @Test
+    void repair_insertsNewStops_dropsRemoved_staysCloseToFullReplan() {
+        int n = 1201;
+        Random rnd = new Random(3);
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        lat[0] = 42.98;
+        lng[0] = -81.25;
+        for (int i = 1; i < n; i++) {
+            lat[i] = 42.85 + rnd.nextDouble() * 0.3;
+            lng[i] = -81.45 + rnd.nextDouble() * 0.4;
+        }
+        HaversineMatrixEngine engine = new HaversineMatrixEngine(1.3, 50);
+        OptimizeResult before = new RouteOptimizer(engine.compute(lat, lng).matrix().durations(), lat, lng, 4, 0, 10_000)
+                .optimize();
+
+        // Next day: stops 1..10 are gone, ten new ones are appended at 1191..1200.
+        double[] lat2 = new double[n];
+        double[] lng2 = new double[n];
+        lat2[0] = lat[0];
+        lng2[0] = lng[0];
+        System.arraycopy(lat, 11, lat2, 1, n - 11);
+        System.arraycopy(lng, 11, lng2, 1, n - 11);
+        for (int i = n - 10; i < n; i++) {
+            lat2[i] = 42.85 + rnd.nextDouble() * 0.3;
+            lng2[i] = -81.45 + rnd.nextDouble() * 0.4;
+        }
+        int[][] previous = new int[before.routes().length][];
+        for (int k = 0; k < previous.length; k++) {
+            previous[k] = before.routes()[k].clone();
+            for (int p = 0; p < previous[k].length; p++) {
+                previous[k][p] = previous[k][p] <= 10 ? -1 : previous[k][p] - 10;
+            }
+        }
+        int[] inserted = new int[10];
+        for (int i = 0; i < 10; i++) inserted[i] = n - 10 + i;
+
+        CostMatrix m = engine.compute(lat2, lng2).matrix();
+        OptimizeResult repaired = new RouteOptimizer(m.durations(), lat2, lng2, 4, 0, 10_000).repair(previous, inserted);
+        OptimizeResult full = new RouteOptimizer(m.durations(), lat2, lng2, 4, 0, 10_000).optimize();
+
+        boolean[] seen = new boolean[n];
+        for (int[] route : repaired.routes()) {
+            for (int idx : route) {
+                assertFalse(seen[idx], "stop visited twice: " + idx);
+                seen[idx] = true;
+            }
+        }
+        for (int i = 1; i < n; i++) assertTrue(seen[i], "stop missing: " + i);
+
+        assertTrue(repaired.cost() <= repaired.constructionCost());
+        assertTrue(repaired.cost() <= full.cost() * 1.03, repaired.cost() + " vs full " + full.cost());
+        double recomputed = 0;
+        for (int[] route : repaired.routes()) recomputed += m.tourDuration(route);
+        assertEquals(recomputed, repaired.cost(), 1e-6);
+    }
+
+    @Test
+    void timeWindows_searchRemovesLatenessThePlainPlanHas() {
+        int n = 81;
+        Random rnd = new Random(5);
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        lat[0] = 42.98;
+        lng[0] = -81.25;
+        for (int i = 1; i < n; i++) {
+            lat[i] = 42.955 + rnd.nextDouble() * 0.05;
+            lng[i] = -81.275 + rnd.nextDouble() * 0.05;
+        }
+        CostMatrix m = new HaversineMatrixEngine(1.3, 50).compute(lat, lng).matrix();
+        // Shift 08:00-14:00, three minutes per stop; stops 1..10 must be reached by 09:00,
+        // stops 11..20 not before 11:00.
+        double[] earliest = new double[n];
+        double[] latest = new double[n];
+        double[] service = new double[n];
+        Arrays.fill(latest, TimeWindows.NONE);
+        Arrays.fill(service, 1, n, 180);
+        earliest[0] = 8 * 3600;
+        latest[0] = 14 * 3600;
+        for (int i = 1; i <= 10; i++) latest[i] = 9 * 3600;
+        for (int i = 11; i <= 20; i++) {
+            earliest[i] = 11 * 3600;
+            latest[i] = 12 * 3600;
+        }
+        TimeWindows windows = new TimeWindows(m.durations(), earliest, latest, service);
+
+        OptimizeResult plain = new RouteOptimizer(m.durations(), lat, lng, 2, 0, 10_000).optimize();
+        OptimizeResult timed = new RouteOptimizer(m.durations(), lat, lng, 2, 0, 10_000, windows).optimize();
+
+        int plainLate = 0;
+        for (int[] route : plain.routes()) plainLate += windows.schedule(route).lateStops();
+        assertTrue(plainLate > 0, "windows should not be met by accident");
+
+        boolean[] seen = new boolean[n];
+        double travel = 0;
+        for (int[] route : timed.routes()) {
+            TimeWindows.Schedule s = windows.schedule(route);
+            assertEquals(0, s.lateStops());
+            assertFalse(s.lateReturn());
+            assertEquals(0, s.lateSeconds(), 1e-9);
+            for (int p = 0; p < route.length; p++) {
+                assertFalse(seen[route[p]], "stop visited twice: " + route[p]);
+                seen[route[p]] = true;
+                assertTrue(s.start()[p] >= earliest[route[p]]);
+            }
+            travel += m.tourDuration(route);
+        }
+        for (int i = 1; i < n; i++) assertTrue(seen[i], "stop missing: " + i);
+        // No lateness left, so the reported cost is travel alone.
+        assertEquals(travel, timed.cost(), 1e-6);
+    }
+
+    @Test
+    void timeWindows_unroutableStop_searchConvergesWithFiniteTimes() {
+        int n = 41;
+        Random rnd = new Random(8);
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        lat[0] = 42.98;
+        lng[0] = -81.25;
+        for (int i = 1; i < n; i++) {
+            lat[i] = 42.955 + rnd.nextDouble() * 0.05;
+            lng[i] = -81.275 + rnd.nextDouble() * 0.05;
+        }
+        double[] travel = new HaversineMatrixEngine(1.3, 50).compute(lat, lng).matrix().durations().clone();
+        // ORS found no road to or from stop 4 (OrsMatrixClient reads its null cells as infinity),
+        // so whichever route visits it has two unroutable legs.
+        for (int i = 0; i < n; i++) {
+            if (i == 4) continue;
+            travel[i * n + 4] = Double.POSITIVE_INFINITY;
+            travel[4 * n + i] = Double.POSITIVE_INFINITY;
+        }
+        double[] earliest = new double[n];
+        double[] latest = new double[n];
+        double[] service = new double[n];
+        Arrays.fill(latest, TimeWindows.NONE);
+        Arrays.fill(service, 1, n, 180);
+        earliest[0] = 8 * 3600;
+        latest[0] = 16 * 3600;
+        for (int i = 1; i <= 8; i++) latest[i] = 10 * 3600;
+        TimeWindows windows = new TimeWindows(travel, earliest, latest, service);
+
+        OptimizeResult r = new RouteOptimizer(travel, lat, lng, 2, 0, 10_000, windows).optimize();
+
+        assertFalse(r.timedOut(), "search should converge, not thrash on NaN deltas");
+        assertTrue(Double.isFinite(r.cost()), "cost " + r.cost());
+        boolean[] seen = new boolean[n];
+        for (int[] route : r.routes()) {
+            TimeWindows.Schedule sched = windows.schedule(route);
+            assertTrue(Double.isFinite(sched.returnTime()) && Double.isFinite(sched.lateSeconds()), sched.toString());
+            boolean reachable = true;
+            for (int stop : route) {
+                assertFalse(seen[stop], "stop visited twice: " + stop);
+                seen[stop] = true;
+                reachable &= stop != 4;
+            }
+            if (reachable) assertTrue(sched.returnTime() <= 16 * 3600, "return " + sched.returnTime());
+        }
+        for (int i = 1; i < n; i++) assertTrue(seen[i], "stop missing: " + i);
+    }
+
+    @Test
+    void clustered_moreTerritoriesThanThreads_keepsToOneTimeBudget() throws Exception {
+        int n = 161;
+        Random rnd = new Random(12);
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        lat[0] = 42.98;
+        lng[0] = -81.25;
+        for (int i = 1; i < n; i++) {
+            lat[i] = 42.9 + rnd.nextDouble() * 0.16;
+            lng[i] = -81.35 + rnd.nextDouble() * 0.2;
+        }
+        CostMatrix m = new HaversineMatrixEngine(1.3, 50).compute(lat, lng).matrix();
+        double[] minutes = new double[n];
+        Territories territories = new TerritoryClusterer(8, 0, 0, 1, 1).sweep(lat, lng, minutes);
+
+        // No plateau or iteration limit, so each territory searches until the clock stops it.
+        long budgetMs = 400;
+        OptimizeResult r = new ClusteredOptimizer(m.durations(), lat, lng, territories, null, 8, 1, 3,
+                Integer.MAX_VALUE, Integer.MAX_VALUE, budgetMs).optimize();
+
+        assertTrue(r.timedOut());
+        assertTrue(r.elapsedMs() < 2 * budgetMs, "8 territories on 1 thread took " + r.elapsedMs() + " ms");
+        int routed = 0;
+        for (int[] route : r.routes()) routed += route.length;
+        assertEquals(n - 1, routed);
+    }
+}
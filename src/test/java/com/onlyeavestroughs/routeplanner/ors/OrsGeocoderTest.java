@@ -0,0 +1,260 @@
+package com.onlyeavestroughs.routeplanner.ors;
+
+import com.onlyeavestroughs.routeplanner.cache.FileGeocodeCache;
+import com.onlyeavestroughs.routeplanner.cache.GeocodeCacheEntry;
+import com.onlyeavestroughs.routeplanner.cache.LogGeocodeCache;
+import com.onlyeavestroughs.routeplanner.cache.MemoryGeocodeCache;
+import com.onlyeavestroughs.routeplanner.ors.OrsGeocoder.GeocodeOutcome;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrsGeocoderTest {
+
+    /** Loopback /geocode/search stub; each answer takes 20 ms. Counts requests and the most in flight. */
+    private static final class StubServer implements AutoCloseable {
+        interface Responder {
+            void respond(int request, String query, HttpExchange ex) throws IOException;
+        }
+
+        final HttpServer server;
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        private final Responder responder;
+
+        StubServer(Responder responder) throws IOException {
+            this.responder = responder;
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext("/geocode/search", this::handle);
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.start();
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        private void handle(HttpExchange ex) throws IOException {
+            int n = requests.incrementAndGet();
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+                responder.respond(n, ex.getRequestURI().getRawQuery(), ex);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+
+        static void send(HttpExchange ex, int code, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            ex.sendResponseHeaders(code, bytes.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        static void sendPoint(HttpExchange ex, double lat) throws IOException {
+            send(ex, 200, "{\"features\":[{\"geometry\":{\"coordinates\":[-81.2," + lat + "]}}]}");
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void burstsOf429And503AreRetried_honoringRetryAfter_inFlightStaysBounded() throws Exception {
+        try (StubServer stub = new StubServer((n, q, ex) -> {
+            if (n == 1) {
+                ex.getResponseHeaders().set("Retry-After", "1");
+                StubServer.send(ex, 429, "{\"error\":\"rate limit\"}");
+            } else if (n <= 3) {
+                StubServer.send(ex, 503, "busy");
+            } else {
+                StubServer.sendPoint(ex, 42.9 + n * 1e-4);
+            }
+        })) {
+            FileGeocodeCache cache = new FileGeocodeCache(Files.createTempDirectory("geocode-burst"));
+            OrsGeocoder geocoder = new OrsGeocoder("test", cache, RateLimiter.unlimited(), stub.baseUrl());
+
+            long start = System.nanoTime();
+            List<GeocodeOutcome> outcomes;
+            try (GeocodePipeline pipeline = new GeocodePipeline(geocoder, 4)) {
+                for (int i = 0; i < 24; i++) pipeline.submit(i + " Burst Street London Ontario");
+                outcomes = pipeline.awaitAll();
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+
+            assertEquals(24, outcomes.size());
+            for (GeocodeOutcome o : outcomes) assertTrue(o.success(), o.message());
+            assertEquals(24 + 3, stub.requests.get());
+            assertTrue(stub.maxActive.get() <= 4, "max in flight " + stub.maxActive.get());
+            assertTrue(elapsedMs >= 1000, "Retry-After ignored: " + elapsedMs + " ms");
+            assertEquals(24, cache.size());
+
+            // Served from the cache now: no further requests.
+            assertTrue(geocoder.forwardGeocode("0 Burst Street London Ontario").fromCache());
+            assertEquals(24 + 3, stub.requests.get());
+        }
+    }
+
+    @Test
+    void httpStatsCountEveryAttempt_byHowItEnded() throws Exception {
+        try (StubServer stub = new StubServer((n, q, ex) -> {
+            if (n == 1) {
+                ex.getResponseHeaders().set("Retry-After", "0");
+                StubServer.send(ex, 429, "{\"error\":\"rate limit\"}");
+            } else if (n == 2) {
+                StubServer.send(ex, 503, "busy");
+            } else {
+                StubServer.sendPoint(ex, 42.9 + n * 1e-4);
+            }
+        })) {
+            OrsGeocoder geocoder = new OrsGeocoder("test", new FileGeocodeCache(Files.createTempDirectory("geocode-stats")),
+                    RateLimiter.unlimited(), stub.baseUrl());
+            for (int i = 0; i < 3; i++) {
+                assertTrue(geocoder.forwardGeocode(i + " Stats Street London Ontario").success());
+            }
+
+            HttpStats stats = geocoder.httpStats();
+            assertEquals(5, stub.requests.get(), "the first address took three attempts");
+            assertEquals(5, stats.requests());
+            assertEquals(3, stats.ok());
+            assertEquals(1, stats.throttled());
+            assertEquals(1, stats.serverErrors());
+            assertEquals(2, stats.retries());
+            assertTrue(stats.p50Micros() >= 20_000 && stats.p50Micros() <= stats.p99Micros(), stats.toString());
+            assertTrue(stats.bytesReceived() > 3 * 50, stats.toString());
+            assertTrue(stats.bytesSent() > 5 * 100, "request line and headers of every attempt: " + stats);
+        }
+    }
+
+    @Test
+    void nonRetryableAnswersFailAtOnce_withTheirFailureCode() throws Exception {
+        try (StubServer stub = new StubServer((n, q, ex) -> {
+            if (q.contains("text=bad")) StubServer.send(ex, 400, "{\"error\":\"bad text\"}");
+            else if (q.contains("text=key")) StubServer.send(ex, 403, "{\"error\":\"key disallowed\"}");
+            else StubServer.send(ex, 500, "internal error");
+        })) {
+            OrsGeocoder geocoder = new OrsGeocoder("test", new FileGeocodeCache(Files.createTempDirectory("geocode-codes")),
+                    RateLimiter.unlimited(), stub.baseUrl());
+
+            GeocodeOutcome bad = geocoder.forwardGeocode("bad");
+            assertTrue(bad.message().startsWith("ORS error HTTP 400"), bad.message());
+            assertEquals(GeocodeFailure.REJECTED, bad.failure());
+            assertEquals(GeocodeFailure.REJECTED, geocoder.forwardGeocode("key").failure());
+            GeocodeOutcome crash = geocoder.forwardGeocode("crash");
+            assertEquals(GeocodeFailure.SERVER_ERROR, crash.failure());
+            assertTrue(crash.message().startsWith("ORS error HTTP 500"), crash.message());
+            assertEquals(3, stub.requests.get(), "none of them retried");
+        }
+    }
+
+    @Test
+    void twoSpellingsOfOneNewAddressInFlight_shareOneRequest() throws Exception {
+        try (StubServer stub = new StubServer((n, q, ex) -> StubServer.sendPoint(ex, 42.95))) {
+            OrsGeocoder geocoder = new OrsGeocoder("test", new FileGeocodeCache(Files.createTempDirectory("geocode-shared")),
+                    RateLimiter.unlimited(), stub.baseUrl());
+
+            var first = geocoder.forwardGeocodeAsync("5 Shared Street, London, Ontario");
+            var second = geocoder.forwardGeocodeAsync("5 SHARED ST LONDON ON");
+            assertTrue(first.get().success() && second.get().success());
+            assertEquals("5 SHARED ST LONDON ON", second.get().address());
+            assertEquals(first.get().lat(), second.get().lat());
+            assertEquals(1, stub.requests.get());
+            assertEquals(1, geocoder.sharedLookups());
+        }
+    }
+
+    @Test
+    void unresolvableAddressesAreCached_andNotAskedAgainUntilTheirTtl() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/geocode/search", ex -> {
+            requests.incrementAndGet();
+            String q = ex.getRequestURI().getRawQuery();
+            if (q.contains("text=bad")) StubServer.send(ex, 400, "{\"error\":\"bad text\"}");
+            else if (q.contains("text=key")) StubServer.send(ex, 403, "{\"error\":\"key disallowed\"}");
+            else if (q.contains("text=moved")) StubServer.send(ex, 404, "<html>Not Found</html>");
+            else if (q.contains("text=nowhere")) StubServer.send(ex, 200, "{\"features\":[]}");
+            else StubServer.send(ex, 200, "{\"features\":[{\"geometry\":{\"coordinates\":[-81.2,42.9]}}]}");
+        });
+        server.start();
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        Path log = Files.createTempDirectory("geocode-negative").resolve("geocode.log");
+        try (MemoryGeocodeCache cache = new MemoryGeocodeCache(LogGeocodeCache.open(log), 100, null, Duration.ofDays(7))) {
+            OrsGeocoder geocoder = new OrsGeocoder("test", cache, RateLimiter.unlimited(), baseUrl);
+
+            for (String a : List.of("bad", "key", "moved", "nowhere")) assertFalse(geocoder.forwardGeocode(a).success());
+            assertEquals(4, requests.get());
+
+            GeocodeOutcome nowhere = geocoder.forwardGeocode("Nowhere");
+            assertEquals(GeocodeFailure.NO_RESULTS, nowhere.failure());
+            assertTrue(nowhere.fromCache(), nowhere.message());
+            assertEquals(GeocodeFailure.REJECTED, geocoder.forwardGeocode("bad").failure());
+            assertEquals(4, requests.get(), "cached failures are not sent again");
+            assertNull(geocoder.lookupLocal("key"), "403 is about the key, not the address: not cached");
+            assertNull(geocoder.lookupLocal("moved"), "404 is about the URL, not the address: not cached");
+            assertEquals(2, cache.stats().failureHits());
+
+            // Past the failure TTL the address is asked again.
+            cache.put(GeocodeCacheEntry.negative("nowhere", "NO_RESULTS", Instant.now().minus(Duration.ofDays(8)).toString()));
+            try (MemoryGeocodeCache reopened = new MemoryGeocodeCache(LogGeocodeCache.open(log), 100, null, Duration.ofDays(7))) {
+                assertNull(reopened.get("nowhere"));
+                assertEquals("REJECTED", reopened.get("bad").failure());
+            }
+        } finally {
+            server.stop(0);
+        }
+
+        // With failures not cached (a zero TTL) nothing negative is stored.
+        try (MemoryGeocodeCache cache = new MemoryGeocodeCache(LogGeocodeCache.open(log.resolveSibling("off.log")), 100,
+                null, Duration.ZERO)) {
+            cache.put(GeocodeCacheEntry.negative("bad", "REJECTED", Instant.now().toString()));
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    void serverDelayFromRetryAfterOrRateLimitHeaders() {
+        long now = 1_700_000_000_000L;
+        assertEquals(3000, OrsGeocoder.serverDelayMs(headers(Map.of("Retry-After", List.of("3"))), now));
+        assertEquals(5000, OrsGeocoder.serverDelayMs(
+                headers(Map.of("Retry-After", List.of("Tue, 14 Nov 2023 22:13:25 GMT"))), now));
+        assertEquals(7000, OrsGeocoder.serverDelayMs(headers(Map.of(
+                "x-ratelimit-remaining", List.of("0"), "x-ratelimit-reset", List.of("1700000007"))), now));
+        assertEquals(-1, OrsGeocoder.serverDelayMs(headers(Map.of(
+                "x-ratelimit-remaining", List.of("12"), "x-ratelimit-reset", List.of("1700000007"))), now));
+
+        for (int attempt = 1; attempt <= 8; attempt++) {
+            long b = OrsGeocoder.backoffMs(attempt);
+            long cap = Math.min(10_000, 400L << (attempt - 1));
+            assertTrue(b >= cap / 2 && b <= cap, "attempt " + attempt + ": " + b);
+        }
+    }
+
+    private static HttpHeaders headers(Map<String, List<String>> map) {
+        return HttpHeaders.of(map, (k, v) -> true);
+    }
+}
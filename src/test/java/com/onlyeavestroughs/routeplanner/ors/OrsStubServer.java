@@ -0,0 +1,94 @@
+package com.onlyeavestroughs.routeplanner.ors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loopback stand-in for the ORS Matrix API (POST /v2/matrix/{profile}). Every answer is
+ * meters(), so tests can check cells without a real road network; the cell from a point
+ * to itself is answered as 7 m, which the engine must not use. Setting failMatrixAfter
+ * makes every matrix request after that many answer 500, as an outage mid-run would.
+ */
+public final class OrsStubServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ObjectMapper mapper = new ObjectMapper();
+    public final AtomicInteger matrixRequests = new AtomicInteger();
+    /** Most locations sent in one matrix request. */
+    public final AtomicInteger maxLocations = new AtomicInteger();
+    /** Matrix requests answered before the stub starts failing; -1 for never. */
+    public final AtomicInteger failMatrixAfter = new AtomicInteger(-1);
+
+    public OrsStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v2/matrix/", this::matrix);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** The stub's "road" distance: 1 m per 1e-5 degree of latitude plus longitude. */
+    public static double meters(double latA, double lngA, double latB, double lngB) {
+        if (latA == latB && lngA == lngB) return 7;
+        return Math.round((Math.abs(latA - latB) + Math.abs(lngA - lngB)) * 1e5);
+    }
+
+    private void matrix(HttpExchange ex) throws IOException {
+        int n = matrixRequests.incrementAndGet();
+        JsonNode body;
+        try (InputStream in = ex.getRequestBody()) {
+            body = mapper.readTree(in);
+        }
+        int failAfter = failMatrixAfter.get();
+        if (failAfter >= 0 && n > failAfter) {
+            send(ex, 500, "{\"error\":\"stub outage\"}");
+            return;
+        }
+        JsonNode locations = body.get("locations");
+        maxLocations.accumulateAndGet(locations.size(), Math::max);
+        ObjectNode out = mapper.createObjectNode();
+        ArrayNode distances = out.putArray("distances");
+        ArrayNode durations = out.putArray("durations");
+        for (JsonNode s : body.get("sources")) {
+            JsonNode a = locations.get(s.asInt());
+            ArrayNode dRow = distances.addArray();
+            ArrayNode tRow = durations.addArray();
+            for (JsonNode d : body.get("destinations")) {
+                JsonNode b = locations.get(d.asInt());
+                double m = meters(a.get(1).asDouble(), a.get(0).asDouble(), b.get(1).asDouble(), b.get(0).asDouble());
+                dRow.add(m);
+                tRow.add(m / 10);
+            }
+        }
+        send(ex, 200, mapper.writeValueAsString(out));
+    }
+
+    static void send(HttpExchange ex, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
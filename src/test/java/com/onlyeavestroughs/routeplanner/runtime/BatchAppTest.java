@@ -0,0 +1,52 @@
+package com.onlyeavestroughs.routeplanner.runtime;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchAppTest {
+
+    @Test
+    void jobsRunConcurrentlyInOwnRunDirs_badLinesAreReportedNotFatal() throws Exception {
+        PlannerFixture fx = new PlannerFixture("batch")
+                .known("1 North Depot Road London Ontario", 43.02, -81.25)
+                .known("1 South Depot Road London Ontario", 42.92, -81.25);
+        List<String> all = fx.scatter("Batch Street", 30, 4);
+        Path north = fx.write("north.txt", all.subList(0, 20));
+        Path south = fx.write("south.txt", all.subList(10, 30));
+        ObjectNode base = fx.config("1 North Depot Road London Ontario", north)
+                .put("optimizerTimeBudgetMs", 300);
+        List<String> lines = List.of(
+                "{\"name\": \"north\", \"crews\": 2}",
+                "",
+                "{\"name\": \"south\", \"depot\": \"1 South Depot Road London Ontario\", \"input\": \""
+                        + south.toString().replace("\\", "\\\\") + "\", \"crews\": 3}",
+                "{\"name\": \"typo\", \"crewz\": 3}",
+                "not json");
+
+        BatchApp.Summary summary;
+        try (PlannerServices services = PlannerServices.open(PlannerFixture.runConfig(base))) {
+            summary = BatchApp.run(base, lines, services, 2);
+        }
+
+        assertEquals(4, summary.jobs().size());
+        assertEquals(2, summary.failed());
+        BatchApp.JobResult n = summary.jobs().get(0);
+        BatchApp.JobResult s = summary.jobs().get(1);
+        assertEquals("north", n.name());
+        assertTrue(n.ok() && s.ok(), summary.toText());
+        assertEquals(3, s.line());
+        assertEquals(20, n.stops());
+        assertEquals(20, s.stops());
+        assertNotEquals(n.runDir(), s.runDir());
+        assertTrue(Files.isRegularFile(Path.of(s.runDir()).resolve("routes.json")));
+        assertTrue(summary.jobs().get(2).error().contains("crewz"), summary.jobs().get(2).error());
+        assertEquals("line 5", summary.jobs().get(3).name());
+        assertEquals(0, summary.geocodeHttp().requests());
+    }
+}
@@ -0,0 +1,73 @@
+package com.onlyeavestroughs.routeplanner.runtime;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Temporary project directory for the runtime tests: a known.csv gazetteer so no address
+ * goes to ORS, address files, and a base run-config tree (haversine matrix, one optimizer
+ * worker) that a test overrides with .put() as needed.
+ */
+final class PlannerFixture {
+
+    static final ObjectMapper JSON = new ObjectMapper();
+
+    final Path dir;
+    private final List<String> known = new ArrayList<>(List.of("address,lat,lng"));
+
+    PlannerFixture(String prefix) throws IOException {
+        this.dir = Files.createTempDirectory(prefix);
+    }
+
+    /** Adds one gazetteer row, quoting the address when it contains a comma. */
+    PlannerFixture known(String address, double lat, double lng) {
+        String a = address.contains(",") ? "\"" + address + "\"" : address;
+        known.add(String.format(Locale.ROOT, "%s,%.6f,%.6f", a, lat, lng));
+        return this;
+    }
+
+    /** Adds "1 street London Ontario" .. "count street ..." at seeded random points across London. */
+    List<String> scatter(String street, int count, long seed) {
+        Random rnd = new Random(seed);
+        List<String> out = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            String a = i + " " + street + " London Ontario";
+            known(a, 42.85 + rnd.nextDouble() * 0.3, -81.45 + rnd.nextDouble() * 0.4);
+            out.add(a);
+        }
+        return out;
+    }
+
+    Path write(String name, List<String> lines) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, lines, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    /** Writes known.csv and returns the base config for a plan of input from depot. */
+    ObjectNode config(String depot, Path input) throws IOException {
+        Path gazetteer = write("known.csv", known);
+        return JSON.createObjectNode()
+                .put("depot", depot)
+                .put("input", input.toString())
+                .put("outRoot", dir.resolve("output").toString())
+                .put("cacheRoot", dir.resolve("cache").toString())
+                .put("gazetteerFile", gazetteer.toString())
+                .put("orsApiKey", "test")
+                .put("matrixEngine", "haversine")
+                .put("optimizerWorkers", 1);
+    }
+
+    static RunConfig runConfig(ObjectNode tree) {
+        return RunConfig.from(ProjectConfigLoader.fromTree(tree), null);
+    }
+}
@@ -0,0 +1,100 @@
+package com.onlyeavestroughs.routeplanner.runtime;
+
+import com.onlyeavestroughs.routeplanner.ors.OrsStubServer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrefetchAppTest {
+
+    @Test
+    void resumesAfterSavedProgress_skipsFinishedFile_restartsChangedFile() throws Exception {
+        PlannerFixture fx = new PlannerFixture("prefetch").known("1 Depot Road London Ontario", 42.98, -81.25);
+        List<String> input = new ArrayList<>(fx.scatter("Prefetch Street", 60, 5));
+        input.add("1 Depot Road London Ontario");
+        Path addresses = fx.write("tomorrow.txt", input);
+        RunConfig cfg = PlannerFixture.runConfig(fx.config("1 Depot Road London Ontario", addresses));
+
+        // An earlier prefetch stopped after 25 addresses.
+        Path progress = PrefetchApp.progressFile(cfg.cacheRoot(), addresses);
+        Files.createDirectories(progress.getParent());
+        PlannerFixture.JSON.writeValue(progress.toFile(), new PrefetchApp.Progress(addresses.toString(),
+                Files.size(addresses), Files.getLastModifiedTime(addresses).toMillis(), 60, 25, 25, 0, 0, false));
+
+        try (PlannerServices services = PlannerServices.open(cfg)) {
+            PrefetchApp.Result r = PrefetchApp.run(cfg, services, true);
+            assertEquals(60, r.addresses());
+            assertEquals(25, r.resumedAt());
+            assertEquals(60, r.cacheHits());
+            assertEquals(0, r.fetched() + r.failed());
+            assertNull(r.matrix(), "no matrix to prefetch with the haversine engine");
+            // Depot plus the 35 addresses after the saved progress.
+            assertEquals(36, services.gazetteer.stats().exactHits());
+
+            PrefetchApp.Result again = PrefetchApp.run(cfg, services, false);
+            assertEquals(60, again.resumedAt());
+            assertEquals(37, services.gazetteer.stats().exactHits());
+
+            // A changed file (here one more, duplicate, line) starts over.
+            Files.writeString(addresses, "7 Prefetch Street London Ontario\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.APPEND);
+            PrefetchApp.Result changed = PrefetchApp.run(cfg, services, false);
+            assertEquals(0, changed.resumedAt());
+            assertEquals(60, changed.cacheHits());
+            assertEquals(98, services.gazetteer.stats().exactHits());
+            assertEquals(0, services.geocoder.httpStats().requests());
+        }
+        assertEquals(60, PlannerFixture.JSON.readTree(progress.toFile()).get("done").asInt());
+    }
+
+    @Test
+    void matrixPass_fillsTheMatrixCache_resumesAfterAnOutage_notRepeatedOnceDone() throws Exception {
+        PlannerFixture fx = new PlannerFixture("prefetch-matrix").known("1 Depot Road London Ontario", 42.98, -81.25);
+        Path addresses = fx.write("tomorrow.txt", fx.scatter("Prefetch Street", 30, 6));
+
+        try (OrsStubServer stub = new OrsStubServer()) {
+            RunConfig cfg = PlannerFixture.runConfig(fx.config("1 Depot Road London Ontario", addresses)
+                    .put("orsBaseUrl", stub.baseUrl())
+                    .put("matrixEngine", "ors")
+                    .put("matrixTileSize", 10)
+                    .put("matrixRequestsPerSecond", 1000));
+            int cells = 31 * 30; // depot and 30 stops, without the diagonal
+
+            // The server goes down after 5 of the 16 tiles.
+            stub.failMatrixAfter.set(5);
+            try (PlannerServices services = PlannerServices.open(cfg)) {
+                assertThrows(IllegalStateException.class, () -> PrefetchApp.run(cfg, services, true));
+            }
+            Path progress = PrefetchApp.progressFile(cfg.cacheRoot(), addresses);
+            assertFalse(PlannerFixture.JSON.readTree(progress.toFile()).get("matrixDone").asBoolean());
+
+            // Back up: only the cells the first pass did not cache are fetched.
+            stub.failMatrixAfter.set(-1);
+            int before = stub.matrixRequests.get();
+            try (PlannerServices services = PlannerServices.open(cfg)) {
+                PrefetchApp.Result r = PrefetchApp.run(cfg, services, true);
+                assertEquals(30, r.resumedAt());
+                assertNotNull(r.matrix());
+                assertTrue(r.matrix().cellsFromCache() >= 4 * 90, r.matrix().toString());
+                assertEquals(cells, r.matrix().cellsFromCache() + r.matrix().cellsFetched());
+                assertTrue(stub.matrixRequests.get() - before < 16, "refetched cached tiles");
+                assertEquals(0, services.geocoder.httpStats().requests());
+            }
+            assertTrue(PlannerFixture.JSON.readTree(progress.toFile()).get("matrixDone").asBoolean());
+
+            // Done: a rerun sends nothing, and the plan's own matrix is all cache.
+            int done = stub.matrixRequests.get();
+            try (PlannerServices services = PlannerServices.open(cfg)) {
+                assertNull(PrefetchApp.run(cfg, services, true).matrix());
+                assertEquals(done, stub.matrixRequests.get());
+            }
+        }
+    }
+}
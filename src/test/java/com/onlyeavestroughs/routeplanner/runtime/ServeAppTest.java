@@ -0,0 +1,102 @@
+package com.onlyeavestroughs.routeplanner.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServeAppTest {
+
+    private static final ObjectMapper JSON = PlannerFixture.JSON;
+
+    @Test
+    void concurrentPlansShareWarmServices_badOverridesAreRejected() throws Exception {
+        PlannerFixture fx = new PlannerFixture("serve").known("1 Depot Road, London", 42.98, -81.25);
+        Path input = fx.write("addresses.txt", fx.scatter("Serve Street", 40, 9));
+        ObjectNode base = fx.config("1 Depot Road, London", input)
+                .put("optimizerTimeBudgetMs", 500);
+
+        ServeApp app = new ServeApp(base, PlannerServices.open(PlannerFixture.runConfig(base)), 2);
+        try {
+            String url = "http://127.0.0.1:" + app.start(0);
+            HttpClient http = HttpClient.newHttpClient();
+
+            CompletableFuture<HttpResponse<String>> a = post(http, url + "/plan", "{\"crews\": 2}");
+            CompletableFuture<HttpResponse<String>> b = post(http, url + "/plan", "{\"crews\": 3}");
+            JsonNode ra = JSON.readTree(a.get().body());
+            JsonNode rb = JSON.readTree(b.get().body());
+            assertEquals(200, a.get().statusCode(), a.get().body());
+            assertEquals(200, b.get().statusCode(), b.get().body());
+            assertNotEquals(ra.get("runId").asText(), rb.get("runId").asText());
+            assertEquals(40, ra.get("stops").asInt());
+            assertEquals(0, ra.get("failedStops").asInt());
+            assertEquals(3, JSON.readTree(Path.of(rb.get("routesJson").asText()).toFile()).get("routes").size());
+
+            HttpResponse<String> fixed = post(http, url + "/plan", "{\"cacheRoot\": \"elsewhere\"}").get();
+            assertEquals(400, fixed.statusCode());
+            assertTrue(fixed.body().contains("cacheRoot is fixed"), fixed.body());
+            assertEquals(400, post(http, url + "/plan", "{\"crewz\": 2}").get().statusCode());
+            assertEquals(400, post(http, url + "/plan", "[1]").get().statusCode());
+
+            JsonNode status = JSON.readTree(http.send(HttpRequest.newBuilder(URI.create(url + "/status")).build(),
+                    HttpResponse.BodyHandlers.ofString()).body());
+            assertEquals(2, status.get("plansCompleted").asInt());
+            assertEquals(0, status.get("plansFailed").asInt());
+            assertEquals(0, status.get("geocodeHttp").get("requests").asLong());
+            assertTrue(status.get("gazetteer").get("exactHits").asLong() >= 80, status.toString());
+        } finally {
+            app.stop();
+        }
+    }
+
+    @Test
+    void stopRejectsQueuedPlans_secondStopWaitsForTheClose() throws Exception {
+        PlannerFixture fx = new PlannerFixture("serve-stop");
+        ObjectNode base = fx.config("1 Depot Road, London", fx.write("addresses.txt", List.of("1 Serve Street London Ontario")));
+        ServeApp app = new ServeApp(base, PlannerServices.open(PlannerFixture.runConfig(base)), 1);
+        String url = "http://127.0.0.1:" + app.start(0);
+
+        // Stand in for a plan that is still running, so the next one has to wait.
+        app.planSlots.acquire();
+        CompletableFuture<HttpResponse<String>> queued = post(HttpClient.newHttpClient(), url + "/plan", "{}");
+        awaitQueueLength(app, 1);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(app::stop);
+        awaitQueueLength(app, 2);
+        CompletableFuture<Void> second = CompletableFuture.runAsync(app::stop);
+        Thread.sleep(200);
+        assertFalse(second.isDone(), "second stop() returned while the first was still waiting to close");
+
+        app.planSlots.release();
+        HttpResponse<String> rejected = queued.get(10, TimeUnit.SECONDS);
+        assertEquals(503, rejected.statusCode(), rejected.body());
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        assertFalse(Files.exists(fx.dir.resolve("output")), "no plan ran");
+    }
+
+    private static void awaitQueueLength(ServeApp app, int length) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (app.planSlots.getQueueLength() < length) {
+            assertTrue(System.nanoTime() < deadline, "queue never reached " + length);
+            Thread.sleep(10);
+        }
+    }
+
+    private static CompletableFuture<HttpResponse<String>> post(HttpClient http, String url, String body) {
+        return http.sendAsync(HttpRequest.newBuilder(URI.create(url))
+                        .POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,46 @@
+package com.onlyeavestroughs.routeplanner.spatial;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KdTreeTest {
+
+    @Test
+    void kNearestAndRadius_matchBruteForce() {
+        int n = 3000;
+        Random rnd = new Random(3);
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        for (int i = 0; i < n; i++) {
+            lat[i] = 42.8 + rnd.nextDouble() * 0.4;
+            lng[i] = -81.5 + rnd.nextDouble() * 0.5;
+        }
+        KdTree tree = new KdTree(lat, lng);
+        NeighborLists lists = tree.neighborLists(8);
+
+        for (int q = 0; q < n; q += 97) {
+            int point = q;
+            Integer[] all = new Integer[n - 1];
+            for (int i = 0, j = 0; i < n; i++) if (i != point) all[j++] = i;
+            Arrays.sort(all, (a, b) -> Double.compare(tree.distance(point, a), tree.distance(point, b)));
+
+            int[] out = new int[8];
+            assertEquals(8, tree.kNearest(point, 8, out));
+            for (int r = 0; r < 8; r++) {
+                assertEquals(tree.distance(point, all[r]), tree.distance(point, out[r]), 1e-9);
+                assertEquals(out[r], lists.get(point, r));
+            }
+
+            double radius = 1500;
+            int expected = 0;
+            for (int i = 0; i < n; i++) if (i != point && tree.distance(point, i) <= radius) expected++;
+            int[] count = new int[1];
+            tree.withinRadius(point, radius, null, count);
+            assertEquals(expected, count[0]);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.onlyeavestroughs.routeplanner.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentilesWithinBucketErrorOfExact() {
+        Random rnd = new Random(5);
+        LatencyHistogram h = new LatencyHistogram();
+        long[] micros = new long[20_000];
+        for (int i = 0; i < micros.length; i++) {
+            // Log-normal-ish: mostly 50-400 ms with a slow tail.
+            micros[i] = (long) (Math.exp(11.5 + rnd.nextGaussian() * 0.8));
+            h.recordNanos(micros[i] * 1_000L);
+        }
+        Arrays.sort(micros);
+
+        for (double q : new double[]{0.50, 0.95, 0.99}) {
+            long exact = micros[(int) Math.ceil(q * micros.length) - 1];
+            long approx = h.percentileMicros(q);
+            assertEquals(exact, approx, exact * 0.035, "q=" + q);
+        }
+        assertEquals(micros[micros.length - 1], h.maxMicros());
+        assertEquals(micros.length, h.count());
+    }
+
+    @Test
+    void bucketsAreContiguousAndOrdered() {
+        long prev = -1;
+        for (long v = 0; v < 1 << 20; v++) {
+            int i = LatencyHistogram.indexOf(v);
+            assertTrue(i == prev || i == prev + 1, "gap at " + v);
+            prev = i;
+        }
+        assertEquals(0, new LatencyHistogram().percentileMicros(0.5));
+    }
+}
@@ -0,0 +1,29 @@
+package com.onlyeavestroughs.routeplanner.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeOfDayTest {
+
+    @Test
+    void parseAndFormat_roundTrip_asciiDigitsInAnyLocale_unreachableTimesAreDashes() {
+        assertEquals(7 * 3600 + 5 * 60, TimeOfDay.parse("7:05"));
+        assertEquals(24 * 3600, TimeOfDay.parse("24:00"));
+        assertEquals(-1, TimeOfDay.parse("24:01"));
+        assertEquals(-1, TimeOfDay.parse("7:5"));
+
+        Locale saved = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.forLanguageTag("th-TH-u-nu-thai"));
+            assertEquals("07:05", TimeOfDay.format(7 * 3600 + 5 * 60 + 20));
+            assertEquals("25:10", TimeOfDay.format(25 * 3600 + 10 * 60));
+        } finally {
+            Locale.setDefault(saved);
+        }
+        assertEquals("--:--", TimeOfDay.format(Double.POSITIVE_INFINITY));
+        assertEquals("--:--", TimeOfDay.format(Double.NaN));
+    }
+}